@@ -97,7 +97,7 @@ public class DeviceParser
     @SerializedName(PARENT_SCOPES_NAMES)
     private List<String> parentScopes = new ArrayList<>();
 
-    private final transient Gson gson = new Gson();
+    private final transient static Gson gson = new Gson();
 
     /**
      * Converts this into JSON format and returns it.
@@ -11,6 +11,8 @@ import com.google.gson.annotations.SerializedName;
  */
 public class ErrorMessageParser
 {
+    private static final Gson gson = new Gson();
+
     @SuppressWarnings("unused") // A number of private members are unused but may be filled in or used by serialization
     static class ErrorMessage
     {
@@ -36,8 +38,6 @@ public class ErrorMessageParser
             return "";
         }
 
-        Gson gson = new GsonBuilder().create();
-
         String rootMessage = fullErrorMessage;
         String rootException = null;
         ErrorMessage subMessage;
@@ -97,7 +97,7 @@ public class ErrorMessageParser
 
         try
         {
-            JsonObject errorMessageJson = new GsonBuilder().create().fromJson(fullErrorMessage, JsonObject.class);
+            JsonObject errorMessageJson = gson.fromJson(fullErrorMessage, JsonObject.class);
 
             if (errorMessageJson.has(errorCodeJsonKey) && errorMessageJson.get(errorCodeJsonKey).isJsonPrimitive())
             {
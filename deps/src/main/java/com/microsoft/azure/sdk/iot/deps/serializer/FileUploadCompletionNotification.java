@@ -14,6 +14,8 @@ import com.google.gson.annotations.SerializedName;
  */
 public class FileUploadCompletionNotification
 {
+    private final transient static Gson gson = new GsonBuilder().disableHtmlEscaping().serializeNulls().create();
+
     private static final String CORRELATION_ID_TAG = "correlationId";
     @Expose
     @SerializedName(CORRELATION_ID_TAG)
@@ -68,7 +70,6 @@ public class FileUploadCompletionNotification
      */
     public FileUploadCompletionNotification(String json)
     {
-        Gson gson = new GsonBuilder().disableHtmlEscaping().serializeNulls().create();
         FileUploadCompletionNotification fileUploadCompletionNotification;
 
         try
@@ -100,8 +101,6 @@ public class FileUploadCompletionNotification
      */
     public String toJson()
     {
-        Gson gson = new GsonBuilder().disableHtmlEscaping().serializeNulls().create();
-
         return gson.toJson(this);
     }
 
@@ -24,6 +24,8 @@ import java.util.Date;
  */
 public class FileUploadNotificationParser
 {
+    private final transient static Gson gson = new GsonBuilder().disableHtmlEscaping().serializeNulls().create();
+
     private static final String DEVICE_ID_TAG = "deviceId";
     @Expose
     @SerializedName(DEVICE_ID_TAG)
@@ -68,7 +70,6 @@ public class FileUploadNotificationParser
     public FileUploadNotificationParser(String json) throws IllegalArgumentException
     {
         /* Codes_SRS_FILE_UPLOAD_NOTIFICATION_21_001: [The constructor shall create an instance of the FileUploadNotification.] */
-        Gson gson = new GsonBuilder().disableHtmlEscaping().serializeNulls().create();
         FileUploadNotificationParser fileUploadNotificationParser;
 
         /* Codes_SRS_FILE_UPLOAD_NOTIFICATION_21_003: [If the provided json is null, empty, or not valid, the constructor shall throws IllegalArgumentException.] */
@@ -13,6 +13,8 @@ import com.google.gson.annotations.SerializedName;
  */
 public class FileUploadSasUriRequest
 {
+    private final transient static Gson gson = new GsonBuilder().disableHtmlEscaping().serializeNulls().create();
+
     private static final String BLOB_NAME_TAG = "blobName";
     @Expose
     @SerializedName(BLOB_NAME_TAG)
@@ -52,8 +54,6 @@ public class FileUploadSasUriRequest
      */
     public String toJson()
     {
-        Gson gson = new GsonBuilder().disableHtmlEscaping().serializeNulls().create();
-
         return gson.toJson(this);
     }
 
@@ -20,6 +20,8 @@ import java.nio.charset.StandardCharsets;
  */
 public class FileUploadSasUriResponse
 {
+    private final transient static Gson gson = new GsonBuilder().disableHtmlEscaping().serializeNulls().create();
+
     private static final String HTTPS_URL_STRING = "https://";
 
     private static final String CORRELATION_ID_TAG = "correlationId";
@@ -55,7 +57,6 @@ public class FileUploadSasUriResponse
      */
     public FileUploadSasUriResponse(String json) throws IllegalArgumentException
     {
-        Gson gson = new GsonBuilder().disableHtmlEscaping().serializeNulls().create();
         FileUploadSasUriResponse newFileUploadSasUriResponse;
 
         ParserUtility.validateStringUTF8(json);
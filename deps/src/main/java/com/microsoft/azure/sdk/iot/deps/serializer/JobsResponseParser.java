@@ -21,6 +21,8 @@ import java.util.Map;
 @SuppressWarnings("unused") // A number of private members are unused but may be filled in or used by serialization
 public class JobsResponseParser
 {
+    private final transient static Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+
     // Job identifier
     private static final String JOBID_TAG = "jobId";
     @SerializedName(JOBID_TAG)
@@ -193,8 +195,6 @@ public class JobsResponseParser
     @SuppressWarnings("rawtypes")
     public static JobsResponseParser createFromJson(String json) throws IllegalArgumentException, JsonParseException
     {
-        Gson gson = new GsonBuilder().disableHtmlEscaping().create();
-
         if ((json == null) || json.isEmpty())
         {
             throw new IllegalArgumentException("Json is null or empty");
@@ -26,6 +26,8 @@ import static com.microsoft.azure.sdk.iot.deps.serializer.ParserUtility.resolveJ
  */
 public class MethodParser
 {
+    private static final Gson gson = new Gson();
+
     protected enum Operation
     {
         invoke,
@@ -363,7 +365,7 @@ public class MethodParser
             }
             catch (JsonSyntaxException e)
             {
-                return new Gson().toJsonTree(payload);
+                return gson.toJsonTree(payload);
             }
         }
     }
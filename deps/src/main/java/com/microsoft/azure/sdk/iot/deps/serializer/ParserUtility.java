@@ -42,6 +42,9 @@ public class ParserUtility
     private static final double MILLISECONDS_NUMERIC_BASE = 10;
     private static final String MILLISECONDS_REGEX = "[.,Z]";
 
+    // Gson is thread safe and costly to build, so serializers build each configuration once and share it
+    private static final Gson serializeNullsGson = new GsonBuilder().serializeNulls().create();
+
     /**
      * Helper to validate if the provided string is not null, empty, and all characters are UTF-8.
      *
@@ -401,8 +404,6 @@ public class ParserUtility
     {
         /* Codes_SRS_PARSER_UTILITY_21_035: [The mapToJsonElement shall serialize the provided map into a JsonElement.] */
         /* Codes_SRS_PARSER_UTILITY_21_036: [The mapToJsonElement shall include keys with null values in the JsonElement.] */
-        Gson gson = new GsonBuilder().serializeNulls().create();
-
         /* Codes_SRS_PARSER_UTILITY_21_038: [If the map is empty, the mapToJsonElement shall return a empty JsonElement.] */
         JsonObject json = new JsonObject();
 
@@ -423,15 +424,35 @@ public class ParserUtility
                 /* Codes_SRS_PARSER_UTILITY_21_037: [If the value is a map, the mapToJsonElement shall include it as a submap in the JsonElement.] */
                 json.add(entry.getKey(), mapToJsonElement((Map<String, Object>) entry.getValue()));
             }
+            else if (entry.getValue() instanceof String)
+            {
+                // Twin values are almost always primitives, which can be wrapped directly without going through Gson
+                json.addProperty(entry.getKey(), (String) entry.getValue());
+            }
+            else if (entry.getValue() instanceof Number && !isNonFiniteFloatingPoint((Number) entry.getValue()))
+            {
+                json.addProperty(entry.getKey(), (Number) entry.getValue());
+            }
+            else if (entry.getValue() instanceof Boolean)
+            {
+                json.addProperty(entry.getKey(), (Boolean) entry.getValue());
+            }
             else
             {
-                json.add(entry.getKey(), gson.toJsonTree(entry.getValue()));
+                json.add(entry.getKey(), serializeNullsGson.toJsonTree(entry.getValue()));
             }
         }
 
         return json;
     }
 
+    private static boolean isNonFiniteFloatingPoint(Number number)
+    {
+        // Gson rejects NaN and infinity by default, so leave those values for it to handle
+        return ((number instanceof Double) || (number instanceof Float))
+                && (Double.isNaN(number.doubleValue()) || Double.isInfinite(number.doubleValue()));
+    }
+
     public static Object resolveJsonElement(JsonElement jsonElement)
     {
         if (jsonElement == null || jsonElement.isJsonNull()) {
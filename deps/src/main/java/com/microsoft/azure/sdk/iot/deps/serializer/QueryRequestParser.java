@@ -13,6 +13,8 @@ import com.google.gson.annotations.SerializedName;
 @SuppressWarnings("unused") // A number of private members are unused but may be filled in or used by serialization
 public class QueryRequestParser
 {
+    private final transient static Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+
     private static final String QUERY_TAG = "query";
     // This suppression below is addressing warnings of field used for serialization.
     @SuppressWarnings("FieldCanBeLocal")
@@ -44,8 +46,6 @@ public class QueryRequestParser
      */
     public String toJson()
     {
-        Gson gson = new GsonBuilder().disableHtmlEscaping().create();
-
         //Codes_SRS_QUERY_REQUEST_PARSER_25_004: [The toJson shall return a string with a json that represents the contents of the QueryRequestParser.]
         return gson.toJson(this);
     }
@@ -0,0 +1,25 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.deps.serializer;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+
+/**
+ * Reads one item of a query response page for {@link QueryResponseParser#parseItems(String, QueryResponseItemReader)}.
+ *
+ * @param <T> the type of the items read.
+ */
+public interface QueryResponseItemReader<T>
+{
+    /**
+     * Read the next item from the provided reader.
+     *
+     * @param reader the reader positioned at the item. The item's tokens must all be consumed.
+     * @return the item that was read.
+     * @throws IOException if the reader fails to read the item.
+     */
+    T read(JsonReader reader) throws IOException;
+}
@@ -7,16 +7,58 @@ package com.microsoft.azure.sdk.iot.deps.serializer;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonSyntaxException;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
-import java.util.LinkedList;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class QueryResponseParser
 {
-    private transient Gson gson;
-    private JsonObject[] jsonItems = null;
+    private final transient static Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+    private final transient static TypeAdapter<JsonElement> jsonElementAdapter = gson.getAdapter(JsonElement.class);
+
+    // Copies each item's tokens straight into a string, so the page is only read once
+    private final transient static QueryResponseItemReader<String> rawItemReader = new QueryResponseItemReader<String>()
+    {
+        @Override
+        public String read(JsonReader in) throws IOException
+        {
+            if (in.peek() == JsonToken.NULL)
+            {
+                in.nextNull();
+                return "null";
+            }
+
+            if (in.peek() != JsonToken.BEGIN_OBJECT)
+            {
+                throw new IllegalStateException("Expected a json object but was " + in.peek());
+            }
+
+            StringWriter stringWriter = new StringWriter();
+            JsonWriter writer = new JsonWriter(stringWriter);
+
+            // Members with null values were always left out of the items
+            writer.setSerializeNulls(false);
+            copyValue(in, writer);
+            writer.flush();
+            return stringWriter.toString();
+        }
+    };
+
+    private List<String> jsonItems = null;
 
     /**
      * CONSTRUCTOR
@@ -28,39 +70,151 @@ public class QueryResponseParser
     public QueryResponseParser(String json) throws IllegalArgumentException
     {
         //Codes_SRS_QUERY_RESPONSE_PARSER_25_001: [The constructor shall create an instance of the QueryResponseParser.]
-        gson = new GsonBuilder().disableHtmlEscaping().create();
-
         //Codes_SRS_QUERY_RESPONSE_PARSER_25_003: [If the provided json is null, empty, or not valid, the constructor shall throws IllegalArgumentException.]
-        if((json == null) || json.isEmpty())
+        //Codes_SRS_QUERY_RESPONSE_PARSER_25_004: [If the provided json do not contains a valid array of json items the constructor shall throws IllegalArgumentException.]
+        this.jsonItems = parseItems(json, rawItemReader);
+    }
+
+    /**
+     * Getter for Json Items from Json Array
+     * @return the array of json as string
+     */
+    public List<String> getJsonItems()
+    {
+        //Codes_SRS_QUERY_RESPONSE_PARSER_25_008: [The getJsonItems shall return the list of json items as strings .]
+        return new ArrayList<>(this.jsonItems);
+    }
+
+    /**
+     * Decode each item of the provided query response page with the provided reader, in a single pass over the json
+     * and without building an intermediate tree or string per item.
+     *
+     * @param json the json array of the query response page.
+     * @param itemReader the reader of one item from the page.
+     * @param <T> the type of the decoded items.
+     * @return the decoded items, in the order of the page.
+     * @throws IllegalArgumentException if the json is null, empty, or not a valid array of items that the item reader can read.
+     */
+    public static <T> List<T> parseItems(String json, QueryResponseItemReader<T> itemReader) throws IllegalArgumentException
+    {
+        if ((json == null) || json.isEmpty())
         {
             throw new IllegalArgumentException("parameter is null or empty");
         }
 
+        if (itemReader == null)
+        {
+            throw new IllegalArgumentException("itemReader cannot be null");
+        }
+
+        JsonReader reader = new JsonReader(new StringReader(json));
+        reader.setLenient(true);
         try
         {
-            this.jsonItems = gson.fromJson(json, JsonObject[].class);
+            List<T> items = new ArrayList<>();
+            reader.beginArray();
+            while (reader.hasNext())
+            {
+                items.add(itemReader.read(reader));
+            }
+            reader.endArray();
+
+            if (reader.peek() != JsonToken.END_DOCUMENT)
+            {
+                throw new IllegalArgumentException("Malformed json: the query response has content after its items");
+            }
+
+            return items;
         }
-        catch (JsonSyntaxException malformed)
+        catch (IOException | IllegalStateException | JsonParseException | NumberFormatException malformed)
         {
-            //Codes_SRS_QUERY_RESPONSE_PARSER_25_004: [If the provided json do not contains a valid array of json items the constructor shall throws IllegalArgumentException.]
             throw new IllegalArgumentException("Malformed json:" + malformed);
         }
     }
 
     /**
-     * Getter for Json Items from Json Array
-     * @return the array of json as string
+     * Create an item reader for {@link #parseItems(String, QueryResponseItemReader)} that only materializes the
+     * provided top level fields of each item. The values of all other fields are skipped over without being decoded.
+     *
+     * @param fieldNames the names of the fields to keep.
+     * @return the item reader that reads each item into a json object with only the provided fields.
+     * @throws IllegalArgumentException if no field names are provided.
      */
-    public List<String> getJsonItems()
+    public static QueryResponseItemReader<JsonObject> projection(String... fieldNames) throws IllegalArgumentException
     {
-        List<String> jsonElements = new LinkedList<>();
+        if (fieldNames == null || fieldNames.length == 0)
+        {
+            throw new IllegalArgumentException("fieldNames cannot be null or empty");
+        }
 
-        for (JsonObject json : this.jsonItems)
+        final Set<String> projectedFieldNames = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(fieldNames)));
+        return new QueryResponseItemReader<JsonObject>()
         {
-            jsonElements.add(gson.toJson(json));
+            @Override
+            public JsonObject read(JsonReader in) throws IOException
+            {
+                JsonObject item = new JsonObject();
+                in.beginObject();
+                while (in.hasNext())
+                {
+                    String name = in.nextName();
+                    if (projectedFieldNames.contains(name))
+                    {
+                        item.add(name, jsonElementAdapter.read(in));
+                    }
+                    else
+                    {
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
+                return item;
+            }
+        };
+    }
+
+    private static void copyValue(JsonReader in, JsonWriter out) throws IOException
+    {
+        switch (in.peek())
+        {
+            case BEGIN_OBJECT:
+                in.beginObject();
+                out.beginObject();
+                while (in.hasNext())
+                {
+                    out.name(in.nextName());
+                    copyValue(in, out);
+                }
+                in.endObject();
+                out.endObject();
+                break;
+            case BEGIN_ARRAY:
+                in.beginArray();
+                out.beginArray();
+                while (in.hasNext())
+                {
+                    copyValue(in, out);
+                }
+                in.endArray();
+                out.endArray();
+                break;
+            case STRING:
+                out.value(in.nextString());
+                break;
+            case NUMBER:
+                // Keep the number exactly as the service wrote it
+                out.jsonValue(in.nextString());
+                break;
+            case BOOLEAN:
+                out.value(in.nextBoolean());
+                break;
+            case NULL:
+                in.nextNull();
+                out.nullValue();
+                break;
+            default:
+                throw new IllegalStateException("Unexpected json token " + in.peek());
         }
-        //Codes_SRS_QUERY_RESPONSE_PARSER_25_008: [The getJsonItems shall return the list of json items as strings .]
-        return jsonElements;
     }
 
     /**
@@ -3,9 +3,8 @@
 
 package com.microsoft.azure.sdk.iot.deps.serializer;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.annotations.SerializedName;
 
 import java.text.SimpleDateFormat;
@@ -25,11 +24,13 @@ public class TwinMetadata
 
     private static final String DATEFORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'";
     private static final String TIMEZONE = "UTC";
+    private static final String LAST_UPDATED_TAG = "$lastUpdated";
+    private static final String LAST_UPDATED_VERSION_TAG = "$lastUpdatedVersion";
 
-    @SerializedName("$lastUpdated")
+    @SerializedName(LAST_UPDATED_TAG)
     private String lastUpdated;
 
-    @SerializedName("$lastUpdatedVersion")
+    @SerializedName(LAST_UPDATED_VERSION_TAG)
     private Integer lastUpdatedVersion;
 
     protected TwinMetadata()
@@ -82,7 +83,16 @@ public class TwinMetadata
 
     protected JsonElement toJsonElement()
     {
-        Gson gson = new GsonBuilder().create();
-        return gson.toJsonTree(this);
+        // Built by hand rather than through Gson reflection, since this runs for every property in the twin
+        JsonObject jsonObject = new JsonObject();
+        if (this.lastUpdated != null)
+        {
+            jsonObject.addProperty(LAST_UPDATED_TAG, this.lastUpdated);
+        }
+        if (this.lastUpdatedVersion != null)
+        {
+            jsonObject.addProperty(LAST_UPDATED_VERSION_TAG, this.lastUpdatedVersion);
+        }
+        return jsonObject;
     }
 }
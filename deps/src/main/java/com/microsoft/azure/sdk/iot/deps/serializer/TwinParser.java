@@ -30,6 +30,9 @@ public class TwinParser
 
     private static final int MAX_MAP_LEVEL = 5;
 
+    private static final Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+    private static final Gson noInnerClassGson = new GsonBuilder().disableInnerClassSerialization().disableHtmlEscaping().create();
+
     protected TwinTags tags = null;
     @SuppressWarnings("CanBeFinal") // Can be inherited and changed somewhere else besides the constructor
     protected TwinProperties properties = new TwinProperties();
@@ -127,7 +130,6 @@ public class TwinParser
      */
     public JsonElement toJsonElement()
     {
-        Gson gson = new GsonBuilder().disableHtmlEscaping().create();
         JsonObject twinJson = gson.toJsonTree(manager).getAsJsonObject();
 
         if (tags != null)
@@ -186,7 +188,6 @@ public class TwinParser
         validateMap(reportedPropertyMap);
         validateMap(tagsMap);
 
-        Gson gson = new GsonBuilder().disableHtmlEscaping().create();
         jsonTwin = gson.toJsonTree(manager).getAsJsonObject();
 
         if ((tags == null) && (tagsMap != null))
@@ -504,12 +505,11 @@ public class TwinParser
 
         if (!json.isEmpty())
         {
-            Gson gson = new GsonBuilder().disableInnerClassSerialization().disableHtmlEscaping().create();
             Map<String, Object> jsonTree;
             try
             {
-                jsonTree = (Map<String, Object>) gson.fromJson(json, HashMap.class);
-                manager = gson.fromJson(json, RegisterManagerParser.class);
+                jsonTree = (Map<String, Object>) noInnerClassGson.fromJson(json, HashMap.class);
+                manager = noInnerClassGson.fromJson(json, RegisterManagerParser.class);
             }
             catch (JsonSyntaxException e)
             {
@@ -833,8 +833,7 @@ public class TwinParser
         Map<String, Object> map;
         try
         {
-            Gson gson = new GsonBuilder().disableInnerClassSerialization().disableHtmlEscaping().create();
-            map = (Map<String, Object>) gson.fromJson(json, HashMap.class);
+            map = (Map<String, Object>) noInnerClassGson.fromJson(json, HashMap.class);
         }
         catch (Exception e)
         {
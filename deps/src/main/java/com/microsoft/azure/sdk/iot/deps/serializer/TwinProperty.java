@@ -25,6 +25,7 @@ import java.util.concurrent.ConcurrentMap;
 @Deprecated
 public class TwinProperty
 {
+    private static final Gson gson = new GsonBuilder().create();
 
     private static final String VERSION_TAG = "$version";
     private static final String METADATA_TAG = "$metadata";
@@ -308,7 +309,6 @@ public class TwinProperty
         {
             /* Codes_SRS_TWINPARSER_21_095: [If the provided json have any duplicated `key`, the updateReportedProperty shall throws IllegalArgumentException.] */
             /* Codes_SRS_TWINPARSER_21_096: [If the provided json have any duplicated `key`, the updateDesiredProperty shall throws IllegalArgumentException.] */
-            Gson gson = new GsonBuilder().create();
             newValues = (Map<String, Object>) gson.fromJson(json, Map.class);
         }
         catch (Exception e)
@@ -22,6 +22,7 @@ import java.util.Map;
 @Deprecated
 public class TwinTags
 {
+    private static final Gson gson = new GsonBuilder().create();
     private static final String VERSION_TAG = "$version";
     private static final String METADATA_TAG = "$metadata";
 
@@ -132,7 +133,6 @@ public class TwinTags
 
     protected JsonElement toJsonElement()
     {
-        Gson gson = new GsonBuilder().create();
         /* Codes_SRS_TWINPARSER_21_017: [The toJsonElement shall return a JsonElement with information in the TwinParser using json format.] */
         return gson.toJsonTree(tags);
     }
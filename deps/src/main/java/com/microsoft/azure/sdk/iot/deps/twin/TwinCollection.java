@@ -8,7 +8,9 @@ import com.google.gson.JsonObject;
 import com.microsoft.azure.sdk.iot.deps.serializer.ParserUtility;
 import com.microsoft.azure.sdk.iot.deps.util.Tools;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -382,6 +384,134 @@ public class TwinCollection extends HashMap<String, Object> {
         }
     }
 
+    /**
+     * Apply a JSON Merge Patch (RFC 7396) to this TwinCollection in place.
+     *
+     * <p> Entries in the patch with a {@code null} value are removed from the collection, inner Maps are
+     * merged into the existing inner TwinCollections, and any other value replaces the current one. Only the
+     * entries named in the patch are visited, so applying a small patch to a large collection does not copy
+     * the rest of the collection.
+     *
+     * <p> If the patch contains a {@code $version} that is not newer than the version of this collection, the
+     * patch is considered stale and is ignored. Otherwise the version of this collection is updated to the one in
+     * the patch. Any {@code $metadata} in the patch is ignored.
+     *
+     * @param patch the {@code Map} with the patch to apply. It cannot be {@code null}.
+     * @return The {@code List} of key paths that were changed by the patch, with the keys of each level separated
+     *         by a {@code .}. It is empty if the patch was stale or did not change any value.
+     * @throws IllegalArgumentException If the patch is {@code null} or contains an invalid value.
+     */
+    public final List<String> applyPatch(Map<? extends String, ?> patch) throws IllegalArgumentException {
+        return this.applyPatch(patch, null);
+    }
+
+    /**
+     * Apply a JSON Merge Patch (RFC 7396) to this TwinCollection in place, and report each change to the
+     * provided callback.
+     *
+     * <p> See {@link #applyPatch(Map)} for the merge rules.
+     *
+     * @param patch the {@code Map} with the patch to apply. It cannot be {@code null}.
+     * @param callback the {@link TwinPatchCallback} to execute for each changed key path. It can be {@code null}.
+     * @return The {@code List} of key paths that were changed by the patch, with the keys of each level separated
+     *         by a {@code .}. It is empty if the patch was stale or did not change any value.
+     * @throws IllegalArgumentException If the patch is {@code null} or contains an invalid value.
+     */
+    public final List<String> applyPatch(Map<? extends String, ?> patch, TwinPatchCallback callback) throws IllegalArgumentException {
+        if (patch == null) {
+            throw new IllegalArgumentException("patch cannot be null.");
+        }
+
+        List<String> changedPaths = new ArrayList<>();
+        Integer newVersion = null;
+        Object patchVersion = patch.get(VERSION_TAG);
+        if (patchVersion != null) {
+            if (!(patchVersion instanceof Number)) {
+                throw new IllegalArgumentException("version is not a number");
+            }
+
+            newVersion = ((Number) patchVersion).intValue();
+            if ((this.version != null) && (newVersion <= this.version)) {
+                return changedPaths;
+            }
+        }
+
+        // A patch that is rejected halfway through would leave this collection partly merged, so reject it up front
+        validatePatch(patch);
+
+        this.mergePatch(patch, null, changedPaths, callback);
+        if (newVersion != null) {
+            this.version = newVersion;
+        }
+
+        return changedPaths;
+    }
+
+    private static void validatePatch(Map<? extends String, ?> patch) {
+        for (Map.Entry<? extends String, ?> entry : patch.entrySet()) {
+            String key = entry.getKey();
+            if ((key == null) || key.isEmpty()) {
+                throw new IllegalArgumentException("Key cannot be null or empty");
+            }
+
+            if (key.equals(VERSION_TAG) || key.equals(METADATA_TAG)) {
+                continue;
+            }
+
+            Object value = entry.getValue();
+            if (value instanceof Map) {
+                validatePatch((Map<? extends String, ?>) value);
+            } else if ((value != null) && (value.getClass().isArray() || value.getClass().isLocalClass())) {
+                throw new IllegalArgumentException("Patch contains illegal value type " + value.getClass().getName());
+            }
+        }
+    }
+
+    // The patch must have been checked by validatePatch
+    private void mergePatch(Map<? extends String, ?> patch, String parentPath, List<String> changedPaths, TwinPatchCallback callback) {
+        for (Map.Entry<? extends String, ?> entry : patch.entrySet()) {
+            String key = entry.getKey();
+            if (key.equals(VERSION_TAG) || key.equals(METADATA_TAG)) {
+                continue;
+            }
+
+            String path = (parentPath == null) ? key : parentPath + "." + key;
+            Object newValue = entry.getValue();
+            Object currentValue = super.get(key);
+
+            if (newValue == null) {
+                if (super.containsKey(key)) {
+                    super.remove(key);
+                    this.metadataMap.remove(key);
+                    reportChange(path, null, changedPaths, callback);
+                }
+            } else if (newValue instanceof Map) {
+                Map<? extends String, ?> innerPatch = (Map<? extends String, ?>) newValue;
+                if (currentValue instanceof TwinCollection) {
+                    ((TwinCollection) currentValue).mergePatch(innerPatch, path, changedPaths, callback);
+                } else {
+                    // Merging into a missing or non-map value starts from an empty collection, which also drops the nulls in the patch
+                    TwinCollection innerCollection = new TwinCollection();
+                    innerCollection.mergePatch(innerPatch, path, new ArrayList<String>(), null);
+                    super.put(key, innerCollection);
+                    this.metadataMap.remove(key);
+                    reportChange(path, innerCollection, changedPaths, callback);
+                }
+            } else if (!newValue.equals(currentValue)) {
+                super.put(key, newValue);
+                this.metadataMap.remove(key);
+                reportChange(path, newValue, changedPaths, callback);
+            }
+        }
+    }
+
+    private static void reportChange(String path, Object value, List<String> changedPaths, TwinPatchCallback callback) {
+        changedPaths.add(path);
+        if (callback != null) {
+            callback.onPropertyChanged(path, value);
+        }
+    }
+
     /**
      * Serializer
      *
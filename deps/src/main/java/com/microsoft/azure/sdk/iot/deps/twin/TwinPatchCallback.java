@@ -0,0 +1,23 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.deps.twin;
+
+/**
+ * Callback for the changes made by {@link TwinCollection#applyPatch(java.util.Map, TwinPatchCallback)}.
+ *
+ * <p> The callback is executed once for each key path whose value was changed by the patch,
+ * after the change has been applied to the collection.
+ */
+public interface TwinPatchCallback
+{
+    /**
+     * Executes the callback.
+     *
+     * @param path the key path of the changed entry, with the keys of each level separated by a {@code .}, for
+     *             instance {@code config.sensors.rate}.
+     * @param value the new value of the entry. It is {@code null} if the patch removed the entry, and it is a
+     *              {@link TwinCollection} if the patch replaced a value with an inner collection.
+     */
+    void onPropertyChanged(String path, Object value);
+}
@@ -9,8 +9,10 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
 import com.microsoft.azure.sdk.iot.deps.util.Tools;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -129,6 +131,10 @@ public class TwinState extends RegisterManager
     @SerializedName(PARENT_SCOPES)
     private final List<String> parentScopes = new ArrayList<>();
 
+    private static final Gson serializeNullsGson = new GsonBuilder().disableHtmlEscaping().serializeNulls().create();
+    private static final Gson exposedFieldsGson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().disableHtmlEscaping().create();
+    private static final Gson exposedFieldsPrettyPrintGson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().setPrettyPrinting().disableHtmlEscaping().create();
+
     /**
      * CONSTRUCTOR
      *
@@ -188,8 +194,7 @@ public class TwinState extends RegisterManager
      */
     public JsonElement toJsonElement()
     {
-        Gson gson = new GsonBuilder().disableHtmlEscaping().serializeNulls().create();
-        JsonElement json = gson.toJsonTree(this).getAsJsonObject();
+        JsonElement json = serializeNullsGson.toJsonTree(this).getAsJsonObject();
 
         // Since null values are lost when building the json tree, need to manually re-add properties as reported
         // properties may have contained a property with a null value. Those must be preserved so users can delete
@@ -276,8 +281,7 @@ public class TwinState extends RegisterManager
     public String toString()
     {
         /* SRS_TWIN_STATE_21_008: [The toString shall return a String with the information in this class in a pretty print JSON.] */
-        Gson gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().setPrettyPrinting().disableHtmlEscaping().create();
-        JsonObject jsonObject = gson.toJsonTree(this).getAsJsonObject();
+        JsonObject jsonObject = exposedFieldsPrettyPrintGson.toJsonTree(this).getAsJsonObject();
 
         /* SRS_TWIN_STATE_21_009: [If the tags is null, the JSON shall not include the `tags`.] */
         if(this.tags != null)
@@ -312,22 +316,53 @@ public class TwinState extends RegisterManager
 
         /* SRS_TWIN_STATE_21_012: [The factory shall throw JsonSyntaxException if the JSON is invalid.] */
         /* SRS_TWIN_STATE_21_013: [The factory shall deserialize the provided JSON for the twin class and subclasses.] */
-        Gson gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().disableHtmlEscaping().create();
-        TwinState result = gson.fromJson(json, TwinState.class);
+        TwinState result = exposedFieldsGson.fromJson(json, TwinState.class);
+
+        return result.reorganizeCollections();
+    }
+
+    /**
+     * Factory
+     *
+     * <p> Create a new instance of the TwinState reading the next JSON object with the full Twin information from the
+     * provided reader, such as an item of a query response page.
+     *
+     * @param reader the {@code JsonReader} positioned at the JSON object received from the service. It cannot be {@code null}.
+     * @return The new instance of the {@code TwinState}.
+     * @throws IOException if the reader fails to read the JSON.
+     * @throws IllegalArgumentException if the reader is {@code null} or the next value is a JSON null.
+     */
+    public static TwinState createFromTwinJson(JsonReader reader) throws IOException, IllegalArgumentException
+    {
+        if (reader == null)
+        {
+            throw new IllegalArgumentException("JsonReader cannot be null");
+        }
+
+        TwinState result = exposedFieldsGson.getAdapter(TwinState.class).read(reader);
+        if (result == null)
+        {
+            throw new IllegalArgumentException("JSON with result is null");
+        }
+
+        return result.reorganizeCollections();
+    }
 
+    private TwinState reorganizeCollections()
+    {
         /*
          * During the deserialization process, the GSON will convert both tags and
          * properties to a raw Map, which will includes the $version and $metadata
          * as part of the collection. So, we need to reorganize this map using the
          * TwinCollection format. This constructor will do that.
          */
-        result.tags = new TwinCollection(result.getTags());
-        if(result.properties != null)
+        this.tags = new TwinCollection(this.getTags());
+        if(this.properties != null)
         {
-            result.properties = new TwinProperties(result.properties.getDesired(), result.properties.getReported());
+            this.properties = new TwinProperties(this.properties.getDesired(), this.properties.getReported());
         }
 
-        return result;
+        return this;
     }
 
     /**
@@ -348,8 +383,7 @@ public class TwinState extends RegisterManager
 
         /* SRS_TWIN_STATE_21_015: [The factory shall throw JsonSyntaxException if the JSON is invalid.] */
         /* SRS_TWIN_STATE_21_016: [The factory shall deserialize the provided JSON for the Twin class and subclasses.] */
-        Gson gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().disableHtmlEscaping().create();
-        TwinCollection result = gson.fromJson(json, TwinCollection.class);
+        TwinCollection result = exposedFieldsGson.fromJson(json, TwinCollection.class);
 
         return new TwinState(null, result, null);
     }
@@ -372,8 +406,7 @@ public class TwinState extends RegisterManager
 
         /* SRS_TWIN_STATE_21_018: [The factory shall throw JsonSyntaxException if the JSON is invalid.] */
         /* SRS_TWIN_STATE_21_019: [The factory shall deserialize the provided JSON for the Twin class and subclasses.] */
-        Gson gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().disableHtmlEscaping().create();
-        TwinCollection result = gson.fromJson(json, TwinCollection.class);
+        TwinCollection result = exposedFieldsGson.fromJson(json, TwinCollection.class);
 
         return new TwinState(null, null, result);
     }
@@ -396,8 +429,7 @@ public class TwinState extends RegisterManager
 
         /* SRS_TWIN_STATE_21_021: [The factory shall throw JsonSyntaxException if the JSON is invalid.] */
         /* SRS_TWIN_STATE_21_022: [The factory shall deserialize the provided JSON for the Twin class and subclasses.] */
-        Gson gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().disableHtmlEscaping().create();
-        TwinProperties result = gson.fromJson(json, TwinProperties.class);
+        TwinProperties result = exposedFieldsGson.fromJson(json, TwinProperties.class);
 
         return new TwinState(null, result.getDesired(), result.getReported());
     }
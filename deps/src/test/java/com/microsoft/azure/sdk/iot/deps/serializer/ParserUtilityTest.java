@@ -569,6 +569,43 @@ public class ParserUtilityTest
         Helpers.assertJson(json.toString(), "{\"key1\":\"value1\",\"key2\":10,\"key3\":true}");
     }
 
+    /* Tests_SRS_PARSER_UTILITY_21_035: [The mapToJsonElement shall serialize the provided map into a JsonElement.] */
+    @Test
+    public void mapToJsonElementNonPrimitiveElementsSucceed() throws ClassNotFoundException
+    {
+        // arrange
+        Map<String, Object> map = new HashMap<String, Object>()
+        {
+            {
+                put("key1", 2.5);
+                put("key2", 'c');
+                put("key3", new int[] {1, 2});
+            }
+        };
+
+        // act
+        JsonElement json = Deencapsulation.invoke(Class.forName("com.microsoft.azure.sdk.iot.deps.serializer.ParserUtility"),"mapToJsonElement", map);
+
+        // assert
+        Helpers.assertJson(json.toString(), "{\"key1\":2.5,\"key2\":\"c\",\"key3\":[1,2]}");
+    }
+
+    /* Tests_SRS_PARSER_UTILITY_21_035: [The mapToJsonElement shall serialize the provided map into a JsonElement.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void mapToJsonElementNaNThrows() throws ClassNotFoundException
+    {
+        // arrange
+        Map<String, Object> map = new HashMap<String, Object>()
+        {
+            {
+                put("key1", Double.NaN);
+            }
+        };
+
+        // act
+        Deencapsulation.invoke(Class.forName("com.microsoft.azure.sdk.iot.deps.serializer.ParserUtility"),"mapToJsonElement", map);
+    }
+
     /* Tests_SRS_PARSER_UTILITY_21_036: [The mapToJsonElement shall include keys with null values in the JsonElement.] */
     @Test
     public void mapToJsonElementNullElementsSucceed() throws ClassNotFoundException
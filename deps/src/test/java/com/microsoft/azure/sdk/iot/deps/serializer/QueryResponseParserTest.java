@@ -8,12 +8,17 @@ package com.microsoft.azure.sdk.iot.deps.serializer;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
 import com.microsoft.azure.sdk.iot.deps.Helpers;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
+
 /*
     Unit tests for QueryResponseParser
     Coverage result : method - 100%, line - 100%
@@ -141,4 +146,60 @@ public class QueryResponseParserTest
         Helpers.assertListEquals(buildListFromJsonArray(VALID_JSON_ARRAY_2), testParser.getJsonItems());
     }
 
+    @Test
+    public void getJsonItemsKeepsNumbersAsWrittenAndDropsNullMembers() throws IllegalArgumentException
+    {
+        //arrange
+        QueryResponseParser testParser = new QueryResponseParser("[{\"a\":1.50,\"b\":null,\"c\":[null,true,\"<x>\"]}]");
+
+        //act
+        List<String> items = testParser.getJsonItems();
+
+        //assert
+        assertEquals(1, items.size());
+        assertEquals("{\"a\":1.50,\"c\":[null,true,\"<x>\"]}", items.get(0));
+    }
+
+    @Test
+    public void parseItemsDecodesEachItemWithItemReader() throws IllegalArgumentException
+    {
+        //arrange
+        final TypeAdapter<JsonObject> adapter = gson.getAdapter(JsonObject.class);
+        QueryResponseItemReader<JsonObject> itemReader = new QueryResponseItemReader<JsonObject>()
+        {
+            @Override
+            public JsonObject read(JsonReader reader) throws IOException
+            {
+                return adapter.read(reader);
+            }
+        };
+
+        //act
+        List<JsonObject> items = QueryResponseParser.parseItems(VALID_TWIN_JSON_ARRAY_2, itemReader);
+
+        //assert
+        assertEquals(2, items.size());
+        assertEquals("devA", items.get(1).get("deviceId").getAsString());
+        assertEquals(55, items.get(1).getAsJsonObject("properties").getAsJsonObject("reported").get("batteryLevel").getAsInt());
+    }
+
+    @Test
+    public void projectionOnlyKeepsRequestedFields() throws IllegalArgumentException
+    {
+        //act
+        List<JsonObject> items = QueryResponseParser.parseItems(VALID_TWIN_JSON_ARRAY_1, QueryResponseParser.projection("deviceId", "tags"));
+
+        //assert
+        assertEquals(1, items.size());
+        assertEquals(2, items.get(0).size());
+        assertEquals("devA", items.get(0).get("deviceId").getAsString());
+        assertEquals("43", items.get(0).getAsJsonObject("tags").getAsJsonObject("deploymentLocation").get("building").getAsString());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void parseItemsThrowsOnContentAfterItems() throws IllegalArgumentException
+    {
+        //act
+        QueryResponseParser.parseItems(VALID_JSON_ARRAY_1 + "[]", QueryResponseParser.projection("deviceId"));
+    }
 }
@@ -13,7 +13,11 @@ import mockit.Mocked;
 import mockit.Verifications;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.*;
@@ -916,4 +920,213 @@ public class TwinCollectionTest
         // act - assert
         Helpers.assertJson(twinCollection.toString(), JSON_FULL_SAMPLE);
     }
+
+    @Test
+    public void applyPatchMergesOnlyChangedPathsInPlace()
+    {
+        // arrange
+        TwinCollection twinCollection = new TwinCollection(PROPERTIES_SAMPLE);
+        TwinCollection maxSpeed = (TwinCollection) twinCollection.get("MaxSpeed");
+        TwinCollection inner1 = (TwinCollection) maxSpeed.get("Inner1");
+        Map<String, Object> patch = new HashMap<String, Object>()
+        {
+            {
+                put(VALID_KEY_NAME, VALID_VALUE_NAME);
+                put("MaxSpeed", new HashMap<String, Object>()
+                {
+                    {
+                        put("Value", 600.0);
+                        put("NewValue", null);
+                    }
+                });
+                put("Color", "Red");
+            }
+        };
+
+        // act
+        List<String> changedPaths = twinCollection.applyPatch(patch);
+
+        // assert
+        assertEquals(3, changedPaths.size());
+        assertTrue(changedPaths.containsAll(Arrays.asList("MaxSpeed.Value", "MaxSpeed.NewValue", "Color")));
+        assertSame(maxSpeed, twinCollection.get("MaxSpeed"));
+        assertSame(inner1, maxSpeed.get("Inner1"));
+        assertEquals(600.0, maxSpeed.get("Value"));
+        assertFalse(maxSpeed.containsKey("NewValue"));
+        assertEquals("Red", twinCollection.get("Color"));
+        assertEquals(VALID_VALUE_NAME, twinCollection.get(VALID_KEY_NAME));
+    }
+
+    @Test
+    public void applyPatchReplacesNonMapValueWithCollectionWithoutNulls()
+    {
+        // arrange
+        TwinCollection twinCollection = new TwinCollection(PROPERTIES_SAMPLE);
+        Map<String, Object> patch = new HashMap<String, Object>()
+        {
+            {
+                put(VALID_KEY_NAME, new HashMap<String, Object>()
+                {
+                    {
+                        put("Name", "NiceCar");
+                        put("Removed", null);
+                    }
+                });
+            }
+        };
+
+        // act
+        List<String> changedPaths = twinCollection.applyPatch(patch);
+
+        // assert
+        assertEquals(Arrays.asList(VALID_KEY_NAME), changedPaths);
+        TwinCollection brand = (TwinCollection) twinCollection.get(VALID_KEY_NAME);
+        assertEquals(1, brand.size());
+        assertEquals("NiceCar", brand.get("Name"));
+    }
+
+    @Test
+    public void applyPatchIgnoresStaleVersion()
+    {
+        // arrange
+        TwinCollection twinCollection = new TwinCollection(PROPERTIES_SAMPLE);
+        Map<String, Object> newPatch = new HashMap<String, Object>()
+        {
+            {
+                put("Color", "Red");
+                put("$version", VERSION);
+            }
+        };
+        Map<String, Object> stalePatch = new HashMap<String, Object>()
+        {
+            {
+                put("Color", "Blue");
+                put("$version", VERSION);
+            }
+        };
+
+        // act
+        List<String> newChanges = twinCollection.applyPatch(newPatch);
+        List<String> staleChanges = twinCollection.applyPatch(stalePatch);
+
+        // assert
+        assertEquals(Arrays.asList("Color"), newChanges);
+        assertTrue(staleChanges.isEmpty());
+        assertEquals("Red", twinCollection.get("Color"));
+        assertEquals(VERSION, twinCollection.getVersionFinal());
+        assertFalse(twinCollection.containsKey("$version"));
+    }
+
+    @Test
+    public void applyPatchReportsEachChangeToCallback()
+    {
+        // arrange
+        TwinCollection twinCollection = new TwinCollection(PROPERTIES_SAMPLE);
+        final List<String> reportedPaths = new ArrayList<>();
+        final List<Object> reportedValues = new ArrayList<>();
+        Map<String, Object> patch = new HashMap<String, Object>()
+        {
+            {
+                put("MaxSpeed", new HashMap<String, Object>()
+                {
+                    {
+                        put("Inner1", new HashMap<String, Object>()
+                        {
+                            {
+                                put("Inner2", "NewInnerValue");
+                            }
+                        });
+                    }
+                });
+            }
+        };
+
+        // act
+        twinCollection.applyPatch(patch, new TwinPatchCallback()
+        {
+            @Override
+            public void onPropertyChanged(String path, Object value)
+            {
+                reportedPaths.add(path);
+                reportedValues.add(value);
+            }
+        });
+
+        // assert
+        assertEquals(Arrays.asList("MaxSpeed.Inner1.Inner2"), reportedPaths);
+        assertEquals(Arrays.<Object>asList("NewInnerValue"), reportedValues);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void applyPatchNullPatchThrows()
+    {
+        // arrange
+        TwinCollection twinCollection = new TwinCollection(PROPERTIES_SAMPLE);
+
+        // act
+        twinCollection.applyPatch(null);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void applyPatchArrayValueThrows()
+    {
+        // arrange
+        TwinCollection twinCollection = new TwinCollection(PROPERTIES_SAMPLE);
+        Map<String, Object> patch = new HashMap<String, Object>()
+        {
+            {
+                put("Color", new int[] {1, 2});
+            }
+        };
+
+        // act
+        twinCollection.applyPatch(patch);
+    }
+
+    @Test
+    public void applyPatchThatFailsPartwayLeavesCollectionAndVersionUnchanged()
+    {
+        // arrange
+        TwinCollection twinCollection = new TwinCollection(PROPERTIES_SAMPLE);
+        Object originalColor = twinCollection.get("Color");
+        Integer originalVersion = twinCollection.getVersionFinal();
+        Map<String, Object> badPatch = new LinkedHashMap<String, Object>()
+        {
+            {
+                put("$version", VERSION);
+                put("Color", "Red");
+                put("MaxSpeed", new HashMap<String, Object>()
+                {
+                    {
+                        put("Inner1", new int[] {1, 2});
+                    }
+                });
+            }
+        };
+        Map<String, Object> correctedPatch = new LinkedHashMap<String, Object>()
+        {
+            {
+                put("$version", VERSION);
+                put("Color", "Red");
+            }
+        };
+
+        // act
+        try
+        {
+            twinCollection.applyPatch(badPatch);
+            fail("Expected the patch with an array value to be rejected");
+        }
+        catch (IllegalArgumentException expected)
+        {
+            // expected
+        }
+
+        // assert
+        assertEquals(originalColor, twinCollection.get("Color"));
+        assertEquals(originalVersion, twinCollection.getVersionFinal());
+        assertEquals(Arrays.asList("Color"), twinCollection.applyPatch(correctedPatch));
+        assertEquals("Red", twinCollection.get("Color"));
+        assertEquals(VERSION, twinCollection.getVersionFinal());
+    }
 }
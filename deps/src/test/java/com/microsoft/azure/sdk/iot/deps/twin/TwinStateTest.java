@@ -5,10 +5,15 @@ package com.microsoft.azure.sdk.iot.deps.twin;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.microsoft.azure.sdk.iot.deps.Helpers;
 import mockit.Deencapsulation;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.StringReader;
+
 import static org.junit.Assert.*;
 
 /**
@@ -397,6 +402,27 @@ public class TwinStateTest
         Helpers.assertJson(Deencapsulation.invoke(twinState, "toJsonElement").toString(), json);
     }
 
+    @Test
+    public void createFromTwinJsonReaderReadsEachTwinOfAPage() throws IOException
+    {
+        // arrange
+        final String json =
+                "{\"tags\":{\"tag1\":\"val1\"},\"properties\":{\"desired\":{\"prop1\":\"val1\"},\"reported\":{\"prop2\":\"val2\"}},\"deviceId\":\"validDeviceId\",\"etag\":\"validEtag\",\"version\":3}";
+        JsonReader reader = new JsonReader(new StringReader("[" + json + "," + json + "]"));
+        reader.beginArray();
+
+        // act
+        TwinState firstTwinState = TwinState.createFromTwinJson(reader);
+        TwinState secondTwinState = TwinState.createFromTwinJson(reader);
+        reader.endArray();
+
+        // assert
+        assertEquals(JsonToken.END_DOCUMENT, reader.peek());
+        assertEquals(TwinState.createFromTwinJson(json).toJsonElement().toString(), firstTwinState.toJsonElement().toString());
+        assertEquals("validDeviceId", secondTwinState.getDeviceId());
+        assertEquals("val2", secondTwinState.getReportedProperty().get("prop2"));
+    }
+
     /* SRS_TWIN_STATE_21_013: [The factory shall deserialize the provided JSON for the Twin class and subclasses.] */
     @Test
     public void createFromTwinJsonWithTagsAndProperties()
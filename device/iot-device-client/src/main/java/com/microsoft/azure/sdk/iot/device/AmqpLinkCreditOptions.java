@@ -0,0 +1,49 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * The link credit that an AMQP client extends to IoT Hub on each kind of receiver link. The credit of a link is how
+ * many messages IoT Hub may send over it ahead of the client, so a larger credit lets a high rate of cloud to device
+ * messages or module input messages flow without waiting on round trips, at the cost of holding more of them in
+ * memory. The client tops the credit back up as messages arrive.
+ *
+ * <p>These options only apply to clients using {@link IotHubClientProtocol#AMQPS} or
+ * {@link IotHubClientProtocol#AMQPS_WS}.</p>
+ */
+@Builder
+public final class AmqpLinkCreditOptions
+{
+    /**
+     * The default credit of each kind of receiver link.
+     */
+    public static final int DEFAULT_LINK_CREDIT = 1024;
+
+    /**
+     * The credit of the link that receives cloud to device messages, or input messages for a module. Must be
+     * positive. If unset, this will default to {@link #DEFAULT_LINK_CREDIT}.
+     */
+    @Getter
+    @Builder.Default
+    private final int messageLinkCredit = DEFAULT_LINK_CREDIT;
+
+    /**
+     * The credit of the link that receives direct method invocations. Must be positive. If unset, this will default to
+     * {@link #DEFAULT_LINK_CREDIT}.
+     */
+    @Getter
+    @Builder.Default
+    private final int methodsLinkCredit = DEFAULT_LINK_CREDIT;
+
+    /**
+     * The credit of the link that receives twin responses and desired property updates. Must be positive. If unset,
+     * this will default to {@link #DEFAULT_LINK_CREDIT}.
+     */
+    @Getter
+    @Builder.Default
+    private final int twinLinkCredit = DEFAULT_LINK_CREDIT;
+}
@@ -7,6 +7,8 @@ import lombok.Getter;
 import lombok.Setter;
 
 import javax.net.ssl.SSLContext;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Options that allow configuration of the device client instance during initialization.
@@ -31,4 +33,72 @@ public final class ClientOptions
     @Setter
     @Getter
     public SSLContext sslContext;
+
+    /**
+     * The settings for compressing telemetry bodies before they are sent. If not set, telemetry is sent as it is.
+     */
+    @Setter
+    @Getter
+    public MessageCompressionOptions messageCompressionOptions;
+
+    /**
+     * The settings for storing outbound telemetry on disk until IoT Hub acknowledges it. If not set, telemetry waiting
+     * to be sent is only held in memory. Telemetry stored on disk and not yet read back to be sent does not hold up
+     * closing the client; it is sent once a client using the same directory is opened again.
+     */
+    @Setter
+    @Getter
+    public MessagePersistenceOptions messagePersistenceOptions;
+
+    /**
+     * The bounds on the telemetry held in memory while it waits to be sent or acknowledged, and what to do with
+     * telemetry sent beyond them. If not set, telemetry is queued without bound.
+     */
+    @Setter
+    @Getter
+    public OutboundQueueOptions outboundQueueOptions;
+
+    /**
+     * The limits on how fast this client sends messages. If not set, messages are sent as fast as the connection
+     * allows, and throttling by IoT Hub is only handled by retrying.
+     */
+    @Setter
+    @Getter
+    public SendRateOptions sendRateOptions;
+
+    /**
+     * The link credit extended to IoT Hub on each kind of AMQP receiver link, which bounds how many received
+     * messages may be in flight to this client. If not set, each receiver link has a credit of
+     * {@link AmqpLinkCreditOptions#DEFAULT_LINK_CREDIT}. Only applies to AMQPS and AMQPS_WS.
+     */
+    @Setter
+    @Getter
+    public AmqpLinkCreditOptions amqpLinkCreditOptions;
+
+    /**
+     * The thread factory for the threads this client starts for its own work: sending and receiving messages,
+     * retrying messages, running the AMQP reactor or the MQTT network threads, sending MQTT keep-alive pings, reporting
+     * a lost connection, sending coalesced reported properties, invoking methods from a module client, and uploading
+     * files. If not set, the default thread factory is used.
+     *
+     * <p>On Java 21 and later, {@code Thread.ofVirtual().factory()} runs this work on virtual threads. The send and
+     * receive threads wait on a monitor while there is nothing to do, which pins the carrier thread of a virtual
+     * thread before Java 24, so many idle clients are better served by {@link #executorService}.</p>
+     */
+    @Setter
+    @Getter
+    public ThreadFactory threadFactory;
+
+    /**
+     * The executor to run this client's sending, receiving and message retries on instead of threads of its own, so
+     * that many clients can share one bounded pool. If not set, each client starts its own threads.
+     *
+     * <p>Work is only submitted to the executor when there is something to do, and it never blocks a thread of the
+     * executor while waiting for messages. The client does not shut the executor down when it is closed. The AMQP
+     * reactor, the MQTT network threads and file uploads still run on threads of their own, made by
+     * {@link #threadFactory} if it is set.</p>
+     */
+    @Setter
+    @Getter
+    public ScheduledExecutorService executorService;
 }
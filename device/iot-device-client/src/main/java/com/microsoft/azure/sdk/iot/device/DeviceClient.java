@@ -580,7 +580,9 @@ public final class DeviceClient extends InternalClient implements Closeable
 
         if (this.fileUpload == null)
         {
-            this.fileUpload = new FileUpload(this.config);
+            this.fileUpload = this.config.threadFactory == null
+                    ? new FileUpload(this.config)
+                    : new FileUpload(this.config, this.config.threadFactory);
         }
 
         this.fileUpload.uploadToBlobAsync(destinationBlobName, inputStream, streamLength, callback, callbackContext);
@@ -21,6 +21,8 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Configuration settings for an IoT Hub client. Validates all user-defined
@@ -50,6 +52,26 @@ public final class DeviceClientConfig
     @Setter(AccessLevel.PROTECTED)
     String modelId;
 
+    // Null unless outbound telemetry should be stored on disk until it is acknowledged
+    @Getter
+    MessagePersistenceOptions messagePersistenceOptions;
+
+    // Null unless the telemetry held in memory should be bounded. Handed to the transport by DeviceIO.
+    OutboundQueueOptions outboundQueueOptions;
+
+    // Null unless sending should be limited to a rate. Handed to the transport by DeviceIO.
+    SendRateOptions sendRateOptions;
+
+    // Null unless the AMQP receiver links should extend other than the default credit
+    @Getter
+    AmqpLinkCreditOptions amqpLinkCreditOptions;
+
+    // Null unless the client's threads should be made by this factory. Handed to the transport by DeviceIO.
+    ThreadFactory threadFactory;
+
+    // Null unless the client's send and receive work should run on this executor instead of threads of its own
+    ScheduledExecutorService executorService;
+
     // Initialize all the timeout values here instead of the constructor as the constructor is not always called.
     @Getter
     @Setter
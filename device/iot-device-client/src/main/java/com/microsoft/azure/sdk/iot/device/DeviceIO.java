@@ -17,8 +17,13 @@ import javax.net.ssl.SSLContext;
 import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.microsoft.azure.sdk.iot.device.IotHubClientProtocol.MQTT_WS;
 
@@ -87,6 +92,14 @@ public final class DeviceIO implements IotHubConnectionStatusChangeCallback
     private ScheduledExecutorService sendTaskScheduler;
     private IotHubConnectionStatus state;
 
+    // Set from the client options. When the shared executor is set, the send and receive tasks are run on it only
+    // when the transport signals they have work, instead of each waiting on a thread of its own.
+    private ThreadFactory threadFactory;
+    private ScheduledExecutorService sharedExecutor;
+    private volatile SharedExecutorTask sharedSendTask;
+    private volatile SharedExecutorTask sharedReceiveTask;
+    private ScheduledFuture<?> httpsReceiveFuture;
+
 
     // This lock is used to keep calls to open/close/connection status changes synchronous.
     private final Object stateLock = new Object();
@@ -123,6 +136,52 @@ public final class DeviceIO implements IotHubConnectionStatusChangeCallback
 
         this.transport = new IotHubTransport(config, this, isMultiplexing);
 
+        this.threadFactory = config.threadFactory;
+        this.sharedExecutor = config.executorService;
+        if (this.threadFactory != null || this.sharedExecutor != null)
+        {
+            this.transport.setExecutors(this.threadFactory, this.sharedExecutor);
+        }
+
+        if (config.outboundQueueOptions != null && !isMultiplexing)
+        {
+            this.transport.setOutboundQueueOptions(config.outboundQueueOptions);
+        }
+
+        if (config.sendRateOptions != null && !isMultiplexing)
+        {
+            this.transport.setSendRateOptions(config.sendRateOptions);
+        }
+
+        if (this.sharedExecutor != null)
+        {
+            this.transport.setTaskSignals(
+                new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        SharedExecutorTask task = sharedSendTask;
+                        if (task != null)
+                        {
+                            task.signal();
+                        }
+                    }
+                },
+                new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        SharedExecutorTask task = sharedReceiveTask;
+                        if (task != null)
+                        {
+                            task.signal();
+                        }
+                    }
+                });
+        }
+
         this.sendPeriodInMilliseconds = sendPeriodInMilliseconds;
         this.receivePeriodInMilliseconds = receivePeriodInMilliseconds;
 
@@ -189,12 +248,38 @@ public final class DeviceIO implements IotHubConnectionStatusChangeCallback
 
     void registerMultiplexedDeviceClient(List<DeviceClientConfig> configs, long timeoutMilliseconds) throws InterruptedException, MultiplexingClientException
     {
+        for (DeviceClientConfig config : configs)
+        {
+            if (config.sendRateOptions != null)
+            {
+                this.transport.setDeviceSendRateOptions(config.getDeviceId(), config.sendRateOptions);
+            }
+        }
+
         this.transport.registerMultiplexedDeviceClient(configs, timeoutMilliseconds);
     }
 
     void unregisterMultiplexedDeviceClient(List<DeviceClientConfig> configs, long timeoutMilliseconds) throws InterruptedException, MultiplexingClientException
     {
         this.transport.unregisterMultiplexedDeviceClient(configs, timeoutMilliseconds);
+
+        for (DeviceClientConfig config : configs)
+        {
+            if (config.sendRateOptions != null)
+            {
+                this.transport.setDeviceSendRateOptions(config.getDeviceId(), null);
+            }
+        }
+    }
+
+    void setSendRateOptions(SendRateOptions sendRateOptions)
+    {
+        this.transport.setSendRateOptions(sendRateOptions);
+    }
+
+    SendRateStatistics getSendRateStatistics(String deviceId)
+    {
+        return this.transport.getSendRateStatistics(deviceId);
     }
 
     void setMultiplexingRetryPolicy(RetryPolicy retryPolicy)
@@ -212,11 +297,18 @@ public final class DeviceIO implements IotHubConnectionStatusChangeCallback
      */
     private void startWorkerThreads()
     {
+        if (this.sharedExecutor != null)
+        {
+            this.startSharedExecutorTasks();
+            this.state = IotHubConnectionStatus.CONNECTED;
+            return;
+        }
+
         this.sendTask = new IotHubSendTask(this.transport);
         this.receiveTask = new IotHubReceiveTask(this.transport);
 
-        this.sendTaskScheduler = Executors.newScheduledThreadPool(1);
-        this.receiveTaskScheduler = Executors.newScheduledThreadPool(1);
+        this.sendTaskScheduler = this.createTaskScheduler();
+        this.receiveTaskScheduler = this.createTaskScheduler();
 
         // Note that even though these threads are scheduled at a fixed interval, the sender/receiver threads will wait
         // if no messages are available to process. These waiting threads will still count against the pool size defined above,
@@ -236,6 +328,78 @@ public final class DeviceIO implements IotHubConnectionStatusChangeCallback
         this.state = IotHubConnectionStatus.CONNECTED;
     }
 
+    private ScheduledExecutorService createTaskScheduler()
+    {
+        if (this.threadFactory == null)
+        {
+            return Executors.newScheduledThreadPool(1);
+        }
+
+        return Executors.newScheduledThreadPool(1, this.threadFactory);
+    }
+
+    private void startSharedExecutorTasks()
+    {
+        this.stopSharedExecutorTasks();
+
+        this.sendTask = new IotHubSendTask(this.transport, false);
+        this.receiveTask = new IotHubReceiveTask(this.transport, false);
+
+        this.sharedSendTask = new SharedExecutorTask(this.sharedExecutor, this.sendTask, this.sendPeriodInMilliseconds)
+        {
+            @Override
+            boolean hasPendingWork()
+            {
+                return transport.hasMessagesToSend() || transport.hasCallbacksToExecute();
+            }
+        };
+
+        if (this.transport.getProtocol() == IotHubClientProtocol.HTTPS)
+        {
+            // HTTP is the only protocol where the SDK must actively poll for received messages, so the receive task
+            // still runs periodically, but on the shared executor
+            this.httpsReceiveFuture = this.sharedExecutor.scheduleWithFixedDelay(this.receiveTask, 0,
+                    this.receivePeriodInMilliseconds, TimeUnit.MILLISECONDS);
+        }
+        else
+        {
+            this.sharedReceiveTask = new SharedExecutorTask(this.sharedExecutor, this.receiveTask, this.receivePeriodInMilliseconds)
+            {
+                @Override
+                boolean hasPendingWork()
+                {
+                    return transport.hasReceivedMessagesToHandle();
+                }
+            };
+
+            this.sharedReceiveTask.signal();
+        }
+
+        // Pick up anything that was queued before the tasks existed
+        this.sharedSendTask.signal();
+    }
+
+    private void stopSharedExecutorTasks()
+    {
+        if (this.sharedSendTask != null)
+        {
+            this.sharedSendTask.cancel();
+            this.sharedSendTask = null;
+        }
+
+        if (this.sharedReceiveTask != null)
+        {
+            this.sharedReceiveTask.cancel();
+            this.sharedReceiveTask = null;
+        }
+
+        if (this.httpsReceiveFuture != null)
+        {
+            this.httpsReceiveFuture.cancel(false);
+            this.httpsReceiveFuture = null;
+        }
+    }
+
     /**
      * Completes all current outstanding requests and closes the IoT Hub client.
      * Must be called to terminate the background thread that is sending data to
@@ -251,6 +415,8 @@ public final class DeviceIO implements IotHubConnectionStatusChangeCallback
                 return;
             }
 
+            this.stopSharedExecutorTasks();
+
             if (this.sendTaskScheduler != null)
             {
                 this.sendTaskScheduler.shutdown();
@@ -279,11 +445,12 @@ public final class DeviceIO implements IotHubConnectionStatusChangeCallback
      * @throws IllegalArgumentException if the message provided is {@code null}.
      * @throws IllegalStateException if the client has not been opened yet or is already closed.
      */
-    public synchronized void sendEventAsync(Message message,
+    public void sendEventAsync(Message message,
                                IotHubEventCallback callback,
                                Object callbackContext,
                                String deviceId)
     {
+        // Not synchronized, so that a sender blocked on a full outbound queue doesn't hold up any other sender
         if (!this.isOpen())
         {
             throw new IllegalStateException(
@@ -304,6 +471,45 @@ public final class DeviceIO implements IotHubConnectionStatusChangeCallback
         transport.addMessage(message, callback, callbackContext, deviceId);
     }
 
+    /**
+     * Asynchronously sends an event message to the IoT Hub without waiting for room in the outbound queue.
+     *
+     * @param message the message to be sent.
+     * @param callback the callback to be invoked when a response is received.
+     * Can be {@code null}.
+     * @param callbackContext a context to be passed to the callback. Can be
+     * {@code null} if no callback is provided.
+     * @param deviceId the id of the device sending the message
+     * @return a future that completes once the message was accepted into the outbound queue.
+     *
+     * @throws IllegalArgumentException if the message provided is {@code null}.
+     * @throws IllegalStateException if the client has not been opened yet or is already closed.
+     */
+    public Future<Void> queueEventAsync(Message message,
+                                       IotHubEventCallback callback,
+                                       Object callbackContext,
+                                       String deviceId)
+    {
+        if (!this.isOpen())
+        {
+            throw new IllegalStateException(
+                    "Cannot send event from "
+                            + "an IoT Hub client that is closed.");
+        }
+
+        if (message == null)
+        {
+            throw new IllegalArgumentException("Cannot send message 'null'.");
+        }
+
+        if (deviceId != null)
+        {
+            message.setConnectionDeviceId(deviceId);
+        }
+
+        return transport.queueMessage(message, callback, callbackContext, deviceId);
+    }
+
     /**
      * Getter for the receive period in milliseconds.
      *
@@ -330,6 +536,24 @@ public final class DeviceIO implements IotHubConnectionStatusChangeCallback
 
         this.receivePeriodInMilliseconds = newIntervalInMilliseconds;
 
+        if (this.sharedExecutor != null)
+        {
+            SharedExecutorTask task = this.sharedReceiveTask;
+            if (task != null)
+            {
+                task.setPeriodInMilliseconds(newIntervalInMilliseconds);
+            }
+
+            if (this.httpsReceiveFuture != null)
+            {
+                this.httpsReceiveFuture.cancel(false);
+                this.httpsReceiveFuture = this.sharedExecutor.scheduleWithFixedDelay(this.receiveTask, 0,
+                        this.receivePeriodInMilliseconds, TimeUnit.MILLISECONDS);
+            }
+
+            return;
+        }
+
         if (this.receiveTaskScheduler != null)
         {
             if (this.receiveTask == null)
@@ -339,7 +563,7 @@ public final class DeviceIO implements IotHubConnectionStatusChangeCallback
 
             // close the old scheduler and start a new one with the new receive period
             this.receiveTaskScheduler.shutdown();
-            this.receiveTaskScheduler = Executors.newScheduledThreadPool(1);
+            this.receiveTaskScheduler = this.createTaskScheduler();
             this.receiveTaskScheduler.scheduleAtFixedRate(
                 this.receiveTask,
                 0,
@@ -374,6 +598,17 @@ public final class DeviceIO implements IotHubConnectionStatusChangeCallback
 
         this.sendPeriodInMilliseconds = newIntervalInMilliseconds;
 
+        if (this.sharedExecutor != null)
+        {
+            SharedExecutorTask task = this.sharedSendTask;
+            if (task != null)
+            {
+                task.setPeriodInMilliseconds(newIntervalInMilliseconds);
+            }
+
+            return;
+        }
+
         if (this.sendTaskScheduler != null)
         {
             if (this.sendTask == null)
@@ -383,7 +618,7 @@ public final class DeviceIO implements IotHubConnectionStatusChangeCallback
 
             // close the old scheduler and start a new one with the new send period
             this.sendTaskScheduler.shutdown();
-            this.sendTaskScheduler = Executors.newScheduledThreadPool(1);
+            this.sendTaskScheduler = this.createTaskScheduler();
             this.sendTaskScheduler.scheduleAtFixedRate(
                 this.sendTask,
                 0,
@@ -457,6 +692,8 @@ public final class DeviceIO implements IotHubConnectionStatusChangeCallback
             if (status == IotHubConnectionStatus.DISCONNECTED || status == IotHubConnectionStatus.DISCONNECTED_RETRYING)
             {
                 // No need to keep spawning send/receive tasks during reconnection or when the client is closed
+                this.stopSharedExecutorTasks();
+
                 if (this.sendTaskScheduler != null)
                 {
                     this.sendTaskScheduler.shutdown();
@@ -476,4 +713,114 @@ public final class DeviceIO implements IotHubConnectionStatusChangeCallback
             this.state = status;
         }
     }
+
+    /**
+     * Runs a send or receive task on the shared executor each time it is signalled that the task has work. Signals
+     * that arrive while the task is queued or running are coalesced into a single extra run, so the task never runs
+     * concurrently with itself and never occupies a thread of the shared executor while it has nothing to do. If the
+     * task still has work that it could not complete, such as messages waiting to be retried, it is run again after
+     * its period, as the dedicated send and receive threads would.
+     */
+    private static abstract class SharedExecutorTask implements Runnable
+    {
+        private final ScheduledExecutorService executor;
+        private final Runnable task;
+        private volatile long periodInMilliseconds;
+        private volatile boolean isCancelled;
+        private final AtomicBoolean isQueued = new AtomicBoolean(false);
+        private final AtomicBoolean isSignalled = new AtomicBoolean(false);
+        private final AtomicBoolean isPendingWorkCheckScheduled = new AtomicBoolean(false);
+
+        SharedExecutorTask(ScheduledExecutorService executor, Runnable task, long periodInMilliseconds)
+        {
+            this.executor = executor;
+            this.task = task;
+            this.periodInMilliseconds = periodInMilliseconds;
+        }
+
+        abstract boolean hasPendingWork();
+
+        void setPeriodInMilliseconds(long periodInMilliseconds)
+        {
+            this.periodInMilliseconds = periodInMilliseconds;
+        }
+
+        // Never blocks, since the transport calls this while holding its send or receive thread lock
+        void signal()
+        {
+            this.isSignalled.set(true);
+            this.submit();
+        }
+
+        void cancel()
+        {
+            this.isCancelled = true;
+        }
+
+        @Override
+        public void run()
+        {
+            this.isSignalled.set(false);
+            if (!this.isCancelled)
+            {
+                this.task.run();
+            }
+
+            this.isQueued.set(false);
+
+            if (this.isSignalled.get())
+            {
+                // Signalled while running, so run again for the work that arrived in the meantime
+                this.submit();
+            }
+            else if (!this.isCancelled && this.hasPendingWork())
+            {
+                this.schedulePendingWorkCheck();
+            }
+        }
+
+        private void submit()
+        {
+            if (this.isCancelled || !this.isQueued.compareAndSet(false, true))
+            {
+                return;
+            }
+
+            try
+            {
+                this.executor.execute(this);
+            }
+            catch (RejectedExecutionException e)
+            {
+                this.isQueued.set(false);
+                log.warn("The shared executor rejected the send or receive task. Has it been shut down before the client was closed?", e);
+            }
+        }
+
+        private void schedulePendingWorkCheck()
+        {
+            if (!this.isPendingWorkCheckScheduled.compareAndSet(false, true))
+            {
+                return;
+            }
+
+            try
+            {
+                this.executor.schedule(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        isPendingWorkCheckScheduled.set(false);
+                        signal();
+                    }
+                }, this.periodInMilliseconds, TimeUnit.MILLISECONDS);
+            }
+            catch (RejectedExecutionException e)
+            {
+                this.isPendingWorkCheckScheduled.set(false);
+                log.warn("The shared executor rejected the send or receive task. Has it been shut down before the client was closed?", e);
+            }
+        }
+    }
 }
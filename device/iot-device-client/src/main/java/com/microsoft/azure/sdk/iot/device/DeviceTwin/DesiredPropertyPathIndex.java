@@ -0,0 +1,167 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.DeviceTwin;
+
+import com.microsoft.azure.sdk.iot.deps.twin.TwinMetadata;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Trie of desired property path subscriptions, such as {@code config.sensors.*.rate}. Each level of the trie is one
+ * segment of the path, and a {@code *} segment matches any key at that level. Dispatching a desired property only
+ * walks the branches of the property's value that have subscriptions, so the cost of a patch is proportional to the
+ * number of subscribed paths it touches rather than to the size of the twin.
+ *
+ * <p>This class is thread safe. Subscriptions may be added while a dispatch is in progress.
+ */
+final class DesiredPropertyPathIndex
+{
+    static final String WILDCARD = "*";
+    private static final String PATH_SEPARATOR = ".";
+    private static final String PATH_SEPARATOR_REGEX = "\\.";
+
+    private static final class Node
+    {
+        private final ConcurrentMap<String, Node> children = new ConcurrentHashMap<>();
+        private final List<Pair<TwinPropertyCallBack, Object>> subscriptions = new CopyOnWriteArrayList<>();
+    }
+
+    private final Node root = new Node();
+    private volatile boolean isEmpty = true;
+
+    /**
+     * Add a subscription for the provided path pattern.
+     *
+     * @param pathPattern the path of the desired property, with the keys of each level separated by a {@code .}.
+     * Any level may be {@code *} to match every key at that level.
+     * @param callback the callback to execute when a desired property matching the pattern is updated.
+     * @param context the context to pass to the callback.
+     * @throws IllegalArgumentException if the pattern is null, empty or has an empty level, or if the callback is null.
+     */
+    void subscribe(String pathPattern, TwinPropertyCallBack callback, Object context) throws IllegalArgumentException
+    {
+        if (pathPattern == null || pathPattern.isEmpty())
+        {
+            throw new IllegalArgumentException("Path pattern cannot be null or empty");
+        }
+
+        if (callback == null)
+        {
+            throw new IllegalArgumentException("Callback cannot be null");
+        }
+
+        Node node = root;
+        for (String segment : pathPattern.split(PATH_SEPARATOR_REGEX, -1))
+        {
+            if (segment.isEmpty())
+            {
+                throw new IllegalArgumentException("Path pattern cannot contain an empty level: " + pathPattern);
+            }
+
+            Node child = node.children.get(segment);
+            if (child == null)
+            {
+                Node newChild = new Node();
+                child = node.children.putIfAbsent(segment, newChild);
+                if (child == null)
+                {
+                    child = newChild;
+                }
+            }
+
+            node = child;
+        }
+
+        node.subscriptions.add(new Pair<>(callback, context));
+        this.isEmpty = false;
+    }
+
+    /**
+     * Execute the callbacks of every subscription that matches the provided top level desired property or any of
+     * its inner values.
+     *
+     * @param key the key of the top level desired property.
+     * @param value the value of the top level desired property.
+     * @param version the version of the desired properties collection this property belongs to.
+     * @param metadata the metadata of the top level desired property. May be null.
+     * @return true if at least one callback was executed.
+     */
+    boolean dispatch(String key, Object value, Integer version, TwinMetadata metadata)
+    {
+        if (this.isEmpty)
+        {
+            return false;
+        }
+
+        boolean dispatched = dispatchChild(root, WILDCARD, key, key, value, version, metadata);
+        return dispatchChild(root, key, key, key, value, version, metadata) || dispatched;
+    }
+
+    private boolean dispatchChild(Node parent, String segment, String key, String path, Object value, Integer version, TwinMetadata metadata)
+    {
+        Node node = parent.children.get(segment);
+        if (node == null)
+        {
+            return false;
+        }
+
+        boolean dispatched = false;
+        if (!node.subscriptions.isEmpty())
+        {
+            Property property = createProperty(path, value, version, key.equals(path) ? metadata : null);
+            for (Pair<TwinPropertyCallBack, Object> subscription : node.subscriptions)
+            {
+                subscription.getKey().TwinPropertyCallBack(property, subscription.getValue());
+                dispatched = true;
+            }
+        }
+
+        if (!node.children.isEmpty() && value instanceof Map)
+        {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> innerValues = (Map<String, Object>) value;
+            if (node.children.containsKey(WILDCARD))
+            {
+                for (Map.Entry<String, Object> innerEntry : innerValues.entrySet())
+                {
+                    String innerPath = path + PATH_SEPARATOR + innerEntry.getKey();
+                    dispatched |= dispatchChild(node, WILDCARD, key, innerPath, innerEntry.getValue(), version, metadata);
+                }
+            }
+
+            // Only the subscribed keys are looked up, rather than walking every inner value
+            for (String childSegment : node.children.keySet())
+            {
+                if (!childSegment.equals(WILDCARD) && innerValues.containsKey(childSegment))
+                {
+                    String innerPath = path + PATH_SEPARATOR + childSegment;
+                    dispatched |= dispatchChild(node, childSegment, key, innerPath, innerValues.get(childSegment), version, metadata);
+                }
+            }
+        }
+
+        return dispatched;
+    }
+
+    private static Property createProperty(String path, Object value, Integer version, TwinMetadata metadata)
+    {
+        if (metadata == null)
+        {
+            return new Property(path, value, version, false, null, null, null, null);
+        }
+
+        return new Property(
+                path, value,
+                version,
+                false,
+                metadata.getLastUpdated(),
+                metadata.getLastUpdatedVersion(),
+                metadata.getLastUpdatedBy(),
+                metadata.getLastUpdatedByDigest());
+    }
+}
@@ -12,11 +12,18 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.microsoft.azure.sdk.iot.device.IotHubMessageResult.ABANDON;
 import static com.microsoft.azure.sdk.iot.device.IotHubMessageResult.COMPLETE;
@@ -54,6 +61,25 @@ public class DeviceTwin
     private ConcurrentSkipListMap<String, Pair<PropertyCallBack<String, Object>, Object>> onDesiredPropertyChangeMap;
     private ConcurrentSkipListMap<String, Pair<TwinPropertyCallBack, Object>> onDesiredTwinPropertyChangeMap;
 
+    /*
+        Index of callbacks to call when a desired property matching a path pattern, such as config.sensors.*.rate, changed
+     */
+    private final DesiredPropertyPathIndex desiredPropertyPathIndex = new DesiredPropertyPathIndex();
+
+    /*
+        Desired property updates waiting to be dispatched. Updates are dispatched outside of DEVICE_TWIN_LOCK by
+        whichever thread wins isDispatchingDesiredProperties, and updates that queue up while a dispatch is in
+        progress are coalesced so that each property is only reported once with its latest value.
+     */
+    private final Queue<Pair<TwinCollection, Boolean>> pendingDesiredProperties = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean isDispatchingDesiredProperties = new AtomicBoolean(false);
+
+    // Only accessed by the thread that holds isDispatchingDesiredProperties
+    private Integer lastDispatchedDesiredPropertiesVersion;
+
+    // Set while reported property coalescing is enabled
+    private volatile ReportedPropertiesCoalescer reportedPropertiesCoalescer;
+
     /*
         Callback invoked when a response to device twin operation is issued by iothub
      */
@@ -62,6 +88,9 @@ public class DeviceTwin
         @Override
         public IotHubMessageResult execute(Message message, Object callbackContext)
         {
+            TwinState receivedTwinState = null;
+            boolean isDesiredPropertiesPatch = false;
+
             synchronized (DEVICE_TWIN_LOCK)
             {
                 IotHubStatusCode iotHubStatus = IotHubStatusCode.ERROR;
@@ -90,15 +119,7 @@ public class DeviceTwin
 
                         if (iotHubStatus == IotHubStatusCode.OK)
                         {
-                            TwinState twinState = TwinState.createFromPropertiesJson(new String(dtMessage.getBytes(), Message.DEFAULT_IOTHUB_MESSAGE_CHARSET));
-                            if (twinState.getDesiredProperty() != null)
-                            {
-                                OnDesiredPropertyChanged(twinState.getDesiredProperty());
-                            }
-                            if (twinState.getReportedProperty() != null)
-                            {
-                                OnReportedPropertyChanged(twinState.getReportedProperty());
-                            }
+                            receivedTwinState = TwinState.createFromPropertiesJson(new String(dtMessage.getBytes(), Message.DEFAULT_IOTHUB_MESSAGE_CHARSET));
                         }
                         break;
                     }
@@ -116,51 +137,110 @@ public class DeviceTwin
                     case DEVICE_OPERATION_TWIN_SUBSCRIBE_DESIRED_PROPERTIES_RESPONSE:
                     {
                         isSubscribed = true;
-                        TwinState twinState = TwinState.createFromDesiredPropertyJson(new String(dtMessage.getBytes(), Message.DEFAULT_IOTHUB_MESSAGE_CHARSET));
-
-                        if (twinState.getDesiredProperty() != null)
-                        {
-                            OnDesiredPropertyChanged(twinState.getDesiredProperty());
-                        }
-
+                        receivedTwinState = TwinState.createFromDesiredPropertyJson(new String(dtMessage.getBytes(), Message.DEFAULT_IOTHUB_MESSAGE_CHARSET));
+                        isDesiredPropertiesPatch = true;
                         break;
                     }
                     default:
                         break;
                 }
-                return COMPLETE;
+            }
+
+            // User callbacks are executed outside of DEVICE_TWIN_LOCK so that slow callbacks do not block other twin operations
+            if (receivedTwinState != null)
+            {
+                if (receivedTwinState.getDesiredProperty() != null)
+                {
+                    OnDesiredPropertyChanged(receivedTwinState.getDesiredProperty(), isDesiredPropertiesPatch);
+                }
+                if (receivedTwinState.getReportedProperty() != null)
+                {
+                    OnReportedPropertyChanged(receivedTwinState.getReportedProperty());
+                }
+            }
+
+            return COMPLETE;
+        }
+    }
+
+    private void OnDesiredPropertyChanged(TwinCollection desiredPropertyMap, boolean isPatch)
+    {
+        pendingDesiredProperties.add(new Pair<>(desiredPropertyMap, isPatch));
+
+        // If another thread is already dispatching, it will pick up this update before it releases the flag
+        while (!pendingDesiredProperties.isEmpty() && isDispatchingDesiredProperties.compareAndSet(false, true))
+        {
+            try
+            {
+                dispatchPendingDesiredProperties();
+            }
+            finally
+            {
+                isDispatchingDesiredProperties.set(false);
             }
         }
     }
 
-    private void OnDesiredPropertyChanged(TwinCollection desiredPropertyMap)
+    private void dispatchPendingDesiredProperties()
     {
-        synchronized (DEVICE_TWIN_LOCK)
+        List<TwinCollection> desiredPropertyMaps = new ArrayList<>();
+        Pair<TwinCollection, Boolean> pending;
+        while ((pending = pendingDesiredProperties.poll()) != null)
+        {
+            TwinCollection desiredPropertyMap = pending.getKey();
+            Integer version = desiredPropertyMap.getVersionFinal();
+            if (pending.getValue() && version != null && lastDispatchedDesiredPropertiesVersion != null && version <= lastDispatchedDesiredPropertiesVersion)
+            {
+                // Patches can be redelivered or arrive after a full twin that already included them
+                log.debug("Ignoring desired properties patch with version {} since version {} was already dispatched", version, lastDispatchedDesiredPropertiesVersion);
+                continue;
+            }
+
+            if (version != null && (lastDispatchedDesiredPropertiesVersion == null || version > lastDispatchedDesiredPropertiesVersion))
+            {
+                lastDispatchedDesiredPropertiesVersion = version;
+            }
+
+            desiredPropertyMaps.add(desiredPropertyMap);
+        }
+
+        // Keep only the latest update of each property, in the order the properties were first seen
+        Map<String, TwinCollection> latestDesiredPropertyMaps = new LinkedHashMap<>();
+        for (TwinCollection desiredPropertyMap : desiredPropertyMaps)
         {
-            if (desiredPropertyMap != null)
+            // If any desired properties are present, and the user has subscribed to receive the generic twin
+            // properties callback, then execute the callback so that they receive the full twin payload.
+            if (!desiredPropertyMap.isEmpty() && this.deviceTwinGenericTwinPropertiesChangeCallback != null)
             {
-                // If any desired properties are present, and the user has subscribed to receive the generic twin
-                // properties callback, then execute the callback so that they receive the full twin payload.
-                if (!desiredPropertyMap.isEmpty() && this.deviceTwinGenericTwinPropertiesChangeCallback != null)
+                deviceTwinGenericTwinPropertiesChangeCallback.TwinPropertiesCallBack(desiredPropertyMap, deviceTwinGenericPropertyChangeCallbackContext);
+            }
+
+            for (String propertyKey : desiredPropertyMap.keySet())
+            {
+                latestDesiredPropertyMaps.put(propertyKey, desiredPropertyMap);
+            }
+        }
+
+        for (Map.Entry<String, TwinCollection> latestDesiredProperty : latestDesiredPropertyMaps.entrySet())
+        {
+            Property property = this.getDesiredProperty(latestDesiredProperty.getValue(), latestDesiredProperty.getKey());
+
+            boolean reported = reportPropertyCallback(property);
+            reported |= desiredPropertyPathIndex.dispatch(
+                    property.getKey(),
+                    property.getValue(),
+                    property.getVersion(),
+                    latestDesiredProperty.getValue().getTwinMetadataFinal(property.getKey()));
+
+            if (!reported)
+            {
+                if (reportDeviceTwinGenericPropertyCallback(property))
                 {
-                    deviceTwinGenericTwinPropertiesChangeCallback.TwinPropertiesCallBack(desiredPropertyMap, deviceTwinGenericPropertyChangeCallbackContext);
+                    log.info("The user subscribed desired property callback was triggered.");
                 }
-
-                for (String propertyKey : desiredPropertyMap.keySet())
+                else
                 {
-                    Property property = this.getDesiredProperty(desiredPropertyMap, propertyKey);
-
-                    if (!reportPropertyCallback(property))
-                    {
-                        if (reportDeviceTwinGenericPropertyCallback(property))
-                        {
-                            log.info("The user subscribed desired property callback was triggered.");
-                        }
-                        else
-                        {
-                            log.debug("The user has not subscribed to desired property callback, no action was taken.");
-                        }
-                    }
+                    log.debug("The user has not subscribed to desired property callback, no action was taken.");
                 }
             }
         }
@@ -168,17 +248,14 @@ public class DeviceTwin
 
     private void OnReportedPropertyChanged(TwinCollection reportedPropertyMap)
     {
-        synchronized (DEVICE_TWIN_LOCK)
+        if (reportedPropertyMap != null)
         {
-            if (reportedPropertyMap != null)
+            for (String propertyKey : reportedPropertyMap.keySet())
             {
-                for (String propertyKey : reportedPropertyMap.keySet())
+                Property property = this.getReportedProperty(reportedPropertyMap, propertyKey);
+                if (deviceTwinGenericTwinPropertyChangeCallback != null)
                 {
-                    Property property = this.getReportedProperty(reportedPropertyMap, propertyKey);
-                    if (deviceTwinGenericTwinPropertyChangeCallback != null)
-                    {
-                        deviceTwinGenericTwinPropertyChangeCallback.TwinPropertyCallBack(property, deviceTwinGenericPropertyChangeCallbackContext);
-                    }
+                    deviceTwinGenericTwinPropertyChangeCallback.TwinPropertyCallBack(property, deviceTwinGenericPropertyChangeCallbackContext);
                 }
             }
         }
@@ -313,17 +390,17 @@ public class DeviceTwin
         this.deviceIO.sendEventAsync(getTwinRequestMessage, new deviceTwinRequestMessageCallback(), null, this.config.getDeviceId());
     }
 
-    public synchronized void updateReportedProperties(Set<Property> reportedProperties) throws IOException
+    public void updateReportedProperties(Set<Property> reportedProperties) throws IOException
     {
         this.updateReportedProperties(reportedProperties, null, null, null, new deviceTwinRequestMessageCallback(), null);
     }
 
-    public synchronized void updateReportedProperties(Set<Property> reportedProperties, Integer version) throws IOException
+    public void updateReportedProperties(Set<Property> reportedProperties, Integer version) throws IOException
     {
         this.updateReportedProperties(reportedProperties, version, null, null, new deviceTwinRequestMessageCallback(), null);
     }
 
-    public synchronized void updateReportedProperties(Set<Property> reportedProperties, Integer version, CorrelatingMessageCallback correlatingMessageCallback, Object correlatingMessageCallbackContext, IotHubEventCallback reportedPropertiesCallback, Object callbackContext) throws IOException
+    public void updateReportedProperties(Set<Property> reportedProperties, Integer version, CorrelatingMessageCallback correlatingMessageCallback, Object correlatingMessageCallbackContext, IotHubEventCallback reportedPropertiesCallback, Object callbackContext) throws IOException
     {
         if (reportedProperties == null)
         {
@@ -368,6 +445,108 @@ public class DeviceTwin
         this.deviceIO.sendEventAsync(updateReportedPropertiesRequest, reportedPropertiesCallback, callbackContext, this.config.getDeviceId());
     }
 
+    /**
+     * Start buffering the reported properties passed to {@link #updateReportedPropertyCoalesced(Property, IotHubEventCallback, Object)} and
+     * sending them as one patch per flush interval, or sooner once maxPendingProperties keys are buffered. If
+     * coalescing is already enabled, the updates buffered so far are sent and the new settings take over.
+     *
+     * @param flushIntervalMilliseconds how often buffered updates are sent. Must be positive.
+     * @param maxPendingProperties the number of buffered keys that triggers a patch early. Must be positive.
+     * @param threadFactory the factory to make the thread that sends the buffered updates with. If null, a daemon
+     * thread is made.
+     * @throws IllegalArgumentException if flushIntervalMilliseconds or maxPendingProperties is not positive.
+     */
+    public synchronized void enableReportedPropertiesCoalescing(long flushIntervalMilliseconds, int maxPendingProperties, ThreadFactory threadFactory) throws IllegalArgumentException
+    {
+        ReportedPropertiesCoalescer newCoalescer = new ReportedPropertiesCoalescer(this, flushIntervalMilliseconds, maxPendingProperties, threadFactory);
+        ReportedPropertiesCoalescer oldCoalescer = this.reportedPropertiesCoalescer;
+        this.reportedPropertiesCoalescer = newCoalescer;
+
+        if (oldCoalescer != null)
+        {
+            oldCoalescer.close();
+        }
+    }
+
+    /**
+     * Send any buffered reported properties and stop coalescing. Does nothing if coalescing is not enabled.
+     */
+    public synchronized void disableReportedPropertiesCoalescing()
+    {
+        ReportedPropertiesCoalescer coalescer = this.reportedPropertiesCoalescer;
+        this.reportedPropertiesCoalescer = null;
+
+        if (coalescer != null)
+        {
+            coalescer.close();
+        }
+    }
+
+    /**
+     * Stop coalescing and drop any buffered reported properties, executing their callbacks with
+     * {@link IotHubStatusCode#MESSAGE_CANCELLED_ONCLOSE}. Does nothing if coalescing is not enabled.
+     */
+    public synchronized void cancelReportedPropertiesCoalescing()
+    {
+        ReportedPropertiesCoalescer coalescer = this.reportedPropertiesCoalescer;
+        this.reportedPropertiesCoalescer = null;
+
+        if (coalescer != null)
+        {
+            coalescer.closeNow();
+        }
+    }
+
+    /**
+     * Buffer a reported property update to be sent in the next coalesced patch. Only the latest value of each key is
+     * sent.
+     *
+     * @param reportedProperty the reported property to send.
+     * @param reportedPropertyCallback the callback to execute with the status of the patch that carries this update. Can be null.
+     * @param callbackContext the context to pass to the callback. Can be null.
+     * @throws IllegalArgumentException if the reported property is null.
+     * @throws IllegalStateException if reported property coalescing is not enabled.
+     */
+    public void updateReportedPropertyCoalesced(Property reportedProperty, IotHubEventCallback reportedPropertyCallback, Object callbackContext) throws IllegalArgumentException, IllegalStateException
+    {
+        while (true)
+        {
+            ReportedPropertiesCoalescer coalescer = this.reportedPropertiesCoalescer;
+            if (coalescer == null)
+            {
+                throw new IllegalStateException("Enable reported properties coalescing before using it");
+            }
+
+            try
+            {
+                coalescer.report(reportedProperty, reportedPropertyCallback, callbackContext);
+                return;
+            }
+            catch (IllegalStateException e)
+            {
+                // The coalescer was replaced by a concurrent call to enableReportedPropertiesCoalescing, so retry
+                // against the new one
+                if (coalescer == this.reportedPropertiesCoalescer)
+                {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Send the buffered reported properties now rather than waiting for the flush interval. Does nothing if
+     * coalescing is not enabled or nothing is buffered.
+     */
+    public void flushCoalescedReportedProperties()
+    {
+        ReportedPropertiesCoalescer coalescer = this.reportedPropertiesCoalescer;
+        if (coalescer != null)
+        {
+            coalescer.flush();
+        }
+    }
+
     public void subscribeDesiredPropertiesNotification(Map<Property, Pair<PropertyCallBack<String, Object>, Object>> onDesiredPropertyChange)
     {
         if (onDesiredPropertyChangeMap == null)
@@ -404,6 +583,13 @@ public class DeviceTwin
         checkSubscription();
     }
 
+    public void subscribeDesiredPropertiesPathNotification(String pathPattern, TwinPropertyCallBack onDesiredPropertyChange, Object context)
+    {
+        desiredPropertyPathIndex.subscribe(pathPattern, onDesiredPropertyChange, context);
+
+        checkSubscription();
+    }
+
     private void checkSubscription()
     {
         if (!isSubscribed)
@@ -0,0 +1,277 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.DeviceTwin;
+
+import com.microsoft.azure.sdk.iot.device.IotHubEventCallback;
+import com.microsoft.azure.sdk.iot.device.IotHubStatusCode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffers reported property updates per key and sends them as a single twin PATCH, either every flush interval or as
+ * soon as the number of buffered keys reaches the configured threshold. Only the latest value of each key is sent, and
+ * the callback of every update that was folded into a PATCH is executed with the status of that PATCH.
+ */
+@Slf4j
+final class ReportedPropertiesCoalescer
+{
+    private static final String FLUSH_THREAD_NAME = "azure-iot-sdk-ReportedPropertiesCoalescer";
+
+    private static final ThreadFactory DEFAULT_THREAD_FACTORY = new ThreadFactory()
+    {
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, FLUSH_THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private final DeviceTwin deviceTwin;
+    private final int maxPendingProperties;
+    private final ScheduledExecutorService flushScheduler;
+
+    // Guards pendingProperties and isClosed
+    private final Object pendingPropertiesLock = new Object();
+
+    // Held while a batch is taken and handed to the transport so that patches are queued in the order they were built
+    private final Object flushLock = new Object();
+
+    private Map<String, PendingProperty> pendingProperties = new LinkedHashMap<>();
+    private boolean isClosed;
+
+    private static final class PendingProperty
+    {
+        private Object value;
+        private final List<Pair<IotHubEventCallback, Object>> callbacks = new ArrayList<>(1);
+    }
+
+    private static final class CoalescedPatchCallback implements IotHubEventCallback
+    {
+        @Override
+        public void execute(IotHubStatusCode responseStatus, Object callbackContext)
+        {
+            @SuppressWarnings("unchecked")
+            List<Pair<IotHubEventCallback, Object>> callbacks = (List<Pair<IotHubEventCallback, Object>>) callbackContext;
+            executeCallbacks(callbacks, responseStatus);
+        }
+    }
+
+    /**
+     * @param deviceTwin the twin to send the coalesced patches through.
+     * @param flushIntervalMilliseconds how often buffered updates are sent.
+     * @param maxPendingProperties the number of buffered keys that triggers a patch before the flush interval elapses.
+     * @throws IllegalArgumentException if deviceTwin is null, or if flushIntervalMilliseconds or maxPendingProperties
+     * is not positive.
+     */
+    ReportedPropertiesCoalescer(DeviceTwin deviceTwin, long flushIntervalMilliseconds, int maxPendingProperties) throws IllegalArgumentException
+    {
+        this(deviceTwin, flushIntervalMilliseconds, maxPendingProperties, null);
+    }
+
+    /**
+     * @param deviceTwin the twin to send the coalesced patches through.
+     * @param flushIntervalMilliseconds how often buffered updates are sent.
+     * @param maxPendingProperties the number of buffered keys that triggers a patch before the flush interval elapses.
+     * @param threadFactory the factory to make the flush thread with. If null, a daemon thread is made.
+     * @throws IllegalArgumentException if deviceTwin is null, or if flushIntervalMilliseconds or maxPendingProperties
+     * is not positive.
+     */
+    ReportedPropertiesCoalescer(DeviceTwin deviceTwin, long flushIntervalMilliseconds, int maxPendingProperties, ThreadFactory threadFactory) throws IllegalArgumentException
+    {
+        if (deviceTwin == null)
+        {
+            throw new IllegalArgumentException("Device twin cannot be null");
+        }
+
+        if (flushIntervalMilliseconds <= 0)
+        {
+            throw new IllegalArgumentException("Flush interval must be greater than 0");
+        }
+
+        if (maxPendingProperties <= 0)
+        {
+            throw new IllegalArgumentException("Max pending properties must be greater than 0");
+        }
+
+        this.deviceTwin = deviceTwin;
+        this.maxPendingProperties = maxPendingProperties;
+        this.flushScheduler = Executors.newSingleThreadScheduledExecutor(threadFactory == null ? DEFAULT_THREAD_FACTORY : threadFactory);
+
+        this.flushScheduler.scheduleWithFixedDelay(
+                new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        flushSafely();
+                    }
+                },
+                flushIntervalMilliseconds,
+                flushIntervalMilliseconds,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Buffer the provided reported property. If the key is already buffered, its value is replaced.
+     *
+     * @param property the reported property to send.
+     * @param callback the callback to execute with the status of the patch that carries this update. Can be null.
+     * @param callbackContext the context to pass to the callback. Can be null.
+     * @throws IllegalArgumentException if the property is null.
+     * @throws IllegalStateException if this coalescer has been closed.
+     */
+    void report(Property property, IotHubEventCallback callback, Object callbackContext) throws IllegalArgumentException, IllegalStateException
+    {
+        if (property == null)
+        {
+            throw new IllegalArgumentException("Reported property cannot be null");
+        }
+
+        boolean isThresholdReached;
+        synchronized (this.pendingPropertiesLock)
+        {
+            if (this.isClosed)
+            {
+                throw new IllegalStateException("Reported properties coalescing has been disabled");
+            }
+
+            PendingProperty pendingProperty = this.pendingProperties.get(property.getKey());
+            if (pendingProperty == null)
+            {
+                pendingProperty = new PendingProperty();
+                this.pendingProperties.put(property.getKey(), pendingProperty);
+            }
+
+            pendingProperty.value = property.getValue();
+            if (callback != null)
+            {
+                pendingProperty.callbacks.add(new Pair<>(callback, callbackContext));
+            }
+            isThresholdReached = this.pendingProperties.size() >= this.maxPendingProperties;
+        }
+
+        if (isThresholdReached)
+        {
+            flushSafely();
+        }
+    }
+
+    /**
+     * Send all buffered updates as one patch. Does nothing if no updates are buffered. If the patch cannot be
+     * queued, the callback of every update in it is executed with {@link IotHubStatusCode#ERROR}.
+     */
+    void flush()
+    {
+        synchronized (this.flushLock)
+        {
+            Map<String, PendingProperty> batch;
+            synchronized (this.pendingPropertiesLock)
+            {
+                if (this.pendingProperties.isEmpty())
+                {
+                    return;
+                }
+
+                batch = this.pendingProperties;
+                this.pendingProperties = new LinkedHashMap<>();
+            }
+
+            Set<Property> reportedProperties = new HashSet<>();
+            List<Pair<IotHubEventCallback, Object>> callbacks = new ArrayList<>();
+            for (Map.Entry<String, PendingProperty> entry : batch.entrySet())
+            {
+                reportedProperties.add(new Property(entry.getKey(), entry.getValue().value));
+                callbacks.addAll(entry.getValue().callbacks);
+            }
+
+            try
+            {
+                this.deviceTwin.updateReportedProperties(reportedProperties, null, null, null, new CoalescedPatchCallback(), callbacks);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                log.warn("Failed to send coalesced reported properties", e);
+                executeCallbacks(callbacks, IotHubStatusCode.ERROR);
+            }
+        }
+    }
+
+    /**
+     * Stop the periodic flush and send any updates that are still buffered. Later calls to
+     * {@link #report(Property, IotHubEventCallback, Object)} throw.
+     */
+    void close()
+    {
+        synchronized (this.pendingPropertiesLock)
+        {
+            this.isClosed = true;
+        }
+
+        this.flushScheduler.shutdownNow();
+
+        // Waits out a scheduled flush that is already running, so no patch is queued after this returns
+        flush();
+    }
+
+    /**
+     * Stop the periodic flush and drop any updates that are still buffered, executing their callbacks with
+     * {@link IotHubStatusCode#MESSAGE_CANCELLED_ONCLOSE}. Later calls to
+     * {@link #report(Property, IotHubEventCallback, Object)} throw.
+     */
+    void closeNow()
+    {
+        Map<String, PendingProperty> droppedProperties;
+        synchronized (this.pendingPropertiesLock)
+        {
+            this.isClosed = true;
+            droppedProperties = this.pendingProperties;
+            this.pendingProperties = new LinkedHashMap<>();
+        }
+
+        this.flushScheduler.shutdownNow();
+
+        // Waits out a scheduled flush that is already running, so no patch is queued after this returns
+        synchronized (this.flushLock)
+        {
+            for (PendingProperty droppedProperty : droppedProperties.values())
+            {
+                executeCallbacks(droppedProperty.callbacks, IotHubStatusCode.MESSAGE_CANCELLED_ONCLOSE);
+            }
+        }
+    }
+
+    private void flushSafely()
+    {
+        try
+        {
+            flush();
+        }
+        catch (RuntimeException e)
+        {
+            // Failures are surfaced through the callbacks of the batch; this only keeps the scheduled flush alive
+            log.warn("Failed to flush coalesced reported properties", e);
+        }
+    }
+
+    private static void executeCallbacks(List<Pair<IotHubEventCallback, Object>> callbacks, IotHubStatusCode status)
+    {
+        for (Pair<IotHubEventCallback, Object> callback : callbacks)
+        {
+            callback.getKey().execute(status, callback.getValue());
+        }
+    }
+}
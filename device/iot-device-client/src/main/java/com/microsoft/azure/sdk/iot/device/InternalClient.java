@@ -7,6 +7,7 @@ package com.microsoft.azure.sdk.iot.device;
 
 import com.microsoft.azure.sdk.iot.device.DeviceTwin.*;
 import com.microsoft.azure.sdk.iot.device.auth.IotHubAuthenticationProvider;
+import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenAuthenticationProvider;
 import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
 import com.microsoft.azure.sdk.iot.device.transport.RetryPolicy;
 import com.microsoft.azure.sdk.iot.provisioning.security.SecurityProvider;
@@ -16,9 +17,11 @@ import javax.net.ssl.SSLContext;
 import java.io.IOError;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 import static com.microsoft.azure.sdk.iot.device.IotHubClientProtocol.*;
 
@@ -57,6 +60,9 @@ public class InternalClient
     private DeviceTwin twin;
     private DeviceMethod method;
 
+    // Null unless telemetry compression was configured through the client options
+    private MessageCompressor messageCompressor;
+
     InternalClient(IotHubConnectionString iotHubConnectionString, IotHubClientProtocol protocol, long sendPeriodMillis, long receivePeriodMillis, ClientOptions clientOptions)
     {
         /* Codes_SRS_INTERNALCLIENT_21_004: [If the connection string is null or empty, the function shall throw an IllegalArgumentException.] */
@@ -66,6 +72,13 @@ public class InternalClient
         this.config.setProtocol(protocol);
         if (clientOptions != null) {
             this.config.modelId = clientOptions.getModelId();
+            this.messageCompressor = createMessageCompressor(clientOptions);
+            this.config.messagePersistenceOptions = clientOptions.messagePersistenceOptions;
+            this.config.outboundQueueOptions = clientOptions.outboundQueueOptions;
+            this.config.sendRateOptions = clientOptions.sendRateOptions;
+            this.config.amqpLinkCreditOptions = verifyAmqpLinkCreditOptions(clientOptions.amqpLinkCreditOptions);
+            this.config.threadFactory = clientOptions.threadFactory;
+            this.config.executorService = clientOptions.executorService;
         }
 
         this.deviceIO = new DeviceIO(this.config, sendPeriodMillis, receivePeriodMillis);
@@ -134,6 +147,13 @@ public class InternalClient
         this.config.setProtocol(protocol);
         if (clientOptions != null) {
             this.config.modelId = clientOptions.getModelId();
+            this.messageCompressor = createMessageCompressor(clientOptions);
+            this.config.messagePersistenceOptions = clientOptions.messagePersistenceOptions;
+            this.config.outboundQueueOptions = clientOptions.outboundQueueOptions;
+            this.config.sendRateOptions = clientOptions.sendRateOptions;
+            this.config.amqpLinkCreditOptions = verifyAmqpLinkCreditOptions(clientOptions.amqpLinkCreditOptions);
+            this.config.threadFactory = clientOptions.threadFactory;
+            this.config.executorService = clientOptions.executorService;
         }
 
         //Codes_SRS_INTERNALCLIENT_34_067: [The constructor shall initialize the IoT hub transport for the protocol specified, creating a instance of the deviceIO.]
@@ -157,6 +177,13 @@ public class InternalClient
         if (clientOptions != null)
         {
             this.config.modelId = clientOptions.getModelId();
+            this.messageCompressor = createMessageCompressor(clientOptions);
+            this.config.messagePersistenceOptions = clientOptions.messagePersistenceOptions;
+            this.config.outboundQueueOptions = clientOptions.outboundQueueOptions;
+            this.config.sendRateOptions = clientOptions.sendRateOptions;
+            this.config.amqpLinkCreditOptions = verifyAmqpLinkCreditOptions(clientOptions.amqpLinkCreditOptions);
+            this.config.threadFactory = clientOptions.threadFactory;
+            this.config.executorService = clientOptions.executorService;
         }
 
         this.deviceIO = new DeviceIO(this.config, sendPeriodMillis, receivePeriodMillis);
@@ -211,6 +238,9 @@ public class InternalClient
      */
     public void close() throws IOException
     {
+        // Queues any coalesced reported properties, so that they are sent before the client closes
+        this.disableReportedPropertiesCoalescing();
+
         //noinspection StatementWithEmptyBody
         while (!this.deviceIO.isEmpty())
         {
@@ -218,6 +248,7 @@ public class InternalClient
         }
 
         this.deviceIO.close();
+        this.releaseSigningKey();
     }
 
     /**
@@ -227,11 +258,30 @@ public class InternalClient
      */
     public void closeNow() throws IOException
     {
+        if (this.twin != null)
+        {
+            this.twin.cancelReportedPropertiesCoalescing();
+        }
+
         this.deviceIO.close();
+        this.releaseSigningKey();
+    }
+
+    // Lets the authentication provider drop the key it signs sas tokens with until the client is opened again
+    private void releaseSigningKey()
+    {
+        IotHubSasTokenAuthenticationProvider sasTokenAuthentication = this.config.getSasTokenAuthentication();
+        if (sasTokenAuthentication != null)
+        {
+            sasTokenAuthentication.releaseSigningKey();
+        }
     }
 
     /**
-     * Asynchronously sends an event message to the IoT hub.
+     * Asynchronously sends an event message to the IoT hub. If {@code ClientOptions.getMessageCompressionOptions()}
+     * was set, the body of the message may be compressed and its content encoding set before it is queued. If
+     * {@code ClientOptions.getOutboundQueueOptions()} was set with {@link OutboundQueueOverflowPolicy#BLOCK}, this
+     * waits for room while the outbound queue is full.
      *
      * @param message the message to be sent.
      * @param callback the callback to be invoked when a response is received.
@@ -249,16 +299,55 @@ public class InternalClient
 
         //Codes_SRS_INTERNALCLIENT_34_045: [This function shall set the provided message's connection device id to the config's saved device id.]
         message.setConnectionDeviceId(this.config.getDeviceId());
+        compressIfEnabled(message);
 
         //Codes_SRS_INTERNALCLIENT_21_010: [The sendEventAsync shall asynchronously send the message using the deviceIO connection.]
         deviceIO.sendEventAsync(message, callback, callbackContext, this.config.getDeviceId());
     }
 
+    /**
+     * Asynchronously sends an event message to the IoT hub like {@link #sendEventAsync(Message, IotHubEventCallback, Object)},
+     * but never waits for room in the outbound queue. If {@code ClientOptions.getOutboundQueueOptions()} was set with
+     * {@link OutboundQueueOverflowPolicy#BLOCK} and the queue is full, the message waits for room without holding up
+     * the calling thread.
+     *
+     * @param message the message to be sent.
+     * @param callback the callback to be invoked when a response is received.
+     * Can be {@code null}.
+     * @param callbackContext a context to be passed to the callback. Can be
+     * {@code null} if no callback is provided.
+     * @return a future that completes once the message was accepted into the outbound queue. It fails with a
+     * {@link com.microsoft.azure.sdk.iot.device.exceptions.ThrottledException} if the message was rejected since the
+     * queue was full, or with an {@link IllegalStateException} if the client was closed while the message waited for
+     * room. Cancelling the future withdraws a message that is still waiting for room. The callback is executed once
+     * the message was sent, or with the reason it was not accepted.
+     *
+     * @throws IllegalArgumentException if the message provided is {@code null}.
+     * @throws IllegalStateException if the client has not been opened yet or is
+     * already closed.
+     */
+    public Future<Void> queueEventAsync(Message message, IotHubEventCallback callback, Object callbackContext)
+    {
+        if (message == null)
+        {
+            throw new IllegalArgumentException("Cannot send message 'null'.");
+        }
+
+        verifyRegisteredIfMultiplexing();
+
+        message.setConnectionDeviceId(this.config.getDeviceId());
+        compressIfEnabled(message);
+
+        return deviceIO.queueEventAsync(message, callback, callbackContext, this.config.getDeviceId());
+    }
+
     /**
      * Asynchronously sends a batch of messages to the IoT hub
-     * HTTPS messages will be sent in a single batch and MQTT and AMQP messages will be sent individually.
+     * HTTPS and AMQP messages will be sent in a single batch and MQTT messages will be sent individually.
      * In case of HTTPS, This API call is an all-or-nothing single HTTPS message and the callback will be triggered only once.
      * Maximum payload size for HTTPS is 255KB
+     * In case of AMQP, the messages are sent in as few batched deliveries as fit within the max message size, and the
+     * callback will be triggered once per message with the status of the whole batch.
      *
      * @param messages the list of message to be sent.
      * @param callback the callback to be invoked when a response is received.
@@ -277,9 +366,11 @@ public class InternalClient
         for (Message message: messages)
         {
             message.setConnectionDeviceId(this.config.getDeviceId());
+            compressIfEnabled(message);
         }
 
         Message message = new BatchMessage(messages);
+        message.setConnectionDeviceId(this.config.getDeviceId());
 
         deviceIO.sendEventAsync(message, callback, callbackContext, this.config.getDeviceId());
     }
@@ -352,6 +443,41 @@ public class InternalClient
         this.twin.subscribeDesiredPropertiesTwinPropertyNotification(onDesiredPropertyChange);
     }
 
+    /**
+     * Subscribes to the desired properties that match a path pattern.
+     *
+     * The pattern is the path of the desired property, with the keys of each level separated by a {@code .}, and
+     * any level may be {@code *} to match every key at that level. For instance, {@code config.sensors.*.rate}
+     * matches the {@code rate} of every sensor in {@code config.sensors}. The callback will be executed with a
+     * {@link Property} whose key is the full path of the matched value, each time a desired property update
+     * contains that path. Desired properties that match a path subscription are not reported to the generic
+     * desired property callback.
+     *
+     * @param pathPattern the path pattern of the desired properties to subscribe to. Cannot be {@code null} or empty.
+     * @param onDesiredPropertyChange the callback to execute when a matching desired property is updated. Cannot be {@code null}.
+     * @param context the context to pass to the callback. Can be {@code null}.
+     *
+     * @throws IOException if called when client is not opened or called before starting twin.
+     * @throws IllegalArgumentException if the path pattern is null, empty or has an empty level, or if the callback is null.
+     */
+    public void subscribeToTwinDesiredPropertyPath(String pathPattern, TwinPropertyCallBack onDesiredPropertyChange, Object context) throws IOException, IllegalArgumentException
+    {
+        verifyRegisteredIfMultiplexing();
+        verifyTwinOperationsAreSupported();
+
+        if (this.twin == null)
+        {
+            throw new IOException("Start twin before using it");
+        }
+
+        if (!this.deviceIO.isOpen())
+        {
+            throw new IOException("Open the client connection before using it.");
+        }
+
+        this.twin.subscribeDesiredPropertiesPathNotification(pathPattern, onDesiredPropertyChange, context);
+    }
+
     /**
      * Sends reported properties
      *
@@ -415,6 +541,76 @@ public class InternalClient
         this.twin.updateReportedProperties(reportedProperties, version, correlatingMessageCallback, correlatingMessageCallbackContext, reportedPropertiesCallback, reportedPropertiesCallbackContext);
     }
 
+    /**
+     * Start coalescing the reported properties sent through {@link #sendReportedPropertyCoalesced(Property, IotHubEventCallback, Object)}. Updates
+     * are buffered per key and sent as one patch every flushIntervalMilliseconds, or as soon as maxPendingProperties
+     * distinct keys are buffered, so that frequently changing values don't each cost a separate twin update.
+     *
+     * @param flushIntervalMilliseconds how often buffered updates are sent. Must be positive.
+     * @param maxPendingProperties the number of buffered keys that triggers a patch before the interval elapses. Must be positive.
+     * @throws IOException if called before starting twin.
+     * @throws IllegalArgumentException if flushIntervalMilliseconds or maxPendingProperties is not positive.
+     */
+    public void enableReportedPropertiesCoalescing(long flushIntervalMilliseconds, int maxPendingProperties) throws IOException, IllegalArgumentException
+    {
+        verifyTwinOperationsAreSupported();
+
+        if (this.twin == null)
+        {
+            throw new IOException("Start twin before using it");
+        }
+
+        this.twin.enableReportedPropertiesCoalescing(flushIntervalMilliseconds, maxPendingProperties, this.config.threadFactory);
+    }
+
+    /**
+     * Send any reported properties that are still buffered and stop coalescing. Does nothing if coalescing was not enabled.
+     */
+    public void disableReportedPropertiesCoalescing()
+    {
+        if (this.twin != null)
+        {
+            this.twin.disableReportedPropertiesCoalescing();
+        }
+    }
+
+    /**
+     * Buffer a reported property to be sent in the next coalesced patch. If the same key is reported again before the
+     * patch is sent, only the latest value is sent. Requires {@link #enableReportedPropertiesCoalescing(long, int)}.
+     *
+     * @param reportedProperty the reported property to send. Cannot be {@code null}.
+     * @param reportedPropertyCallback the callback to execute with the status of the patch that carried this update. Can be {@code null}.
+     * @param reportedPropertyCallbackContext the context to be passed to the callback. Can be {@code null}.
+     * @throws IOException if called when client is not opened or called before starting twin.
+     * @throws IllegalArgumentException if reportedProperty is null.
+     * @throws IllegalStateException if reported property coalescing has not been enabled.
+     */
+    public void sendReportedPropertyCoalesced(Property reportedProperty, IotHubEventCallback reportedPropertyCallback, Object reportedPropertyCallbackContext) throws IOException, IllegalArgumentException, IllegalStateException
+    {
+        verifyRegisteredIfMultiplexing();
+        verifyTwinOperationsAreSupported();
+
+        if (reportedProperty == null)
+        {
+            throw new IllegalArgumentException("Reported property cannot be null.");
+        }
+
+        verifyReportedProperties(Collections.singleton(reportedProperty));
+
+        this.twin.updateReportedPropertyCoalesced(reportedProperty, reportedPropertyCallback, reportedPropertyCallbackContext);
+    }
+
+    /**
+     * Send the coalesced reported properties now rather than waiting for the flush interval.
+     */
+    public void flushCoalescedReportedProperties()
+    {
+        if (this.twin != null)
+        {
+            this.twin.flushCoalescedReportedProperties();
+        }
+    }
+
     /**
      * Registers a callback to be executed when the connection status of the device changes. The callback will be fired
      * with a status and a reason why the device's status changed. When the callback is fired, the provided context will
@@ -469,6 +665,18 @@ public class InternalClient
         return this.config.getProductInfo();
     }
 
+    /**
+     * Get how the send rate limits of {@code ClientOptions.getSendRateOptions()} have held back sending.
+     *
+     * @return the statistics of this client's send rate, or null if its send rate is not limited.
+     */
+    public SendRateStatistics getSendRateStatistics()
+    {
+        verifyRegisteredIfMultiplexing();
+
+        return this.deviceIO.getSendRateStatistics(this.config.getDeviceId());
+    }
+
     /**
      * Getter for the device client config.
      *
@@ -1208,6 +1416,37 @@ public class InternalClient
         }
     }
 
+    private static MessageCompressor createMessageCompressor(ClientOptions clientOptions)
+    {
+        if (clientOptions.messageCompressionOptions == null)
+        {
+            return null;
+        }
+
+        return new MessageCompressor(clientOptions.messageCompressionOptions);
+    }
+
+    private static AmqpLinkCreditOptions verifyAmqpLinkCreditOptions(AmqpLinkCreditOptions amqpLinkCreditOptions)
+    {
+        if (amqpLinkCreditOptions != null
+                && (amqpLinkCreditOptions.getMessageLinkCredit() < 1
+                    || amqpLinkCreditOptions.getMethodsLinkCredit() < 1
+                    || amqpLinkCreditOptions.getTwinLinkCredit() < 1))
+        {
+            throw new IllegalArgumentException("AMQP link credit must be positive");
+        }
+
+        return amqpLinkCreditOptions;
+    }
+
+    private void compressIfEnabled(Message message)
+    {
+        if (this.messageCompressor != null)
+        {
+            this.messageCompressor.compress(message);
+        }
+    }
+
     private void verifyRegisteredIfMultiplexing()
     {
         // deviceIO is only ever null when a client was registered to a multiplexing client, became unregistered, and hasn't be re-registered yet.
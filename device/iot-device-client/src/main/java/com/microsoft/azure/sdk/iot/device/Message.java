@@ -7,6 +7,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
@@ -25,6 +26,8 @@ public class Message
 
     private static final String UTC_TIMEZONE = "UTC";
 
+    private static volatile MessageIdGenerator messageIdGenerator = new TimeOrderedMessageIdGenerator();
+
     // ----- Data Fields -----
 
     /**
@@ -66,6 +69,11 @@ public class Message
      */
     private MessageType messageType;
 
+    /**
+     * [Optional] Used to schedule this message against the other messages waiting to be sent by the same client
+     */
+    private MessagePriority priority;
+
     /**
      * [Optional] Used to specify the sender device client for multiplexing scenarios
      */
@@ -89,9 +97,10 @@ public class Message
     private String deliveryAcknowledgement;
 
     /**
-     * User-defined properties.
+     * User-defined properties, in the order they were set, keyed by their lower case name since property names are
+     * case insensitive.
      */
-    private ArrayList<MessageProperty> properties;
+    private LinkedHashMap<String, MessageProperty> properties;
 
     /**
      * The message body
@@ -148,6 +157,33 @@ public class Message
         this.body = body;
     }
 
+    /**
+     * Constructor. The remaining bytes of the buffer, from its position to its limit, become the body. If the buffer
+     * is backed by an accessible array that holds exactly those bytes, that array is used as the body without being
+     * copied, in the same way as {@link #Message(byte[])}. Otherwise the remaining bytes are copied once. The position
+     * of the provided buffer is not changed.
+     * @param body The body of the new Message instance.
+     */
+    public Message(ByteBuffer body)
+    {
+        if (body == null)
+        {
+            throw new IllegalArgumentException("Message body cannot be 'null'.");
+        }
+
+        initialize();
+
+        if (body.hasArray() && body.arrayOffset() + body.position() == 0 && body.remaining() == body.array().length)
+        {
+            this.body = body.array();
+        }
+        else
+        {
+            this.body = new byte[body.remaining()];
+            body.duplicate().get(this.body);
+        }
+    }
+
     /**
      * Constructor.
      * @param body The body of the new Message instance. It is internally serialized to a byte array using UTF-8 encoding.
@@ -168,6 +204,22 @@ public class Message
     
     // ----- Public Methods -----
 
+    /**
+     * Set the generator of the message ids of messages created after this call, and of the correlation ids generated
+     * for them. Applies to every client in this process.
+     * @param generator the generator to use. Cannot be null.
+     * @throws IllegalArgumentException if the generator is null.
+     */
+    public static void setMessageIdGenerator(MessageIdGenerator generator) throws IllegalArgumentException
+    {
+        if (generator == null)
+        {
+            throw new IllegalArgumentException("Message id generator cannot be null.");
+        }
+
+        messageIdGenerator = generator;
+    }
+
     /**
      * The stream content of the body.
      * @return always returns null.
@@ -194,6 +246,39 @@ public class Message
         return bodyClone;
     }
 
+    /**
+     * The content of the body as a read only view, without copying it.
+     * @return A read only buffer over this Message body, or null if this Message has no body.
+     */
+    public ByteBuffer getBodyBuffer()
+    {
+        if (this.body == null)
+        {
+            return null;
+        }
+
+        return ByteBuffer.wrap(this.body).asReadOnlyBuffer();
+    }
+
+    /**
+     * The byte content of the body, without copying it. Used by the transports so that a body is not copied on its
+     * way to the socket; the returned array must not be modified.
+     * @return This Message body, as a byte array, or null if this Message has no body.
+     */
+    public byte[] getBytesNoCopy()
+    {
+        return this.body;
+    }
+
+    /**
+     * Replace the body of this Message, such as with its compressed form. The array is used without being copied.
+     * @param body the new body. Cannot be null.
+     */
+    void setBody(byte[] body)
+    {
+        this.body = body;
+    }
+
     /**
      * Gets the values of user-defined properties of this Message.
      * @param name Name of the user-defined property to search for.
@@ -203,13 +288,9 @@ public class Message
     {
         MessageProperty messageProperty = null;
 
-        for (MessageProperty currentMessageProperty: this.properties)
+        if (name != null)
         {
-            if (currentMessageProperty.hasSameName(name))
-            {
-                messageProperty = currentMessageProperty;
-                break;
-            }
+            messageProperty = this.properties.get(toPropertyKey(name));
         }
 
         // Codes_SRS_MESSAGE_11_034: [If no value associated with the property name is found, the function shall return null.]
@@ -242,23 +323,12 @@ public class Message
         }
 
         // Codes_SRS_MESSAGE_11_026: [The function shall set the message property to the given value.]
-        MessageProperty messageProperty = null;
-
-        for (MessageProperty currentMessageProperty: this.properties)
-        {
-            if (currentMessageProperty.hasSameName(name))
-            {
-                messageProperty = currentMessageProperty;
-                break;
-            }
-        }
+        MessageProperty messageProperty = new MessageProperty(name, value);
 
-        if (messageProperty != null)
-        {
-            this.properties.remove(messageProperty);
-        }
-
-        this.properties.add(new MessageProperty(name, value));
+        // Removed first so that, as before, a replaced property moves to the end of the iteration order
+        String key = toPropertyKey(name);
+        this.properties.remove(key);
+        this.properties.put(key, messageProperty);
     }
 
     /**
@@ -269,19 +339,26 @@ public class Message
     public MessageProperty[] getProperties()
     {
         // Codes_SRS_MESSAGE_11_033: [The function shall return a copy of the message properties.]
-        return properties.toArray(new MessageProperty[this.properties.size()]);
+        return this.properties.values().toArray(new MessageProperty[this.properties.size()]);
     }
 
     // ----- Private Methods -----
 
+    private static String toPropertyKey(String name)
+    {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
     /**
      * Internal initializer method for a new Message instance.
      */
     private void initialize()
     {
-        this.messageId = UUID.randomUUID().toString();
-        this.correlationId = UUID.randomUUID().toString();
-        this.properties = new ArrayList<>();
+        this.messageId = messageIdGenerator.generateId();
+
+        // The correlation id is only generated once something needs to correlate this message with its response,
+        // see setCorrelatingMessageCallback
+        this.properties = new LinkedHashMap<>();
         this.isSecurityClient = false;
     }
 
@@ -395,6 +472,15 @@ public class Message
         this.expiryTime = absoluteTimeout;
     }
 
+    /**
+     * Getter for the expiryTime property as absolute time
+     * @return The time at which the message expires, in milliseconds since the epoch, or 0 if it never expires.
+     */
+    public long getAbsoluteExpiryTime()
+    {
+        return this.expiryTime;
+    }
+
     /**
      * Getter for the Message type
      * @return the Message type value
@@ -447,6 +533,35 @@ public class Message
         this.messageType = type;
     }
 
+    /**
+     * Getter for the Message priority
+     * @return the Message priority, which is {@link MessagePriority#NORMAL} unless set otherwise
+     */
+    public MessagePriority getPriority()
+    {
+        if (this.priority == null)
+        {
+            return MessagePriority.NORMAL;
+        }
+
+        return this.priority;
+    }
+
+    /**
+     * Setter for the Message priority. Only applies to telemetry messages.
+     * @param priority the priority of this message against the other messages waiting to be sent by the same client
+     * @throws IllegalArgumentException if the priority is null
+     */
+    public void setPriority(MessagePriority priority) throws IllegalArgumentException
+    {
+        if (priority == null)
+        {
+            throw new IllegalArgumentException("priority cannot be null");
+        }
+
+        this.priority = priority;
+    }
+
     /**
      * Getter for the To system property
      * @return the To value
@@ -639,8 +754,18 @@ public class Message
         return s.toString();
     }
 
+    /**
+     * Set the callback to notify as this message moves through the transport. The transport finds the callback by the
+     * correlation id of the message, so if this message has no correlation id yet, one is generated.
+     * @param correlatingMessageCallback the callback to notify.
+     */
     public void setCorrelatingMessageCallback(CorrelatingMessageCallback correlatingMessageCallback) {
         this.correlatingMessageCallback = correlatingMessageCallback;
+
+        if (correlatingMessageCallback != null && (this.correlationId == null || this.correlationId.isEmpty()))
+        {
+            this.correlationId = messageIdGenerator.generateId();
+        }
     }
 
     public CorrelatingMessageCallback getCorrelatingMessageCallback() {
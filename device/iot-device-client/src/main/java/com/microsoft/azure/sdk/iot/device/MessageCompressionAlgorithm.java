@@ -0,0 +1,36 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+/**
+ * The algorithms that {@link MessageCompressionOptions} can compress telemetry bodies with.
+ */
+public enum MessageCompressionAlgorithm
+{
+    /**
+     * The gzip file format (RFC 1952). Messages are sent with the content encoding "gzip".
+     */
+    GZIP("gzip"),
+
+    /**
+     * The zlib format (RFC 1950), optionally with a preset dictionary. Messages are sent with the content encoding
+     * "deflate".
+     */
+    DEFLATE("deflate");
+
+    private final String contentEncoding;
+
+    MessageCompressionAlgorithm(String contentEncoding)
+    {
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * @return the content encoding that messages compressed with this algorithm are sent with.
+     */
+    public String getContentEncoding()
+    {
+        return this.contentEncoding;
+    }
+}
@@ -0,0 +1,22 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+/**
+ * Callback that reports how well each telemetry message was compressed. See
+ * {@code MessageCompressionOptions.getCompressionCallback()}.
+ */
+public interface MessageCompressionCallback
+{
+    /**
+     * Executed on the thread that sent the message, after its body has been replaced by the compressed body and
+     * before it is queued.
+     *
+     * @param message the compressed message.
+     * @param originalSizeBytes the size of the body before compression.
+     * @param compressedSizeBytes the size of the body after compression.
+     * @param compressionTimeNanos the time spent compressing the body on the sending thread, in nanoseconds.
+     */
+    void onMessageCompressed(Message message, int originalSizeBytes, int compressedSizeBytes, long compressionTimeNanos);
+}
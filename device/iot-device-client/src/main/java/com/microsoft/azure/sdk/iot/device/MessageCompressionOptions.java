@@ -0,0 +1,76 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * The optional settings for compressing telemetry bodies before they are sent. If set on {@link ClientOptions}, each
+ * message passed to sendEventAsync or sendEventBatchAsync that is eligible is compressed and its content encoding is
+ * set to the content encoding of the algorithm.
+ *
+ * <p>A message is eligible if it has no content encoding yet, its body is at least {@code getMinimumBodySizeBytes()}
+ * bytes long and, if {@code getContentTypes()} is not empty, its content type is one of them. A message whose body
+ * does not get smaller is sent as it is.</p>
+ *
+ * <p>IoT Hub does not decompress message bodies, so messages routed by their body cannot be compressed, and the
+ * consumers of the messages need to decompress them based on their content encoding.</p>
+ */
+@Builder
+public final class MessageCompressionOptions
+{
+    /**
+     * The default value of {@code getMinimumBodySizeBytes()}. Smaller bodies rarely get smaller once the headers of
+     * the compressed format are added.
+     */
+    public static final int DEFAULT_MINIMUM_BODY_SIZE_BYTES = 1024;
+
+    /**
+     * The algorithm to compress bodies with. If unset, this will default to {@link MessageCompressionAlgorithm#GZIP}.
+     */
+    @Getter
+    @Builder.Default
+    private final MessageCompressionAlgorithm algorithm = MessageCompressionAlgorithm.GZIP;
+
+    /**
+     * The compression level, from 0 to 9. If unset, this will default to {@link Deflater#DEFAULT_COMPRESSION}.
+     */
+    @Getter
+    @Builder.Default
+    private final int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * Bodies smaller than this are sent uncompressed. If unset, this will default to
+     * {@link #DEFAULT_MINIMUM_BODY_SIZE_BYTES}.
+     */
+    @Getter
+    @Builder.Default
+    private final int minimumBodySizeBytes = DEFAULT_MINIMUM_BODY_SIZE_BYTES;
+
+    /**
+     * A preset dictionary, trained on representative message bodies, to compress with. Only supported by
+     * {@link MessageCompressionAlgorithm#DEFLATE}, and the consumers of the messages need the same dictionary to
+     * decompress them. If unset, no dictionary is used.
+     */
+    @Getter
+    private final byte[] dictionary;
+
+    /**
+     * The content types of the messages to compress, compared ignoring case. If unset or empty, messages of any
+     * content type are compressed.
+     */
+    @Getter
+    private final Set<String> contentTypes;
+
+    /**
+     * The callback to report the compression ratio and time of each compressed message to. If unset, nothing is
+     * reported.
+     */
+    @Getter
+    private final MessageCompressionCallback compressionCallback;
+}
@@ -0,0 +1,223 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses telemetry bodies according to a {@link MessageCompressionOptions}. Each sending thread gets its own
+ * {@link Deflater}, which is reset and reused for every message it compresses rather than allocated per message.
+ */
+@Slf4j
+final class MessageCompressor
+{
+    private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+    private static final int GZIP_TRAILER_LENGTH = 8;
+
+    private final MessageCompressionAlgorithm algorithm;
+    private final int compressionLevel;
+    private final int minimumBodySizeBytes;
+    private final byte[] dictionary;
+    private final Set<String> contentTypes = new HashSet<>();
+    private final MessageCompressionCallback compressionCallback;
+
+    private final ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>()
+    {
+        @Override
+        protected Deflater initialValue()
+        {
+            // gzip wraps raw deflate data in its own header and trailer; deflate is sent in the zlib format
+            return new Deflater(compressionLevel, algorithm == MessageCompressionAlgorithm.GZIP);
+        }
+    };
+
+    /**
+     * @param options the compression settings.
+     * @throws IllegalArgumentException if options is null, or if any of its values is invalid.
+     */
+    MessageCompressor(MessageCompressionOptions options) throws IllegalArgumentException
+    {
+        if (options == null)
+        {
+            throw new IllegalArgumentException("Message compression options cannot be null");
+        }
+
+        if (options.getAlgorithm() == null)
+        {
+            throw new IllegalArgumentException("Message compression algorithm cannot be null");
+        }
+
+        if (options.getCompressionLevel() != Deflater.DEFAULT_COMPRESSION
+                && (options.getCompressionLevel() < Deflater.NO_COMPRESSION || options.getCompressionLevel() > Deflater.BEST_COMPRESSION))
+        {
+            throw new IllegalArgumentException("Message compression level must be between 0 and 9");
+        }
+
+        if (options.getMinimumBodySizeBytes() < 0)
+        {
+            throw new IllegalArgumentException("Minimum body size for message compression cannot be negative");
+        }
+
+        if (options.getDictionary() != null && options.getAlgorithm() != MessageCompressionAlgorithm.DEFLATE)
+        {
+            throw new IllegalArgumentException("A compression dictionary can only be used with the deflate algorithm");
+        }
+
+        this.algorithm = options.getAlgorithm();
+        this.compressionLevel = options.getCompressionLevel();
+        this.minimumBodySizeBytes = options.getMinimumBodySizeBytes();
+        this.dictionary = options.getDictionary() != null ? Arrays.copyOf(options.getDictionary(), options.getDictionary().length) : null;
+        this.compressionCallback = options.getCompressionCallback();
+        if (options.getContentTypes() != null)
+        {
+            for (String contentType : options.getContentTypes())
+            {
+                if (contentType != null)
+                {
+                    this.contentTypes.add(contentType.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+    }
+
+    /**
+     * Compress the body of the provided message and set its content encoding if it is eligible for compression and
+     * its body gets smaller. Otherwise the message is left as it is.
+     *
+     * @param message the message to compress.
+     * @return true if the message was compressed.
+     */
+    boolean compress(Message message)
+    {
+        if (!isEligible(message))
+        {
+            return false;
+        }
+
+        byte[] body = message.getBytesNoCopy();
+        long startTimeNanos = System.nanoTime();
+        byte[] compressedBody = compress(body);
+        long compressionTimeNanos = System.nanoTime() - startTimeNanos;
+
+        if (compressedBody == null)
+        {
+            log.trace("Sending message ({}) uncompressed since compressing it would not make it smaller", message);
+            return false;
+        }
+
+        message.setBody(compressedBody);
+        message.setContentEncoding(this.algorithm.getContentEncoding());
+
+        if (this.compressionCallback != null)
+        {
+            try
+            {
+                this.compressionCallback.onMessageCompressed(message, body.length, compressedBody.length, compressionTimeNanos);
+            }
+            catch (RuntimeException e)
+            {
+                log.warn("Message compression callback threw an exception", e);
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isEligible(Message message)
+    {
+        if (message.getContentEncoding() != null)
+        {
+            // Already encoded by the application; compressing it again would make the content encoding wrong
+            return false;
+        }
+
+        byte[] body = message.getBytesNoCopy();
+        if (body == null || body.length < this.minimumBodySizeBytes)
+        {
+            return false;
+        }
+
+        if (!this.contentTypes.isEmpty())
+        {
+            String contentType = message.getContentType();
+            return contentType != null && this.contentTypes.contains(contentType.toLowerCase(Locale.ROOT));
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the compressed body, or null if it would not be smaller than the provided body.
+     */
+    private byte[] compress(byte[] body)
+    {
+        boolean isGzip = this.algorithm == MessageCompressionAlgorithm.GZIP;
+
+        // Anything that doesn't fit in the size of the original body isn't worth sending, so compression stops there
+        byte[] output = new byte[body.length];
+        int length = 0;
+        if (isGzip)
+        {
+            if (output.length < GZIP_HEADER.length + GZIP_TRAILER_LENGTH)
+            {
+                return null;
+            }
+
+            System.arraycopy(GZIP_HEADER, 0, output, 0, GZIP_HEADER.length);
+            length = GZIP_HEADER.length;
+        }
+
+        int outputLimit = isGzip ? output.length - GZIP_TRAILER_LENGTH : output.length;
+        Deflater deflater = this.deflaters.get();
+        try
+        {
+            if (this.dictionary != null)
+            {
+                deflater.setDictionary(this.dictionary);
+            }
+
+            deflater.setInput(body);
+            deflater.finish();
+            while (!deflater.finished() && length < outputLimit)
+            {
+                length += deflater.deflate(output, length, outputLimit - length);
+            }
+
+            if (!deflater.finished())
+            {
+                return null;
+            }
+        }
+        finally
+        {
+            deflater.reset();
+        }
+
+        if (isGzip)
+        {
+            CRC32 crc = new CRC32();
+            crc.update(body, 0, body.length);
+            length = writeIntLittleEndian(output, length, (int) crc.getValue());
+            length = writeIntLittleEndian(output, length, body.length);
+        }
+
+        return length < body.length ? Arrays.copyOf(output, length) : null;
+    }
+
+    private static int writeIntLittleEndian(byte[] output, int offset, int value)
+    {
+        output[offset] = (byte) value;
+        output[offset + 1] = (byte) (value >>> 8);
+        output[offset + 2] = (byte) (value >>> 16);
+        output[offset + 3] = (byte) (value >>> 24);
+        return offset + 4;
+    }
+}
@@ -0,0 +1,20 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+/**
+ * Generates the message id of every new {@link Message}, and the correlation id of messages that need one to be
+ * correlated with their response. The generator is set with {@link Message#setMessageIdGenerator(MessageIdGenerator)},
+ * and defaults to a {@link TimeOrderedMessageIdGenerator}.
+ * <p>
+ *     Implementations must be thread safe, as messages may be created on any number of threads at once.
+ * </p>
+ */
+public interface MessageIdGenerator
+{
+    /**
+     * @return a new id, unique among the ids of the messages sent by this process.
+     */
+    String generateId();
+}
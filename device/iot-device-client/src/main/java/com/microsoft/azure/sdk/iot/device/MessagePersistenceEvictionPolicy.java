@@ -0,0 +1,23 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+/**
+ * What a persistent outbound message queue does when storing another message would exceed
+ * {@code MessagePersistenceOptions.getMaxDiskUsageBytes()}.
+ */
+public enum MessagePersistenceEvictionPolicy
+{
+    /**
+     * Delete the oldest segment of stored messages to make room. The callbacks of the deleted messages that were not
+     * sent yet are executed with {@link IotHubStatusCode#ERROR}.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Keep the stored messages and reject the new message by throwing an {@link IllegalStateException} from the send
+     * call.
+     */
+    REJECT_NEW
+}
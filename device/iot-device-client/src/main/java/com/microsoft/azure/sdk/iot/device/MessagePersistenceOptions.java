@@ -0,0 +1,81 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.io.File;
+
+/**
+ * The optional settings for storing outbound telemetry on disk until IoT Hub acknowledges it. If set on
+ * {@link ClientOptions}, telemetry passed to sendEventAsync is appended to a journal of memory mapped segment files in
+ * {@code getDirectory()} instead of being held on the heap, and only up to {@code getMaxMessagesInMemory()} messages
+ * are read back from it at a time to be sent.
+ *
+ * <p>Messages that were not acknowledged by IoT Hub when the client was closed, or when the process stopped, are sent
+ * again the next time a client using the same directory is opened. Their callbacks are not executed since they
+ * belonged to the previous client. Messages can be sent more than once when the process stops between IoT Hub
+ * acknowledging them and the acknowledgement being recorded.</p>
+ *
+ * <p>Batches, messages with a correlating message callback, and twin and method messages are not stored. A directory
+ * must only be used by one client at a time, and persistence is not supported for multiplexed clients.</p>
+ */
+@Builder
+public final class MessagePersistenceOptions
+{
+    /**
+     * The default value of {@code getSegmentSizeBytes()}, 4 MB.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * The default value of {@code getMaxDiskUsageBytes()}, 256 MB.
+     */
+    public static final long DEFAULT_MAX_DISK_USAGE_BYTES = 256L * 1024 * 1024;
+
+    /**
+     * The default value of {@code getMaxMessagesInMemory()}.
+     */
+    public static final int DEFAULT_MAX_MESSAGES_IN_MEMORY = 1000;
+
+    /**
+     * The directory to store the journal in. It is created if it does not exist. Required.
+     */
+    @Getter
+    private final File directory;
+
+    /**
+     * The size of each segment file of the journal. Messages larger than this get a segment of their own. If unset,
+     * this will default to {@link #DEFAULT_SEGMENT_SIZE_BYTES}.
+     */
+    @Getter
+    @Builder.Default
+    private final int segmentSizeBytes = DEFAULT_SEGMENT_SIZE_BYTES;
+
+    /**
+     * The most disk space the segment files may take up. If unset, this will default to
+     * {@link #DEFAULT_MAX_DISK_USAGE_BYTES}.
+     */
+    @Getter
+    @Builder.Default
+    private final long maxDiskUsageBytes = DEFAULT_MAX_DISK_USAGE_BYTES;
+
+    /**
+     * What to do when storing another message would exceed {@code getMaxDiskUsageBytes()}. If unset, this will default
+     * to {@link MessagePersistenceEvictionPolicy#DROP_OLDEST}.
+     */
+    @Getter
+    @Builder.Default
+    private final MessagePersistenceEvictionPolicy evictionPolicy = MessagePersistenceEvictionPolicy.DROP_OLDEST;
+
+    /**
+     * The most stored messages that are read back into memory at a time, counting both the messages waiting to be
+     * sent and the messages waiting for an acknowledgement. If unset, this will default to
+     * {@link #DEFAULT_MAX_MESSAGES_IN_MEMORY}.
+     */
+    @Getter
+    @Builder.Default
+    private final int maxMessagesInMemory = DEFAULT_MAX_MESSAGES_IN_MEMORY;
+}
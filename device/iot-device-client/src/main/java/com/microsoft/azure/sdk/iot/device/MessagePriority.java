@@ -0,0 +1,17 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+/**
+ * How a telemetry message is scheduled against the other messages waiting to be sent by the same client. Messages of
+ * higher priority are sent more often, not exclusively, so a backlog of higher priority messages slows lower priority
+ * ones down without starving them. Direct method responses and twin operations are always scheduled ahead of all
+ * telemetry, whatever its priority. Messages of the same priority are sent in the order they were queued.
+ */
+public enum MessagePriority
+{
+    HIGH,
+    NORMAL,
+    LOW
+}
@@ -29,6 +29,14 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.security.NoSuchAlgorithmException;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Public API for communicating from Edge Modules. A ModuleClient can be used to send messages from an Edge module to an EdgeHub or an IotHub.
@@ -60,6 +68,16 @@ public class ModuleClient extends InternalClient
     private static final String IothubConnectionstringVariableName = "IotHubConnectionString";
     private static final String EdgeCaCertificateFileVariableName = "EdgeModuleCACertificateFile";
 
+    private static final int METHOD_INVOCATION_THREAD_COUNT = 10;
+    private static final long METHOD_INVOCATION_THREAD_KEEP_ALIVE_SECONDS = 60;
+    private static final String METHOD_INVOCATION_THREAD_NAME_PREFIX = "azure-iot-sdk-ModuleClient-invokeMethod-";
+
+    // Created on first use and shared by every method invocation, so that invocations reuse the same connections
+    // rather than each opening their own
+    private final Object methodInvocationLock = new Object();
+    private HttpsTransportManager methodInvocationTransportManager;
+    private ExecutorService methodInvocationExecutor;
+
     /**
      * Constructor for a ModuleClient instance.
      * @param connectionString The connection string for the edge module to connect to. Must be in format
@@ -374,6 +392,32 @@ public class ModuleClient extends InternalClient
         super(iotHubAuthenticationProvider, protocol, sendPeriodMillis, receivePeriodMillis);
     }
 
+    /**
+     * Closes the IoT hub client, as {@link InternalClient#close()} does, then waits for any method invocations started
+     * by {@link #invokeMethodAsync(String, MethodRequest)} to finish and releases the threads and connection they used.
+     *
+     * @throws IOException This exception is no longer thrown by this method.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        super.close();
+        this.closeMethodInvocation(true);
+    }
+
+    /**
+     * Closes the IoT hub client, as {@link InternalClient#closeNow()} does, and cancels any method invocations started
+     * by {@link #invokeMethodAsync(String, MethodRequest)} that have not started running yet.
+     *
+     * @throws IOException This exception is no longer thrown by this method.
+     */
+    @Override
+    public void closeNow() throws IOException
+    {
+        super.closeNow();
+        this.closeMethodInvocation(false);
+    }
+
     /**
      * Sends a message to a particular outputName asynchronously
      *
@@ -428,9 +472,7 @@ public class ModuleClient extends InternalClient
         try
         {
             //Codes_SRS_MODULECLIENT_34_033: [This function shall create an HttpsTransportManager and use it to invoke the method on the device.]
-            HttpsTransportManager httpsTransportManager = new HttpsTransportManager(this.config);
-            httpsTransportManager.open();
-            return httpsTransportManager.invokeMethod(methodRequest, deviceId, "");
+            return getMethodInvocationTransportManager().invokeMethod(methodRequest, deviceId, "");
         }
         catch (URISyntaxException | IOException | TransportException e)
         {
@@ -465,9 +507,7 @@ public class ModuleClient extends InternalClient
         try
         {
             //Codes_SRS_MODULECLIENT_34_035: [This function shall create an HttpsTransportManager and use it to invoke the method on the module.]
-            HttpsTransportManager httpsTransportManager = new HttpsTransportManager(this.config);
-            httpsTransportManager.open();
-            return httpsTransportManager.invokeMethod(methodRequest, deviceId, moduleId);
+            return getMethodInvocationTransportManager().invokeMethod(methodRequest, deviceId, moduleId);
         }
         catch (URISyntaxException | IOException | TransportException e)
         {
@@ -476,6 +516,161 @@ public class ModuleClient extends InternalClient
         }
     }
 
+    /**
+     * Invoke a method on a device without blocking the calling thread. Invocations run concurrently on a small pool
+     * of threads owned by this client, and share its connections to the hub.
+     * @param deviceId the device to invoke a method on
+     * @param methodRequest the request containing the method to invoke on the device
+     * @return a future holding the result of the method call. If the method cannot be invoked, {@link Future#get()}
+     * throws an ExecutionException caused by a {@link ModuleClientException}.
+     * @throws IllegalArgumentException if deviceid is null or empty
+     */
+    public Future<MethodResult> invokeMethodAsync(final String deviceId, final MethodRequest methodRequest) throws IllegalArgumentException
+    {
+        if (deviceId == null || deviceId.isEmpty())
+        {
+            throw new IllegalArgumentException("DeviceId cannot be null or empty");
+        }
+
+        return getMethodInvocationExecutor().submit(new Callable<MethodResult>()
+        {
+            @Override
+            public MethodResult call() throws ModuleClientException
+            {
+                return invokeMethod(deviceId, methodRequest);
+            }
+        });
+    }
+
+    /**
+     * Invoke a method on a module without blocking the calling thread. Invocations run concurrently on a small pool
+     * of threads owned by this client, and share its connections to the hub.
+     * @param deviceId the device the module belongs to
+     * @param moduleId the module to invoke the method on
+     * @param methodRequest the request containing the method to invoke on the module
+     * @return a future holding the result of the method call. If the method cannot be invoked, {@link Future#get()}
+     * throws an ExecutionException caused by a {@link ModuleClientException}.
+     * @throws IllegalArgumentException if deviceid is null or empty, or if moduleid is null or empty
+     */
+    public Future<MethodResult> invokeMethodAsync(final String deviceId, final String moduleId, final MethodRequest methodRequest) throws IllegalArgumentException
+    {
+        if (deviceId == null || deviceId.isEmpty())
+        {
+            throw new IllegalArgumentException("DeviceId cannot be null or empty");
+        }
+
+        if (moduleId == null || moduleId.isEmpty())
+        {
+            throw new IllegalArgumentException("ModuleId cannot be null or empty");
+        }
+
+        return getMethodInvocationExecutor().submit(new Callable<MethodResult>()
+        {
+            @Override
+            public MethodResult call() throws ModuleClientException
+            {
+                return invokeMethod(deviceId, moduleId, methodRequest);
+            }
+        });
+    }
+
+    private HttpsTransportManager getMethodInvocationTransportManager()
+    {
+        synchronized (this.methodInvocationLock)
+        {
+            if (this.methodInvocationTransportManager == null)
+            {
+                HttpsTransportManager httpsTransportManager = new HttpsTransportManager(this.config);
+                httpsTransportManager.open();
+                this.methodInvocationTransportManager = httpsTransportManager;
+            }
+
+            return this.methodInvocationTransportManager;
+        }
+    }
+
+    private ExecutorService getMethodInvocationExecutor()
+    {
+        synchronized (this.methodInvocationLock)
+        {
+            if (this.methodInvocationExecutor == null)
+            {
+                ThreadFactory threadFactory = this.config.threadFactory;
+                if (threadFactory == null)
+                {
+                    final AtomicInteger threadCount = new AtomicInteger();
+                    threadFactory = new ThreadFactory()
+                    {
+                        @Override
+                        public Thread newThread(Runnable runnable)
+                        {
+                            Thread thread = new Thread(runnable, METHOD_INVOCATION_THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    };
+                }
+
+                ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                        METHOD_INVOCATION_THREAD_COUNT,
+                        METHOD_INVOCATION_THREAD_COUNT,
+                        METHOD_INVOCATION_THREAD_KEEP_ALIVE_SECONDS,
+                        TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>(),
+                        threadFactory);
+
+                // Idle threads exit, so a client that rarely invokes methods doesn't hold on to them
+                executor.allowCoreThreadTimeOut(true);
+                this.methodInvocationExecutor = executor;
+            }
+
+            return this.methodInvocationExecutor;
+        }
+    }
+
+    private void closeMethodInvocation(boolean waitForInvocations)
+    {
+        ExecutorService executor;
+        HttpsTransportManager transportManager;
+        synchronized (this.methodInvocationLock)
+        {
+            executor = this.methodInvocationExecutor;
+            transportManager = this.methodInvocationTransportManager;
+            this.methodInvocationExecutor = null;
+            this.methodInvocationTransportManager = null;
+        }
+
+        if (executor != null)
+        {
+            if (waitForInvocations)
+            {
+                executor.shutdown();
+                try
+                {
+                    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            else
+            {
+                for (Runnable queuedInvocation : executor.shutdownNow())
+                {
+                    ((Future<?>) queuedInvocation).cancel(false);
+                }
+            }
+        }
+
+        // An invocation that is still running keeps using the transport it already holds, so the transport is only
+        // closed once none are left
+        if (transportManager != null && (executor == null || executor.isTerminated()))
+        {
+            transportManager.close();
+        }
+    }
+
     /**
      * Retrieves the twin's latest desired properties
      * @throws IOException if the iothub cannot be reached
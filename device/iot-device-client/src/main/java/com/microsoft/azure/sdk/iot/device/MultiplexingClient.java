@@ -134,6 +134,11 @@ public class MultiplexingClient
         this.sslContext = options != null ? options.getSslContext() : null;
         this.deviceIO = new DeviceIO(hostName, protocol, sslContext, proxySettings, sendPeriod, receivePeriod);
         this.deviceIO.setMaxNumberOfMessagesSentPerSendThread(sendMessagesPerThread);
+
+        if (options != null && options.getSendRateOptions() != null)
+        {
+            this.deviceIO.setSendRateOptions(options.getSendRateOptions());
+        }
     }
 
     /**
@@ -755,6 +760,16 @@ public class MultiplexingClient
         }
     }
 
+    /**
+     * Get how the send rate limits of {@code MultiplexingClientOptions.sendRateOptions} have held back sending.
+     *
+     * @return the statistics of the multiplexed connection's send rate, or null if its send rate is not limited.
+     */
+    public SendRateStatistics getSendRateStatistics()
+    {
+        return this.deviceIO.getSendRateStatistics(null);
+    }
+
     /**
      * Sets the given retry policy for the multiplexing client level connection management.
      * <a href="https://github.com/Azure/azure-iot-sdk-java/blob/master/device/iot-device-client/devdoc/requirement_docs/com/microsoft/azure/iothub/retryPolicy.md">
@@ -54,4 +54,13 @@ public class MultiplexingClientOptions
     @Getter
     @Setter
     private int maxMessagesSentPerSendThread;
+
+    /**
+     * The limits on how fast the multiplexed connection sends messages, for all of its devices together. Devices
+     * registered with send rate limits of their own are limited by those too. If unset, the connection sends as fast
+     * as it can.
+     */
+    @Getter
+    @Setter
+    private SendRateOptions sendRateOptions;
 }
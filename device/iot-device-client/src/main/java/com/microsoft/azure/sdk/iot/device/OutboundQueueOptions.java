@@ -0,0 +1,56 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * The optional bounds on the telemetry that a client holds in memory. If set on {@link ClientOptions}, the client
+ * accepts telemetry until the messages that are waiting to be sent or waiting for an acknowledgement reach
+ * {@code getMaxMessages()} messages or {@code getMaxBytes()} bytes of body, and applies {@code getOverflowPolicy()}
+ * to telemetry sent beyond that.
+ *
+ * <p>Twin and method messages are never held back by these bounds. Telemetry stored on disk through
+ * {@link MessagePersistenceOptions} is bounded by those options instead, and the bounds are not applied to
+ * multiplexed clients.</p>
+ */
+@Builder
+public final class OutboundQueueOptions
+{
+    /**
+     * The default value of {@code getMaxMessages()}.
+     */
+    public static final int DEFAULT_MAX_MESSAGES = 10000;
+
+    /**
+     * The default value of {@code getMaxBytes()}, 64 MB.
+     */
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * The most telemetry messages that may be waiting to be sent or waiting for an acknowledgement. Must be positive.
+     * If unset, this will default to {@link #DEFAULT_MAX_MESSAGES}.
+     */
+    @Getter
+    @Builder.Default
+    private final int maxMessages = DEFAULT_MAX_MESSAGES;
+
+    /**
+     * The most bytes of telemetry body that may be waiting to be sent or waiting for an acknowledgement. A single
+     * message larger than this is still accepted while no other telemetry is queued. Must be positive. If unset, this
+     * will default to {@link #DEFAULT_MAX_BYTES}.
+     */
+    @Getter
+    @Builder.Default
+    private final long maxBytes = DEFAULT_MAX_BYTES;
+
+    /**
+     * What to do with telemetry sent while the queue is full. If unset, this will default to
+     * {@link OutboundQueueOverflowPolicy#BLOCK}.
+     */
+    @Getter
+    @Builder.Default
+    private final OutboundQueueOverflowPolicy overflowPolicy = OutboundQueueOverflowPolicy.BLOCK;
+}
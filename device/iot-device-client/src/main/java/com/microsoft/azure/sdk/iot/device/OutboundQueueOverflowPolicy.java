@@ -0,0 +1,38 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+/**
+ * What a bounded outbound message queue does when accepting another message would exceed
+ * {@code OutboundQueueOptions.getMaxMessages()} or {@code OutboundQueueOptions.getMaxBytes()}. Messages that are
+ * rejected or dropped have their callbacks executed with {@link IotHubStatusCode#THROTTLED}, since they can be sent
+ * again once the queue has drained.
+ */
+public enum OutboundQueueOverflowPolicy
+{
+    /**
+     * Wait until enough queued messages were sent to make room for the new message. sendEventAsync blocks the calling
+     * thread while it waits, and the future returned by queueEventAsync completes once the message is accepted.
+     * Messages are accepted in the order they were waiting in.
+     */
+    BLOCK,
+
+    /**
+     * Reject the new message without waiting.
+     */
+    FAIL_FAST,
+
+    /**
+     * Drop the oldest messages that are waiting to be sent to make room for the new message. Messages that were
+     * already handed to the connection are not dropped, so the new message is rejected if none are waiting.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Drop the lowest priority messages that are waiting to be sent, oldest first, to make room for the new message.
+     * If the new message has a lower {@link MessagePriority} than every message waiting to be sent, it is rejected
+     * instead.
+     */
+    DROP_LOWEST_PRIORITY
+}
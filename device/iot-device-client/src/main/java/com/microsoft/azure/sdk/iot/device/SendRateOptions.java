@@ -0,0 +1,43 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * The optional limits on how fast a client sends messages, so that it stays under the device-to-cloud throttling of
+ * its IoT Hub's tier instead of running into it and backing off. If set on {@link ClientOptions}, messages are sent
+ * at most at {@code getMaxMessagesPerSecond()} and {@code getMaxBytesPerSecond()} of body, allowing bursts of up to one
+ * second's worth after sending was idle. If set on {@link MultiplexingClientOptions}, the limits apply to the
+ * multiplexed connection as a whole, in addition to the limits of each multiplexed device.
+ *
+ * <p>A message that is held back waits in the client's outbound queue, so the send call itself never waits for the
+ * rate. A message larger than a second's worth of bytes is still sent, after which sending waits until the bytes are
+ * paid back.</p>
+ */
+@Builder
+public final class SendRateOptions
+{
+    /**
+     * The most messages to send per second, or 0 to not limit the number of messages. Cannot be negative.
+     */
+    @Getter
+    private final double maxMessagesPerSecond;
+
+    /**
+     * The most bytes of message body to send per second, or 0 to not limit the bytes. Cannot be negative.
+     */
+    @Getter
+    private final long maxBytesPerSecond;
+
+    /**
+     * If true, the limits are halved each time IoT Hub throttles a message, down to a sixteenth of their configured
+     * values, and grow back by a tenth of their configured values for each second without throttling. If unset,
+     * this will default to true.
+     */
+    @Getter
+    @Builder.Default
+    private final boolean adaptiveToThrottling = true;
+}
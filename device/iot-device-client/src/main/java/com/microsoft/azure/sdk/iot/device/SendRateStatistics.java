@@ -0,0 +1,60 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+import lombok.Getter;
+
+/**
+ * A snapshot of how the limits of {@link SendRateOptions} have held back sending.
+ */
+public final class SendRateStatistics
+{
+    /**
+     * The number of messages that had to wait for the send rate before they were sent.
+     */
+    @Getter
+    private final long delayedMessageCount;
+
+    /**
+     * The total time that sending was held back by the send rate, in milliseconds.
+     */
+    @Getter
+    private final long totalDelayMillis;
+
+    /**
+     * The number of times IoT Hub throttled a message since the client was created.
+     */
+    @Getter
+    private final long throttledCount;
+
+    /**
+     * The current limit on messages per second after adapting to throttling, or 0 if messages are not limited.
+     */
+    @Getter
+    private final double currentMessagesPerSecond;
+
+    /**
+     * The current limit on bytes per second after adapting to throttling, or 0 if bytes are not limited.
+     */
+    @Getter
+    private final double currentBytesPerSecond;
+
+    /**
+     * Create a snapshot of send rate statistics.
+     *
+     * @param delayedMessageCount the number of messages that had to wait for the send rate.
+     * @param totalDelayMillis the total time that sending was held back, in milliseconds.
+     * @param throttledCount the number of times IoT Hub throttled a message.
+     * @param currentMessagesPerSecond the current limit on messages per second.
+     * @param currentBytesPerSecond the current limit on bytes per second.
+     */
+    public SendRateStatistics(long delayedMessageCount, long totalDelayMillis, long throttledCount, double currentMessagesPerSecond, double currentBytesPerSecond)
+    {
+        this.delayedMessageCount = delayedMessageCount;
+        this.totalDelayMillis = totalDelayMillis;
+        this.throttledCount = throttledCount;
+        this.currentMessagesPerSecond = currentMessagesPerSecond;
+        this.currentBytesPerSecond = currentBytesPerSecond;
+    }
+}
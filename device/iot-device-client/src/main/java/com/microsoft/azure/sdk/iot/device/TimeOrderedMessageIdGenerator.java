@@ -0,0 +1,30 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The default {@link MessageIdGenerator}. Ids are formatted as UUIDs whose first 48 bits are the creation time in
+ * milliseconds and whose other 74 free bits are random, in the layout of a version 7 UUID. The random bits come from
+ * a per thread generator, so unlike {@link UUID#randomUUID()} threads creating messages at the same time don't
+ * contend on a shared {@link java.security.SecureRandom}. Ids created in different milliseconds sort in creation order.
+ */
+public final class TimeOrderedMessageIdGenerator implements MessageIdGenerator
+{
+    private static final long VERSION_BITS = 0x7000L;
+    private static final long RANDOM_A_MASK = 0x0FFFL;
+    private static final long VARIANT_BITS = 0x8000000000000000L;
+    private static final long RANDOM_B_MASK = 0x3FFFFFFFFFFFFFFFL;
+
+    @Override
+    public String generateId()
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long mostSignificantBits = (System.currentTimeMillis() << 16) | VERSION_BITS | (random.nextLong() & RANDOM_A_MASK);
+        long leastSignificantBits = VARIANT_BITS | (random.nextLong() & RANDOM_B_MASK);
+        return new UUID(mostSignificantBits, leastSignificantBits).toString();
+    }
+}
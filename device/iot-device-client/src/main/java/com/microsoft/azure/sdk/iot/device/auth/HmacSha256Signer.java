@@ -0,0 +1,39 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.auth;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Signs with HMAC-SHA256 under one key. Looking up the provider of a {@link Mac} and initializing it with a key costs
+ * far more than signing a SAS token, so this does that once. It holds the key for as long as it is reachable, so it
+ * should only be held by whatever owns that key, and dropped along with it. Safe to use from any thread.
+ */
+final class HmacSha256Signer
+{
+    static final String HMAC_SHA_256 = "HmacSHA256";
+
+    private final Mac mac;
+
+    HmacSha256Signer(byte[] key) throws NoSuchAlgorithmException, InvalidKeyException
+    {
+        this.mac = Mac.getInstance(HMAC_SHA_256);
+        this.mac.init(new SecretKeySpec(key, HMAC_SHA_256));
+    }
+
+    /**
+     * Sign the given data.
+     *
+     * @param data the data to sign.
+     * @return the HMAC-SHA256 of the data.
+     */
+    synchronized byte[] sign(byte[] data)
+    {
+        // doFinal leaves the Mac reset, keyed and ready for the next signature
+        return this.mac.doFinal(data);
+    }
+}
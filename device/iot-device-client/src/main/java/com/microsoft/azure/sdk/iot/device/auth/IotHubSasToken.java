@@ -109,6 +109,23 @@ public final class IotHubSasToken
         }
     }
 
+    /**
+     * Constructor. Generates a SAS token that grants access to an IoT Hub for the specified amount of time, signed
+     * by the given signer rather than by a device key.
+     *
+     * @param hostname the hostname of the hub the token is for
+     * @param deviceId The id of the device the token is for
+     * @param moduleId the module id. May be null if the sas token is not for a module
+     * @param signer the signer keyed with the device key for connecting the device to the hub with
+     * @param expiryTime the time, as a UNIX timestamp, after which the token will become invalid
+     */
+    IotHubSasToken(String hostname, String deviceId, String moduleId, HmacSha256Signer signer, long expiryTime)
+    {
+        this.scope = IotHubUri.getResourceUri(hostname, deviceId, moduleId);
+        this.expiryTime = expiryTime;
+        this.signature = new Signature(this.scope, this.expiryTime, signer).toString();
+    }
+
     /**
      * Creates a shared access token from the provided audience, signature and expiry time
      * @param audience the audience of the token
@@ -31,7 +31,9 @@ public abstract class IotHubSasTokenAuthenticationProvider extends IotHubAuthent
 
     protected static final String ENCODING_FORMAT_NAME = StandardCharsets.UTF_8.displayName();
 
-    protected IotHubSasToken sasToken;
+    // Renewed by whichever transport thread asks for a token, so renewals are synchronized on this provider, and the
+    // token is volatile so that it can be read without the lock
+    protected volatile IotHubSasToken sasToken;
 
     public abstract boolean canRefreshToken();
     public abstract char[] getSasToken() throws IOException, TransportException;
@@ -75,6 +77,15 @@ public abstract class IotHubSasTokenAuthenticationProvider extends IotHubAuthent
         this.tokenValidSecs = tokenValidSecs;
     }
 
+    /**
+     * Drop any key material this provider keeps between sas token renewals. The client calls this when it closes.
+     * Providers that keep none, which is the default, have nothing to drop. The provider may still create sas tokens
+     * afterwards, such as when the client is opened again.
+     */
+    public void releaseSigningKey()
+    {
+    }
+
     /**
      * Returns true if the this authentication provider is no longer valid. If true, users will need to create a new
      * DeviceClient instance to get a new authentication provider. The most common case for this is if the user
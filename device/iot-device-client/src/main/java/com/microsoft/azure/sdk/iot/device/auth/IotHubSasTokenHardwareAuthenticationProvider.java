@@ -70,7 +70,7 @@ public class IotHubSasTokenHardwareAuthenticationProvider extends IotHubSasToken
      * @throws IOException if generating the sas token from the TPM fails
      * @return The value of SasToken
      */
-    public char[] getSasToken() throws IOException
+    public synchronized char[] getSasToken() throws IOException
     {
         String sasTokenString = this.generateSasTokenSignatureFromSecurityProvider(this.tokenValidSecs);
         this.sasToken = new IotHubSasToken(this.hostname, this.deviceId, null, sasTokenString, this.moduleId, 0);
@@ -18,7 +18,7 @@ import javax.net.ssl.SSLContext;
 public class IotHubSasTokenProvidedAuthenticationProvider extends IotHubSasTokenAuthenticationProvider
 {
     SasTokenProvider sasTokenProvider;
-    char[] lastSasToken;
+    volatile char[] lastSasToken;
 
     public IotHubSasTokenProvidedAuthenticationProvider(String hostName, String deviceId, String moduleId, SasTokenProvider sasTokenProvider, SSLContext sslContext) {
         super(hostName, null, deviceId, moduleId, sslContext);
@@ -53,7 +53,7 @@ public class IotHubSasTokenProvidedAuthenticationProvider extends IotHubSasToken
     }
 
     @Override
-    public char[] getSasToken()
+    public synchronized char[] getSasToken()
     {
         lastSasToken = sasTokenProvider.getSasToken();
         return lastSasToken;
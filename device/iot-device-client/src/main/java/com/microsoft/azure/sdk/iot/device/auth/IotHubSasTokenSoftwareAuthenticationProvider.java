@@ -9,12 +9,19 @@ import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
 
 import javax.net.ssl.SSLContext;
 import java.io.IOException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
 
 public class IotHubSasTokenSoftwareAuthenticationProvider extends IotHubSasTokenAuthenticationProvider
 {
     @SuppressWarnings("CanBeFinal") // Class can be inherited
     protected String deviceKey;
 
+    // Keyed with signerDeviceKey, so that renewals don't initialize a new HMAC each time. Dropped when the client
+    // closes, and replaced if the device key changes.
+    private HmacSha256Signer signer;
+    private String signerDeviceKey;
+
     /**
      * Constructor that takes a connection string containing a sas token or a device key
      *
@@ -94,13 +101,13 @@ public class IotHubSasTokenSoftwareAuthenticationProvider extends IotHubSasToken
     }
 
     @Override
-    public void setTokenValidSecs(long tokenValidSecs)
+    public synchronized void setTokenValidSecs(long tokenValidSecs)
     {
         super.setTokenValidSecs(tokenValidSecs);
 
         if (this.deviceKey != null)
         {
-            this.sasToken = new IotHubSasToken(this.hostname, this.deviceId, this.deviceKey, null, this.moduleId, getExpiryTimeInSeconds());
+            this.sasToken = new IotHubSasToken(this.hostname, this.deviceId, this.moduleId, getSigner(), getExpiryTimeInSeconds());
         }
     }
 
@@ -117,16 +124,43 @@ public class IotHubSasTokenSoftwareAuthenticationProvider extends IotHubSasToken
      * @return The value of SasToken
      */
     @Override
-    public char[] getSasToken() throws IOException, TransportException
+    public synchronized char[] getSasToken() throws IOException, TransportException
     {
         if (this.deviceKey != null)
         {
             //Codes_SRS_IOTHUBSASTOKENSOFTWAREAUTHENTICATION_34_004: [If the saved sas token has expired and there is a device key present, the saved sas token shall be renewed.]
             //Codes_SRS_IOTHUBSASTOKENAUTHENTICATION_34_006: [If the saved sas token has not expired and there is a device key present, but this method is called to proactively renew and the token should renew, the saved sas token shall be renewed.]
-            this.sasToken = new IotHubSasToken(this.hostname, this.deviceId, this.deviceKey, null, this.moduleId, getExpiryTimeInSeconds());
+            this.sasToken = new IotHubSasToken(this.hostname, this.deviceId, this.moduleId, getSigner(), getExpiryTimeInSeconds());
         }
 
         //Codes_SRS_IOTHUBSASTOKENSOFTWAREAUTHENTICATION_34_005: [This function shall return the saved sas token.]
         return this.sasToken.toString().toCharArray();
     }
+
+    @Override
+    public synchronized void releaseSigningKey()
+    {
+        this.signer = null;
+        this.signerDeviceKey = null;
+    }
+
+    // Must be called while holding this provider's monitor
+    private HmacSha256Signer getSigner()
+    {
+        if (this.signer == null || !this.deviceKey.equals(this.signerDeviceKey))
+        {
+            try
+            {
+                this.signer = new HmacSha256Signer(SignatureHelper.decodeDeviceKeyBase64(this.deviceKey));
+                this.signerDeviceKey = this.deviceKey;
+            }
+            catch (NoSuchAlgorithmException | InvalidKeyException e)
+            {
+                // will never happen since the algorithm is hard-coded and any decoded device key is a valid HMAC key
+                throw new IllegalStateException(e);
+            }
+        }
+
+        return this.signer;
+    }
 }
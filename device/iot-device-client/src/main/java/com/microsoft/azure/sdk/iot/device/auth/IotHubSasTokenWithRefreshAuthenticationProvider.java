@@ -82,7 +82,7 @@ public abstract class IotHubSasTokenWithRefreshAuthenticationProvider extends Io
      * @throws TransportException If a TransportException is encountered while refreshing the sas token
      */
     @Override
-    public char[] getSasToken() throws IOException, TransportException
+    public synchronized char[] getSasToken() throws IOException, TransportException
     {
         log.debug("Renewing the internal sas token");
         this.refreshSasToken();
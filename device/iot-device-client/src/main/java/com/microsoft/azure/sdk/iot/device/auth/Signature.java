@@ -23,9 +23,28 @@ public final class Signature
         byte[] rawSig = SignatureHelper.buildRawSignature(resourceUri, expiryTime);
         byte[] decodedDeviceKey = SignatureHelper.decodeDeviceKeyBase64(deviceKey);
         byte[] encryptedSig = SignatureHelper.encryptSignatureHmacSha256(rawSig, decodedDeviceKey);
+        this.sig = encode(encryptedSig);
+    }
+
+    /**
+     * Constructs a {@code Signature} instance from the given resource URI,
+     * expiry time and a signer keyed with the device key.
+     * @param resourceUri the resource URI.
+     * @param expiryTime the time, as a UNIX timestamp, after which the token
+     * will become invalid.
+     * @param signer the signer keyed with the device key.
+     */
+    Signature(String resourceUri, long expiryTime, HmacSha256Signer signer)
+    {
+        byte[] rawSig = SignatureHelper.buildRawSignature(resourceUri, expiryTime);
+        this.sig = encode(signer.sign(rawSig));
+    }
+
+    private static String encode(byte[] encryptedSig)
+    {
         byte[] encryptedSigBase64 = SignatureHelper.encodeSignatureBase64(encryptedSig);
         String utf8Sig = SignatureHelper.encodeSignatureUtf8(encryptedSigBase64);
-        this.sig = SignatureHelper.encodeSignatureWebSafe(utf8Sig);
+        return SignatureHelper.encodeSignatureWebSafe(utf8Sig);
     }
 
     /**
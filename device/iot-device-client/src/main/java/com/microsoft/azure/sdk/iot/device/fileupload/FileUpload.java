@@ -15,6 +15,9 @@ import java.util.Queue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Provide means to upload file in the Azure Storage using the IoTHub.
@@ -23,6 +26,7 @@ import java.util.concurrent.ScheduledExecutorService;
 public final class FileUpload
 {
     private static final int MAX_UPLOAD_PARALLEL = 10;
+    private static final long IDLE_UPLOAD_THREAD_KEEP_ALIVE_SECONDS = 60;
 
     private final HttpsTransportManager httpsTransportManager;
     private final ScheduledExecutorService taskScheduler;
@@ -37,6 +41,19 @@ public final class FileUpload
      * @throws IOException if cannot create the artifacts to control the file upload.
      */
     public FileUpload(DeviceClientConfig config) throws IllegalArgumentException, IOException
+    {
+        this(config, null);
+    }
+
+    /**
+     * CONSTRUCTOR
+     *
+     * @param config is the set of device client configurations.
+     * @param threadFactory is the factory for the upload threads. May be {@code null} to use the default thread factory.
+     * @throws IllegalArgumentException if the config is null.
+     * @throws IOException if cannot create the artifacts to control the file upload.
+     */
+    public FileUpload(DeviceClientConfig config, ThreadFactory threadFactory) throws IllegalArgumentException, IOException
     {
         if(config == null)
         {
@@ -50,7 +67,21 @@ public final class FileUpload
 
         try
         {
-            taskScheduler = Executors.newScheduledThreadPool(MAX_UPLOAD_PARALLEL);
+            if (threadFactory == null)
+            {
+                taskScheduler = Executors.newScheduledThreadPool(MAX_UPLOAD_PARALLEL);
+            }
+            else
+            {
+                taskScheduler = Executors.newScheduledThreadPool(MAX_UPLOAD_PARALLEL, threadFactory);
+            }
+
+            if (taskScheduler instanceof ThreadPoolExecutor)
+            {
+                // Uploads are rare, so don't keep up to MAX_UPLOAD_PARALLEL threads alive between them
+                ((ThreadPoolExecutor) taskScheduler).setKeepAliveTime(IDLE_UPLOAD_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+                ((ThreadPoolExecutor) taskScheduler).allowCoreThreadTimeOut(true);
+            }
         }
         catch (IllegalArgumentException | NullPointerException e)
         {
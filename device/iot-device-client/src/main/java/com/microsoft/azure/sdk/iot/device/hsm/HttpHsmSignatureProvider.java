@@ -28,6 +28,11 @@ public class HttpHsmSignatureProvider implements SignatureProvider
     private static final String DEFAULT_KEY_ID = "primary";
     private final Mac defaultSignRequestAlgo = Mac.getInstance(MAC);
 
+    // Identical data is only requested again while the sas token expiry bucket it encodes is current, so entries
+    // don't need to outlive the largest bucket
+    private static final long SIGNATURE_CACHE_ENTRY_LIFETIME_MILLISECONDS = IotHubSasTokenHsmAuthenticationProvider.MAX_EXPIRY_BUCKET_SECONDS * 1000;
+    private final SignatureCache signatureCache = new SignatureCache(SIGNATURE_CACHE_ENTRY_LIFETIME_MILLISECONDS);
+
     private final String apiVersion;
     private final HttpsHsmClient httpClient;
 
@@ -62,7 +67,9 @@ public class HttpHsmSignatureProvider implements SignatureProvider
     }
 
     /**
-     * Sign the provided data using the provided key name
+     * Sign the provided data using the provided key name. Signatures are cached briefly, and identical concurrent
+     * requests share a single call to the HSM, so that many connections renewing the same token at once cost only one
+     * round trip.
      * @param keyName the key used for signing
      * @param data the data to be signed
      * @param generationId the generation id
@@ -71,7 +78,7 @@ public class HttpHsmSignatureProvider implements SignatureProvider
      * @throws TransportException If the http client cannot reach the signing party
      * @throws URISyntaxException If the url for the signing party cannot be parsed
      */
-    public String sign(String keyName, String data, String generationId) throws IOException, TransportException, URISyntaxException, HsmException
+    public String sign(final String keyName, final String data, final String generationId) throws IOException, TransportException, URISyntaxException, HsmException
     {
         if (data == null || data.isEmpty())
         {
@@ -79,6 +86,34 @@ public class HttpHsmSignatureProvider implements SignatureProvider
             throw new IllegalArgumentException("Data cannot be null or empty");
         }
 
+        return this.signatureCache.getOrSign(keyName, data, generationId, new SignatureCache.Signer()
+        {
+            @Override
+            public String sign() throws IOException, TransportException, URISyntaxException, HsmException
+            {
+                return signWithHsm(keyName, data, generationId);
+            }
+        });
+    }
+
+    /**
+     * @return the number of sign requests answered from the signature cache or by an identical request already in flight.
+     */
+    public long getSignatureCacheHitCount()
+    {
+        return this.signatureCache.getHitCount();
+    }
+
+    /**
+     * @return the number of sign requests that were sent to the HSM.
+     */
+    public long getSignatureCacheMissCount()
+    {
+        return this.signatureCache.getMissCount();
+    }
+
+    private String signWithHsm(String keyName, String data, String generationId) throws IOException, TransportException, URISyntaxException, HsmException
+    {
         // Codes_SRS_HTTPHSMSIGNATUREPROVIDER_34_006: [This function shall create a signRequest for the hsm http client to sign, and shall return the utf-8 encoded result of that signing.]
         SignRequest signRequest = new SignRequest();
         signRequest.setAlgo(defaultSignRequestAlgo);
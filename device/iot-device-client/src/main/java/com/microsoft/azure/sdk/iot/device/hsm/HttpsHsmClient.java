@@ -13,14 +13,9 @@ import com.microsoft.azure.sdk.iot.device.hsm.parser.TrustBundleResponse;
 import com.microsoft.azure.sdk.iot.device.transport.https.HttpsMethod;
 import com.microsoft.azure.sdk.iot.device.transport.https.HttpsRequest;
 import com.microsoft.azure.sdk.iot.device.transport.https.HttpsResponse;
-import jnr.unixsocket.UnixSocketAddress;
-import jnr.unixsocket.UnixSocketChannel;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.StringReader;
 import java.net.*;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
@@ -37,6 +32,14 @@ public class HttpsHsmClient
 
     private static final String API_VERSION_QUERY_STRING_PREFIX = "api-version=";
 
+    private static final int MAX_IDLE_UNIX_SOCKET_CONNECTIONS_PER_PATH = 4;
+    private static final long MAX_UNIX_SOCKET_CONNECTION_IDLE_TIME_MILLISECONDS = 30 * 1000;
+
+    // Shared by all clients so that, for example, the signature provider and trust bundle provider of a module reuse
+    // each other's connections to the workload socket
+    private static final UnixDomainSocketConnectionPool unixSocketConnectionPool =
+            new UnixDomainSocketConnectionPool(MAX_IDLE_UNIX_SOCKET_CONNECTIONS_PER_PATH, MAX_UNIX_SOCKET_CONNECTION_IDLE_TIME_MILLISECONDS);
+
     /**
      * Client object for sending sign requests to an HSM unit
      * @param baseUrl The base url of the HSM
@@ -223,7 +226,8 @@ public class HttpsHsmClient
     }
 
     /**
-     * Send an HTTP request over a unix domain socket
+     * Send an HTTP request over a unix domain socket. Connections are kept alive and shared by every client that
+     * talks to the same socket, so an idle connection from a previous request is reused when one is available.
      * @param httpsRequest the request to send
      * @return the response from the HSM unit
      * @throws IOException If the unix socket cannot be reached
@@ -232,75 +236,51 @@ public class HttpsHsmClient
     {
         log.debug("Sending data over unix socket...");
 
-        UnixSocketChannel channel = null;
-        HttpsResponse response;
-        try
+        byte[] requestBytes = HttpsRequestResponseSerializer.serializeRequest(httpsRequest, httpRequestPath, httpRequestQueryString, unixSocketAddress, true);
+        byte[] body = httpsRequest.getBody();
+        ByteBuffer request = ByteBuffer.allocate(requestBytes.length + (body != null ? body.length : 0));
+        request.put(requestBytes);
+        if (body != null)
         {
-            //write to socket
-            byte[] requestBytes = HttpsRequestResponseSerializer.serializeRequest(httpsRequest, httpRequestPath, httpRequestQueryString, unixSocketAddress);
-            UnixSocketAddress address = new UnixSocketAddress(unixSocketAddress);
-            channel = UnixSocketChannel.open(address);
+            request.put(body);
+        }
 
-            if (httpsRequest.getBody() != null)
-            {
-                //append http request body to the request bytes
-                ByteArrayOutputStream outputStream = new ByteArrayOutputStream( );
-                outputStream.write(requestBytes);
-                outputStream.write(httpsRequest.getBody());
+        request.flip();
 
-                channel.write(ByteBuffer.wrap(outputStream.toByteArray()));
-            }
-            else
-            {
-                channel.write(ByteBuffer.wrap(requestBytes));
-            }
-
-            //read response
-            String responseString = readResponseFromChannel(channel);
-            response = HttpsRequestResponseSerializer.deserializeResponse(new BufferedReader(new StringReader(responseString)));
-        }
-        finally
+        UnixDomainSocketConnectionPool.Connection connection = unixSocketConnectionPool.acquire(unixSocketAddress);
+        while (true)
         {
-            if (channel != null)
+            boolean isReusable = false;
+            try
             {
-                log.trace("Closing unix socket channel...");
-                channel.close();
+                connection.write(request.duplicate());
+                HttpsResponse response = HttpsRequestResponseSerializer.readResponse(connection.getInputStream());
+                isReusable = HttpsRequestResponseSerializer.isConnectionReusable(response);
+                return response;
             }
-        }
-
-        return response;
-    }
-
-    private String readResponseFromChannel(UnixSocketChannel channel) throws IOException
-    {
-        log.debug("Reading response from unix socket channel...");
+            catch (IOException e)
+            {
+                if (!connection.isReused())
+                {
+                    throw e;
+                }
 
-        ByteBuffer buf = ByteBuffer.allocateDirect(10);
-        StringBuilder response = new StringBuilder();
-        int numRead = 0;
-        while (numRead >= 0)
-        {
-            // read() places read bytes at the buffer's position so the
-            // position should always be properly set before calling read()
-            // This method sets the position to 0
-            buf.rewind();
-
-            // Read bytes from the channel
-            numRead = channel.read(buf);
-
-            // The read() method also moves the position so in order to
-            // read the new bytes, the buffer's position must be
-            // set back to 0
-            buf.rewind();
-
-            // Read bytes from ByteBuffer; see also
-            // e159 Getting Bytes from a ByteBuffer
-            for (int i=0; i<numRead; i++)
+                // The HSM may close a keep-alive connection while it sits idle in the pool, so retry once on a new one
+                log.debug("Pooled unix socket connection failed, retrying on a new connection", e);
+            }
+            finally
             {
-                response.append(new String(new byte[]{buf.get()}, StandardCharsets.US_ASCII));
+                if (isReusable)
+                {
+                    unixSocketConnectionPool.release(connection);
+                }
+                else
+                {
+                    connection.close();
+                }
             }
-        }
 
-        return response.toString();
+            connection = unixSocketConnectionPool.open(unixSocketAddress);
+        }
     }
 }
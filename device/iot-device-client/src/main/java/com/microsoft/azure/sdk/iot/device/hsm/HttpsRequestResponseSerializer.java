@@ -9,7 +9,9 @@ import com.microsoft.azure.sdk.iot.device.transport.https.HttpsRequest;
 import com.microsoft.azure.sdk.iot.device.transport.https.HttpsResponse;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 
@@ -24,6 +26,17 @@ public class HttpsRequestResponseSerializer
     private static final String VERSION = "1.1";
 
     private static final long MAXIMUM_HEADER_COUNT = 500;
+    private static final int MAXIMUM_LINE_LENGTH = 8 * 1024;
+
+    private static final String CONNECTION_HEADER = "Connection";
+    private static final String CONNECTION_CLOSE = "close";
+    private static final String CONNECTION_KEEP_ALIVE = "keep-alive";
+    private static final String CONTENT_LENGTH_HEADER = "Content-Length";
+    private static final String TRANSFER_ENCODING_HEADER = "Transfer-Encoding";
+    private static final String TRANSFER_ENCODING_CHUNKED = "chunked";
+    private static final int SWITCHING_PROTOCOLS_STATUS = 101;
+    private static final int NO_CONTENT_STATUS = 204;
+    private static final int NOT_MODIFIED_STATUS = 304;
 
     /**
      * Serialize the provided request
@@ -36,6 +49,23 @@ public class HttpsRequestResponseSerializer
      * @throws IllegalArgumentException if the provided httpsRequest is null or has a null request url
      */
     public static byte[] serializeRequest(HttpsRequest httpsRequest, String path, String queryString, String host) throws IllegalArgumentException
+    {
+        return serializeRequest(httpsRequest, path, queryString, host, false);
+    }
+
+    /**
+     * Serialize the provided request
+     *
+     * @param httpsRequest the request to be serialized
+     * @param path the path for the request to invoke on (e.g. /trust-bundle)
+     * @param queryString the full querystring associated with the http request. Should not include the '?' character at the beginning
+     * @param host the host that the request is being made to
+     * @param keepAlive if true, the request asks the server to keep the connection open after responding. Otherwise
+     * the request asks the server to close it.
+     * @return the serialized request
+     * @throws IllegalArgumentException if the provided httpsRequest is null or has a null request url
+     */
+    public static byte[] serializeRequest(HttpsRequest httpsRequest, String path, String queryString, String host, boolean keepAlive) throws IllegalArgumentException
     {
         if (httpsRequest == null)
         {
@@ -61,7 +91,7 @@ public class HttpsRequestResponseSerializer
         // <header>: <value1>; <value2>
         // .]
 
-        httpsRequest.setHeaderField("Connection", "close");
+        httpsRequest.setHeaderField(CONNECTION_HEADER, keepAlive ? CONNECTION_KEEP_ALIVE : CONNECTION_CLOSE);
 
         String updatedPath = preProcessRequestPath(path);
 
@@ -164,6 +194,281 @@ public class HttpsRequestResponseSerializer
         return new HttpsResponse(statusCode, body, headerFields, errorReason);
     }
 
+    /**
+     * Read exactly one http response from the provided stream. Unlike {@link #deserializeResponse(BufferedReader)},
+     * the body is delimited by its Content-Length header or chunked transfer encoding rather than by the end of the
+     * stream, so the stream is left positioned at the start of the next response and is not closed. Interim 1xx
+     * responses are skipped over, and 204 and 304 responses never have a body.
+     *
+     * @param inputStream the stream to read from
+     * @return the deserialized response
+     * @throws IOException if the stream cannot be read from, or if it ends before the response is complete
+     */
+    public static HttpsResponse readResponse(InputStream inputStream) throws IOException
+    {
+        if (inputStream == null)
+        {
+            throw new IllegalArgumentException("input stream cannot be null");
+        }
+
+        String statusLine = readLine(inputStream);
+        if (statusLine == null || statusLine.isEmpty())
+        {
+            throw new IOException("Response is empty.");
+        }
+
+        // The reason phrase may itself contain spaces, such as "404 Not Found"
+        String[] statusLineParts = statusLine.split(SP, 3);
+        if (statusLineParts.length != 3)
+        {
+            throw new IOException("Status line is not valid.");
+        }
+
+        if (statusLineParts[0].split(ProtocolVersionSeparator).length != 2)
+        {
+            throw new IOException("Version is not valid " + statusLineParts[0] + ".");
+        }
+
+        int statusCode;
+        try
+        {
+            statusCode = Integer.parseInt(statusLineParts[1]);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IOException("StatusCode is not valid " + statusLineParts[1] + ".");
+        }
+
+        Map<String, List<String>> headerFields = new HashMap<>();
+        String line = readLine(inputStream);
+        while (line != null && !line.isEmpty())
+        {
+            if (headerFields.size() > MAXIMUM_HEADER_COUNT)
+            {
+                throw new IOException("HSM provided too many http headers");
+            }
+
+            int headerSeparatorPosition = line.indexOf(HeaderSeparator);
+            if (headerSeparatorPosition <= 0)
+            {
+                throw new IOException("Header is invalid " + line + ".");
+            }
+
+            String headerName = line.substring(0, headerSeparatorPosition).trim();
+            String headerValue = line.substring(headerSeparatorPosition + 1).trim();
+            List<String> headerValues = headerFields.get(headerName);
+            if (headerValues == null)
+            {
+                headerValues = new ArrayList<>(1);
+                headerFields.put(headerName, headerValues);
+            }
+
+            headerValues.add(headerValue);
+            line = readLine(inputStream);
+        }
+
+        if (line == null)
+        {
+            throw new IOException("Response ended before the end of its headers.");
+        }
+
+        if (isInterimStatus(statusCode))
+        {
+            // The final response follows on the same stream
+            return readResponse(inputStream);
+        }
+
+        byte[] body;
+        String transferEncoding = findHeaderValue(headerFields, TRANSFER_ENCODING_HEADER);
+        String contentLength = findHeaderValue(headerFields, CONTENT_LENGTH_HEADER);
+        if (hasNoBody(statusCode))
+        {
+            body = new byte[0];
+        }
+        else if (transferEncoding != null && transferEncoding.toLowerCase().contains(TRANSFER_ENCODING_CHUNKED))
+        {
+            body = readChunkedBody(inputStream);
+        }
+        else if (contentLength != null)
+        {
+            try
+            {
+                body = readFully(inputStream, Integer.parseInt(contentLength));
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IOException("Content-Length is not valid " + contentLength + ".");
+            }
+        }
+        else
+        {
+            body = readToEnd(inputStream);
+        }
+
+        return new HttpsResponse(statusCode, body, headerFields, statusLineParts[2].getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param response a response read by {@link #readResponse(InputStream)}
+     * @return true if the connection that the response was read from can be used to send another request. That is,
+     * the server did not ask to close it and the body was delimited by something other than the end of the stream.
+     */
+    static boolean isConnectionReusable(HttpsResponse response)
+    {
+        boolean isBodyDelimited = hasNoBody(response.getStatus());
+        for (Map.Entry<String, String> header : response.getHeaderFields().entrySet())
+        {
+            if (header.getKey().equalsIgnoreCase(CONNECTION_HEADER)
+                    && header.getValue().toLowerCase().contains(CONNECTION_CLOSE))
+            {
+                return false;
+            }
+
+            if (header.getKey().equalsIgnoreCase(CONTENT_LENGTH_HEADER)
+                    || (header.getKey().equalsIgnoreCase(TRANSFER_ENCODING_HEADER) && header.getValue().toLowerCase().contains(TRANSFER_ENCODING_CHUNKED)))
+            {
+                isBodyDelimited = true;
+            }
+        }
+
+        return isBodyDelimited;
+    }
+
+    private static boolean isInterimStatus(int statusCode)
+    {
+        return statusCode >= 100 && statusCode < 200 && statusCode != SWITCHING_PROTOCOLS_STATUS;
+    }
+
+    private static boolean hasNoBody(int statusCode)
+    {
+        return (statusCode >= 100 && statusCode < 200) || statusCode == NO_CONTENT_STATUS || statusCode == NOT_MODIFIED_STATUS;
+    }
+
+    private static String findHeaderValue(Map<String, List<String>> headerFields, String headerName)
+    {
+        for (Map.Entry<String, List<String>> header : headerFields.entrySet())
+        {
+            if (header.getKey().equalsIgnoreCase(headerName) && !header.getValue().isEmpty())
+            {
+                return header.getValue().get(header.getValue().size() - 1);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Read a CRLF (or bare LF) terminated ASCII line, without the line terminator.
+     * @return the line, or null if the stream ended before any byte of the line was read
+     */
+    private static String readLine(InputStream inputStream) throws IOException
+    {
+        StringBuilder line = new StringBuilder();
+        int next = inputStream.read();
+        if (next < 0)
+        {
+            return null;
+        }
+
+        while (next >= 0 && next != '\n')
+        {
+            if (next != '\r')
+            {
+                if (line.length() >= MAXIMUM_LINE_LENGTH)
+                {
+                    throw new IOException("HSM provided an http line longer than " + MAXIMUM_LINE_LENGTH + " characters");
+                }
+
+                line.append((char) next);
+            }
+
+            next = inputStream.read();
+        }
+
+        return line.toString();
+    }
+
+    private static byte[] readChunkedBody(InputStream inputStream) throws IOException
+    {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        while (true)
+        {
+            String chunkSizeLine = readLine(inputStream);
+            if (chunkSizeLine == null)
+            {
+                throw new IOException("Response ended before the end of its chunked body.");
+            }
+
+            // Chunk extensions follow a ';' and carry nothing this client needs
+            int extensionPosition = chunkSizeLine.indexOf(';');
+            String chunkSizeString = (extensionPosition >= 0 ? chunkSizeLine.substring(0, extensionPosition) : chunkSizeLine).trim();
+
+            int chunkSize;
+            try
+            {
+                chunkSize = Integer.parseInt(chunkSizeString, 16);
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IOException("Chunk size is not valid " + chunkSizeString + ".");
+            }
+
+            if (chunkSize == 0)
+            {
+                // Skip any trailers up to the blank line that ends the body
+                String trailer = readLine(inputStream);
+                while (trailer != null && !trailer.isEmpty())
+                {
+                    trailer = readLine(inputStream);
+                }
+
+                return body.toByteArray();
+            }
+
+            body.write(readFully(inputStream, chunkSize));
+
+            // Each chunk's data is followed by a line break
+            readLine(inputStream);
+        }
+    }
+
+    private static byte[] readFully(InputStream inputStream, int length) throws IOException
+    {
+        if (length < 0)
+        {
+            throw new IOException("Body length cannot be negative.");
+        }
+
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length)
+        {
+            int read = inputStream.read(bytes, offset, length - offset);
+            if (read < 0)
+            {
+                throw new IOException("Response ended after " + offset + " of " + length + " body bytes.");
+            }
+
+            offset += read;
+        }
+
+        return bytes;
+    }
+
+    private static byte[] readToEnd(InputStream inputStream) throws IOException
+    {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read = inputStream.read(buffer);
+        while (read >= 0)
+        {
+            body.write(buffer, 0, read);
+            read = inputStream.read(buffer);
+        }
+
+        return body.toByteArray();
+    }
+
     private static String preProcessRequestPath(String path)
     {
         return path.replace("[", "").replace("]", "");
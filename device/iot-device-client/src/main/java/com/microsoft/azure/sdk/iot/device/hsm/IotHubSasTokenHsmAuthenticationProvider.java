@@ -22,6 +22,13 @@ public class IotHubSasTokenHsmAuthenticationProvider extends IotHubSasTokenWithR
     final SignatureProvider signatureProvider;
     final String generationId;
 
+    // Expiry times are rounded down to a bucket of up to this many seconds so that tokens created close together sign
+    // identical data, which lets the signature provider answer them from its cache
+    static final long MAX_EXPIRY_BUCKET_SECONDS = 60;
+
+    // The bucket never takes more than this fraction of the token's time to live
+    private static final long EXPIRY_BUCKETS_PER_TIME_TO_LIVE = 60;
+
     /**
      * Constructor for a IotHubSasTokenHsmAuthenticationProvider instance
      * @param signatureProvider the signature provider to be used when generating sas tokens
@@ -54,7 +61,7 @@ public class IotHubSasTokenHsmAuthenticationProvider extends IotHubSasTokenWithR
      * @throws IOException If the Hsm unit cannot be reached
      * @throws TransportException If the Hsm unit cannot be reached
      */
-    public void refreshSasToken() throws IOException, TransportException
+    public synchronized void refreshSasToken() throws IOException, TransportException
     {
         // Codes_SRS_MODULEAUTHENTICATIONWITHHSM_34_005: [This function shall create a new sas token and save it locally.]
         this.sasToken = createNewSasToken(this.hostname, this.gatewayHostname, this.deviceId, this.moduleId, this.generationId, this.signatureProvider, this.tokenValidSecs);
@@ -75,7 +82,8 @@ public class IotHubSasTokenHsmAuthenticationProvider extends IotHubSasTokenWithR
         {
             String audience = buildAudience(hostname, deviceId, moduleId);
 
-            long expiresOn = (System.currentTimeMillis() / 1000) + suggestedTimeToLive;
+            long expiryBucketSeconds = Math.max(1, Math.min(MAX_EXPIRY_BUCKET_SECONDS, suggestedTimeToLive / EXPIRY_BUCKETS_PER_TIME_TO_LIVE));
+            long expiresOn = (((System.currentTimeMillis() / 1000) + suggestedTimeToLive) / expiryBucketSeconds) * expiryBucketSeconds;
             String data = audience + "\n" + expiresOn;
             String signature = signatureProvider.sign(moduleId, data, generationId);
 
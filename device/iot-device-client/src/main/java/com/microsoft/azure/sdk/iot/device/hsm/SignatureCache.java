@@ -0,0 +1,246 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.device.hsm;
+
+import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of signatures keyed by the key name, data and generation id they were produced from. Identical sign requests
+ * made within the entry lifetime are answered from the cache, and identical sign requests made while one is already
+ * in flight wait for that request rather than starting their own.
+ */
+final class SignatureCache
+{
+    /**
+     * Produces a signature when the cache cannot answer a request.
+     */
+    interface Signer
+    {
+        String sign() throws IOException, TransportException, URISyntaxException, HsmException;
+    }
+
+    private static final class Key
+    {
+        private final String keyName;
+        private final String data;
+        private final String generationId;
+
+        private Key(String keyName, String data, String generationId)
+        {
+            this.keyName = keyName;
+            this.data = data;
+            this.generationId = generationId;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (this == other)
+            {
+                return true;
+            }
+
+            if (!(other instanceof Key))
+            {
+                return false;
+            }
+
+            Key otherKey = (Key) other;
+            return equalsNullable(this.keyName, otherKey.keyName)
+                    && this.data.equals(otherKey.data)
+                    && equalsNullable(this.generationId, otherKey.generationId);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int hash = this.data.hashCode();
+            hash = 31 * hash + (this.keyName != null ? this.keyName.hashCode() : 0);
+            hash = 31 * hash + (this.generationId != null ? this.generationId.hashCode() : 0);
+            return hash;
+        }
+
+        private static boolean equalsNullable(String first, String second)
+        {
+            return first == null ? second == null : first.equals(second);
+        }
+    }
+
+    private static final class Entry
+    {
+        private final String signature;
+        private final long createdMilliseconds;
+
+        private Entry(String signature, long createdMilliseconds)
+        {
+            this.signature = signature;
+            this.createdMilliseconds = createdMilliseconds;
+        }
+    }
+
+    private final long entryLifetimeMilliseconds;
+    private final ConcurrentMap<Key, Entry> signatures = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Key, FutureTask<String>> inFlightSignings = new ConcurrentHashMap<>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * @param entryLifetimeMilliseconds how long a signature is served from the cache after it was produced.
+     */
+    SignatureCache(long entryLifetimeMilliseconds)
+    {
+        this.entryLifetimeMilliseconds = entryLifetimeMilliseconds;
+    }
+
+    /**
+     * Return the cached signature for the provided inputs, or produce it with the provided signer.
+     * @param keyName the key used for signing
+     * @param data the data to be signed. Cannot be null.
+     * @param generationId the generation id
+     * @param signer the signer to call if no signature for these inputs is cached or in flight
+     * @return the signature
+     * @throws IOException if the signer throws it, or if the thread is interrupted while waiting for an in flight request
+     * @throws TransportException if the signer throws it
+     * @throws URISyntaxException if the signer throws it
+     * @throws HsmException if the signer throws it
+     */
+    String getOrSign(String keyName, String data, String generationId, final Signer signer) throws IOException, TransportException, URISyntaxException, HsmException
+    {
+        final Key key = new Key(keyName, data, generationId);
+
+        Entry entry = this.signatures.get(key);
+        if (entry != null && !isExpired(entry, System.currentTimeMillis()))
+        {
+            this.hitCount.incrementAndGet();
+            return entry.signature;
+        }
+
+        FutureTask<String> signing = new FutureTask<>(new Callable<String>()
+        {
+            @Override
+            public String call() throws Exception
+            {
+                String signature = signer.sign();
+                putSignature(key, signature);
+                return signature;
+            }
+        });
+
+        FutureTask<String> inFlightSigning = this.inFlightSignings.putIfAbsent(key, signing);
+        if (inFlightSigning == null)
+        {
+            this.missCount.incrementAndGet();
+            try
+            {
+                signing.run();
+            }
+            finally
+            {
+                this.inFlightSignings.remove(key, signing);
+            }
+
+            inFlightSigning = signing;
+        }
+        else
+        {
+            this.hitCount.incrementAndGet();
+        }
+
+        return awaitSignature(inFlightSigning);
+    }
+
+    /**
+     * @return the number of requests answered from the cache or by waiting on an identical request already in flight.
+     */
+    long getHitCount()
+    {
+        return this.hitCount.get();
+    }
+
+    /**
+     * @return the number of requests that had to be passed to the signer.
+     */
+    long getMissCount()
+    {
+        return this.missCount.get();
+    }
+
+    private void putSignature(Key key, String signature)
+    {
+        long now = System.currentTimeMillis();
+
+        // Tokens are signed at most a few times per lifetime, so sweeping on every insert keeps the cache small cheaply
+        Iterator<Map.Entry<Key, Entry>> iterator = this.signatures.entrySet().iterator();
+        while (iterator.hasNext())
+        {
+            if (isExpired(iterator.next().getValue(), now))
+            {
+                iterator.remove();
+            }
+        }
+
+        this.signatures.put(key, new Entry(signature, now));
+    }
+
+    private boolean isExpired(Entry entry, long now)
+    {
+        return now - entry.createdMilliseconds >= this.entryLifetimeMilliseconds;
+    }
+
+    private static String awaitSignature(FutureTask<String> signing) throws IOException, TransportException, URISyntaxException, HsmException
+    {
+        try
+        {
+            return signing.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the signature", e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            else if (cause instanceof TransportException)
+            {
+                throw (TransportException) cause;
+            }
+            else if (cause instanceof URISyntaxException)
+            {
+                throw (URISyntaxException) cause;
+            }
+            else if (cause instanceof HsmException)
+            {
+                throw (HsmException) cause;
+            }
+            else if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            else if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+
+            throw new IOException(cause);
+        }
+    }
+}
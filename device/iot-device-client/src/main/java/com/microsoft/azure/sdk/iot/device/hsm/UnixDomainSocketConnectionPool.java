@@ -0,0 +1,192 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.device.hsm;
+
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Pool of idle, keep-alive unix domain socket connections, keyed by socket path. Connections are handed out for one
+ * request/response exchange at a time and returned once the response has been fully read, so that repeated requests
+ * to the same HSM, such as SAS token renewals for several modules, don't each pay for a new connection.
+ */
+@Slf4j
+final class UnixDomainSocketConnectionPool
+{
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+    private final int maxIdleConnectionsPerPath;
+    private final long maxIdleTimeMilliseconds;
+
+    // Each deque is only accessed while synchronized on itself
+    private final ConcurrentMap<String, Deque<Connection>> idleConnections = new ConcurrentHashMap<>();
+
+    /**
+     * A single connection to a unix domain socket. Not thread safe; owned by one request at a time.
+     */
+    static final class Connection
+    {
+        private final String socketPath;
+        private final UnixSocketChannel channel;
+        private final InputStream inputStream;
+        private long lastUsedMilliseconds;
+        private boolean isReused;
+
+        private Connection(String socketPath, UnixSocketChannel channel)
+        {
+            this.socketPath = socketPath;
+            this.channel = channel;
+            this.inputStream = new BufferedInputStream(Channels.newInputStream(channel), READ_BUFFER_SIZE);
+        }
+
+        /**
+         * @return true if this connection has already carried at least one exchange, in which case the server may
+         * have closed it while it was idle.
+         */
+        boolean isReused()
+        {
+            return this.isReused;
+        }
+
+        /**
+         * @return a buffered stream over the connection to read the response from.
+         */
+        InputStream getInputStream()
+        {
+            return this.inputStream;
+        }
+
+        /**
+         * Write all remaining bytes of the provided buffer to the connection.
+         * @param request the serialized request
+         * @throws IOException if the connection cannot be written to
+         */
+        void write(ByteBuffer request) throws IOException
+        {
+            while (request.hasRemaining())
+            {
+                this.channel.write(request);
+            }
+        }
+
+        void close()
+        {
+            try
+            {
+                log.trace("Closing unix socket channel...");
+                this.channel.close();
+            }
+            catch (IOException e)
+            {
+                log.debug("Failed to close unix socket channel", e);
+            }
+        }
+    }
+
+    /**
+     * @param maxIdleConnectionsPerPath the maximum number of idle connections to keep per socket path. Connections
+     * released beyond this limit are closed.
+     * @param maxIdleTimeMilliseconds connections that have been idle for longer than this are closed rather than reused.
+     */
+    UnixDomainSocketConnectionPool(int maxIdleConnectionsPerPath, long maxIdleTimeMilliseconds)
+    {
+        this.maxIdleConnectionsPerPath = maxIdleConnectionsPerPath;
+        this.maxIdleTimeMilliseconds = maxIdleTimeMilliseconds;
+    }
+
+    /**
+     * Take an idle connection to the provided socket path, or open a new one if there is none.
+     * @param socketPath the path of the unix domain socket
+     * @return a connection that the caller owns until it is passed to {@link #release(Connection)} or closed
+     * @throws IOException if a new connection cannot be opened
+     */
+    Connection acquire(String socketPath) throws IOException
+    {
+        Deque<Connection> connections = this.idleConnections.get(socketPath);
+        if (connections != null)
+        {
+            long now = System.currentTimeMillis();
+            while (true)
+            {
+                Connection connection;
+                synchronized (connections)
+                {
+                    connection = connections.pollFirst();
+                }
+
+                if (connection == null)
+                {
+                    break;
+                }
+
+                if (now - connection.lastUsedMilliseconds <= this.maxIdleTimeMilliseconds && connection.channel.isConnected())
+                {
+                    connection.isReused = true;
+                    return connection;
+                }
+
+                connection.close();
+            }
+        }
+
+        return open(socketPath);
+    }
+
+    /**
+     * Open a new connection to the provided socket path, bypassing any idle connections.
+     * @param socketPath the path of the unix domain socket
+     * @return a connection that the caller owns until it is passed to {@link #release(Connection)} or closed
+     * @throws IOException if the connection cannot be opened
+     */
+    Connection open(String socketPath) throws IOException
+    {
+        log.trace("Opening unix socket channel to {}", socketPath);
+        return new Connection(socketPath, UnixSocketChannel.open(new UnixSocketAddress(socketPath)));
+    }
+
+    /**
+     * Return a connection whose last response was fully read so that it can carry the next request.
+     * @param connection the connection to return
+     */
+    void release(Connection connection)
+    {
+        connection.lastUsedMilliseconds = System.currentTimeMillis();
+
+        Deque<Connection> connections = this.idleConnections.get(connection.socketPath);
+        if (connections == null)
+        {
+            Deque<Connection> newConnections = new LinkedList<>();
+            connections = this.idleConnections.putIfAbsent(connection.socketPath, newConnections);
+            if (connections == null)
+            {
+                connections = newConnections;
+            }
+        }
+
+        synchronized (connections)
+        {
+            if (connections.size() < this.maxIdleConnectionsPerPath)
+            {
+                // Most recently used first, so the connections least likely to have been closed by the server are reused first
+                connections.addFirst(connection);
+                return;
+            }
+        }
+
+        connection.close();
+    }
+}
@@ -23,7 +23,24 @@ public final class IotHubReceiveTask implements Runnable
     // layer's responsibility to notify this thread when a message has been received so that this thread can handle it.
     private final Object receiveThreadLock;
 
+    // False when this task runs on an executor shared with other work, which signals this task whenever it has work
+    // instead of this task waiting for work on the lock above
+    private final boolean waitForWork;
+
     public IotHubReceiveTask(IotHubTransport transport)
+    {
+        this(transport, true);
+    }
+
+    /**
+     * Create a task for the provided transport.
+     *
+     * @param transport the transport to handle received messages for.
+     * @param waitForWork if true, each run waits on the transport's receive thread lock until there is work to do. If false,
+     * each run only does the work that is available, and it is up to the caller to run this task when the
+     * transport signals it has work.
+     */
+    public IotHubReceiveTask(IotHubTransport transport, boolean waitForWork)
     {
         if (transport == null)
         {
@@ -32,10 +49,18 @@ public final class IotHubReceiveTask implements Runnable
 
         this.transport = transport;
         this.receiveThreadLock = this.transport.getReceiveThreadLock();
+        this.waitForWork = waitForWork;
     }
 
     public void run()
     {
+        if (!this.waitForWork)
+        {
+            // The thread belongs to a shared executor, so leave its name alone and never block it
+            runWithoutWaiting();
+            return;
+        }
+
         Thread.currentThread().setName(THREAD_NAME);
 
         try
@@ -63,4 +88,16 @@ public final class IotHubReceiveTask implements Runnable
             log.warn("Receive task thread encountered exception while processing received messages", e);
         }
     }
+
+    private void runWithoutWaiting()
+    {
+        try
+        {
+            this.transport.handleMessage();
+        }
+        catch (Throwable e)
+        {
+            log.warn("Receive task thread encountered exception while processing received messages", e);
+        }
+    }
 }
\ No newline at end of file
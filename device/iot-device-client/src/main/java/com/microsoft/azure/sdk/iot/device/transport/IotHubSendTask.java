@@ -23,7 +23,24 @@ public final class IotHubSendTask implements Runnable
     // so that this thread can handle it.
     private final Object sendThreadLock;
 
+    // False when this task runs on an executor shared with other work, which signals this task whenever it has work
+    // instead of this task waiting for work on the lock above
+    private final boolean waitForWork;
+
     public IotHubSendTask(IotHubTransport transport)
+    {
+        this(transport, true);
+    }
+
+    /**
+     * Create a task for the provided transport.
+     *
+     * @param transport the transport to send messages and invoke callbacks for.
+     * @param waitForWork if true, each run waits on the transport's send thread lock until there is work to do. If false,
+     * each run only does the work that is available, and it is up to the caller to run this task when the
+     * transport signals it has work.
+     */
+    public IotHubSendTask(IotHubTransport transport, boolean waitForWork)
     {
         if (transport == null)
         {
@@ -32,10 +49,18 @@ public final class IotHubSendTask implements Runnable
 
         this.transport = transport;
         this.sendThreadLock = this.transport.getSendThreadLock();
+        this.waitForWork = waitForWork;
     }
 
     public void run()
     {
+        if (!this.waitForWork)
+        {
+            // The thread belongs to a shared executor, so leave its name alone and never block it
+            runWithoutWaiting();
+            return;
+        }
+
         Thread.currentThread().setName(THREAD_NAME);
 
         try
@@ -58,4 +83,17 @@ public final class IotHubSendTask implements Runnable
             log.warn("Send task encountered exception while sending messages", e);
         }
     }
+
+    private void runWithoutWaiting()
+    {
+        try
+        {
+            this.transport.sendMessages();
+            this.transport.invokeCallbacks();
+        }
+        catch (Throwable e)
+        {
+            log.warn("Send task encountered exception while sending messages", e);
+        }
+    }
 }
\ No newline at end of file
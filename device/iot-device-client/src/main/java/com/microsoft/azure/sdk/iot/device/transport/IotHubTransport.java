@@ -18,8 +18,10 @@ import com.microsoft.azure.sdk.iot.device.transport.mqtt.exceptions.MqttUnauthor
 import lombok.extern.slf4j.Slf4j;
 
 import javax.net.ssl.SSLContext;
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
@@ -32,6 +34,13 @@ public class IotHubTransport implements IotHubListener
 {
     private static final int DEFAULT_MAX_MESSAGES_TO_SEND_PER_THREAD = 10;
 
+    // The future of messages that were accepted into the outbound queue straight away
+    private static final Future<Void> ACCEPTED = AdmissionFuture.accepted();
+
+    // Set on a thread while it executes callbacks of the user. That thread may be the only one that makes room in the
+    // outbound queue, so a message sent from one of these callbacks must never wait for room.
+    private static final ThreadLocal<Boolean> EXECUTING_CALLBACKS = new ThreadLocal<>();
+
     // For tracking the state of this layer in particular. If multiplexing, this value may be CONNECTED while a
     // device specific state is DISCONNECTED_RETRYING. If this state is DISCONNECTED_RETRYING, then the multiplexed
     // connection will be completely torn down and re-opened.
@@ -47,11 +56,51 @@ public class IotHubTransport implements IotHubListener
 
     private IotHubTransportConnection iotHubTransportConnection;
 
-    // Messages waiting to be sent to the IoT Hub.
-    private final Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+    // Messages waiting to be sent to the IoT Hub. Method responses and twin operations, then telemetry by its
+    // priority, are given precedence when polling.
+    private final Queue<IotHubTransportPacket> waitingPacketsQueue = new PriorityPacketQueue();
+
+    // Messages which are sent to the IoT Hub but did not receive ack yet. Not guarded by any lock: every path that
+    // completes a packet (ack, send failure, expiry, cancellation, disconnection) takes it out of this map with an
+    // atomic remove first, and only the path whose remove returned the packet goes on to complete it. That way acks
+    // on the connection's thread never wait on the send thread, and no packet is ever completed twice.
+    private final ConcurrentMap<String, IotHubTransportPacket> inProgressPackets = new ConcurrentHashMap<>();
+
+    // Telemetry stored on disk until it is acknowledged, if message persistence was configured. Only used while
+    // holding the journalLock, but volatile so that the callback path can skip that lock when there is no journal
+    private volatile MessageJournal messageJournal;
+    private int maxJournaledPacketsInMemory;
+
+    // Callbacks of the messages in the journal that have not been read back into memory yet, keyed by sequence number
+    private final NavigableMap<Long, JournaledCallback> journaledCallbacks = new TreeMap<>();
+
+    // Lock on the message journal and the callbacks of its messages
+    private final Object journalLock = new Object();
+
+    // Bounds on the telemetry that is waiting to be sent or waiting for an acknowledgement, if they were configured.
+    // The counts are of the packets accepted against the bounds that were not completed yet.
+    private OutboundQueueOptions outboundQueueOptions;
+    private int outboundQueueMessageCount;
+    private long outboundQueueByteCount;
+
+    // Telemetry waiting for room in the outbound queue under the BLOCK overflow policy, in the order it was sent in
+    private final Queue<PendingAdmission> pendingAdmissions = new LinkedList<>();
 
-    // Messages which are sent to the IoT Hub but did not receive ack yet.
-    private final Map<String, IotHubTransportPacket> inProgressPackets = new ConcurrentHashMap<>();
+    // Lock on the outbound queue counts and the telemetry waiting for room
+    private final Object outboundQueueLock = new Object();
+
+    // Paces all sending over the connection, if send rate limits were configured for it
+    private volatile SendRateLimiter sendRateLimiter;
+
+    // Paces the sending of each multiplexed device that has send rate limits of its own, keyed by device id
+    private final Map<String, SendRateLimiter> deviceSendRateLimiters = new ConcurrentHashMap<>();
+
+    // Packets of multiplexed devices that are held back by their device's send rate, in order, keyed by device id.
+    // Only the send thread adds to these.
+    private final Map<String, Queue<IotHubTransportPacket>> rateLimitedPackets = new ConcurrentHashMap<>();
+
+    // Set while the send task is scheduled to be woken up for when the send rate allows sending again
+    private final AtomicBoolean isSendRateWakeUpScheduled = new AtomicBoolean();
 
     // Messages received from the IoT Hub
     private final Queue<IotHubTransportMessage> receivedMessagesQueue = new ConcurrentLinkedQueue<>();
@@ -77,9 +126,6 @@ public class IotHubTransport implements IotHubListener
     // should stop spawning send/receive threads when this layer is disconnected or disconnected retrying
     private final IotHubConnectionStatusChangeCallback deviceIOConnectionStatusChangeCallback;
 
-    // Lock on reading and writing on the inProgressPackets map
-    final private Object inProgressMessagesLock = new Object();
-
     // Lock on setting and reading the state of multiplexed devices.
     final private Object multiplexingDeviceStateLock = new Object();
 
@@ -88,6 +134,17 @@ public class IotHubTransport implements IotHubListener
 
     private ScheduledExecutorService taskScheduler;
 
+    // Optional factory for the threads of the task scheduler and the AMQP reactor
+    private ThreadFactory threadFactory;
+
+    // Optional executor shared with other clients. Used as the task scheduler and never shut down by this layer.
+    private ScheduledExecutorService sharedExecutor;
+
+    // Executed, in addition to notifying the send and receive thread locks, each time the IotHubSendTask or
+    // IotHubReceiveTask has work. Only set when those tasks run on a shared executor instead of waiting on the locks.
+    private Runnable sendTaskSignal;
+    private Runnable receiveTaskSignal;
+
     // state lock to prevent simultaneous close and reconnect operations. Also prevents multiple reconnect threads from executing at once
     final private Object reconnectionLock = new Object();
 
@@ -106,7 +163,7 @@ public class IotHubTransport implements IotHubListener
     private final boolean isMultiplexing;
 
     // Flag set when close() starts. Acts as a signal to any running reconnection logic to not try again.
-    private boolean isClosing;
+    private volatile boolean isClosing;
 
     // Used to store the CorrelationCallbackMessage for a correlationId
     private final Map<String, CorrelatingMessageCallback> correlationCallbacks = new ConcurrentHashMap<>();
@@ -162,7 +219,13 @@ public class IotHubTransport implements IotHubListener
     {
         synchronized (sendThreadLock)
         {
-            return this.waitingPacketsQueue.size() > 0;
+            if (this.sendRateLimiter != null && this.sendRateLimiter.getDelayNanos(System.nanoTime()) > 0)
+            {
+                // The send task is woken up once the send rate of the connection allows sending again
+                return false;
+            }
+
+            return this.waitingPacketsQueue.size() > 0 || this.hasJournaledPacketsToLoad() || this.hasRateLimitedPacketsToSend();
         }
     }
 
@@ -201,11 +264,7 @@ public class IotHubTransport implements IotHubListener
         log.debug("IotHub message was acknowledged. Checking if there is record of sending this message ({})", message);
 
         // remove from in progress queue and add to callback queue
-        IotHubTransportPacket packet;
-        synchronized (this.inProgressMessagesLock)
-        {
-            packet = inProgressPackets.remove(message.getMessageId());
-        }
+        IotHubTransportPacket packet = inProgressPackets.remove(message.getMessageId());
 
         if (packet != null)
         {
@@ -230,7 +289,7 @@ public class IotHubTransport implements IotHubListener
             try
             {
                 String correlationId = message.getCorrelationId();
-                if (!correlationId.isEmpty() && correlationCallbacks.containsKey(correlationId))
+                if (correlationId != null && !correlationId.isEmpty() && correlationCallbacks.containsKey(correlationId))
                 {
                     Object context = correlationCallbackContexts.get(correlationId);
                     correlationCallbacks.get(correlationId).onRequestAcknowledged(packet, context, e);
@@ -246,7 +305,7 @@ public class IotHubTransport implements IotHubListener
             try
             {
                 String correlationId = message.getCorrelationId();
-                if (!correlationId.isEmpty() && correlationCallbacks.containsKey(correlationId))
+                if (correlationId != null && !correlationId.isEmpty() && correlationCallbacks.containsKey(correlationId))
                 {
                     Object context = correlationCallbackContexts.get(correlationId);
                     correlationCallbacks.get(correlationId).onUnknownMessageAcknowledged(message, context, e);
@@ -282,7 +341,7 @@ public class IotHubTransport implements IotHubListener
             if (message != null)
             {
                 String correlationId = message.getCorrelationId();
-                if (!correlationId.isEmpty() && correlationCallbacks.containsKey(correlationId))
+                if (correlationId != null && !correlationId.isEmpty() && correlationCallbacks.containsKey(correlationId))
                 {
                     Object context = correlationCallbackContexts.get(correlationId);
                     correlationCallbacks.get(correlationId).onResponseReceived(message, context, e);
@@ -421,7 +480,20 @@ public class IotHubTransport implements IotHubListener
             }
         }
 
-        this.taskScheduler = Executors.newScheduledThreadPool(1);
+        this.openMessageJournal();
+
+        if (this.sharedExecutor != null)
+        {
+            this.taskScheduler = this.sharedExecutor;
+        }
+        else if (this.threadFactory != null)
+        {
+            this.taskScheduler = Executors.newScheduledThreadPool(1, this.threadFactory);
+        }
+        else
+        {
+            this.taskScheduler = Executors.newScheduledThreadPool(1);
+        }
 
         if (withRetry)
         {
@@ -498,11 +570,13 @@ public class IotHubTransport implements IotHubListener
         // Wait until no reconnection logic is taking place
         synchronized (this.reconnectionLock)
         {
+            this.cancelPendingAdmissions();
             this.cancelPendingPackets();
+            this.cancelJournaledCallbacks();
 
             this.invokeCallbacks();
 
-            if (this.taskScheduler != null)
+            if (this.taskScheduler != null && this.taskScheduler != this.sharedExecutor)
             {
                 this.taskScheduler.shutdown();
             }
@@ -516,18 +590,20 @@ public class IotHubTransport implements IotHubListener
             }
             finally
             {
+                this.closeMessageJournal();
+
                 this.updateStatus(IotHubConnectionStatus.DISCONNECTED, reason, cause);
 
                 // Notify send thread to finish up so it doesn't survive this close
                 synchronized (this.sendThreadLock)
                 {
-                    this.sendThreadLock.notifyAll();
+                    this.notifySendTask();
                 }
 
                 // Notify receive thread to finish up so it doesn't survive this close
                 synchronized (this.receiveThreadLock)
                 {
-                    this.receiveThreadLock.notifyAll();
+                    this.notifyReceiveTask();
                 }
 
                 log.debug("Client connection closed successfully");
@@ -536,7 +612,8 @@ public class IotHubTransport implements IotHubListener
     }
 
     /**
-     * Adds a message to the transport queue.
+     * Adds a message to the transport queue. Under the BLOCK overflow policy, this waits for room in the outbound queue,
+     * unless it is called from within a client callback, in which case the message is left waiting for room.
      *
      * @param message the message to be sent.
      * @param callback the callback to be invoked when a response for the
@@ -546,6 +623,54 @@ public class IotHubTransport implements IotHubListener
      * invoked.
      */
     public void addMessage(Message message, IotHubEventCallback callback, Object callbackContext, String deviceId)
+    {
+        Future<Void> accepted = this.queueMessage(message, callback, callbackContext, deviceId);
+        if (!accepted.isDone())
+        {
+            // Only the BLOCK overflow policy leaves a message waiting for room in the outbound queue
+            if (EXECUTING_CALLBACKS.get() != null)
+            {
+                // Waiting here could wait forever on the thread that has to make the room. The message keeps
+                // waiting for room without this thread, and its callback is executed once it is accepted or cancelled.
+                log.debug("Message sent from a client callback is waiting for room in the outbound queue ({})", message);
+                return;
+            }
+
+            try
+            {
+                accepted.get();
+            }
+            catch (InterruptedException e)
+            {
+                // The message keeps waiting for room, only the caller stops waiting with it
+                Thread.currentThread().interrupt();
+            }
+            catch (ExecutionException e)
+            {
+                // The callback of the message is executed with the reason it was not accepted
+                log.debug("Message was not accepted into the outbound queue ({})", message, e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Adds a message to the transport queue without waiting for room in it. Only telemetry is held back when the
+     * outbound queue is bounded and full, according to its overflow policy.
+     *
+     * @param message the message to be sent.
+     * @param callback the callback to be invoked when a response for the
+     * message is received.
+     * @param callbackContext the context to be passed in when the callback is
+     * invoked.
+     * @param deviceId the Id of the device that is sending this message.
+     * @return a future that completes once the message was accepted into the outbound queue. It fails with a
+     * {@link ThrottledException} if the message was rejected for lack of room, or with an
+     * {@link IllegalStateException} if the transport was closed while the message waited for room. The callback of
+     * a message that was not accepted is executed with the same outcome. Cancelling the future withdraws a message
+     * that is still waiting for room.
+     * @throws IllegalStateException if the transport is closed.
+     */
+    public Future<Void> queueMessage(Message message, IotHubEventCallback callback, Object callbackContext, String deviceId)
     {
         if (this.connectionStatus == IotHubConnectionStatus.DISCONNECTED)
         {
@@ -553,22 +678,31 @@ public class IotHubTransport implements IotHubListener
         }
 
         // We will get the nested messages and queue them normally if this is a batch message but the protocol is not HTTPS
-        // Currently only HTTPS is supports batch message events.
-        if (message instanceof BatchMessage && !(this.iotHubTransportConnection instanceof HttpsIotHubConnection))
+        // or AMQPS, since only those protocols support batch message events.
+        if (message instanceof BatchMessage && !isBatchingSupported((BatchMessage) message))
         {
+            // The nested messages are accepted in order, so the last one is accepted after all the others
+            Future<Void> accepted = ACCEPTED;
             for (Message singleMessage : ((BatchMessage) message).getNestedMessages())
             {
-                this.addToWaitingQueue(new IotHubTransportPacket(singleMessage, callback, callbackContext, null, System.currentTimeMillis(), deviceId));
+                accepted = this.addToOutboundQueue(new IotHubTransportPacket(singleMessage, callback, callbackContext, null, System.currentTimeMillis(), deviceId));
                 log.info("Messages were queued to be sent later ({})", singleMessage);
             }
 
-            return;
+            return accepted;
+        }
+
+        if (isJournalingSupported(message) && this.addToJournal(message, callback, callbackContext, deviceId))
+        {
+            log.info("Message was stored to be sent later ({})", message);
+            return ACCEPTED;
         }
 
         IotHubTransportPacket packet = new IotHubTransportPacket(message, callback, callbackContext, null, System.currentTimeMillis(), deviceId);
-        this.addToWaitingQueue(packet);
+        Future<Void> accepted = this.addToOutboundQueue(packet);
 
         log.info("Message was queued to be sent later ({})", message);
+        return accepted;
     }
 
     public IotHubClientProtocol getProtocol()
@@ -576,6 +710,22 @@ public class IotHubTransport implements IotHubListener
         return this.protocol;
     }
 
+    private boolean isAmqpProtocol()
+    {
+        return this.protocol == IotHubClientProtocol.AMQPS || this.protocol == IotHubClientProtocol.AMQPS_WS;
+    }
+
+    private boolean isBatchingSupported(BatchMessage batchMessage)
+    {
+        if (this.iotHubTransportConnection instanceof HttpsIotHubConnection)
+        {
+            return true;
+        }
+
+        // An empty batch has nothing to send over AMQPS
+        return isAmqpProtocol() && !batchMessage.getNestedMessages().isEmpty();
+    }
+
     /**
      * Sends all messages on the transport queue. If a previous send attempt had
      * failed, the function will attempt to resend the messages in the previous
@@ -595,7 +745,17 @@ public class IotHubTransport implements IotHubListener
 
         while (this.connectionStatus == IotHubConnectionStatus.CONNECTED && timeSlice-- > 0)
         {
-            IotHubTransportPacket packet = waitingPacketsQueue.poll();
+            if (this.waitingPacketsQueue.isEmpty())
+            {
+                this.loadJournaledPackets();
+            }
+
+            if (this.isHeldBackBySendRate())
+            {
+                break;
+            }
+
+            IotHubTransportPacket packet = this.pollPacketToSend();
 
             if (packet != null)
             {
@@ -604,13 +764,14 @@ public class IotHubTransport implements IotHubListener
 
                 if (message != null && this.isMessageValid(packet))
                 {
+                    this.acquireSendRate(packet);
                     sendPacket(packet);
 
                     try
                     {
                         String correlationId = message.getCorrelationId();
 
-                        if (!correlationId.isEmpty() && correlationCallbacks.containsKey(correlationId))
+                        if (correlationId != null && !correlationId.isEmpty() && correlationCallbacks.containsKey(correlationId))
                         {
                             Object context = correlationCallbackContexts.get(correlationId);
                             correlationCallbacks.get(correlationId).onRequestSent(message, packet, context);
@@ -649,23 +810,37 @@ public class IotHubTransport implements IotHubListener
         //Requeue all the non-expired messages.
         this.waitingPacketsQueue.addAll(packetsToAddBackIntoWaitingPacketsQueue);
 
-        //Check in progress messages
-        synchronized (this.inProgressMessagesLock)
+        //Check packets held back by their device's send rate, so they don't wait out the send rate after expiring
+        for (Map.Entry<String, Queue<IotHubTransportPacket>> devicePackets : this.rateLimitedPackets.entrySet())
         {
-            List<String> expiredPacketMessageIds = new ArrayList<>();
-            for (String messageId : this.inProgressPackets.keySet())
+            Iterator<IotHubTransportPacket> rateLimitedPacketIterator = devicePackets.getValue().iterator();
+            while (rateLimitedPacketIterator.hasNext())
             {
-                if (this.inProgressPackets.get(messageId).getMessage().isExpired())
+                IotHubTransportPacket rateLimitedPacket = rateLimitedPacketIterator.next();
+                if (rateLimitedPacket.getMessage().isExpired())
                 {
-                    expiredPacketMessageIds.add(messageId);
+                    rateLimitedPacketIterator.remove();
+                    rateLimitedPacket.setStatus(IotHubStatusCode.MESSAGE_EXPIRED);
+                    this.addToCallbackQueue(rateLimitedPacket);
                 }
             }
 
-            for (String messageId : expiredPacketMessageIds)
+            if (devicePackets.getValue().isEmpty())
+            {
+                this.rateLimitedPackets.remove(devicePackets.getKey(), devicePackets.getValue());
+            }
+        }
+
+        //Check in progress messages
+        for (Map.Entry<String, IotHubTransportPacket> packetEntry : this.inProgressPackets.entrySet())
+        {
+            IotHubTransportPacket inProgressPacket = packetEntry.getValue();
+
+            // Only expire the packet if it wasn't acknowledged in the meantime
+            if (inProgressPacket.getMessage().isExpired() && this.inProgressPackets.remove(packetEntry.getKey(), inProgressPacket))
             {
-                IotHubTransportPacket expiredPacket = this.inProgressPackets.remove(messageId);
-                expiredPacket.setStatus(IotHubStatusCode.MESSAGE_EXPIRED);
-                this.addToCallbackQueue(expiredPacket);
+                inProgressPacket.setStatus(IotHubStatusCode.MESSAGE_EXPIRED);
+                this.addToCallbackQueue(inProgressPacket);
             }
         }
     }
@@ -674,6 +849,19 @@ public class IotHubTransport implements IotHubListener
      * Invokes the callbacks for all completed requests.
      */
     public void invokeCallbacks()
+    {
+        boolean wasExecutingCallbacks = beginExecutingCallbacks();
+        try
+        {
+            this.invokeQueuedCallbacks();
+        }
+        finally
+        {
+            endExecutingCallbacks(wasExecutingCallbacks);
+        }
+    }
+
+    private void invokeQueuedCallbacks()
     {
         IotHubTransportPacket packet = this.callbackPacketsQueue.poll();
         while (packet != null)
@@ -684,7 +872,18 @@ public class IotHubTransport implements IotHubListener
 
             log.debug("Invoking the callback function for sent message, IoT Hub responded to message ({}) with status {}", packet.getMessage(), status);
 
-            callback.execute(status, context);
+            // Over AMQPS, the status of a batch is reported to the callback once per nested message, just as if each
+            // message had been sent on its own
+            int callbackCount = 1;
+            if (packet.getMessage() instanceof BatchMessage && isAmqpProtocol())
+            {
+                callbackCount = ((BatchMessage) packet.getMessage()).getNestedMessages().size();
+            }
+
+            for (int i = 0; i < callbackCount; i++)
+            {
+                callback.execute(status, context);
+            }
 
             packet = this.callbackPacketsQueue.poll();
         }
@@ -727,10 +926,7 @@ public class IotHubTransport implements IotHubListener
      */
     public boolean isEmpty()
     {
-        synchronized (this.inProgressMessagesLock)
-        {
-            return this.waitingPacketsQueue.isEmpty() && this.inProgressPackets.size() == 0 && this.callbackPacketsQueue.isEmpty();
-        }
+        return this.waitingPacketsQueue.isEmpty() && this.inProgressPackets.isEmpty() && this.callbackPacketsQueue.isEmpty();
     }
 
     /**
@@ -902,6 +1098,123 @@ public class IotHubTransport implements IotHubListener
         }
     }
 
+    /**
+     * Set where this layer runs its own work, such as delayed message retries. Takes effect on the next open.
+     *
+     * @param threadFactory the factory for the threads this layer starts. May be {@code null} to use the default thread factory.
+     * @param sharedExecutor the executor to schedule work on instead of threads of this layer's own. It is not shut
+     * down when this layer is closed. May be {@code null}.
+     */
+    public void setExecutors(ThreadFactory threadFactory, ScheduledExecutorService sharedExecutor)
+    {
+        this.threadFactory = threadFactory;
+        this.sharedExecutor = sharedExecutor;
+    }
+
+    /**
+     * Bound the telemetry that is waiting to be sent or waiting for an acknowledgement. Must be set before any
+     * message is added.
+     *
+     * @param outboundQueueOptions the bounds and the overflow policy.
+     * @throws IllegalArgumentException if the bounds are not positive or the overflow policy is null.
+     */
+    public void setOutboundQueueOptions(OutboundQueueOptions outboundQueueOptions) throws IllegalArgumentException
+    {
+        if (outboundQueueOptions == null)
+        {
+            throw new IllegalArgumentException("outboundQueueOptions cannot be null");
+        }
+
+        if (outboundQueueOptions.getMaxMessages() < 1 || outboundQueueOptions.getMaxBytes() < 1)
+        {
+            throw new IllegalArgumentException("The outbound queue bounds must be positive");
+        }
+
+        if (outboundQueueOptions.getOverflowPolicy() == null)
+        {
+            throw new IllegalArgumentException("The outbound queue overflow policy cannot be null");
+        }
+
+        this.outboundQueueOptions = outboundQueueOptions;
+    }
+
+    /**
+     * Limit how fast this layer sends over its connection. For a multiplexed connection, the limits apply to all its
+     * devices together.
+     *
+     * @param sendRateOptions the limits to send at.
+     * @throws IllegalArgumentException if a limit is negative or no limit is set.
+     */
+    public void setSendRateOptions(SendRateOptions sendRateOptions) throws IllegalArgumentException
+    {
+        this.sendRateLimiter = createSendRateLimiter(sendRateOptions);
+    }
+
+    /**
+     * Limit how fast a multiplexed device sends, in addition to the limits of the connection.
+     *
+     * @param deviceId the id of the multiplexed device.
+     * @param sendRateOptions the limits to send at, or null to stop limiting the device.
+     * @throws IllegalArgumentException if a limit is negative or no limit is set.
+     */
+    public void setDeviceSendRateOptions(String deviceId, SendRateOptions sendRateOptions) throws IllegalArgumentException
+    {
+        if (sendRateOptions == null)
+        {
+            this.deviceSendRateLimiters.remove(deviceId);
+            return;
+        }
+
+        this.deviceSendRateLimiters.put(deviceId, createSendRateLimiter(sendRateOptions));
+    }
+
+    /**
+     * Get how the send rate limits have held back sending.
+     *
+     * @param deviceId the id of the multiplexed device to get the statistics of its own limits for, or null to get
+     * the statistics of the connection's limits.
+     * @return the statistics, or null if there are no such limits.
+     */
+    public SendRateStatistics getSendRateStatistics(String deviceId)
+    {
+        SendRateLimiter limiter = this.isMultiplexing && deviceId != null ? this.deviceSendRateLimiters.get(deviceId) : this.sendRateLimiter;
+        return limiter != null ? limiter.getStatistics(System.nanoTime()) : null;
+    }
+
+    private static SendRateLimiter createSendRateLimiter(SendRateOptions sendRateOptions)
+    {
+        if (sendRateOptions == null)
+        {
+            throw new IllegalArgumentException("sendRateOptions cannot be null");
+        }
+
+        if (sendRateOptions.getMaxMessagesPerSecond() < 0 || sendRateOptions.getMaxBytesPerSecond() < 0)
+        {
+            throw new IllegalArgumentException("Send rate limits cannot be negative");
+        }
+
+        if (sendRateOptions.getMaxMessagesPerSecond() == 0 && sendRateOptions.getMaxBytesPerSecond() == 0)
+        {
+            throw new IllegalArgumentException("At least one send rate limit must be set");
+        }
+
+        return new SendRateLimiter(sendRateOptions, System.nanoTime());
+    }
+
+    /**
+     * Set the signals to execute each time the IotHubSendTask or IotHubReceiveTask has work, for when those tasks run
+     * on a shared executor rather than waiting on the send and receive thread locks. The signals are executed while
+     * holding the corresponding lock, so they must not block.
+     *
+     * @param sendTaskSignal the signal for the IotHubSendTask.
+     * @param receiveTaskSignal the signal for the IotHubReceiveTask.
+     */
+    public void setTaskSignals(Runnable sendTaskSignal, Runnable receiveTaskSignal)
+    {
+        this.sendTaskSignal = sendTaskSignal;
+        this.receiveTaskSignal = receiveTaskSignal;
+    }
+
     public void setMaxNumberOfMessagesSentPerSendThread(int maxNumberOfMessagesSentPerSendThread)
     {
         if (maxNumberOfMessagesSentPerSendThread < 0)
@@ -926,16 +1239,26 @@ public class IotHubTransport implements IotHubListener
             packet = this.waitingPacketsQueue.poll();
         }
 
-        synchronized (this.inProgressMessagesLock)
+        for (Queue<IotHubTransportPacket> devicePackets : this.rateLimitedPackets.values())
+        {
+            IotHubTransportPacket rateLimitedPacket = devicePackets.poll();
+            while (rateLimitedPacket != null)
+            {
+                rateLimitedPacket.setStatus(IotHubStatusCode.MESSAGE_CANCELLED_ONCLOSE);
+                this.addToCallbackQueue(rateLimitedPacket);
+
+                rateLimitedPacket = devicePackets.poll();
+            }
+        }
+
+        for (String messageId : inProgressPackets.keySet())
         {
-            for (Map.Entry<String, IotHubTransportPacket> packetEntry : inProgressPackets.entrySet())
+            IotHubTransportPacket inProgressPacket = inProgressPackets.remove(messageId);
+            if (inProgressPacket != null)
             {
-                IotHubTransportPacket inProgressPacket = packetEntry.getValue();
                 inProgressPacket.setStatus(IotHubStatusCode.MESSAGE_CANCELLED_ONCLOSE);
                 this.addToCallbackQueue(inProgressPacket);
             }
-
-            inProgressPackets.clear();
         }
     }
 
@@ -955,7 +1278,16 @@ public class IotHubTransport implements IotHubListener
         if (messageCallback != null)
         {
             log.debug("Executing callback for received message ({})", receivedMessage);
-            IotHubMessageResult result = messageCallback.execute(receivedMessage, messageCallbackContext);
+            IotHubMessageResult result;
+            boolean wasExecutingCallbacks = beginExecutingCallbacks();
+            try
+            {
+                result = messageCallback.execute(receivedMessage, messageCallbackContext);
+            }
+            finally
+            {
+                endExecutingCallbacks(wasExecutingCallbacks);
+            }
 
             try
             {
@@ -1084,6 +1416,11 @@ public class IotHubTransport implements IotHubListener
                 case MQTT:
                 case MQTT_WS:
                     this.iotHubTransportConnection = new MqttIotHubConnection(this.getDefaultConfig());
+                    if (this.threadFactory != null)
+                    {
+                        ((MqttIotHubConnection) this.iotHubTransportConnection).setThreadFactory(this.threadFactory);
+                    }
+
                     break;
                 case AMQPS:
                 case AMQPS_WS:
@@ -1107,6 +1444,11 @@ public class IotHubTransport implements IotHubListener
                         this.iotHubTransportConnection = new AmqpsIotHubConnection(this.getDefaultConfig(), false);
                     }
 
+                    if (this.threadFactory != null)
+                    {
+                        ((AmqpsIotHubConnection) this.iotHubTransportConnection).setThreadFactory(this.threadFactory);
+                    }
+
                     break;
                 default:
                     throw new TransportException("Protocol not supported");
@@ -1127,15 +1469,14 @@ public class IotHubTransport implements IotHubListener
     {
         log.info("Handling a disconnection event", transportException);
 
-        synchronized (this.inProgressMessagesLock)
+        log.trace("Due to disconnection event, clearing active queues, and re-queueing them to waiting queues to be re-processed later upon reconnection");
+        for (String messageId : inProgressPackets.keySet())
         {
-            log.trace("Due to disconnection event, clearing active queues, and re-queueing them to waiting queues to be re-processed later upon reconnection");
-            for (IotHubTransportPacket packetToRequeue : inProgressPackets.values())
+            IotHubTransportPacket packetToRequeue = inProgressPackets.remove(messageId);
+            if (packetToRequeue != null)
             {
                 this.addToWaitingQueue(packetToRequeue);
             }
-
-            inProgressPackets.clear();
         }
 
         this.updateStatus(IotHubConnectionStatus.DISCONNECTED_RETRYING, exceptionToStatusChangeReason(transportException), transportException);
@@ -1343,17 +1684,34 @@ public class IotHubTransport implements IotHubListener
         final IotHubTransportPacket transportPacket;
         final Queue<IotHubTransportPacket> waitingPacketsQueue;
         final Object sendThreadLock;
+        final IotHubTransport transport;
 
         public MessageRetryRunnable(Queue<IotHubTransportPacket> waitingPacketsQueue, IotHubTransportPacket transportPacket, Object sendThreadLock)
         {
             this.waitingPacketsQueue = waitingPacketsQueue;
             this.transportPacket = transportPacket;
             this.sendThreadLock = sendThreadLock;
+            this.transport = null;
+        }
+
+        MessageRetryRunnable(IotHubTransport transport, IotHubTransportPacket transportPacket)
+        {
+            this.waitingPacketsQueue = transport.waitingPacketsQueue;
+            this.transportPacket = transportPacket;
+            this.sendThreadLock = transport.sendThreadLock;
+            this.transport = transport;
         }
 
         @Override
         public void run()
         {
+            if (this.transport != null)
+            {
+                // Notifies the send task however it is run
+                this.transport.addToWaitingQueue(this.transportPacket);
+                return;
+            }
+
             this.waitingPacketsQueue.add(this.transportPacket);
 
             // Wake up send messages thread so that it can send this message
@@ -1375,6 +1733,11 @@ public class IotHubTransport implements IotHubListener
     {
         log.warn("Handling an exception from sending message: Attempt number {}", packet.getCurrentRetryAttempt(), transportException);
 
+        if (transportException instanceof ThrottledException || transportException instanceof AmqpConnectionThrottledException)
+        {
+            this.onSendThrottled(packet.getDeviceId());
+        }
+
         packet.incrementRetryAttempt();
         if (!this.hasOperationTimedOut(packet.getStartTimeMillis()))
         {
@@ -1391,7 +1754,7 @@ public class IotHubTransport implements IotHubListener
                 RetryDecision retryDecision = config.getRetryPolicy().getRetryDecision(packet.getCurrentRetryAttempt(), transportException);
                 if (retryDecision.shouldRetry())
                 {
-                    this.taskScheduler.schedule(new MessageRetryRunnable(this.waitingPacketsQueue, packet, this), retryDecision.getDuration(), MILLISECONDS);
+                    this.taskScheduler.schedule(new MessageRetryRunnable(this, packet), retryDecision.getDuration(), MILLISECONDS);
                     return;
                 }
                 else
@@ -1437,11 +1800,8 @@ public class IotHubTransport implements IotHubListener
         {
             if (messageAckExpected)
             {
-                synchronized (this.inProgressMessagesLock)
-                {
-                    log.trace("Adding transport message to the inProgressPackets to wait for acknowledgement ({})", message);
-                    this.inProgressPackets.put(message.getMessageId(), packet);
-                }
+                log.trace("Adding transport message to the inProgressPackets to wait for acknowledgement ({})", message);
+                this.inProgressPackets.put(message.getMessageId(), packet);
             }
 
             log.info("Sending message ({})", message);
@@ -1450,7 +1810,12 @@ public class IotHubTransport implements IotHubListener
 
             if (statusCode != IotHubStatusCode.OK_EMPTY && statusCode != IotHubStatusCode.OK)
             {
-                this.handleMessageException(this.inProgressPackets.remove(message.getMessageId()), IotHubStatusCode.getConnectionStatusException(statusCode, ""));
+                // The packet may already have been completed by an ack or a disconnection, in which case there's nothing to retry
+                IotHubTransportPacket failedPacket = messageAckExpected ? this.inProgressPackets.remove(message.getMessageId()) : packet;
+                if (failedPacket != null)
+                {
+                    this.handleMessageException(failedPacket, IotHubStatusCode.getConnectionStatusException(statusCode, ""));
+                }
             }
             else if (!messageAckExpected)
             {
@@ -1465,97 +1830,306 @@ public class IotHubTransport implements IotHubListener
 
             if (messageAckExpected)
             {
-                synchronized (this.inProgressMessagesLock)
-                {
-                    outboundPacket = this.inProgressPackets.remove(message.getMessageId());
-                }
+                outboundPacket = this.inProgressPackets.remove(message.getMessageId());
             }
             else
             {
                 outboundPacket = packet;
             }
 
-            this.handleMessageException(outboundPacket, transportException);
+            if (outboundPacket != null)
+            {
+                this.handleMessageException(outboundPacket, transportException);
+            }
         }
     }
 
     /**
-     * Checks if the provided packet has expired or if the sas token has expired
-     *
-     * @param packet the packet to check for expiry
-     *
-     * @return if the message has not expired and if the sas token has not expired
+     * Check whether the send rate of the connection holds back sending for now, in which case the send task is
+     * scheduled to be woken up once it no longer does.
      */
-    private boolean isMessageValid(IotHubTransportPacket packet)
+    private boolean isHeldBackBySendRate()
     {
-        Message message = packet.getMessage();
-
-        if (message.isExpired())
+        SendRateLimiter limiter = this.sendRateLimiter;
+        if (limiter == null)
         {
-            log.warn("Message with has expired, adding to callbacks queue with MESSAGE_EXPIRED ({})", message);
-            packet.setStatus(IotHubStatusCode.MESSAGE_EXPIRED);
-            this.addToCallbackQueue(packet);
             return false;
         }
 
-        if (isSasTokenExpired())
+        long nowNanos = System.nanoTime();
+        long delayNanos = limiter.getDelayNanos(nowNanos);
+        if (delayNanos == 0)
         {
-            log.debug("Creating a callback for the message with expired sas token with UNAUTHORIZED status");
-            packet.setStatus(IotHubStatusCode.UNAUTHORIZED);
-            this.addToCallbackQueue(packet);
-            this.updateStatus(
-                    IotHubConnectionStatus.DISCONNECTED,
-                    IotHubConnectionStatusChangeReason.EXPIRED_SAS_TOKEN,
-                    new SecurityException("Your sas token has expired"),
-                    packet.getMessage().getConnectionDeviceId());
-
             return false;
         }
 
+        if (!this.waitingPacketsQueue.isEmpty() || !this.rateLimitedPackets.isEmpty())
+        {
+            limiter.holdBack(nowNanos);
+        }
+
+        this.scheduleSendRateWakeUp(delayNanos);
         return true;
     }
 
-    private void updateStatus(IotHubConnectionStatus newConnectionStatus, IotHubConnectionStatusChangeReason reason, Throwable throwable)
+    /**
+     * Get the next packet to send. Packets of multiplexed devices that are over their own send rate are held back,
+     * along with the packets of the same device that come after them, until the device's send rate allows them.
+     */
+    private IotHubTransportPacket pollPacketToSend()
     {
-        if (this.connectionStatus != newConnectionStatus)
+        if (this.deviceSendRateLimiters.isEmpty() && this.rateLimitedPackets.isEmpty())
         {
-            if (throwable == null)
+            return this.waitingPacketsQueue.poll();
+        }
+
+        long nowNanos = System.nanoTime();
+        long wakeUpDelayNanos = Long.MAX_VALUE;
+        IotHubTransportPacket packetToSend = null;
+
+        // Held back packets go first once their device's send rate allows them
+        for (Map.Entry<String, Queue<IotHubTransportPacket>> devicePackets : this.rateLimitedPackets.entrySet())
+        {
+            long delayNanos = this.getDeviceSendRateDelayNanos(devicePackets.getKey(), nowNanos);
+            if (delayNanos > 0)
             {
-                log.info("Updating transport status to new status {} with reason {}", newConnectionStatus, reason);
+                wakeUpDelayNanos = Math.min(wakeUpDelayNanos, delayNanos);
+                continue;
             }
-            else
+
+            packetToSend = devicePackets.getValue().poll();
+            if (devicePackets.getValue().isEmpty())
             {
-                log.warn("Updating transport status to new status {} with reason {}", newConnectionStatus, reason, throwable);
+                this.rateLimitedPackets.remove(devicePackets.getKey());
             }
 
-            this.connectionStatus = newConnectionStatus;
-
-            this.deviceIOConnectionStatusChangeCallback.execute(newConnectionStatus, reason, throwable, null);
-
-            //invoke connection status callbacks
-            log.debug("Invoking connection status callbacks with new status details");
-            invokeConnectionStateCallback(newConnectionStatus, reason);
+            if (packetToSend != null)
+            {
+                break;
+            }
+        }
 
-            if (!isMultiplexing || newConnectionStatus != IotHubConnectionStatus.CONNECTED)
+        while (packetToSend == null)
+        {
+            IotHubTransportPacket packet = this.waitingPacketsQueue.poll();
+            if (packet == null)
             {
-                // When multiplexing, a different method will notify each device-specific callback when that device is online,
-                // but in cases when the tcp connection is lost and everything is disconnected retrying or disconnected, this is where the
-                // callback should be fired
-                invokeConnectionStatusChangeCallback(newConnectionStatus, reason, throwable);
+                break;
+            }
 
-                for (DeviceClientConfig config : deviceClientConfigs.values())
+            String deviceId = packet.getDeviceId();
+            Queue<IotHubTransportPacket> devicePackets = deviceId != null ? this.rateLimitedPackets.get(deviceId) : null;
+            if (devicePackets == null)
+            {
+                SendRateLimiter deviceLimiter = deviceId != null ? this.deviceSendRateLimiters.get(deviceId) : null;
+                long delayNanos = deviceLimiter != null ? deviceLimiter.getDelayNanos(nowNanos) : 0;
+                if (delayNanos == 0)
                 {
-                    deviceConnectionStates.put(config.getDeviceId(), newConnectionStatus);
+                    packetToSend = packet;
+                    break;
                 }
-            }
 
-            // If multiplexing, fire the multiplexing state callback as long as it was set.
-            if (isMultiplexing && this.multiplexingStateCallback != null)
-            {
-                this.multiplexingStateCallback.execute(newConnectionStatus, reason, throwable, this.multiplexingStateCallbackContext);
+                wakeUpDelayNanos = Math.min(wakeUpDelayNanos, delayNanos);
+                deviceLimiter.holdBack(nowNanos);
+                devicePackets = new ConcurrentLinkedQueue<>();
+                this.rateLimitedPackets.put(deviceId, devicePackets);
             }
+
+            // Keep the device's packets in order behind the one that is held back
+            devicePackets.add(packet);
         }
-    }
+
+        if (wakeUpDelayNanos != Long.MAX_VALUE)
+        {
+            this.scheduleSendRateWakeUp(wakeUpDelayNanos);
+        }
+
+        return packetToSend;
+    }
+
+    private long getDeviceSendRateDelayNanos(String deviceId, long nowNanos)
+    {
+        SendRateLimiter limiter = deviceId != null ? this.deviceSendRateLimiters.get(deviceId) : null;
+        return limiter != null ? limiter.getDelayNanos(nowNanos) : 0;
+    }
+
+    private boolean hasRateLimitedPacketsToSend()
+    {
+        if (this.rateLimitedPackets.isEmpty())
+        {
+            return false;
+        }
+
+        long nowNanos = System.nanoTime();
+        for (String deviceId : this.rateLimitedPackets.keySet())
+        {
+            if (this.getDeviceSendRateDelayNanos(deviceId, nowNanos) == 0)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void acquireSendRate(IotHubTransportPacket packet)
+    {
+        SendRateLimiter limiter = this.sendRateLimiter;
+        SendRateLimiter deviceLimiter = packet.getDeviceId() != null ? this.deviceSendRateLimiters.get(packet.getDeviceId()) : null;
+        if (limiter == null && deviceLimiter == null)
+        {
+            return;
+        }
+
+        long bytes = getBodyLength(packet.getMessage());
+        long nowNanos = System.nanoTime();
+        if (limiter != null)
+        {
+            limiter.acquire(bytes, nowNanos);
+        }
+
+        if (deviceLimiter != null)
+        {
+            deviceLimiter.acquire(bytes, nowNanos);
+        }
+    }
+
+    private void onSendThrottled(String deviceId)
+    {
+        long nowNanos = System.nanoTime();
+        SendRateLimiter limiter = this.sendRateLimiter;
+        if (limiter != null)
+        {
+            limiter.onThrottled(nowNanos);
+        }
+
+        SendRateLimiter deviceLimiter = deviceId != null ? this.deviceSendRateLimiters.get(deviceId) : null;
+        if (deviceLimiter != null)
+        {
+            deviceLimiter.onThrottled(nowNanos);
+        }
+    }
+
+    private void scheduleSendRateWakeUp(long delayNanos)
+    {
+        ScheduledExecutorService scheduler = this.taskScheduler;
+        if (scheduler == null || !this.isSendRateWakeUpScheduled.compareAndSet(false, true))
+        {
+            return;
+        }
+
+        try
+        {
+            scheduler.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    isSendRateWakeUpScheduled.set(false);
+                    synchronized (sendThreadLock)
+                    {
+                        notifySendTask();
+                    }
+                }
+            }, delayNanos, NANOSECONDS);
+        }
+        catch (RejectedExecutionException e)
+        {
+            // The scheduler was shut down by a close, so there is nothing left to send
+            this.isSendRateWakeUpScheduled.set(false);
+        }
+    }
+
+    /**
+     * Checks if the provided packet has expired or if the sas token has expired
+     *
+     * @param packet the packet to check for expiry
+     *
+     * @return if the message has not expired and if the sas token has not expired
+     */
+    private boolean isMessageValid(IotHubTransportPacket packet)
+    {
+        Message message = packet.getMessage();
+
+        if (message.isExpired())
+        {
+            log.warn("Message with has expired, adding to callbacks queue with MESSAGE_EXPIRED ({})", message);
+            packet.setStatus(IotHubStatusCode.MESSAGE_EXPIRED);
+            this.addToCallbackQueue(packet);
+            return false;
+        }
+
+        if (isSasTokenExpired())
+        {
+            log.debug("Creating a callback for the message with expired sas token with UNAUTHORIZED status");
+            packet.setStatus(IotHubStatusCode.UNAUTHORIZED);
+            this.addToCallbackQueue(packet);
+            this.updateStatus(
+                    IotHubConnectionStatus.DISCONNECTED,
+                    IotHubConnectionStatusChangeReason.EXPIRED_SAS_TOKEN,
+                    new SecurityException("Your sas token has expired"),
+                    packet.getMessage().getConnectionDeviceId());
+
+            return false;
+        }
+
+        return true;
+    }
+
+    private void updateStatus(IotHubConnectionStatus newConnectionStatus, IotHubConnectionStatusChangeReason reason, Throwable throwable)
+    {
+        if (this.connectionStatus != newConnectionStatus)
+        {
+            if (throwable == null)
+            {
+                log.info("Updating transport status to new status {} with reason {}", newConnectionStatus, reason);
+            }
+            else
+            {
+                log.warn("Updating transport status to new status {} with reason {}", newConnectionStatus, reason, throwable);
+            }
+
+            this.connectionStatus = newConnectionStatus;
+
+            boolean wasExecutingCallbacks = beginExecutingCallbacks();
+            try
+            {
+                this.invokeStatusCallbacks(newConnectionStatus, reason, throwable);
+            }
+            finally
+            {
+                endExecutingCallbacks(wasExecutingCallbacks);
+            }
+        }
+    }
+
+    private void invokeStatusCallbacks(IotHubConnectionStatus newConnectionStatus, IotHubConnectionStatusChangeReason reason, Throwable throwable)
+    {
+        this.deviceIOConnectionStatusChangeCallback.execute(newConnectionStatus, reason, throwable, null);
+
+        //invoke connection status callbacks
+        log.debug("Invoking connection status callbacks with new status details");
+        invokeConnectionStateCallback(newConnectionStatus, reason);
+
+        if (!isMultiplexing || newConnectionStatus != IotHubConnectionStatus.CONNECTED)
+        {
+            // When multiplexing, a different method will notify each device-specific callback when that device is online,
+            // but in cases when the tcp connection is lost and everything is disconnected retrying or disconnected, this is where the
+            // callback should be fired
+            invokeConnectionStatusChangeCallback(newConnectionStatus, reason, throwable);
+
+            for (DeviceClientConfig config : deviceClientConfigs.values())
+            {
+                deviceConnectionStates.put(config.getDeviceId(), newConnectionStatus);
+            }
+        }
+
+        // If multiplexing, fire the multiplexing state callback as long as it was set.
+        if (isMultiplexing && this.multiplexingStateCallback != null)
+        {
+            this.multiplexingStateCallback.execute(newConnectionStatus, reason, throwable, this.multiplexingStateCallbackContext);
+        }
+    }
 
     private void updateStatus(IotHubConnectionStatus newConnectionStatus, IotHubConnectionStatusChangeReason reason, Throwable throwable, String deviceId)
     {
@@ -1575,12 +2149,36 @@ public class IotHubTransport implements IotHubListener
                 this.deviceConnectionStates.put(deviceId, newConnectionStatus);
 
                 log.debug("Invoking connection status callbacks with new status details");
-                invokeConnectionStateCallback(newConnectionStatus, reason);
-                invokeConnectionStatusChangeCallback(newConnectionStatus, reason, throwable, deviceId);
+                boolean wasExecutingCallbacks = beginExecutingCallbacks();
+                try
+                {
+                    invokeConnectionStateCallback(newConnectionStatus, reason);
+                    invokeConnectionStatusChangeCallback(newConnectionStatus, reason, throwable, deviceId);
+                }
+                finally
+                {
+                    endExecutingCallbacks(wasExecutingCallbacks);
+                }
             }
         }
     }
 
+    // Returns whether this thread was already executing callbacks, to be handed back to endExecutingCallbacks
+    private static boolean beginExecutingCallbacks()
+    {
+        boolean wasExecutingCallbacks = EXECUTING_CALLBACKS.get() != null;
+        EXECUTING_CALLBACKS.set(Boolean.TRUE);
+        return wasExecutingCallbacks;
+    }
+
+    private static void endExecutingCallbacks(boolean wasExecutingCallbacks)
+    {
+        if (!wasExecutingCallbacks)
+        {
+            EXECUTING_CALLBACKS.remove();
+        }
+    }
+
     private void invokeConnectionStateCallback(IotHubConnectionStatus status, IotHubConnectionStatusChangeReason reason)
     {
         if (this.stateCallback != null)
@@ -1691,6 +2289,36 @@ public class IotHubTransport implements IotHubListener
      */
     private void addToCallbackQueue(IotHubTransportPacket packet)
     {
+        if (packet.getMessage() instanceof BatchMessage && this.iotHubTransportConnection instanceof AmqpsIotHubConnection)
+        {
+            // Completed, so the connection no longer needs to know which of its nested messages were already accepted
+            ((AmqpsIotHubConnection) this.iotHubTransportConnection).onBatchMessageCompleted((BatchMessage) packet.getMessage());
+        }
+
+        if (this.outboundQueueOptions != null && packet.getOutboundQueueBytes() >= 0)
+        {
+            // Completed, so it no longer counts against the bounds of the outbound queue
+            this.releaseOutboundQueueRoom(packet);
+        }
+
+        if (this.messageJournal != null && packet.getJournalSequenceNumber() >= 0 && packet.getStatus() != IotHubStatusCode.MESSAGE_CANCELLED_ONCLOSE)
+        {
+            // Settled, so it must not be sent again after a restart. Cancelled messages are kept to be sent after the next open.
+            synchronized (this.journalLock)
+            {
+                if (this.messageJournal != null)
+                {
+                    this.messageJournal.acknowledge(packet.getJournalSequenceNumber());
+                }
+            }
+
+            // Room was made for reading another stored message into memory
+            synchronized (this.sendThreadLock)
+            {
+                this.notifySendTask();
+            }
+        }
+
         if (packet.getCallback() != null)
         {
             synchronized (this.sendThreadLock)
@@ -1698,7 +2326,7 @@ public class IotHubTransport implements IotHubListener
                 this.callbackPacketsQueue.add(packet);
 
                 //Wake up send messages thread so that it can process this new callback if it was asleep
-                this.sendThreadLock.notifyAll();
+                this.notifySendTask();
             }
         }
     }
@@ -1726,7 +2354,7 @@ public class IotHubTransport implements IotHubListener
                 {
                     String correlationId = message.getCorrelationId();
                     CorrelatingMessageCallback correlationCallback = message.getCorrelatingMessageCallback();
-                    if (!correlationId.isEmpty() && correlationCallback != null)
+                    if (correlationId != null && !correlationId.isEmpty() && correlationCallback != null)
                     {
                         correlationCallbacks.put(correlationId, correlationCallback);
                         Object correlationCallbackContext = message.getCorrelatingMessageCallbackContext();
@@ -1749,8 +2377,574 @@ public class IotHubTransport implements IotHubListener
             this.waitingPacketsQueue.add(packet);
 
             // Wake up IotHubSendTask so it can send this message
-            this.sendThreadLock.notifyAll();
+            this.notifySendTask();
+        }
+    }
+
+    // Must be called while holding the sendThreadLock
+    private void notifySendTask()
+    {
+        this.sendThreadLock.notifyAll();
+        if (this.sendTaskSignal != null)
+        {
+            this.sendTaskSignal.run();
+        }
+    }
+
+    // Must be called while holding the receiveThreadLock
+    private void notifyReceiveTask()
+    {
+        this.receiveThreadLock.notifyAll();
+        if (this.receiveTaskSignal != null)
+        {
+            this.receiveTaskSignal.run();
+        }
+    }
+
+    /**
+     * The callback of a message in the journal, kept in memory until the message is read back from the journal.
+     */
+    private static final class JournaledCallback
+    {
+        private final IotHubEventCallback callback;
+        private final Object callbackContext;
+        private final String messageId;
+        private final String deviceId;
+
+        private JournaledCallback(IotHubEventCallback callback, Object callbackContext, String messageId, String deviceId)
+        {
+            this.callback = callback;
+            this.callbackContext = callbackContext;
+            this.messageId = messageId;
+            this.deviceId = deviceId;
+        }
+    }
+
+    /**
+     * A message waiting for room in the outbound queue.
+     */
+    private static final class PendingAdmission
+    {
+        private final IotHubTransportPacket packet;
+        private final long bytes;
+        private final AdmissionFuture future;
+
+        private PendingAdmission(IotHubTransportPacket packet, long bytes, AdmissionFuture future)
+        {
+            this.packet = packet;
+            this.bytes = bytes;
+            this.future = future;
+        }
+    }
+
+    /**
+     * The future of a message being accepted into the outbound queue, completed by this layer.
+     */
+    private static final class AdmissionFuture extends FutureTask<Void>
+    {
+        private static final Runnable NO_OP = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+            }
+        };
+
+        private AdmissionFuture()
+        {
+            super(NO_OP, null);
+        }
+
+        private static AdmissionFuture accepted()
+        {
+            AdmissionFuture future = new AdmissionFuture();
+            future.accept();
+            return future;
+        }
+
+        private void accept()
+        {
+            this.set(null);
+        }
+
+        private void reject(Exception e)
+        {
+            this.setException(e);
+        }
+    }
+
+    /**
+     * Queue the provided packet to be sent if there is room for it in the outbound queue, or apply the overflow policy
+     * if there is not. Only telemetry counts against the bounds of the outbound queue.
+     */
+    private Future<Void> addToOutboundQueue(IotHubTransportPacket packet)
+    {
+        if (this.outboundQueueOptions == null || PriorityPacketQueue.laneOf(packet) == PriorityPacketQueue.CONTROL_LANE)
+        {
+            this.addToWaitingQueue(packet);
+            return ACCEPTED;
+        }
+
+        long bytes = getBodyLength(packet.getMessage());
+        AdmissionFuture future = new AdmissionFuture();
+        List<IotHubTransportPacket> droppedPackets = new ArrayList<>();
+        boolean isAccepted;
+        synchronized (this.outboundQueueLock)
+        {
+            // Messages that are already waiting for room go first
+            if (this.pendingAdmissions.isEmpty() && this.hasOutboundQueueRoom(bytes))
+            {
+                isAccepted = true;
+            }
+            else
+            {
+                switch (this.outboundQueueOptions.getOverflowPolicy())
+                {
+                    case BLOCK:
+                        this.pendingAdmissions.add(new PendingAdmission(packet, bytes, future));
+                        log.debug("Message is waiting for room in the outbound queue ({})", packet.getMessage());
+                        return future;
+                    case DROP_OLDEST:
+                    case DROP_LOWEST_PRIORITY:
+                        isAccepted = this.dropForOutboundQueueRoom(packet, bytes, droppedPackets);
+                        break;
+                    default:
+                        isAccepted = false;
+                }
+            }
+
+            if (isAccepted)
+            {
+                this.reserveOutboundQueueRoom(packet, bytes);
+            }
+        }
+
+        for (IotHubTransportPacket droppedPacket : droppedPackets)
+        {
+            log.warn("Message was dropped from the outbound queue to make room for a newer message ({})", droppedPacket.getMessage());
+            droppedPacket.setStatus(IotHubStatusCode.THROTTLED);
+            this.addToCallbackQueue(droppedPacket);
+        }
+
+        if (isAccepted)
+        {
+            this.addToWaitingQueue(packet);
+            future.accept();
+        }
+        else
+        {
+            log.warn("Message was rejected since the outbound queue is full ({})", packet.getMessage());
+            packet.setStatus(IotHubStatusCode.THROTTLED);
+            this.addToCallbackQueue(packet);
+            future.reject(new ThrottledException("The outbound queue is full"));
+        }
+
+        return future;
+    }
+
+    /**
+     * Drop packets that are waiting to be sent until there is room for the provided packet. Packets that were already
+     * handed to the connection can't be taken back. Must be called while holding the outboundQueueLock.
+     *
+     * @return false if there was nothing left to drop before there was room for the provided packet.
+     */
+    private boolean dropForOutboundQueueRoom(IotHubTransportPacket packet, long bytes, List<IotHubTransportPacket> droppedPackets)
+    {
+        while (!this.hasOutboundQueueRoom(bytes))
+        {
+            IotHubTransportPacket packetToDrop = this.getPacketToDrop(packet);
+            if (packetToDrop == null)
+            {
+                return false;
+            }
+
+            // The send thread may have taken it in the meantime, in which case another packet is picked
+            if (this.waitingPacketsQueue.remove(packetToDrop))
+            {
+                this.releaseOutboundQueueRoomLocked(packetToDrop);
+                droppedPackets.add(packetToDrop);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Pick the waiting packet that the overflow policy drops first, or null if the provided packet should be rejected
+     * instead. Must be called while holding the outboundQueueLock.
+     */
+    private IotHubTransportPacket getPacketToDrop(IotHubTransportPacket packet)
+    {
+        boolean isByPriority = this.outboundQueueOptions.getOverflowPolicy() == OutboundQueueOverflowPolicy.DROP_LOWEST_PRIORITY;
+
+        IotHubTransportPacket packetToDrop = null;
+        for (IotHubTransportPacket waitingPacket : this.waitingPacketsQueue)
+        {
+            if (waitingPacket.getOutboundQueueBytes() < 0)
+            {
+                // Not counted against the bounds, such as a method response or a message read back from the journal
+                continue;
+            }
+
+            if (packetToDrop == null)
+            {
+                packetToDrop = waitingPacket;
+            }
+            else if (isByPriority && getPriorityRank(waitingPacket) != getPriorityRank(packetToDrop))
+            {
+                if (getPriorityRank(waitingPacket) > getPriorityRank(packetToDrop))
+                {
+                    packetToDrop = waitingPacket;
+                }
+            }
+            else if (waitingPacket.getStartTimeMillis() < packetToDrop.getStartTimeMillis())
+            {
+                packetToDrop = waitingPacket;
+            }
+        }
+
+        if (isByPriority && packetToDrop != null && getPriorityRank(packet) > getPriorityRank(packetToDrop))
+        {
+            // Everything that is waiting matters more than the new message
+            return null;
+        }
+
+        return packetToDrop;
+    }
+
+    // Higher for lower priorities
+    private static int getPriorityRank(IotHubTransportPacket packet)
+    {
+        return packet.getMessage().getPriority().ordinal();
+    }
+
+    private static long getBodyLength(Message message)
+    {
+        if (message instanceof BatchMessage)
+        {
+            long bytes = 0;
+            for (Message nestedMessage : ((BatchMessage) message).getNestedMessages())
+            {
+                bytes += getBodyLength(nestedMessage);
+            }
+
+            return bytes;
+        }
+
+        byte[] body = message.getBytesNoCopy();
+        return body != null ? body.length : 0;
+    }
+
+    /**
+     * Must be called while holding the outboundQueueLock.
+     */
+    private boolean hasOutboundQueueRoom(long bytes)
+    {
+        if (this.outboundQueueMessageCount == 0)
+        {
+            // A message larger than the byte bound still gets through on its own
+            return true;
+        }
+
+        return this.outboundQueueMessageCount < this.outboundQueueOptions.getMaxMessages()
+                && this.outboundQueueByteCount + bytes <= this.outboundQueueOptions.getMaxBytes();
+    }
+
+    /**
+     * Must be called while holding the outboundQueueLock.
+     */
+    private void reserveOutboundQueueRoom(IotHubTransportPacket packet, long bytes)
+    {
+        this.outboundQueueMessageCount++;
+        this.outboundQueueByteCount += bytes;
+        packet.setOutboundQueueBytes(bytes);
+    }
+
+    /**
+     * Must be called while holding the outboundQueueLock.
+     */
+    private void releaseOutboundQueueRoomLocked(IotHubTransportPacket packet)
+    {
+        this.outboundQueueMessageCount--;
+        this.outboundQueueByteCount -= packet.getOutboundQueueBytes();
+        packet.setOutboundQueueBytes(-1);
+    }
+
+    /**
+     * Stop counting the provided completed packet against the bounds of the outbound queue, and accept as many of the
+     * messages waiting for room as now fit.
+     */
+    private void releaseOutboundQueueRoom(IotHubTransportPacket packet)
+    {
+        List<PendingAdmission> admissions = new ArrayList<>();
+        synchronized (this.outboundQueueLock)
+        {
+            if (packet.getOutboundQueueBytes() < 0)
+            {
+                return;
+            }
+
+            this.releaseOutboundQueueRoomLocked(packet);
+
+            // Packets completed by a close make no room, since the messages waiting for room are cancelled by it too
+            while (!this.isClosing)
+            {
+                PendingAdmission pendingAdmission = this.pendingAdmissions.peek();
+                if (pendingAdmission == null)
+                {
+                    break;
+                }
+
+                if (pendingAdmission.future.isCancelled())
+                {
+                    // Withdrawn by its sender
+                    this.pendingAdmissions.remove();
+                    continue;
+                }
+
+                if (!this.hasOutboundQueueRoom(pendingAdmission.bytes))
+                {
+                    break;
+                }
+
+                this.pendingAdmissions.remove();
+
+                // Completing the future first means it can no longer be cancelled once the message is queued
+                pendingAdmission.future.accept();
+                if (!pendingAdmission.future.isCancelled())
+                {
+                    this.reserveOutboundQueueRoom(pendingAdmission.packet, pendingAdmission.bytes);
+                    admissions.add(pendingAdmission);
+                }
+            }
+        }
+
+        for (PendingAdmission admission : admissions)
+        {
+            this.addToWaitingQueue(admission.packet);
+        }
+    }
+
+    /**
+     * Executes the callbacks of the messages waiting for room in the outbound queue with MESSAGE_CANCELLED_ONCLOSE,
+     * and fails their futures.
+     */
+    private void cancelPendingAdmissions()
+    {
+        List<PendingAdmission> cancelledAdmissions;
+        synchronized (this.outboundQueueLock)
+        {
+            cancelledAdmissions = new ArrayList<>(this.pendingAdmissions);
+            this.pendingAdmissions.clear();
+        }
+
+        for (PendingAdmission cancelledAdmission : cancelledAdmissions)
+        {
+            // Messages that were withdrawn by cancelling their futures have no outcome to report
+            cancelledAdmission.future.reject(new IllegalStateException("The transport was closed before the message was accepted into the outbound queue"));
+            if (!cancelledAdmission.future.isCancelled())
+            {
+                cancelledAdmission.packet.setStatus(IotHubStatusCode.MESSAGE_CANCELLED_ONCLOSE);
+                this.addToCallbackQueue(cancelledAdmission.packet);
+            }
+        }
+    }
+
+    private void openMessageJournal() throws TransportException
+    {
+        DeviceClientConfig config = this.getDefaultConfig();
+        MessagePersistenceOptions options = config != null ? config.getMessagePersistenceOptions() : null;
+        if (options == null || this.isMultiplexing)
+        {
+            return;
+        }
+
+        synchronized (this.journalLock)
+        {
+            if (this.messageJournal != null)
+            {
+                return;
+            }
+
+            try
+            {
+                // Reading starts from the first message that was not acknowledged, so anything left over from before
+                // this open is sent again
+                this.messageJournal = MessageJournal.open(options);
+                this.maxJournaledPacketsInMemory = options.getMaxMessagesInMemory();
+            }
+            catch (IOException e)
+            {
+                throw new TransportException("Failed to open the persistent message queue", e);
+            }
+        }
+    }
+
+    private void closeMessageJournal()
+    {
+        synchronized (this.journalLock)
+        {
+            if (this.messageJournal != null)
+            {
+                this.messageJournal.close();
+                this.messageJournal = null;
+            }
+        }
+    }
+
+    private static boolean isJournalingSupported(Message message)
+    {
+        // Only plain telemetry can be rebuilt from the journal; batches, twin and method messages, and messages that
+        // are correlated with their response by object stay in memory
+        return !(message instanceof IotHubTransportMessage)
+                && !(message instanceof BatchMessage)
+                && message.getCorrelatingMessageCallback() == null;
+    }
+
+    /**
+     * Store the provided message in the message journal, if there is one.
+     *
+     * @return false if the message was not stored and should be queued in memory instead.
+     * @throws IllegalStateException if the journal is full and rejects new messages.
+     */
+    private boolean addToJournal(Message message, IotHubEventCallback callback, Object callbackContext, String deviceId)
+    {
+        List<IotHubTransportPacket> evictedPackets;
+        synchronized (this.journalLock)
+        {
+            if (this.messageJournal == null)
+            {
+                return false;
+            }
+
+            long sequenceNumber;
+            try
+            {
+                sequenceNumber = this.messageJournal.append(message);
+            }
+            catch (IOException e)
+            {
+                log.warn("Failed to store message in the persistent message queue, queueing it in memory instead ({})", message, e);
+                return false;
+            }
+
+            if (callback != null)
+            {
+                this.journaledCallbacks.put(sequenceNumber, new JournaledCallback(callback, callbackContext, message.getMessageId(), deviceId));
+            }
+
+            // Anything at or below the checkpoint that is still unread was evicted to make room for this message
+            evictedPackets = this.removeJournaledCallbacks(this.messageJournal.getCheckpoint(), IotHubStatusCode.ERROR);
+        }
+
+        for (IotHubTransportPacket evictedPacket : evictedPackets)
+        {
+            this.addToCallbackQueue(evictedPacket);
+        }
+
+        synchronized (this.sendThreadLock)
+        {
+            // Wake up IotHubSendTask so it can send this message
+            this.notifySendTask();
         }
+
+        return true;
+    }
+
+    private boolean hasJournaledPacketsToLoad()
+    {
+        synchronized (this.journalLock)
+        {
+            return this.messageJournal != null
+                    && this.messageJournal.hasUnreadMessages()
+                    && this.waitingPacketsQueue.size() + this.inProgressPackets.size() < this.maxJournaledPacketsInMemory;
+        }
+    }
+
+    /**
+     * Read stored messages back into the waiting queue, up to the configured limit of messages in memory.
+     */
+    private void loadJournaledPackets()
+    {
+        List<IotHubTransportPacket> droppedPackets;
+        synchronized (this.journalLock)
+        {
+            if (this.messageJournal == null)
+            {
+                return;
+            }
+
+            int packetsToLoad = this.maxJournaledPacketsInMemory - this.waitingPacketsQueue.size() - this.inProgressPackets.size();
+            while (packetsToLoad-- > 0)
+            {
+                MessageJournal.Record record = this.messageJournal.readNext();
+                if (record == null)
+                {
+                    break;
+                }
+
+                // Messages left over from before this client was opened have no callback
+                JournaledCallback journaledCallback = this.journaledCallbacks.remove(record.getSequenceNumber());
+                IotHubTransportPacket packet;
+                if (journaledCallback != null)
+                {
+                    packet = new IotHubTransportPacket(record.getMessage(), journaledCallback.callback, journaledCallback.callbackContext, null, System.currentTimeMillis(), journaledCallback.deviceId);
+                }
+                else
+                {
+                    packet = new IotHubTransportPacket(record.getMessage(), null, null, null, System.currentTimeMillis(), this.getDefaultConfig().getDeviceId());
+                }
+
+                packet.setJournalSequenceNumber(record.getSequenceNumber());
+                this.waitingPacketsQueue.add(packet);
+            }
+
+            // A callback that is still kept for a message the journal has read past, or evicted, belongs to a message
+            // that was dropped because it couldn't be read back
+            long droppedUpToSequenceNumber = Math.max(this.messageJournal.getLastReadSequenceNumber(), this.messageJournal.getCheckpoint());
+            droppedPackets = this.removeJournaledCallbacks(droppedUpToSequenceNumber, IotHubStatusCode.ERROR);
+        }
+
+        for (IotHubTransportPacket droppedPacket : droppedPackets)
+        {
+            this.addToCallbackQueue(droppedPacket);
+        }
+    }
+
+    /**
+     * Execute the callbacks of the stored messages that were not read back into memory with MESSAGE_CANCELLED_ONCLOSE.
+     * The messages themselves stay in the journal to be sent after the next open.
+     */
+    private void cancelJournaledCallbacks()
+    {
+        List<IotHubTransportPacket> cancelledPackets;
+        synchronized (this.journalLock)
+        {
+            cancelledPackets = this.removeJournaledCallbacks(Long.MAX_VALUE, IotHubStatusCode.MESSAGE_CANCELLED_ONCLOSE);
+        }
+
+        for (IotHubTransportPacket cancelledPacket : cancelledPackets)
+        {
+            this.addToCallbackQueue(cancelledPacket);
+        }
+    }
+
+    private List<IotHubTransportPacket> removeJournaledCallbacks(long upToSequenceNumber, IotHubStatusCode status)
+    {
+        List<IotHubTransportPacket> packets = new ArrayList<>();
+        NavigableMap<Long, JournaledCallback> removedCallbacks = this.journaledCallbacks.headMap(upToSequenceNumber, true);
+        for (JournaledCallback journaledCallback : removedCallbacks.values())
+        {
+            // The message itself is on disk; the callback only needs its id for logging
+            Message message = new Message();
+            message.setMessageId(journaledCallback.messageId);
+
+            IotHubTransportPacket packet = new IotHubTransportPacket(message, journaledCallback.callback, journaledCallback.callbackContext, status, System.currentTimeMillis(), journaledCallback.deviceId);
+            packets.add(packet);
+        }
+
+        removedCallbacks.clear();
+        return packets;
     }
 
     private void addToReceivedMessagesQueue(IotHubTransportMessage message)
@@ -1760,7 +2954,7 @@ public class IotHubTransport implements IotHubListener
             this.receivedMessagesQueue.add(message);
 
             // Wake up IotHubReceiveTask so it can handle receiving this message
-            this.receiveThreadLock.notifyAll();
+            this.notifyReceiveTask();
         }
     }
 
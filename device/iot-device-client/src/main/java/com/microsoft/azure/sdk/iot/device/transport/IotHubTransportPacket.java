@@ -21,6 +21,12 @@ public final class IotHubTransportPacket
     private int currentRetryAttempt;
     private final String deviceId;
 
+    // The sequence number of the message in the persistent message journal, or -1 if it was not stored there
+    private long journalSequenceNumber = -1;
+
+    // The bytes this packet counts for against the bounds of the outbound queue, or -1 if it is not counted against them
+    private long outboundQueueBytes = -1;
+
     /**
      * Constructor.
      *
@@ -149,4 +155,24 @@ public final class IotHubTransportPacket
     public String getDeviceId() {
         return deviceId;
     }
+
+    long getJournalSequenceNumber()
+    {
+        return this.journalSequenceNumber;
+    }
+
+    void setJournalSequenceNumber(long journalSequenceNumber)
+    {
+        this.journalSequenceNumber = journalSequenceNumber;
+    }
+
+    long getOutboundQueueBytes()
+    {
+        return this.outboundQueueBytes;
+    }
+
+    void setOutboundQueueBytes(long outboundQueueBytes)
+    {
+        this.outboundQueueBytes = outboundQueueBytes;
+    }
 }
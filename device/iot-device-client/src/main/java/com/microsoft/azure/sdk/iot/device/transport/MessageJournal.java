@@ -0,0 +1,852 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.MessagePersistenceEvictionPolicy;
+import com.microsoft.azure.sdk.iot.device.MessagePersistenceOptions;
+import com.microsoft.azure.sdk.iot.device.MessagePriority;
+import com.microsoft.azure.sdk.iot.device.MessageProperty;
+import com.microsoft.azure.sdk.iot.device.MessageType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of outbound telemetry, stored in memory mapped segment files. Each message gets a sequence
+ * number when it is appended, is read back in order to be sent, and is acknowledged once IoT Hub has settled it.
+ * The sequence number below which every message has been acknowledged is checkpointed to disk, and segments that hold
+ * only acknowledged messages are deleted. When a journal is opened, reading starts again from the checkpoint, so
+ * messages that were not acknowledged by the previous instance are sent again.
+ *
+ * <p>Not thread safe; callers synchronize access.</p>
+ */
+@Slf4j
+final class MessageJournal
+{
+    private static final String SEGMENT_FILE_PREFIX = "segment-";
+    private static final String SEGMENT_FILE_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE_NAME = "checkpoint";
+
+    // Each record is [payload length][CRC32 of payload][sequence number][payload]. A length of 0 ends a segment.
+    private static final int RECORD_HEADER_SIZE = 4 + 4 + 8;
+    private static final int END_OF_SEGMENT_MARKER_SIZE = 4;
+
+    // The checkpoint file holds two [sequence number][CRC32 of sequence number] slots that are written alternately,
+    // so that a torn write leaves the other slot intact
+    private static final int CHECKPOINT_SLOT_SIZE = 8 + 8;
+    private static final int ACKNOWLEDGEMENTS_PER_CHECKPOINT = 64;
+
+    private static final byte RECORD_FORMAT_VERSION = 1;
+
+    /**
+     * A message read back from the journal.
+     */
+    static final class Record
+    {
+        private final long sequenceNumber;
+        private final Message message;
+
+        private Record(long sequenceNumber, Message message)
+        {
+            this.sequenceNumber = sequenceNumber;
+            this.message = message;
+        }
+
+        long getSequenceNumber()
+        {
+            return this.sequenceNumber;
+        }
+
+        Message getMessage()
+        {
+            return this.message;
+        }
+    }
+
+    private static final class Segment
+    {
+        private final File file;
+        private final long firstSequenceNumber;
+        private final int capacity;
+        private long lastSequenceNumber;
+        private int writePosition;
+
+        // Only the segment being written to and the segment being read from stay mapped
+        private MappedByteBuffer buffer;
+
+        private Segment(File file, long firstSequenceNumber, int capacity)
+        {
+            this.file = file;
+            this.firstSequenceNumber = firstSequenceNumber;
+            this.capacity = capacity;
+            this.lastSequenceNumber = firstSequenceNumber - 1;
+        }
+
+        private boolean isEmpty()
+        {
+            return this.lastSequenceNumber < this.firstSequenceNumber;
+        }
+    }
+
+    private final File directory;
+    private final int segmentSizeBytes;
+    private final long maxDiskUsageBytes;
+    private final MessagePersistenceEvictionPolicy evictionPolicy;
+
+    private final List<Segment> segments = new ArrayList<>();
+    private long diskUsageBytes;
+    private long nextSequenceNumber;
+
+    // Every sequence number up to and including the checkpoint has been acknowledged or evicted
+    private long checkpoint;
+    private final TreeSet<Long> acknowledgedAboveCheckpoint = new TreeSet<>();
+    private int acknowledgementsSinceCheckpointWrite;
+    private int checkpointWrites;
+    private final RandomAccessFile checkpointFile;
+
+    private int readSegmentIndex;
+    private int readPosition;
+    private long lastReadSequenceNumber;
+
+    private boolean isClosed;
+
+    private MessageJournal(MessagePersistenceOptions options, RandomAccessFile checkpointFile)
+    {
+        this.directory = options.getDirectory();
+        this.segmentSizeBytes = options.getSegmentSizeBytes();
+        this.maxDiskUsageBytes = options.getMaxDiskUsageBytes();
+        this.evictionPolicy = options.getEvictionPolicy();
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Open the journal in the directory of the provided options, creating it if it does not exist, and position the
+     * read cursor at the first message that has not been acknowledged.
+     *
+     * @param options the persistence settings.
+     * @return the opened journal.
+     * @throws IllegalArgumentException if any of the options is invalid.
+     * @throws IOException if the journal cannot be read or created.
+     */
+    static MessageJournal open(MessagePersistenceOptions options) throws IllegalArgumentException, IOException
+    {
+        if (options == null || options.getDirectory() == null)
+        {
+            throw new IllegalArgumentException("The directory for message persistence cannot be null");
+        }
+
+        if (options.getSegmentSizeBytes() <= RECORD_HEADER_SIZE + END_OF_SEGMENT_MARKER_SIZE)
+        {
+            throw new IllegalArgumentException("The segment size for message persistence is too small");
+        }
+
+        if (options.getMaxDiskUsageBytes() < options.getSegmentSizeBytes())
+        {
+            throw new IllegalArgumentException("The max disk usage for message persistence cannot be smaller than the segment size");
+        }
+
+        if (options.getEvictionPolicy() == null)
+        {
+            throw new IllegalArgumentException("The eviction policy for message persistence cannot be null");
+        }
+
+        if (options.getMaxMessagesInMemory() <= 0)
+        {
+            throw new IllegalArgumentException("The max messages in memory for message persistence must be greater than 0");
+        }
+
+        File directory = options.getDirectory();
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Failed to create the message persistence directory " + directory);
+        }
+
+        MessageJournal journal = new MessageJournal(options, new RandomAccessFile(new File(directory, CHECKPOINT_FILE_NAME), "rw"));
+        try
+        {
+            journal.load();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            journal.close();
+            throw e;
+        }
+
+        return journal;
+    }
+
+    /**
+     * Append the provided message to the journal.
+     *
+     * @param message the message to append.
+     * @return the sequence number of the message.
+     * @throws IllegalStateException if the journal is full and its eviction policy is
+     * {@link MessagePersistenceEvictionPolicy#REJECT_NEW}, or if it has been closed.
+     * @throws IOException if a new segment cannot be created.
+     */
+    long append(Message message) throws IllegalStateException, IOException
+    {
+        if (this.isClosed)
+        {
+            throw new IllegalStateException("The message journal has been closed");
+        }
+
+        byte[] payload = encode(message);
+        int recordSize = RECORD_HEADER_SIZE + payload.length;
+
+        Segment segment = this.segments.isEmpty() ? null : this.segments.get(this.segments.size() - 1);
+        if (segment == null || segment.capacity - segment.writePosition < recordSize + END_OF_SEGMENT_MARKER_SIZE)
+        {
+            segment = createSegment(Math.max(this.segmentSizeBytes, recordSize + END_OF_SEGMENT_MARKER_SIZE));
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+
+        long sequenceNumber = this.nextSequenceNumber++;
+        ByteBuffer buffer = segment.buffer;
+        buffer.position(segment.writePosition);
+        buffer.putInt(payload.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.putLong(sequenceNumber);
+        buffer.put(payload);
+
+        // The space after the last record may hold a stale record if the previous instance stopped mid write
+        buffer.putInt(0);
+
+        segment.writePosition += recordSize;
+        segment.lastSequenceNumber = sequenceNumber;
+        return sequenceNumber;
+    }
+
+    /**
+     * @return the next message that has not been read since the journal was opened and has not been acknowledged, or
+     * null if there is none.
+     */
+    Record readNext()
+    {
+        while (!this.isClosed && this.readSegmentIndex < this.segments.size())
+        {
+            Segment segment = this.segments.get(this.readSegmentIndex);
+            if (this.readPosition >= segment.writePosition)
+            {
+                if (this.readSegmentIndex == this.segments.size() - 1)
+                {
+                    // Caught up with the writer
+                    return null;
+                }
+
+                unmapIfIdle(segment);
+                this.readSegmentIndex++;
+                this.readPosition = 0;
+                continue;
+            }
+
+            ByteBuffer buffer;
+            try
+            {
+                buffer = map(segment).duplicate();
+            }
+            catch (IOException e)
+            {
+                log.warn("Failed to map message journal segment {}, dropping messages {} to {}", segment.file, segment.firstSequenceNumber, segment.lastSequenceNumber, e);
+                skipSegment(segment);
+                continue;
+            }
+
+            buffer.position(this.readPosition);
+            int payloadLength = buffer.getInt();
+            buffer.getInt();
+            long sequenceNumber = buffer.getLong();
+            byte[] payload = new byte[payloadLength];
+            buffer.get(payload);
+            this.readPosition += RECORD_HEADER_SIZE + payloadLength;
+            this.lastReadSequenceNumber = sequenceNumber;
+
+            if (sequenceNumber <= this.checkpoint || this.acknowledgedAboveCheckpoint.contains(sequenceNumber))
+            {
+                continue;
+            }
+
+            try
+            {
+                return new Record(sequenceNumber, decode(payload));
+            }
+            catch (IOException | RuntimeException e)
+            {
+                log.warn("Failed to decode message {} of the message journal, skipping it", sequenceNumber, e);
+                acknowledge(sequenceNumber);
+            }
+        }
+
+        return null;
+    }
+
+    // Moves the read cursor past a segment that can't be read, and acknowledges its messages so that neither the
+    // reader nor the checkpoint waits on them
+    private void skipSegment(Segment segment)
+    {
+        this.readPosition = segment.writePosition;
+        this.lastReadSequenceNumber = Math.max(this.lastReadSequenceNumber, segment.lastSequenceNumber);
+        for (long sequenceNumber = segment.firstSequenceNumber; sequenceNumber <= segment.lastSequenceNumber; sequenceNumber++)
+        {
+            acknowledge(sequenceNumber);
+        }
+    }
+
+    /**
+     * @return true if messages were appended after the last one returned by {@link #readNext()}.
+     */
+    boolean hasUnreadMessages()
+    {
+        return !this.isClosed && this.lastReadSequenceNumber < this.nextSequenceNumber - 1;
+    }
+
+    /**
+     * Record that the message with the provided sequence number was settled by IoT Hub, so that it is not sent again
+     * when the journal is next opened. Does nothing if it was already acknowledged or evicted.
+     *
+     * @param sequenceNumber the sequence number returned when the message was appended.
+     */
+    void acknowledge(long sequenceNumber)
+    {
+        if (this.isClosed || sequenceNumber <= this.checkpoint || sequenceNumber >= this.nextSequenceNumber)
+        {
+            return;
+        }
+
+        this.acknowledgedAboveCheckpoint.add(sequenceNumber);
+        long previousCheckpoint = this.checkpoint;
+        while (this.acknowledgedAboveCheckpoint.remove(this.checkpoint + 1))
+        {
+            this.checkpoint++;
+        }
+
+        if (this.checkpoint == previousCheckpoint)
+        {
+            return;
+        }
+
+        boolean isSegmentDeleted = deleteAcknowledgedSegments();
+        if (isSegmentDeleted || ++this.acknowledgementsSinceCheckpointWrite >= ACKNOWLEDGEMENTS_PER_CHECKPOINT)
+        {
+            writeCheckpoint();
+        }
+    }
+
+    /**
+     * @return the sequence number up to which every message has been acknowledged or evicted.
+     */
+    long getCheckpoint()
+    {
+        return this.checkpoint;
+    }
+
+    /**
+     * @return the sequence number of the last message that {@link #readNext()} returned or skipped.
+     */
+    long getLastReadSequenceNumber()
+    {
+        return this.lastReadSequenceNumber;
+    }
+
+    /**
+     * @return the disk space taken up by the segment files.
+     */
+    long getDiskUsageBytes()
+    {
+        return this.diskUsageBytes;
+    }
+
+    /**
+     * Write the checkpoint and release the segment files. Messages that were not acknowledged are read again when
+     * the journal is next opened.
+     */
+    void close()
+    {
+        if (this.isClosed)
+        {
+            return;
+        }
+
+        try
+        {
+            writeCheckpoint();
+            this.checkpointFile.getChannel().force(false);
+        }
+        catch (IOException e)
+        {
+            log.warn("Failed to flush the message journal checkpoint", e);
+        }
+        finally
+        {
+            this.isClosed = true;
+            for (Segment segment : this.segments)
+            {
+                if (segment.buffer != null)
+                {
+                    segment.buffer.force();
+                    segment.buffer = null;
+                }
+            }
+
+            try
+            {
+                this.checkpointFile.close();
+            }
+            catch (IOException e)
+            {
+                log.debug("Failed to close the message journal checkpoint file", e);
+            }
+        }
+    }
+
+    private void load() throws IOException
+    {
+        this.checkpoint = readCheckpoint();
+
+        File[] segmentFiles = this.directory.listFiles(new FilenameFilter()
+        {
+            @Override
+            public boolean accept(File dir, String name)
+            {
+                return name.startsWith(SEGMENT_FILE_PREFIX) && name.endsWith(SEGMENT_FILE_SUFFIX);
+            }
+        });
+
+        List<Segment> loadedSegments = new ArrayList<>();
+        if (segmentFiles != null)
+        {
+            for (File segmentFile : segmentFiles)
+            {
+                String name = segmentFile.getName();
+                try
+                {
+                    long firstSequenceNumber = Long.parseLong(name.substring(SEGMENT_FILE_PREFIX.length(), name.length() - SEGMENT_FILE_SUFFIX.length()));
+                    loadedSegments.add(new Segment(segmentFile, firstSequenceNumber, (int) segmentFile.length()));
+                }
+                catch (NumberFormatException e)
+                {
+                    log.warn("Ignoring unexpected file {} in the message persistence directory", segmentFile);
+                }
+            }
+        }
+
+        Collections.sort(loadedSegments, new Comparator<Segment>()
+        {
+            @Override
+            public int compare(Segment first, Segment second)
+            {
+                return Long.compare(first.firstSequenceNumber, second.firstSequenceNumber);
+            }
+        });
+
+        long expectedSequenceNumber = -1;
+        for (Segment segment : loadedSegments)
+        {
+            if (expectedSequenceNumber != -1 && segment.firstSequenceNumber != expectedSequenceNumber)
+            {
+                log.warn("Message journal segment {} does not continue the previous segment, later segments are discarded", segment.file);
+                deleteSegmentFile(segment.file);
+                continue;
+            }
+
+            scan(segment);
+            this.segments.add(segment);
+            this.diskUsageBytes += segment.capacity;
+            expectedSequenceNumber = segment.lastSequenceNumber + 1;
+        }
+
+        this.nextSequenceNumber = Math.max(expectedSequenceNumber, this.checkpoint + 1);
+        if (!this.segments.isEmpty() && this.segments.get(0).firstSequenceNumber > this.checkpoint + 1)
+        {
+            // Segments were removed from underneath the journal; what they held can't be sent anymore
+            this.checkpoint = this.segments.get(0).firstSequenceNumber - 1;
+        }
+
+        deleteAcknowledgedSegments();
+
+        // Scanning mapped every segment; only the one new messages are appended to stays mapped
+        for (int i = 0; i < this.segments.size(); i++)
+        {
+            unmapIfIdle(this.segments.get(i));
+        }
+
+        this.readSegmentIndex = 0;
+        this.readPosition = 0;
+        this.lastReadSequenceNumber = this.checkpoint;
+        log.debug("Opened message journal in {} with {} messages that were not acknowledged", this.directory, this.nextSequenceNumber - 1 - this.checkpoint);
+    }
+
+    private void scan(Segment segment) throws IOException
+    {
+        ByteBuffer buffer = map(segment).duplicate();
+        long expectedSequenceNumber = segment.firstSequenceNumber;
+        int position = 0;
+        while (position + RECORD_HEADER_SIZE <= segment.capacity)
+        {
+            buffer.position(position);
+            int payloadLength = buffer.getInt();
+            int payloadCrc = buffer.getInt();
+            long sequenceNumber = buffer.getLong();
+            if (payloadLength <= 0
+                    || payloadLength > segment.capacity - position - RECORD_HEADER_SIZE
+                    || sequenceNumber != expectedSequenceNumber)
+            {
+                break;
+            }
+
+            byte[] payload = new byte[payloadLength];
+            buffer.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+            if ((int) crc.getValue() != payloadCrc)
+            {
+                log.warn("Message journal segment {} ends with a partially written message, which is discarded", segment.file);
+                break;
+            }
+
+            position += RECORD_HEADER_SIZE + payloadLength;
+            segment.lastSequenceNumber = sequenceNumber;
+            expectedSequenceNumber++;
+        }
+
+        segment.writePosition = position;
+    }
+
+    private Segment createSegment(int capacity) throws IOException
+    {
+        Segment previousSegment = this.segments.isEmpty() ? null : this.segments.get(this.segments.size() - 1);
+        if (previousSegment != null && previousSegment.isEmpty())
+        {
+            // Nothing was written to it, so it can be replaced rather than left behind as an empty file
+            removeSegment(this.segments.size() - 1);
+        }
+
+        while (this.diskUsageBytes + capacity > this.maxDiskUsageBytes)
+        {
+            if (this.evictionPolicy == MessagePersistenceEvictionPolicy.REJECT_NEW || this.segments.isEmpty())
+            {
+                throw new IllegalStateException("The persistent message queue is full");
+            }
+
+            Segment evictedSegment = this.segments.get(0);
+            log.warn("The persistent message queue is full, dropping messages {} to {}", evictedSegment.firstSequenceNumber, evictedSegment.lastSequenceNumber);
+            this.checkpoint = Math.max(this.checkpoint, evictedSegment.lastSequenceNumber);
+            this.acknowledgedAboveCheckpoint.headSet(this.checkpoint, true).clear();
+            removeSegment(0);
+            writeCheckpoint();
+        }
+
+        if (previousSegment != null && previousSegment.buffer != null)
+        {
+            previousSegment.buffer.force();
+        }
+
+        File file = new File(this.directory, String.format("%s%020d%s", SEGMENT_FILE_PREFIX, this.nextSequenceNumber, SEGMENT_FILE_SUFFIX));
+        Segment segment = new Segment(file, this.nextSequenceNumber, capacity);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"))
+        {
+            randomAccessFile.setLength(capacity);
+        }
+
+        this.segments.add(segment);
+        this.diskUsageBytes += capacity;
+        map(segment);
+
+        if (previousSegment != null)
+        {
+            unmapIfIdle(previousSegment);
+        }
+
+        return segment;
+    }
+
+    private boolean deleteAcknowledgedSegments()
+    {
+        boolean isSegmentDeleted = false;
+
+        // The segment being written to is kept even if everything in it was acknowledged
+        while (this.segments.size() > 1 && this.segments.get(0).lastSequenceNumber <= this.checkpoint)
+        {
+            removeSegment(0);
+            isSegmentDeleted = true;
+        }
+
+        return isSegmentDeleted;
+    }
+
+    private void removeSegment(int index)
+    {
+        Segment segment = this.segments.remove(index);
+        segment.buffer = null;
+        this.diskUsageBytes -= segment.capacity;
+        deleteSegmentFile(segment.file);
+
+        if (this.readSegmentIndex > index)
+        {
+            this.readSegmentIndex--;
+        }
+        else if (this.readSegmentIndex == index)
+        {
+            this.readPosition = 0;
+        }
+    }
+
+    private static void deleteSegmentFile(File file)
+    {
+        if (!file.delete() && file.exists())
+        {
+            log.warn("Failed to delete message journal segment {}", file);
+        }
+    }
+
+    private MappedByteBuffer map(Segment segment) throws IOException
+    {
+        if (segment.buffer == null)
+        {
+            // The mapping stays valid after the file is closed
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(segment.file, "rw"))
+            {
+                segment.buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segment.capacity);
+            }
+        }
+
+        return segment.buffer;
+    }
+
+    private void unmapIfIdle(Segment segment)
+    {
+        int index = this.segments.indexOf(segment);
+        boolean isWriteSegment = index == this.segments.size() - 1;
+        boolean isReadSegment = index == this.readSegmentIndex;
+        if (!isWriteSegment && !isReadSegment)
+        {
+            segment.buffer = null;
+        }
+    }
+
+    private long readCheckpoint() throws IOException
+    {
+        long checkpoint = 0;
+        long fileLength = this.checkpointFile.length();
+        for (int slot = 0; slot < 2 && (long) (slot + 1) * CHECKPOINT_SLOT_SIZE <= fileLength; slot++)
+        {
+            this.checkpointFile.seek((long) slot * CHECKPOINT_SLOT_SIZE);
+            long value = this.checkpointFile.readLong();
+            long valueCrc = this.checkpointFile.readLong();
+            if (valueCrc == checksum(value) && value > checkpoint)
+            {
+                checkpoint = value;
+
+                // The next write goes to the other slot so that this one stays intact
+                this.checkpointWrites = slot + 1;
+            }
+        }
+
+        return checkpoint;
+    }
+
+    private void writeCheckpoint()
+    {
+        this.acknowledgementsSinceCheckpointWrite = 0;
+        try
+        {
+            this.checkpointFile.seek((long) (this.checkpointWrites++ % 2) * CHECKPOINT_SLOT_SIZE);
+            this.checkpointFile.writeLong(this.checkpoint);
+            this.checkpointFile.writeLong(checksum(this.checkpoint));
+        }
+        catch (IOException e)
+        {
+            // Not fatal; the messages since the last checkpoint are just sent again after a restart
+            log.warn("Failed to write the message journal checkpoint", e);
+        }
+    }
+
+    private static long checksum(long value)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(8).putLong(value).array(), 0, 8);
+        return crc.getValue();
+    }
+
+    private static byte[] encode(Message message)
+    {
+        try
+        {
+            byte[] body = message.getBytesNoCopy();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 + (body != null ? body.length : 0));
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeByte(RECORD_FORMAT_VERSION);
+            writeString(output, message.getMessageId());
+            writeString(output, message.getCorrelationId());
+            writeString(output, message.getUserId());
+            writeString(output, message.getContentType());
+            writeString(output, message.getContentEncoding());
+            writeString(output, message.getOutputName());
+            writeString(output, message.getConnectionDeviceId());
+            writeString(output, message.getConnectionModuleId());
+            writeString(output, message.getMessageType() != null ? message.getMessageType().name() : null);
+            output.writeLong(message.getCreationTimeUTC() != null ? message.getCreationTimeUTC().getTime() : -1);
+            output.writeLong(message.getAbsoluteExpiryTime());
+            output.writeBoolean(message.isSecurityMessage());
+            writeString(output, message.getPriority().name());
+
+            MessageProperty[] properties = message.getProperties();
+            output.writeInt(properties.length);
+            for (MessageProperty property : properties)
+            {
+                writeString(output, property.getName());
+                writeString(output, property.getValue());
+            }
+
+            if (body == null)
+            {
+                output.writeInt(-1);
+            }
+            else
+            {
+                output.writeInt(body.length);
+                output.write(body);
+            }
+
+            output.flush();
+            return bytes.toByteArray();
+        }
+        catch (IOException e)
+        {
+            // Writing to a ByteArrayOutputStream doesn't throw
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Message decode(byte[] payload) throws IOException
+    {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+        byte version = input.readByte();
+        if (version != RECORD_FORMAT_VERSION)
+        {
+            throw new IOException("Unsupported message journal record version " + version);
+        }
+
+        String messageId = readString(input);
+        String correlationId = readString(input);
+        String userId = readString(input);
+        String contentType = readString(input);
+        String contentEncoding = readString(input);
+        String outputName = readString(input);
+        String connectionDeviceId = readString(input);
+        String connectionModuleId = readString(input);
+        String messageType = readString(input);
+        long creationTimeUtc = input.readLong();
+        long absoluteExpiryTime = input.readLong();
+        boolean isSecurityMessage = input.readBoolean();
+        String priority = readString(input);
+
+        int propertyCount = input.readInt();
+        List<String[]> properties = new ArrayList<>(propertyCount);
+        for (int i = 0; i < propertyCount; i++)
+        {
+            properties.add(new String[] { readString(input), readString(input) });
+        }
+
+        int bodyLength = input.readInt();
+        Message message;
+        if (bodyLength < 0)
+        {
+            message = new Message();
+        }
+        else
+        {
+            byte[] body = new byte[bodyLength];
+            input.readFully(body);
+            message = new Message(body);
+        }
+
+        message.setMessageId(messageId);
+        if (correlationId != null && !correlationId.isEmpty())
+        {
+            message.setCorrelationId(correlationId);
+        }
+
+        message.setUserId(userId);
+        message.setContentTypeFinal(contentType);
+        message.setContentEncoding(contentEncoding);
+        message.setOutputName(outputName);
+        message.setConnectionDeviceId(connectionDeviceId);
+        message.setConnectionModuleId(connectionModuleId);
+        if (messageType != null)
+        {
+            message.setMessageType(MessageType.valueOf(messageType));
+        }
+
+        if (creationTimeUtc >= 0)
+        {
+            message.setCreationTimeUTC(new Date(creationTimeUtc));
+        }
+
+        message.setAbsoluteExpiryTime(absoluteExpiryTime);
+        if (priority != null)
+        {
+            message.setPriority(MessagePriority.valueOf(priority));
+        }
+
+        if (isSecurityMessage)
+        {
+            message.setAsSecurityMessage();
+        }
+
+        for (String[] property : properties)
+        {
+            message.setProperty(property[0], property[1]);
+        }
+
+        return message;
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException
+    {
+        if (value == null)
+        {
+            output.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException
+    {
+        int length = input.readInt();
+        if (length < 0)
+        {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
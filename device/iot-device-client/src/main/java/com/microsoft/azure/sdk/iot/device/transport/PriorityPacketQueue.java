@@ -0,0 +1,250 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.MessagePriority;
+import com.microsoft.azure.sdk.iot.device.MessageType;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The queue of packets waiting to be sent. Packets are kept in one FIFO lane per priority class, and polled from the
+ * lanes by smooth weighted round robin, so that direct method responses and twin operations don't wait behind a
+ * telemetry backlog, and high priority telemetry overtakes normal and low priority telemetry, without any lane being
+ * starved.
+ *
+ * <p>Offering is lock free, so any thread can queue a packet without waiting on the send thread. Polling is
+ * serialized, since it advances the round robin.</p>
+ */
+final class PriorityPacketQueue extends AbstractQueue<IotHubTransportPacket>
+{
+    // Lanes in the order that peek looks at them
+    static final int CONTROL_LANE = 0;
+    static final int HIGH_PRIORITY_LANE = 1;
+    static final int NORMAL_PRIORITY_LANE = 2;
+    static final int LOW_PRIORITY_LANE = 3;
+
+    // Out of every 15 packets polled while all lanes are backlogged, 8 are control packets, 4 are high priority
+    // telemetry, 2 are normal priority telemetry and 1 is low priority telemetry
+    private static final int[] LANE_WEIGHTS = {8, 4, 2, 1};
+
+    private final List<Queue<IotHubTransportPacket>> lanes = new ArrayList<>(LANE_WEIGHTS.length);
+    private final int[] currentWeights = new int[LANE_WEIGHTS.length];
+    private final AtomicInteger size = new AtomicInteger();
+    private final Object pollLock = new Object();
+
+    PriorityPacketQueue()
+    {
+        for (int lane = 0; lane < LANE_WEIGHTS.length; lane++)
+        {
+            this.lanes.add(new ConcurrentLinkedQueue<IotHubTransportPacket>());
+        }
+    }
+
+    @Override
+    public boolean offer(IotHubTransportPacket packet)
+    {
+        if (packet == null)
+        {
+            throw new NullPointerException("packet cannot be null");
+        }
+
+        this.lanes.get(laneOf(packet)).offer(packet);
+        this.size.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public IotHubTransportPacket poll()
+    {
+        synchronized (this.pollLock)
+        {
+            // Smooth weighted round robin over the lanes that have packets: every such lane earns its weight, the
+            // richest lane is polled and pays back the total weight that was handed out
+            int selectedLane = -1;
+            int totalWeight = 0;
+            for (int lane = 0; lane < LANE_WEIGHTS.length; lane++)
+            {
+                if (this.lanes.get(lane).isEmpty())
+                {
+                    continue;
+                }
+
+                this.currentWeights[lane] += LANE_WEIGHTS[lane];
+                totalWeight += LANE_WEIGHTS[lane];
+                if (selectedLane == -1 || this.currentWeights[lane] > this.currentWeights[selectedLane])
+                {
+                    selectedLane = lane;
+                }
+            }
+
+            if (selectedLane == -1)
+            {
+                return null;
+            }
+
+            this.currentWeights[selectedLane] -= totalWeight;
+
+            IotHubTransportPacket packet = this.lanes.get(selectedLane).poll();
+            if (packet == null)
+            {
+                // The lane was emptied through the iterator in the meantime
+                return this.poll();
+            }
+
+            this.size.decrementAndGet();
+
+            if (this.size.get() == 0)
+            {
+                // Start the next backlog on an even footing
+                for (int lane = 0; lane < LANE_WEIGHTS.length; lane++)
+                {
+                    this.currentWeights[lane] = 0;
+                }
+            }
+
+            return packet;
+        }
+    }
+
+    /**
+     * Get the head of the highest priority lane that has packets. This isn't necessarily the packet that the next
+     * {@link #poll()} returns, since that also depends on what the lanes were polled for before.
+     *
+     * @return the head of the highest priority lane that has packets, or null if there are none.
+     */
+    @Override
+    public IotHubTransportPacket peek()
+    {
+        for (Queue<IotHubTransportPacket> lane : this.lanes)
+        {
+            IotHubTransportPacket packet = lane.peek();
+            if (packet != null)
+            {
+                return packet;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Remove the provided packet if it is still queued.
+     *
+     * @param packet the packet to remove.
+     * @return true if this call removed the packet, false if it wasn't queued or was polled in the meantime.
+     */
+    @Override
+    public boolean remove(Object packet)
+    {
+        if (!(packet instanceof IotHubTransportPacket))
+        {
+            return false;
+        }
+
+        // Only count the removal if the packet wasn't polled in the meantime
+        if (this.lanes.get(laneOf((IotHubTransportPacket) packet)).remove(packet))
+        {
+            this.size.decrementAndGet();
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public int size()
+    {
+        return this.size.get();
+    }
+
+    @Override
+    public Iterator<IotHubTransportPacket> iterator()
+    {
+        return new Iterator<IotHubTransportPacket>()
+        {
+            private int lane = 0;
+            private Iterator<IotHubTransportPacket> laneIterator = lanes.get(0).iterator();
+            private IotHubTransportPacket lastReturned;
+            private int lastReturnedLane;
+
+            @Override
+            public boolean hasNext()
+            {
+                while (!this.laneIterator.hasNext() && this.lane < lanes.size() - 1)
+                {
+                    this.lane++;
+                    this.laneIterator = lanes.get(this.lane).iterator();
+                }
+
+                return this.laneIterator.hasNext();
+            }
+
+            @Override
+            public IotHubTransportPacket next()
+            {
+                if (!hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+
+                this.lastReturned = this.laneIterator.next();
+                this.lastReturnedLane = this.lane;
+                return this.lastReturned;
+            }
+
+            @Override
+            public void remove()
+            {
+                if (this.lastReturned == null)
+                {
+                    throw new IllegalStateException("next has not been called");
+                }
+
+                // Only count the removal if the packet wasn't polled in the meantime
+                if (lanes.get(this.lastReturnedLane).remove(this.lastReturned))
+                {
+                    size.decrementAndGet();
+                }
+
+                this.lastReturned = null;
+            }
+        };
+    }
+
+    static int laneOf(IotHubTransportPacket packet)
+    {
+        Message message = packet.getMessage();
+        if (message == null)
+        {
+            return NORMAL_PRIORITY_LANE;
+        }
+
+        MessageType messageType = message.getMessageType();
+        if (messageType == MessageType.DEVICE_METHODS || messageType == MessageType.DEVICE_TWIN)
+        {
+            return CONTROL_LANE;
+        }
+
+        MessagePriority priority = message.getPriority();
+        if (priority == MessagePriority.HIGH)
+        {
+            return HIGH_PRIORITY_LANE;
+        }
+        else if (priority == MessagePriority.LOW)
+        {
+            return LOW_PRIORITY_LANE;
+        }
+
+        return NORMAL_PRIORITY_LANE;
+    }
+}
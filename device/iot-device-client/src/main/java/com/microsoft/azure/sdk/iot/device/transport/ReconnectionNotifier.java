@@ -5,6 +5,8 @@
 
 package com.microsoft.azure.sdk.iot.device.transport;
 
+import java.util.concurrent.ThreadFactory;
+
 public final class ReconnectionNotifier
 {
     private final static String RECONNECTION_THREAD_NAME ="azure-iot-sdk-ConnectionReconnectionTask";
@@ -14,7 +16,12 @@ public final class ReconnectionNotifier
 
     public static void notifyDisconnectAsync(final Throwable connectionLossCause, final IotHubListener listener, final String connectionId)
     {
-        new Thread(
+        notifyDisconnectAsync(connectionLossCause, listener, connectionId, null);
+    }
+
+    public static void notifyDisconnectAsync(final Throwable connectionLossCause, final IotHubListener listener, final String connectionId, ThreadFactory threadFactory)
+    {
+        startThread(
                 new Runnable()
                 {
                     @Override public void run()
@@ -22,13 +29,18 @@ public final class ReconnectionNotifier
                         listener.onConnectionLost(connectionLossCause,connectionId);
                     }
                 },
-                RECONNECTION_THREAD_NAME + ":" + connectionId
-        ).start();
+                RECONNECTION_THREAD_NAME + ":" + connectionId,
+                threadFactory);
     }
 
     public static void notifyDeviceDisconnectAsync(final Throwable connectionLossCause, final IotHubListener listener, final String connectionId, final String deviceId)
     {
-        new Thread(
+        notifyDeviceDisconnectAsync(connectionLossCause, listener, connectionId, deviceId, null);
+    }
+
+    public static void notifyDeviceDisconnectAsync(final Throwable connectionLossCause, final IotHubListener listener, final String connectionId, final String deviceId, ThreadFactory threadFactory)
+    {
+        startThread(
                 new Runnable()
                 {
                     @Override public void run()
@@ -36,7 +48,19 @@ public final class ReconnectionNotifier
                         listener.onMultiplexedDeviceSessionLost(connectionLossCause,connectionId, deviceId);
                     }
                 },
-                DEVICE_SESSION_RECONNECTION_THREAD_NAME + ":" + connectionId
-        ).start();
+                DEVICE_SESSION_RECONNECTION_THREAD_NAME + ":" + connectionId,
+                threadFactory);
+    }
+
+    private static void startThread(Runnable runnable, String threadName, ThreadFactory threadFactory)
+    {
+        if (threadFactory == null)
+        {
+            new Thread(runnable, threadName).start();
+        }
+        else
+        {
+            threadFactory.newThread(runnable).start();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,190 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.SendRateOptions;
+import com.microsoft.azure.sdk.iot.device.SendRateStatistics;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * A pair of token buckets, one for messages and one for bytes of body, that paces sending to the limits of a
+ * {@link SendRateOptions}. A message may be sent whenever the message bucket holds a token and the byte bucket is not
+ * in debt, and sending it takes its cost out of both buckets. A message larger than the byte bucket still goes out,
+ * and sending then waits for the debt to be paid back.
+ *
+ * <p>If adaptive, the rates are halved each time IoT Hub throttles a message, and grow back linearly for as long as
+ * it does not.</p>
+ */
+final class SendRateLimiter
+{
+    private static final long NANOS_PER_SECOND = SECONDS.toNanos(1);
+
+    // Throttling halves the rates, down to this fraction of the configured rates
+    private static final double MIN_RATE_FRACTION = 1.0 / 16;
+
+    // For each second without throttling, the rates grow back by this fraction of the configured rates
+    private static final double RECOVERY_FRACTION_PER_SECOND = 0.1;
+
+    // Messages that were in flight together tend to be throttled together, so the rates are only halved once for
+    // all the throttling within this long of the last halving
+    private static final long THROTTLING_SETTLE_NANOS = NANOS_PER_SECOND;
+
+    private final double maxMessagesPerSecond;
+    private final double maxBytesPerSecond;
+    private final boolean isAdaptive;
+
+    private double messageTokens;
+    private double byteTokens;
+    private long lastRefillNanos;
+
+    // The fraction of the configured rates right after the last throttling, and when that was
+    private boolean isThrottled;
+    private double throttledRateFraction = 1;
+    private long throttledNanos;
+
+    // When the current hold on sending started, if sending is held back
+    private boolean isHeldBack;
+    private long heldBackSinceNanos;
+
+    private long delayedMessageCount;
+    private long totalDelayNanos;
+    private long throttledCount;
+
+    SendRateLimiter(SendRateOptions options, long nowNanos)
+    {
+        this.maxMessagesPerSecond = options.getMaxMessagesPerSecond();
+        this.maxBytesPerSecond = options.getMaxBytesPerSecond();
+        this.isAdaptive = options.isAdaptiveToThrottling();
+
+        // Start with a full second's worth, so that the first burst goes out straight away
+        this.messageTokens = this.maxMessagesPerSecond;
+        this.byteTokens = this.maxBytesPerSecond;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    /**
+     * Get how long sending has to wait before the next message may go.
+     *
+     * @param nowNanos the current {@link System#nanoTime()}.
+     * @return the nanoseconds to wait, or 0 if a message may be sent now.
+     */
+    synchronized long getDelayNanos(long nowNanos)
+    {
+        this.refill(nowNanos);
+
+        double rateFraction = this.getRateFraction(nowNanos);
+        long delayNanos = 0;
+        if (this.maxMessagesPerSecond > 0 && this.messageTokens < 1)
+        {
+            delayNanos = Math.max(delayNanos, (long) Math.ceil((1 - this.messageTokens) / (this.maxMessagesPerSecond * rateFraction) * NANOS_PER_SECOND));
+        }
+
+        if (this.maxBytesPerSecond > 0 && this.byteTokens < 0)
+        {
+            delayNanos = Math.max(delayNanos, (long) Math.ceil(-this.byteTokens / (this.maxBytesPerSecond * rateFraction) * NANOS_PER_SECOND));
+        }
+
+        return delayNanos;
+    }
+
+    /**
+     * Record that a message is being held back, so that the time until the next message is sent counts as delay.
+     *
+     * @param nowNanos the current {@link System#nanoTime()}.
+     */
+    synchronized void holdBack(long nowNanos)
+    {
+        if (!this.isHeldBack)
+        {
+            this.isHeldBack = true;
+            this.heldBackSinceNanos = nowNanos;
+        }
+    }
+
+    /**
+     * Take the cost of a message that is being sent out of the buckets.
+     *
+     * @param bytes the length of the message's body.
+     * @param nowNanos the current {@link System#nanoTime()}.
+     */
+    synchronized void acquire(long bytes, long nowNanos)
+    {
+        this.refill(nowNanos);
+
+        this.messageTokens -= 1;
+        this.byteTokens -= bytes;
+
+        if (this.isHeldBack)
+        {
+            this.delayedMessageCount++;
+            this.totalDelayNanos += nowNanos - this.heldBackSinceNanos;
+            this.isHeldBack = false;
+        }
+    }
+
+    /**
+     * Record that IoT Hub throttled a message, and tighten the rates if adaptive.
+     *
+     * @param nowNanos the current {@link System#nanoTime()}.
+     */
+    synchronized void onThrottled(long nowNanos)
+    {
+        this.throttledCount++;
+        if (!this.isAdaptive || (this.isThrottled && nowNanos - this.throttledNanos < THROTTLING_SETTLE_NANOS))
+        {
+            return;
+        }
+
+        this.refill(nowNanos);
+        this.throttledRateFraction = Math.max(MIN_RATE_FRACTION, this.getRateFraction(nowNanos) / 2);
+        this.throttledNanos = nowNanos;
+        this.isThrottled = true;
+
+        // No more bursting on what is left of the buckets
+        this.messageTokens = Math.min(this.messageTokens, 0);
+        this.byteTokens = Math.min(this.byteTokens, 0);
+    }
+
+    synchronized SendRateStatistics getStatistics(long nowNanos)
+    {
+        double rateFraction = this.getRateFraction(nowNanos);
+        return new SendRateStatistics(
+                this.delayedMessageCount,
+                NANOSECONDS.toMillis(this.totalDelayNanos),
+                this.throttledCount,
+                this.maxMessagesPerSecond * rateFraction,
+                this.maxBytesPerSecond * rateFraction);
+    }
+
+    private double getRateFraction(long nowNanos)
+    {
+        if (!this.isThrottled)
+        {
+            return 1;
+        }
+
+        double secondsSinceThrottled = (double) (nowNanos - this.throttledNanos) / NANOS_PER_SECOND;
+        return Math.min(1, this.throttledRateFraction + RECOVERY_FRACTION_PER_SECOND * secondsSinceThrottled);
+    }
+
+    private void refill(long nowNanos)
+    {
+        long elapsedNanos = nowNanos - this.lastRefillNanos;
+        if (elapsedNanos <= 0)
+        {
+            return;
+        }
+
+        // The buckets hold at most a second's worth at the current rates
+        double rateFraction = this.getRateFraction(nowNanos);
+        double elapsedSeconds = (double) elapsedNanos / NANOS_PER_SECOND;
+        double messagesPerSecond = this.maxMessagesPerSecond * rateFraction;
+        double bytesPerSecond = this.maxBytesPerSecond * rateFraction;
+        this.messageTokens = Math.min(Math.max(messagesPerSecond, 1), this.messageTokens + messagesPerSecond * elapsedSeconds);
+        this.byteTokens = Math.min(bytesPerSecond, this.byteTokens + bytesPerSecond * elapsedSeconds);
+        this.lastRefillNanos = nowNanos;
+    }
+}
@@ -67,6 +67,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
 
     // States of outgoing messages, incoming messages, and outgoing subscriptions
     private final Queue<Message> messagesToSend = new ConcurrentLinkedQueue<>();
+    private final Queue<BatchMessage> completedBatchMessages = new ConcurrentLinkedQueue<>();
     private String connectionId;
     private IotHubConnectionStatus state;
     private final String hostName;
@@ -80,6 +81,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
     private final Object executorServiceLock = new Object();
     private final Map<String, Boolean> reconnectionsScheduled = new ConcurrentHashMap<>();
     private ExecutorService executorService;
+    private ThreadFactory threadFactory;
     private final ProxySettings proxySettings;
 
     // State latches are used for asynchronous open and close operations
@@ -93,6 +95,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
     private final Queue<AmqpsSessionHandler> reconnectingDeviceSessionHandlers = new ConcurrentLinkedQueue<>();
     private final Queue<AmqpsSessionHandler> sessionHandlers = new ConcurrentLinkedQueue<>();
     private final Queue<AmqpsSasTokenRenewalHandler> sasTokenRenewalHandlers = new ConcurrentLinkedQueue<>();
+    private AmqpsSasTokenRenewalScheduler sasTokenRenewalScheduler;
     private AmqpsCbsSessionHandler amqpsCbsSessionHandler;
 
     // Multiplexed device registrations and un-registrations come from a non-reactor thread, so they get queued into these
@@ -478,11 +481,19 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             }
             sasTokenRenewalHandlers.clear();
 
+            // One timer schedules the renewals of every device session on this connection
+            if (this.sasTokenRenewalScheduler != null)
+            {
+                this.sasTokenRenewalScheduler.close();
+            }
+            this.sasTokenRenewalScheduler = new AmqpsSasTokenRenewalScheduler();
+            this.sasTokenRenewalScheduler.start(event.getReactor());
+
             // Open a device session per device, and create a sas token renewal handler for each device session
             for (AmqpsSessionHandler amqpsSessionHandler : this.sessionHandlers)
             {
                 amqpsSessionHandler.setSession(connection.session());
-                sasTokenRenewalHandlers.add(new AmqpsSasTokenRenewalHandler(amqpsCbsSessionHandler, amqpsSessionHandler));
+                sasTokenRenewalHandlers.add(new AmqpsSasTokenRenewalHandler(amqpsCbsSessionHandler, amqpsSessionHandler, this.sasTokenRenewalScheduler));
             }
         }
         else
@@ -563,6 +574,8 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
     public void onTimerTask(Event event)
     {
         sendQueuedMessages();
+        settlePendingDispositions();
+        releaseCompletedBatchMessages();
 
         checkForNewlyUnregisteredMultiplexedClientsToStop();
         checkForNewlyRegisteredMultiplexedClientsToStart();
@@ -587,6 +600,17 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
         return IotHubStatusCode.OK;
     }
 
+    /**
+     * Let the telemetry links drop what they kept to send the provided batch again, now that the transport has
+     * reported its outcome and won't send it again. Like sending, this is done later on the reactor thread.
+     *
+     * @param batchMessage the batch that the transport completed.
+     */
+    public void onBatchMessageCompleted(BatchMessage batchMessage)
+    {
+        completedBatchMessages.add(batchMessage);
+    }
+
     @Override
     public boolean sendMessageResult(IotHubTransportMessage message, IotHubMessageResult result)
     {
@@ -611,7 +635,8 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             return false;
         }
 
-        //Check each session handler to see who is responsible for sending this acknowledgement
+        //Check each session handler to see who is responsible for sending this acknowledgement. The acknowledgement is
+        // only queued here, and is settled on the reactor thread along with any others queued in the meantime
         for (AmqpsSessionHandler sessionHandler : sessionHandlers)
         {
             if (sessionHandler.acknowledgeReceivedMessage(message, ackType))
@@ -864,6 +889,28 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
         ((TransportInternal) transport).addTransportLayer(proxy);
     }
 
+    private void settlePendingDispositions()
+    {
+        for (AmqpsSessionHandler sessionHandler : this.sessionHandlers)
+        {
+            sessionHandler.settlePendingDispositions();
+        }
+    }
+
+    private void releaseCompletedBatchMessages()
+    {
+        BatchMessage batchMessage = completedBatchMessages.poll();
+        while (batchMessage != null)
+        {
+            for (AmqpsSessionHandler sessionHandler : this.sessionHandlers)
+            {
+                sessionHandler.onBatchMessageCompleted(batchMessage);
+            }
+
+            batchMessage = completedBatchMessages.poll();
+        }
+    }
+
     private void sendQueuedMessages()
     {
         int messagesAttemptedToBeProcessed = 0;
@@ -946,7 +993,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             // preserve the session handlers through the reconnection attempts
             this.reconnectingDeviceSessionHandlers.addAll(this.sessionHandlers);
 
-            ReconnectionNotifier.notifyDisconnectAsync(throwable, this.listener, this.connectionId);
+            ReconnectionNotifier.notifyDisconnectAsync(throwable, this.listener, this.connectionId, this.threadFactory);
         }
     }
 
@@ -956,7 +1003,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
         {
             this.reconnectionsScheduled.put(deviceId, true);
             log.warn("Amqp session for device {} was closed, creating a thread to notify transport layer", deviceId, throwable);
-            ReconnectionNotifier.notifyDeviceDisconnectAsync(throwable, this.listener, this.connectionId, deviceId);
+            ReconnectionNotifier.notifyDeviceDisconnectAsync(throwable, this.listener, this.connectionId, deviceId, this.threadFactory);
         }
     }
 
@@ -1030,7 +1077,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
 
             log.trace("Adding device session for device {} to an active connection", configToRegister.getDeviceId());
             amqpsSessionHandler.setSession(this.connection.session());
-            AmqpsSasTokenRenewalHandler amqpsSasTokenRenewalHandler = new AmqpsSasTokenRenewalHandler(amqpsCbsSessionHandler, amqpsSessionHandler);
+            AmqpsSasTokenRenewalHandler amqpsSasTokenRenewalHandler = new AmqpsSasTokenRenewalHandler(amqpsCbsSessionHandler, amqpsSessionHandler, this.sasTokenRenewalScheduler);
             sasTokenRenewalHandlers.add(amqpsSasTokenRenewalHandler);
             try
             {
@@ -1171,6 +1218,17 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
         throw transportException;
     }
 
+    /**
+     * Set the factory for the thread that runs the reactor of this connection, and for the threads that report a lost
+     * connection or device session. The reactor thread changes on the next open.
+     *
+     * @param threadFactory the factory for these threads. May be {@code null} to use the default thread factory.
+     */
+    public void setThreadFactory(ThreadFactory threadFactory)
+    {
+        this.threadFactory = threadFactory;
+    }
+
     private void openAsync() throws TransportException
     {
         log.trace("OpenAsnyc called for amqp connection");
@@ -1180,7 +1238,9 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             if (executorService == null)
             {
                 log.trace("Creating new executor service");
-                executorService = Executors.newFixedThreadPool(1);
+                executorService = this.threadFactory == null
+                        ? Executors.newFixedThreadPool(1)
+                        : Executors.newFixedThreadPool(1, this.threadFactory);
             }
         }
 
@@ -30,9 +30,9 @@ public final class AmqpsMethodsReceiverLinkHandler extends AmqpsReceiverLinkHand
 
     private final DeviceClientConfig deviceClientConfig;
 
-    AmqpsMethodsReceiverLinkHandler(Receiver receiver, AmqpsLinkStateCallback amqpsLinkStateCallback, DeviceClientConfig deviceClientConfig, String linkCorrelationId)
+    AmqpsMethodsReceiverLinkHandler(Receiver receiver, AmqpsLinkStateCallback amqpsLinkStateCallback, DeviceClientConfig deviceClientConfig, String linkCorrelationId, int linkCredit)
     {
-        super(receiver, amqpsLinkStateCallback, linkCorrelationId);
+        super(receiver, amqpsLinkStateCallback, linkCorrelationId, linkCredit);
 
         this.deviceClientConfig = deviceClientConfig;
 
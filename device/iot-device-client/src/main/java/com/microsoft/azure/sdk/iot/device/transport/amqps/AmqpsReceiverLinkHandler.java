@@ -4,6 +4,7 @@
 package com.microsoft.azure.sdk.iot.device.transport.amqps;
 
 import com.microsoft.azure.sdk.iot.deps.transport.amqp.AmqpsMessage;
+import com.microsoft.azure.sdk.iot.device.AmqpLinkCreditOptions;
 import com.microsoft.azure.sdk.iot.device.Message;
 import com.microsoft.azure.sdk.iot.device.MessageProperty;
 import com.microsoft.azure.sdk.iot.device.MessageType;
@@ -23,7 +24,9 @@ import org.apache.qpid.proton.reactor.FlowController;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 @Slf4j
 public abstract class AmqpsReceiverLinkHandler extends BaseHandler
@@ -40,6 +43,10 @@ public abstract class AmqpsReceiverLinkHandler extends BaseHandler
     // Upon receiving a message over a receiving link, a credit should be refunded to the service so that
     // this initial credit doesn't run out.
     private final Map<Message, AmqpsMessage> receivedMessagesMap = new ConcurrentHashMap<>();
+
+    // Acknowledgements come from the thread that ran the user's callback, but proton-j is not thread safe, so they
+    // are queued here and settled in a batch on the reactor thread
+    private final Queue<PendingDisposition> pendingDispositions = new ConcurrentLinkedQueue<>();
     final Map<Symbol, Object> amqpProperties;
     final String linkCorrelationId;
     String receiverLinkAddress;
@@ -47,6 +54,11 @@ public abstract class AmqpsReceiverLinkHandler extends BaseHandler
     private final AmqpsLinkStateCallback amqpsLinkStateCallback;
 
     AmqpsReceiverLinkHandler(Receiver receiver, AmqpsLinkStateCallback amqpsLinkStateCallback, String linkCorrelationId)
+    {
+        this(receiver, amqpsLinkStateCallback, linkCorrelationId, AmqpLinkCreditOptions.DEFAULT_LINK_CREDIT);
+    }
+
+    AmqpsReceiverLinkHandler(Receiver receiver, AmqpsLinkStateCallback amqpsLinkStateCallback, String linkCorrelationId, int linkCredit)
     {
         this.amqpProperties = new HashMap<>();
         this.amqpProperties.put(Symbol.getSymbol(API_VERSION_KEY), TransportUtils.IOTHUB_API_VERSION);
@@ -57,8 +69,8 @@ public abstract class AmqpsReceiverLinkHandler extends BaseHandler
         //All events that happen to this receiver link will be handled in this class (onLinkRemoteOpen, for instance)
         BaseHandler.setHandler(receiver, this);
 
-        //This flow controller handles all link credit handling on our behalf
-        add(new FlowController());
+        //This flow controller handles all link credit handling on our behalf, keeping linkCredit messages in flight
+        add(new FlowController(linkCredit));
     }
 
     @Override
@@ -83,6 +95,9 @@ public abstract class AmqpsReceiverLinkHandler extends BaseHandler
         IotHubTransportMessage iotHubMessage = this.protonMessageToIoTHubMessage(amqpsMessage);
         this.receivedMessagesMap.put(iotHubMessage, amqpsMessage);
         this.amqpsLinkStateCallback.onMessageReceived(iotHubMessage);
+
+        // Already on the reactor thread, so settle what has been acknowledged since the last batch
+        this.settlePendingDispositions();
     }
 
     @Override
@@ -135,17 +150,51 @@ public abstract class AmqpsReceiverLinkHandler extends BaseHandler
         }
     }
 
+    /**
+     * Queue the acknowledgement of a message received over this link. The acknowledgement is sent the next time
+     * {@link #settlePendingDispositions()} runs on the reactor thread. Safe to call from any thread.
+     *
+     * @param message the received message to acknowledge.
+     * @param ackType the outcome to acknowledge the message with.
+     * @return true if the message was received over this link and its acknowledgement was queued, false otherwise.
+     */
     public boolean acknowledgeReceivedMessage(IotHubTransportMessage message, DeliveryState ackType)
     {
-        if (this.receivedMessagesMap.containsKey(message))
+        AmqpsMessage amqpsMessage = this.receivedMessagesMap.remove(message);
+        if (amqpsMessage != null)
         {
-            this.receivedMessagesMap.remove(message).acknowledge(ackType);
+            this.pendingDispositions.add(new PendingDisposition(amqpsMessage, ackType));
             return true;
         }
 
         return false;
     }
 
+    /**
+     * Settle the deliveries whose acknowledgements were queued by {@link #acknowledgeReceivedMessage}. Must only be
+     * called from the reactor thread. The dispositions of the whole batch go out in the same write to the socket.
+     *
+     * @return the number of deliveries settled.
+     */
+    int settlePendingDispositions()
+    {
+        int settledCount = 0;
+        PendingDisposition pendingDisposition = this.pendingDispositions.poll();
+        while (pendingDisposition != null)
+        {
+            pendingDisposition.amqpsMessage.acknowledge(pendingDisposition.ackType);
+            settledCount++;
+            pendingDisposition = this.pendingDispositions.poll();
+        }
+
+        if (settledCount > 0)
+        {
+            log.trace("Settled {} deliveries on {} receiver link with link correlation id {}", settledCount, getLinkInstanceType(), this.linkCorrelationId);
+        }
+
+        return settledCount;
+    }
+
     abstract String getLinkInstanceType();
 
     AmqpsMessage getMessageFromReceiverLink(Receiver receiver)
@@ -267,4 +316,16 @@ public abstract class AmqpsReceiverLinkHandler extends BaseHandler
             this.receiverLink.close();
         }
     }
+
+    private static final class PendingDisposition
+    {
+        private final AmqpsMessage amqpsMessage;
+        private final DeliveryState ackType;
+
+        private PendingDisposition(AmqpsMessage amqpsMessage, DeliveryState ackType)
+        {
+            this.amqpsMessage = amqpsMessage;
+            this.ackType = ackType;
+        }
+    }
 }
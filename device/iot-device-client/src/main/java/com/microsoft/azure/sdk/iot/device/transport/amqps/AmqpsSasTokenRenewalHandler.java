@@ -5,30 +5,31 @@ import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.qpid.proton.amqp.messaging.Accepted;
 import org.apache.qpid.proton.amqp.transport.DeliveryState;
-import org.apache.qpid.proton.engine.BaseHandler;
-import org.apache.qpid.proton.engine.Event;
 import org.apache.qpid.proton.reactor.Reactor;
 
 /**
  * This class is responsible for proactively renewing sas tokens for a single device. When multiplexing, there will
- * be one instance of this class per device. It will periodically execute the onTimerTask logic to send a renewed sas token,
- * and then will schedule the next timer task appropriately.
+ * be one instance of this class per device. Each time it sends a renewed sas token, it schedules its next renewal with
+ * the connection's {@link AmqpsSasTokenRenewalScheduler}, which calls {@link #renew(Reactor)} once it is due.
  */
 @Slf4j
-public class AmqpsSasTokenRenewalHandler extends BaseHandler implements AuthenticationMessageCallback
+public class AmqpsSasTokenRenewalHandler implements AuthenticationMessageCallback
 {
     //If the sas token renewal cannot be sent, try again in this many milliseconds
     private static final int RETRY_INTERVAL_MILLISECONDS = 5000;
 
     final AmqpsCbsSessionHandler amqpsCbsSessionHandler;
     final AmqpsSessionHandler amqpsSessionHandler;
+    private final AmqpsSasTokenRenewalScheduler renewalScheduler;
     private boolean isClosed;
     private AmqpsSasTokenRenewalHandler nextToAuthenticate;
+    private long authenticationSentMillis;
 
-    public AmqpsSasTokenRenewalHandler(AmqpsCbsSessionHandler amqpsCbsSessionHandler, AmqpsSessionHandler amqpsSessionHandler)
+    public AmqpsSasTokenRenewalHandler(AmqpsCbsSessionHandler amqpsCbsSessionHandler, AmqpsSessionHandler amqpsSessionHandler, AmqpsSasTokenRenewalScheduler renewalScheduler)
     {
         this.amqpsCbsSessionHandler = amqpsCbsSessionHandler;
         this.amqpsSessionHandler = amqpsSessionHandler;
+        this.renewalScheduler = renewalScheduler;
         this.isClosed = false;
     }
 
@@ -37,18 +38,18 @@ public class AmqpsSasTokenRenewalHandler extends BaseHandler implements Authenti
         this.nextToAuthenticate = nextToAuthenticate;
     }
 
-    @Override
-    public void onTimerTask(Event event)
+    // Called by the renewal scheduler once this handler's renewal is due
+    void renew(Reactor reactor)
     {
-        log.trace("onTimerTask fired for sas token renewal handler for device {}", this.amqpsSessionHandler.getDeviceId());
+        log.trace("Sas token renewal is due for device {}", this.amqpsSessionHandler.getDeviceId());
         try
         {
-            sendAuthenticationMessage(event.getReactor());
+            sendAuthenticationMessage(reactor);
         }
         catch (TransportException e)
         {
             log.error("Failed to send the CBS authentication message to authenticate device {}, trying to send again in {} milliseconds", this.amqpsSessionHandler.getDeviceId(), RETRY_INTERVAL_MILLISECONDS);
-            scheduleRenewalRetry(event.getReactor());
+            scheduleRenewalRetry();
         }
     }
 
@@ -58,14 +59,19 @@ public class AmqpsSasTokenRenewalHandler extends BaseHandler implements Authenti
         {
             log.debug("Sending authentication message for device {}", amqpsSessionHandler.getDeviceId());
             amqpsCbsSessionHandler.sendAuthenticationMessage(amqpsSessionHandler.getDeviceClientConfig(), this);
+            this.authenticationSentMillis = System.currentTimeMillis();
 
-            scheduleRenewal(reactor);
+            scheduleRenewal();
         }
     }
 
     @Override
     public DeliveryState handleAuthenticationResponseMessage(int status, String description, Reactor reactor)
     {
+        long latencyMilliseconds = System.currentTimeMillis() - this.authenticationSentMillis;
+        log.trace("CBS authentication response for device {} took {} milliseconds", this.amqpsSessionHandler.getDeviceId(), latencyMilliseconds);
+        this.renewalScheduler.onAuthenticationResponse(latencyMilliseconds);
+
         try
         {
             if (nextToAuthenticate != null)
@@ -99,20 +105,25 @@ public class AmqpsSasTokenRenewalHandler extends BaseHandler implements Authenti
         this.isClosed = true;
     }
 
+    boolean isClosed()
+    {
+        return this.isClosed;
+    }
+
     // The warning is for how getSasTokenAuthentication() may return null, but this code only executes when our config
     // uses SAS_TOKEN auth, and that is sufficient at confirming that getSasTokenAuthentication() will return a non-null instance
     @SuppressWarnings("ConstantConditions")
-    private void scheduleRenewal(Reactor reactor)
+    private void scheduleRenewal()
     {
         int sasTokenRenewalPeriod = this.amqpsSessionHandler.getDeviceClientConfig().getSasTokenAuthentication().getMillisecondsBeforeProactiveRenewal();
 
         log.trace("Scheduling proactive sas token renewal for device {} in {} milliseconds", this.amqpsSessionHandler.getDeviceId(), sasTokenRenewalPeriod);
 
-        reactor.schedule(sasTokenRenewalPeriod, this);
+        this.renewalScheduler.schedule(this, sasTokenRenewalPeriod);
     }
 
-    private void scheduleRenewalRetry(Reactor reactor)
+    private void scheduleRenewalRetry()
     {
-        reactor.schedule(RETRY_INTERVAL_MILLISECONDS, this);
+        this.renewalScheduler.schedule(this, RETRY_INTERVAL_MILLISECONDS);
     }
 }
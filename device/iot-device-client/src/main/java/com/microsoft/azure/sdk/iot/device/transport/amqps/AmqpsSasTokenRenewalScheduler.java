@@ -0,0 +1,216 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.amqps;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.reactor.Reactor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+
+/**
+ * Schedules the proactive sas token renewals of every device session on an AMQP connection from a single reactor
+ * timer, rather than one timer per device. Renewals are kept in a hashed timer wheel that ticks once a second, and
+ * each renewal is moved a random amount earlier so that devices which authenticated together, such as after a
+ * reconnect, don't all renew together. The renewals that fall due in the same tick are sent together, at most
+ * {@link #MAX_RENEWALS_PER_TICK} at a time, and the rest are sent on the following ticks.
+ *
+ * <p>All of this class's methods must be called from the reactor thread.</p>
+ */
+@Slf4j
+final class AmqpsSasTokenRenewalScheduler extends BaseHandler
+{
+    static final int TICK_MILLISECONDS = 1000;
+
+    // The number of slots in the wheel. Renewals further out than this many ticks go around the wheel more than once.
+    static final int WHEEL_SIZE = 512;
+
+    // A chosen throttle rather than a service limit: it spreads a burst of renewals over a few ticks so that they
+    // don't all go out on the connection, and wait on the service, at the same time
+    static final int MAX_RENEWALS_PER_TICK = 30;
+
+    // Renewals are moved earlier by up to this fraction of their delay, and by no more than MAX_JITTER_MILLISECONDS
+    private static final double MAX_JITTER_FRACTION = 0.1;
+    private static final long MAX_JITTER_MILLISECONDS = 5 * 60 * 1000;
+
+    private final List<List<ScheduledRenewal>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private final Queue<AmqpsSasTokenRenewalHandler> dueRenewals = new ArrayDeque<>();
+    private final Random random;
+    private final long startMillis;
+    private long currentTick;
+    private boolean isStarted;
+    private boolean isClosed;
+
+    // The authentications whose responses came back since the last tick, and how long they took
+    private int authenticationCount;
+    private long totalAuthenticationLatencyMillis;
+    private long maxAuthenticationLatencyMillis;
+
+    AmqpsSasTokenRenewalScheduler()
+    {
+        this(new Random(), System.currentTimeMillis());
+    }
+
+    AmqpsSasTokenRenewalScheduler(Random random, long startMillis)
+    {
+        this.random = random;
+        this.startMillis = startMillis;
+
+        for (int slot = 0; slot < WHEEL_SIZE; slot++)
+        {
+            this.wheel.add(new LinkedList<ScheduledRenewal>());
+        }
+    }
+
+    /**
+     * Start ticking on the given reactor. Does nothing if already started.
+     *
+     * @param reactor the reactor of the connection whose device sessions this schedules renewals for.
+     */
+    void start(Reactor reactor)
+    {
+        if (!this.isStarted && !this.isClosed)
+        {
+            this.isStarted = true;
+            reactor.schedule(TICK_MILLISECONDS, this);
+        }
+    }
+
+    /**
+     * Schedule a renewal for a device session.
+     *
+     * @param renewalHandler the handler of the device session to renew.
+     * @param delayMilliseconds how long from now the renewal is due. The renewal may be sent up to 10% sooner.
+     */
+    void schedule(AmqpsSasTokenRenewalHandler renewalHandler, long delayMilliseconds)
+    {
+        long maxJitterMilliseconds = Math.min((long) (delayMilliseconds * MAX_JITTER_FRACTION), MAX_JITTER_MILLISECONDS);
+        if (maxJitterMilliseconds > 0)
+        {
+            delayMilliseconds -= (long) (this.random.nextDouble() * maxJitterMilliseconds);
+        }
+
+        long ticks = Math.max(1, (delayMilliseconds + TICK_MILLISECONDS - 1) / TICK_MILLISECONDS);
+        int slot = (int) ((this.currentTick + ticks) % WHEEL_SIZE);
+        this.wheel.get(slot).add(new ScheduledRenewal(renewalHandler, (ticks - 1) / WHEEL_SIZE));
+    }
+
+    /**
+     * Record how long IoT Hub took to respond to an authentication message.
+     *
+     * @param latencyMilliseconds the time between sending the authentication message and receiving its response.
+     */
+    void onAuthenticationResponse(long latencyMilliseconds)
+    {
+        this.authenticationCount++;
+        this.totalAuthenticationLatencyMillis += latencyMilliseconds;
+        this.maxAuthenticationLatencyMillis = Math.max(this.maxAuthenticationLatencyMillis, latencyMilliseconds);
+    }
+
+    @Override
+    public void onTimerTask(Event event)
+    {
+        if (this.isClosed)
+        {
+            return;
+        }
+
+        this.tick(System.currentTimeMillis(), event.getReactor());
+        event.getReactor().schedule(TICK_MILLISECONDS, this);
+    }
+
+    // Stops sending renewals. Renewals that are already scheduled are dropped.
+    void close()
+    {
+        this.isClosed = true;
+        for (List<ScheduledRenewal> slot : this.wheel)
+        {
+            slot.clear();
+        }
+
+        this.dueRenewals.clear();
+    }
+
+    /**
+     * Advance the wheel to the given time, and send the renewals that have fallen due.
+     *
+     * @param nowMillis the current {@link System#currentTimeMillis()}.
+     * @param reactor the reactor to send the renewals on.
+     * @return the number of renewals sent.
+     */
+    int tick(long nowMillis, Reactor reactor)
+    {
+        // Timers fire late under load, so catch up on every tick that has passed rather than counting timer tasks
+        long targetTick = (nowMillis - this.startMillis) / TICK_MILLISECONDS;
+        while (this.currentTick < targetTick)
+        {
+            this.currentTick++;
+            this.collectDueRenewals(this.wheel.get((int) (this.currentTick % WHEEL_SIZE)));
+        }
+
+        int renewalCount = 0;
+        while (renewalCount < MAX_RENEWALS_PER_TICK && !this.dueRenewals.isEmpty())
+        {
+            this.dueRenewals.poll().renew(reactor);
+            renewalCount++;
+        }
+
+        if (renewalCount > 0 || this.authenticationCount > 0)
+        {
+            log.debug("Sent {} sas token renewals with {} more waiting; {} authentications completed with an average latency of {} milliseconds and a maximum of {} milliseconds",
+                    renewalCount,
+                    this.dueRenewals.size(),
+                    this.authenticationCount,
+                    this.authenticationCount > 0 ? this.totalAuthenticationLatencyMillis / this.authenticationCount : 0,
+                    this.maxAuthenticationLatencyMillis);
+
+            this.authenticationCount = 0;
+            this.totalAuthenticationLatencyMillis = 0;
+            this.maxAuthenticationLatencyMillis = 0;
+        }
+
+        return renewalCount;
+    }
+
+    private void collectDueRenewals(List<ScheduledRenewal> slot)
+    {
+        Iterator<ScheduledRenewal> iterator = slot.iterator();
+        while (iterator.hasNext())
+        {
+            ScheduledRenewal scheduledRenewal = iterator.next();
+            if (scheduledRenewal.renewalHandler.isClosed())
+            {
+                iterator.remove();
+            }
+            else if (scheduledRenewal.remainingRounds == 0)
+            {
+                iterator.remove();
+                this.dueRenewals.add(scheduledRenewal.renewalHandler);
+            }
+            else
+            {
+                scheduledRenewal.remainingRounds--;
+            }
+        }
+    }
+
+    private static final class ScheduledRenewal
+    {
+        private final AmqpsSasTokenRenewalHandler renewalHandler;
+        private long remainingRounds;
+
+        private ScheduledRenewal(AmqpsSasTokenRenewalHandler renewalHandler, long remainingRounds)
+        {
+            this.renewalHandler = renewalHandler;
+            this.remainingRounds = remainingRounds;
+        }
+    }
+}
@@ -12,12 +12,14 @@ import org.apache.qpid.proton.Proton;
 import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.amqp.messaging.*;
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
 import org.apache.qpid.proton.amqp.transport.SenderSettleMode;
 import org.apache.qpid.proton.engine.*;
 import org.apache.qpid.proton.message.impl.MessageImpl;
 import org.apache.qpid.proton.reactor.FlowController;
 
 import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
@@ -28,6 +30,7 @@ public abstract class AmqpsSenderLinkHandler extends BaseHandler
 {
     static final String VERSION_IDENTIFIER_KEY = "com.microsoft:client-version";
     private static final String API_VERSION_KEY = "com.microsoft:api-version";
+    static final int DEFAULT_MESSAGE_FORMAT = 0;
     final Map<Integer, Message> inProgressMessages = new ConcurrentHashMap<>();
     final Map<Symbol, Object> amqpProperties;
     final String linkCorrelationId;
@@ -81,12 +84,23 @@ public abstract class AmqpsSenderLinkHandler extends BaseHandler
         }
         else
         {
-            this.amqpsLinkStateCallback.onMessageAcknowledged(acknowledgedIotHubMessage, deliveryTag, delivery.getRemoteState());
+            this.onMessageAcknowledged(acknowledgedIotHubMessage, deliveryTag, delivery.getRemoteState());
         }
 
         delivery.free();
     }
 
+    /**
+     * Called when a delivery sent by this link has been acknowledged by the service.
+     * @param message the message that was sent in the delivery
+     * @param deliveryTag the tag of the delivery
+     * @param deliveryState the state the service acknowledged the delivery with
+     */
+    void onMessageAcknowledged(Message message, int deliveryTag, DeliveryState deliveryState)
+    {
+        this.amqpsLinkStateCallback.onMessageAcknowledged(message, deliveryTag, deliveryState);
+    }
+
     @Override
     public void onLinkInit(Event event)
     {
@@ -158,17 +172,16 @@ public abstract class AmqpsSenderLinkHandler extends BaseHandler
     {
         //Callers of this method are responsible for putting the returned delivery tag into the inProgressMessages map
         // so that this link can respond to this message being acknowledged appropriately
+        return this.sendMessageAndGetDeliveryTag(encodeMessage(protonMessage), DEFAULT_MESSAGE_FORMAT);
+    }
 
-        //want to avoid negative delivery tags since -1 is the designated failure value
-        if (this.nextTag == Integer.MAX_VALUE || this.nextTag < 0)
-        {
-            this.nextTag = 0;
-        }
-        else
-        {
-            this.nextTag++;
-        }
-
+    /**
+     * Encode the provided message.
+     * @param protonMessage the message to encode
+     * @return a buffer whose remaining bytes are the encoded message
+     */
+    static ByteBuffer encodeMessage(MessageImpl protonMessage)
+    {
         byte[] msgData = new byte[1024];
         int length;
 
@@ -185,13 +198,44 @@ public abstract class AmqpsSenderLinkHandler extends BaseHandler
             }
         }
 
+        return ByteBuffer.wrap(msgData, 0, length);
+    }
+
+    /**
+     * Send an already encoded message as one delivery.
+     * @param encodedMessage the encoded message, from its position to its limit
+     * @param messageFormat the AMQP message format of the delivery
+     * @return the result of the send. Callers are responsible for putting a successful result's delivery tag into
+     * the inProgressMessages map.
+     */
+    AmqpsSendResult sendMessageAndGetDeliveryTag(ByteBuffer encodedMessage, int messageFormat)
+    {
+        //want to avoid negative delivery tags since -1 is the designated failure value
+        if (this.nextTag == Integer.MAX_VALUE || this.nextTag < 0)
+        {
+            this.nextTag = 0;
+        }
+        else
+        {
+            this.nextTag++;
+        }
+
+        byte[] msgData = encodedMessage.array();
+        int offset = encodedMessage.arrayOffset() + encodedMessage.position();
+        int length = encodedMessage.remaining();
+
         byte[] deliveryTag = String.valueOf(this.nextTag).getBytes(StandardCharsets.UTF_8);
 
         Delivery delivery = this.senderLink.delivery(deliveryTag);
         try
         {
+            if (messageFormat != DEFAULT_MESSAGE_FORMAT)
+            {
+                delivery.setMessageFormat(messageFormat);
+            }
+
             log.trace("Sending {} bytes over the amqp {} sender link with link correlation id {}", length, getLinkInstanceType(), this.linkCorrelationId);
-            int bytesSent = this.senderLink.send(msgData, 0, length);
+            int bytesSent = this.senderLink.send(msgData, offset, length);
             log.trace("{} bytes sent over the amqp {} sender link with link correlation id {}", bytesSent, getLinkInstanceType(), this.linkCorrelationId);
 
             if (bytesSent != length)
@@ -229,7 +273,7 @@ public abstract class AmqpsSenderLinkHandler extends BaseHandler
             properties.setMessageId(message.getMessageId());
         }
 
-        if (message.getCorrelationId() != null)
+        if (message.getCorrelationId() != null && !message.getCorrelationId().isEmpty())
         {
             properties.setCorrelationId(message.getCorrelationId());
         }
@@ -281,7 +325,7 @@ public abstract class AmqpsSenderLinkHandler extends BaseHandler
         ApplicationProperties applicationProperties = new ApplicationProperties(userProperties);
         outgoingMessage.setApplicationProperties(applicationProperties);
 
-        Binary binary = new Binary(message.getBytes());
+        Binary binary = new Binary(message.getBytesNoCopy());
         Section section = new Data(binary);
         outgoingMessage.setBody(section);
         return outgoingMessage;
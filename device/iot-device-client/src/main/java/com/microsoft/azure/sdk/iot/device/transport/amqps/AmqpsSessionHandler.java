@@ -1,5 +1,7 @@
 package com.microsoft.azure.sdk.iot.device.transport.amqps;
 
+import com.microsoft.azure.sdk.iot.device.AmqpLinkCreditOptions;
+import com.microsoft.azure.sdk.iot.device.BatchMessage;
 import com.microsoft.azure.sdk.iot.device.DeviceClientConfig;
 import com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceOperations;
 import com.microsoft.azure.sdk.iot.device.Message;
@@ -318,6 +320,27 @@ public class AmqpsSessionHandler extends BaseHandler implements AmqpsLinkStateCa
         return false;
     }
 
+    void onBatchMessageCompleted(BatchMessage batchMessage)
+    {
+        //Note that this method should only be called from a reactor thread, since the links are only changed there
+        for (AmqpsSenderLinkHandler senderLinkHandler : senderLinkHandlers)
+        {
+            if (senderLinkHandler instanceof AmqpsTelemetrySenderLinkHandler)
+            {
+                ((AmqpsTelemetrySenderLinkHandler) senderLinkHandler).onBatchMessageCompleted(batchMessage);
+            }
+        }
+    }
+
+    void settlePendingDispositions()
+    {
+        //Note that this method should only be called from a reactor thread, since it settles deliveries
+        for (AmqpsReceiverLinkHandler receiverLinkHandler : receiverLinkHandlers)
+        {
+            receiverLinkHandler.settlePendingDispositions();
+        }
+    }
+
     void openLinks()
     {
         //Note that this method should only be called from a reactor thread such as during a callback of onSessionRemoteOpen.
@@ -457,6 +480,12 @@ public class AmqpsSessionHandler extends BaseHandler implements AmqpsLinkStateCa
         }
     }
 
+    private AmqpLinkCreditOptions getLinkCreditOptions()
+    {
+        AmqpLinkCreditOptions linkCreditOptions = this.deviceClientConfig.getAmqpLinkCreditOptions();
+        return linkCreditOptions != null ? linkCreditOptions : AmqpLinkCreditOptions.builder().build();
+    }
+
     private void createTelemetryLinks()
     {
         String telemetryLinkCorrelationId = UUID.randomUUID().toString();
@@ -465,7 +494,7 @@ public class AmqpsSessionHandler extends BaseHandler implements AmqpsLinkStateCa
         this.senderLinkHandlers.add(new AmqpsTelemetrySenderLinkHandler(sender, this, this.deviceClientConfig, telemetryLinkCorrelationId));
 
         Receiver receiver = session.receiver(AmqpsTelemetryReceiverLinkHandler.getTag(deviceClientConfig, telemetryLinkCorrelationId));
-        this.receiverLinkHandlers.add(new AmqpsTelemetryReceiverLinkHandler(receiver, this, this.deviceClientConfig, telemetryLinkCorrelationId));
+        this.receiverLinkHandlers.add(new AmqpsTelemetryReceiverLinkHandler(receiver, this, this.deviceClientConfig, telemetryLinkCorrelationId, getLinkCreditOptions().getMessageLinkCredit()));
         this.alreadyCreatedTelemetryLinks = true;
     }
 
@@ -477,7 +506,7 @@ public class AmqpsSessionHandler extends BaseHandler implements AmqpsLinkStateCa
         this.senderLinkHandlers.add(new AmqpsMethodsSenderLinkHandler(sender, this, this.deviceClientConfig, methodsLinkCorrelationId));
 
         Receiver receiver = session.receiver(AmqpsMethodsReceiverLinkHandler.getTag(deviceClientConfig, methodsLinkCorrelationId));
-        this.receiverLinkHandlers.add(new AmqpsMethodsReceiverLinkHandler(receiver, this, this.deviceClientConfig, methodsLinkCorrelationId));
+        this.receiverLinkHandlers.add(new AmqpsMethodsReceiverLinkHandler(receiver, this, this.deviceClientConfig, methodsLinkCorrelationId, getLinkCreditOptions().getMethodsLinkCredit()));
 
         this.subscribeToMethodsOnReconnection = true;
         this.alreadyCreatedMethodLinks = true;
@@ -495,7 +524,7 @@ public class AmqpsSessionHandler extends BaseHandler implements AmqpsLinkStateCa
         this.senderLinkHandlers.add(new AmqpsTwinSenderLinkHandler(sender, this, this.deviceClientConfig, twinLinkCorrelationId, twinOperationCorrelationMap));
 
         Receiver receiver = session.receiver(AmqpsTwinReceiverLinkHandler.getTag(deviceClientConfig, twinLinkCorrelationId));
-        this.receiverLinkHandlers.add(new AmqpsTwinReceiverLinkHandler(receiver, this, this.deviceClientConfig, twinLinkCorrelationId, twinOperationCorrelationMap));
+        this.receiverLinkHandlers.add(new AmqpsTwinReceiverLinkHandler(receiver, this, this.deviceClientConfig, twinLinkCorrelationId, twinOperationCorrelationMap, getLinkCreditOptions().getTwinLinkCredit()));
 
         this.subscribeToTwinOnReconnection = true;
         this.alreadyCreatedTwinLinks = true;
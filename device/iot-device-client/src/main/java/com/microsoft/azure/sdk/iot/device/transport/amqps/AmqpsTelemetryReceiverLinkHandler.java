@@ -32,9 +32,9 @@ public final class AmqpsTelemetryReceiverLinkHandler extends AmqpsReceiverLinkHa
 
     private final DeviceClientConfig deviceClientConfig;
 
-    AmqpsTelemetryReceiverLinkHandler(Receiver receiver, AmqpsLinkStateCallback amqpsLinkStateCallback, DeviceClientConfig deviceClientConfig, String linkCorrelationId)
+    AmqpsTelemetryReceiverLinkHandler(Receiver receiver, AmqpsLinkStateCallback amqpsLinkStateCallback, DeviceClientConfig deviceClientConfig, String linkCorrelationId, int linkCredit)
     {
-        super(receiver, amqpsLinkStateCallback, linkCorrelationId);
+        super(receiver, amqpsLinkStateCallback, linkCorrelationId, linkCredit);
 
         this.deviceClientConfig = deviceClientConfig;
 
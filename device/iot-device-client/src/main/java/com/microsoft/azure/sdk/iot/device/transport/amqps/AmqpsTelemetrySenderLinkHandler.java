@@ -3,22 +3,73 @@
 
 package com.microsoft.azure.sdk.iot.device.transport.amqps;
 
+import com.microsoft.azure.sdk.iot.device.BatchMessage;
 import com.microsoft.azure.sdk.iot.device.DeviceClientConfig;
 import com.microsoft.azure.sdk.iot.device.Message;
 import com.microsoft.azure.sdk.iot.device.MessageProperty;
 import com.microsoft.azure.sdk.iot.device.MessageType;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
 import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
+import org.apache.qpid.proton.amqp.messaging.Released;
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
 import org.apache.qpid.proton.engine.Sender;
 import org.apache.qpid.proton.message.impl.MessageImpl;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+@Slf4j
 final class AmqpsTelemetrySenderLinkHandler extends AmqpsSenderLinkHandler
 {
     private static final String CORRELATION_ID_KEY = "com.microsoft:channel-correlation-id";
 
+    // The message format IoT Hub uses for a delivery whose body is a list of data sections, each holding one encoded message
+    static final int BATCH_MESSAGE_FORMAT = 0x80013700;
+
+    // IoT Hub rejects deliveries bigger than its max message size, so larger batches are split across several deliveries
+    static final int MAX_BATCH_DELIVERY_SIZE = 256 * 1024;
+
+    // A data section is its descriptor (0x00 0x53 0x75) followed by a vbin32 constructor (0xb0), a 4 byte length and the data
+    private static final byte[] DATA_SECTION_PREFIX = { 0x00, 0x53, 0x75, (byte) 0xb0 };
+    private static final int DATA_SECTION_OVERHEAD = DATA_SECTION_PREFIX.length + 4;
+
+    // Batches that were sent, until every one of their deliveries has been acknowledged
+    private final Map<BatchMessage, PendingBatch> pendingBatches = new ConcurrentHashMap<>();
+
+    // The nested messages that IoT Hub already accepted from batches that were only partly accepted. When the
+    // transport sends such a batch again, only its other nested messages are sent, so none are sent twice. Kept until
+    // the rest of the batch is accepted, the transport completes the batch, or this link is dropped.
+    private final Map<BatchMessage, Set<Message>> acceptedNestedMessages = new ConcurrentHashMap<>();
+
+    private static final class PendingBatch
+    {
+        // The nested messages of each delivery that has not been acknowledged yet, by delivery tag
+        private final Map<Integer, List<Message>> unacknowledgedDeliveries = new HashMap<>();
+        private final List<Message> acceptedMessages = new ArrayList<>();
+        private DeliveryState failedDeliveryState;
+    }
+
+    private static final class BatchDelivery
+    {
+        private final ByteBuffer body;
+        private final List<Message> nestedMessages;
+
+        private BatchDelivery(ByteBuffer body, List<Message> nestedMessages)
+        {
+            this.body = body;
+            this.nestedMessages = nestedMessages;
+        }
+    }
+
     private static final String DEVICE_SENDER_LINK_ENDPOINT_PATH = "/devices/%s/messages/events";
     private static final String MODULE_SENDER_LINK_ENDPOINT_PATH = "/devices/%s/modules/%s/messages/events";
 
@@ -80,6 +131,171 @@ final class AmqpsTelemetrySenderLinkHandler extends AmqpsSenderLinkHandler
         return LINK_TYPE;
     }
 
+    @Override
+    AmqpsSendResult sendMessageAndGetDeliveryTag(Message iotHubMessage)
+    {
+        if (!(iotHubMessage instanceof BatchMessage))
+        {
+            return super.sendMessageAndGetDeliveryTag(iotHubMessage);
+        }
+
+        BatchMessage batchMessage = (BatchMessage) iotHubMessage;
+        List<BatchDelivery> batchDeliveries = encodeBatch(batchMessage, this.acceptedNestedMessages.get(batchMessage));
+
+        AmqpsSendResult firstSendResult = null;
+        PendingBatch pendingBatch = new PendingBatch();
+        for (BatchDelivery batchDelivery : batchDeliveries)
+        {
+            AmqpsSendResult sendResult = this.sendMessageAndGetDeliveryTag(batchDelivery.body, BATCH_MESSAGE_FORMAT);
+            if (!sendResult.isDeliverySuccessful())
+            {
+                if (firstSendResult == null)
+                {
+                    // Nothing was sent, so the whole batch can be sent again later
+                    return sendResult;
+                }
+
+                // The deliveries already sent can't be taken back, so once they are acknowledged the batch completes
+                // as released, which makes the transport send the nested messages that were not accepted again
+                log.warn("Failed to send part of a batch message over {} sender link with link correlation id {}", getLinkInstanceType(), this.linkCorrelationId);
+                pendingBatch.failedDeliveryState = Released.getInstance();
+                break;
+            }
+
+            if (firstSendResult == null)
+            {
+                firstSendResult = sendResult;
+                this.pendingBatches.put(batchMessage, pendingBatch);
+            }
+
+            pendingBatch.unacknowledgedDeliveries.put(sendResult.getDeliveryTag(), batchDelivery.nestedMessages);
+            this.inProgressMessages.put(sendResult.getDeliveryTag(), batchMessage);
+        }
+
+        return firstSendResult;
+    }
+
+    @Override
+    void onMessageAcknowledged(Message message, int deliveryTag, DeliveryState deliveryState)
+    {
+        PendingBatch pendingBatch = this.pendingBatches.get(message);
+        if (pendingBatch == null)
+        {
+            super.onMessageAcknowledged(message, deliveryTag, deliveryState);
+            return;
+        }
+
+        BatchMessage batchMessage = (BatchMessage) message;
+        List<Message> nestedMessages = pendingBatch.unacknowledgedDeliveries.remove(deliveryTag);
+        if (deliveryState == Accepted.getInstance())
+        {
+            if (nestedMessages != null)
+            {
+                pendingBatch.acceptedMessages.addAll(nestedMessages);
+            }
+        }
+        else if (pendingBatch.failedDeliveryState == null)
+        {
+            pendingBatch.failedDeliveryState = deliveryState;
+        }
+
+        if (!pendingBatch.unacknowledgedDeliveries.isEmpty())
+        {
+            return;
+        }
+
+        this.pendingBatches.remove(batchMessage);
+
+        if (pendingBatch.failedDeliveryState == null)
+        {
+            this.acceptedNestedMessages.remove(batchMessage);
+            super.onMessageAcknowledged(message, deliveryTag, deliveryState);
+            return;
+        }
+
+        // Remember which nested messages were accepted, so that if the transport sends the batch again only the
+        // others are sent. The transport still reports the outcome of the whole batch once, as before.
+        if (!pendingBatch.acceptedMessages.isEmpty())
+        {
+            Set<Message> acceptedMessages = this.acceptedNestedMessages.get(batchMessage);
+            if (acceptedMessages == null)
+            {
+                acceptedMessages = Collections.newSetFromMap(new IdentityHashMap<Message, Boolean>());
+                this.acceptedNestedMessages.put(batchMessage, acceptedMessages);
+            }
+
+            acceptedMessages.addAll(pendingBatch.acceptedMessages);
+        }
+
+        // One acknowledgement for the whole batch, with the state of the first delivery that was not accepted
+        super.onMessageAcknowledged(message, deliveryTag, pendingBatch.failedDeliveryState);
+    }
+
+    /**
+     * Forget the nested messages that IoT Hub accepted from the provided batch. The transport calls this once it has
+     * reported the outcome of the batch, so it won't send the batch again.
+     *
+     * @param batchMessage the batch that the transport completed.
+     */
+    void onBatchMessageCompleted(BatchMessage batchMessage)
+    {
+        this.acceptedNestedMessages.remove(batchMessage);
+    }
+
+    /**
+     * Encode the nested messages of the provided batch into the bodies of as few batch deliveries as possible. Each
+     * nested message becomes one data section, and a delivery holds as many data sections as fit in
+     * {@link #MAX_BATCH_DELIVERY_SIZE}. A nested message too big to share a delivery gets a delivery of its own.
+     * Nested messages that IoT Hub already accepted are left out.
+     */
+    private List<BatchDelivery> encodeBatch(BatchMessage batchMessage, Set<Message> acceptedMessages)
+    {
+        List<Message> nestedMessages = new ArrayList<>(batchMessage.getNestedMessages().size());
+        List<ByteBuffer> encodedMessages = new ArrayList<>(batchMessage.getNestedMessages().size());
+        for (Message nestedMessage : batchMessage.getNestedMessages())
+        {
+            if (acceptedMessages == null || !acceptedMessages.contains(nestedMessage))
+            {
+                nestedMessages.add(nestedMessage);
+                encodedMessages.add(encodeMessage(this.iotHubMessageToProtonMessage(nestedMessage)));
+            }
+        }
+
+        List<BatchDelivery> batchDeliveries = new ArrayList<>(1);
+        int start = 0;
+        while (start < encodedMessages.size())
+        {
+            int end = start;
+            int deliverySize = 0;
+            while (end < encodedMessages.size())
+            {
+                int sectionSize = DATA_SECTION_OVERHEAD + encodedMessages.get(end).remaining();
+                if (end > start && deliverySize + sectionSize > MAX_BATCH_DELIVERY_SIZE)
+                {
+                    break;
+                }
+
+                deliverySize += sectionSize;
+                end++;
+            }
+
+            ByteBuffer batchDelivery = ByteBuffer.allocate(deliverySize);
+            for (int i = start; i < end; i++)
+            {
+                ByteBuffer encodedMessage = encodedMessages.get(i);
+                batchDelivery.put(DATA_SECTION_PREFIX);
+                batchDelivery.putInt(encodedMessage.remaining());
+                batchDelivery.put(encodedMessage);
+            }
+
+            batchDelivery.flip();
+            batchDeliveries.add(new BatchDelivery(batchDelivery, nestedMessages.subList(start, end)));
+            start = end;
+        }
+
+        return batchDeliveries;
+    }
+
     @Override
     protected MessageImpl iotHubMessageToProtonMessage(Message message)
     {
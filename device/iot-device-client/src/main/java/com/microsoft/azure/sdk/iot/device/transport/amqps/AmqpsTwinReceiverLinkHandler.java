@@ -48,9 +48,9 @@ final class AmqpsTwinReceiverLinkHandler extends AmqpsReceiverLinkHandler
 
     private final DeviceClientConfig deviceClientConfig;
 
-    AmqpsTwinReceiverLinkHandler(Receiver receiver, AmqpsLinkStateCallback amqpsLinkStateCallback, DeviceClientConfig deviceClientConfig, String linkCorrelationId, Map<String, DeviceOperations> twinOperationCorrelationMap)
+    AmqpsTwinReceiverLinkHandler(Receiver receiver, AmqpsLinkStateCallback amqpsLinkStateCallback, DeviceClientConfig deviceClientConfig, String linkCorrelationId, Map<String, DeviceOperations> twinOperationCorrelationMap, int linkCredit)
     {
-        super(receiver, amqpsLinkStateCallback, linkCorrelationId);
+        super(receiver, amqpsLinkStateCallback, linkCorrelationId, linkCredit);
 
         this.deviceClientConfig = deviceClientConfig;
 
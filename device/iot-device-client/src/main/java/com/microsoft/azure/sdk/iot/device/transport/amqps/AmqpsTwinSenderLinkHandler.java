@@ -178,12 +178,15 @@ final class AmqpsTwinSenderLinkHandler extends AmqpsSenderLinkHandler
             MessageImpl protonMessage = super.iotHubMessageToProtonMessage(message);
             IotHubTransportMessage deviceTwinMessage = (IotHubTransportMessage) message;
 
-            if (deviceTwinMessage.getCorrelationId() != null)
+            // Twin responses are matched to their operation by correlation id, so every twin request needs one
+            if (deviceTwinMessage.getCorrelationId() == null || deviceTwinMessage.getCorrelationId().isEmpty())
             {
-                protonMessage.getProperties().setCorrelationId(UUID.fromString(deviceTwinMessage.getCorrelationId()));
-                this.twinOperationCorrelationMap.put(deviceTwinMessage.getCorrelationId(), deviceTwinMessage.getDeviceOperationType());
+                deviceTwinMessage.setCorrelationId(UUID.randomUUID().toString());
             }
 
+            protonMessage.getProperties().setCorrelationId(UUID.fromString(deviceTwinMessage.getCorrelationId()));
+            this.twinOperationCorrelationMap.put(deviceTwinMessage.getCorrelationId(), deviceTwinMessage.getDeviceOperationType());
+
             setMessageAnnotationMapOnProtonMessage(protonMessage, deviceTwinMessage.getDeviceOperationType(), deviceTwinMessage.getVersion());
 
             return protonMessage;
@@ -8,16 +8,22 @@ import com.microsoft.azure.sdk.iot.device.exceptions.IotHubSizeExceededException
 
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
-import static org.apache.commons.codec.binary.Base64.encodeBase64String;
+import static org.apache.commons.codec.binary.Base64.encodeBase64;
 
 
 /**
  * Builds a batched IoT Hub request body as a JSON array. The batched message
  * has a maximum size of 256 kb.
+ *
+ * <p>Messages are encoded straight into a growable UTF-8 byte buffer as they
+ * are added, so filling a batch takes time linear in its size and the size
+ * limit is checked without re-encoding the messages already in the batch.</p>
  */
 public final class HttpsBatchMessage implements HttpsMessage
 {
@@ -36,47 +42,78 @@ public final class HttpsBatchMessage implements HttpsMessage
      */
     private static final Charset BATCH_CHARSET = StandardCharsets.UTF_8;
 
-    private static final String BASE_ENCODED_KEY = "\"base64Encoded\"";
-    private static final String BODY = "\"body\"";
-    private static final String KEY_VALUE_SEPARATOR = ":";
-    private static final String PROPERTIES = "\"properties\"";
+    private static final byte[] BODY_PREFIX = "{\"body\":\"".getBytes(BATCH_CHARSET);
+    private static final byte[] BASE_ENCODED_SUFFIX = "\",\"base64Encoded\":true".getBytes(BATCH_CHARSET);
+    private static final byte[] PROPERTIES_PREFIX = ",\"properties\":{".getBytes(BATCH_CHARSET);
 
-    /** The current batched message body. */
-    private String batchBody;
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    /** The encoded batch so far, without the closing bracket of the JSON array. */
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+    /** The number of bytes of the buffer in use. */
+    private int size;
 
     /** The current number of messages in the batch. */
     private int numMsgs;
 
-    public HttpsBatchMessage(List<HttpsSingleMessage> messageList) throws IotHubSizeExceededException
+    /**
+     * Constructor. Creates an empty batch; messages are added through
+     * {@link #addMessage(HttpsSingleMessage)}.
+     */
+    public HttpsBatchMessage()
     {
-        StringBuilder batchBodyBuilder = new StringBuilder();
-        batchBodyBuilder.append('[');
+        // Codes_SRS_HTTPSBATCHMESSAGE_11_001: [The constructor shall initialize the batch message with the body as an empty JSON array.]
+        this.buffer[this.size++] = '[';
+    }
 
-        boolean isSubsequentMessage = false;
+    /**
+     * Constructor. Creates a batch holding all of the provided messages.
+     *
+     * @param messageList the messages to batch.
+     * @throws IotHubSizeExceededException if the batch would exceed 256 kb.
+     */
+    public HttpsBatchMessage(List<HttpsSingleMessage> messageList) throws IotHubSizeExceededException
+    {
+        this();
         for (HttpsSingleMessage message : messageList)
         {
-            if (isSubsequentMessage)
-            {
-                batchBodyBuilder.append(','); // comma to separate each object in the json array
-            }
-
-            addJsonToStringBuilder(message, batchBodyBuilder);
-            this.numMsgs++;
-            isSubsequentMessage = true; // the next message, and all subsequent messages, will need a comma before them
+            addMessage(message);
         }
+    }
 
-        batchBodyBuilder.append(']');
-
-        this.batchBody = batchBodyBuilder.toString();
+    /**
+     * Appends the message to the batch as a JSON object.
+     *
+     * @param message the message to add.
+     * @throws IotHubSizeExceededException if adding the message would make the
+     * batch exceed 256 kb. The batch is then left as if the message was never added.
+     */
+    public void addMessage(HttpsSingleMessage message) throws IotHubSizeExceededException
+    {
+        int sizeBeforeMessage = this.size;
+        if (this.numMsgs > 0)
+        {
+            write((byte) ','); // comma to separate each object in the json array
+        }
 
-        byte[] newBatchBodyBytes = this.batchBody.getBytes(BATCH_CHARSET);
+        // Codes_SRS_HTTPSBATCHMESSAGE_11_002: [The function shall add the message as a JSON object appended to the current JSON array.]
+        writeJson(message);
 
-        if (newBatchBodyBytes.length > SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES)
+        // The closing bracket is only written by getBody, but it counts towards the size limit
+        int newBatchSize = this.size + 1;
+        if (newBatchSize > SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES)
         {
+            // Codes_SRS_HTTPSBATCHMESSAGE_11_009: [If the function throws a IotHubSizeExceededException, the batched message shall remain as if the message was never added.]
+            this.size = sizeBeforeMessage;
+
+            // Codes_SRS_HTTPSBATCHMESSAGE_11_008: [If adding the message causes the batched message to exceed 256 kb in size, the function shall throw a IotHubSizeExceededException.]
             String errMsg = String.format("Service-bound message size (%d bytes) cannot exceed %d bytes.",
-                newBatchBodyBytes.length, SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES);
+                newBatchSize, SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES);
             throw new IotHubSizeExceededException(errMsg);
         }
+
+        this.numMsgs++;
     }
 
     /**
@@ -86,7 +123,11 @@ public final class HttpsBatchMessage implements HttpsMessage
      */
     public byte[] getBody()
     {
-        return this.batchBody.getBytes(BATCH_CHARSET);
+        // Codes_SRS_HTTPSBATCHMESSAGE_11_006: [The function shall return the current batch message body as a byte array.]
+        // Codes_SRS_HTTPSBATCHMESSAGE_11_007: [The batch message body shall be encoded using UTF-8.]
+        byte[] body = Arrays.copyOf(this.buffer, this.size + 1);
+        body[this.size] = ']';
+        return body;
     }
 
     /**
@@ -131,44 +172,84 @@ public final class HttpsBatchMessage implements HttpsMessage
     }
 
     /**
-     * Converts a service-bound message to a JSON object with the correct
-     * format.
+     * Writes a service-bound message to the buffer as a JSON object with the
+     * correct format.
      *
      * @param msg the message to be converted to a corresponding JSON object.
-     *
-     * @return the JSON string representation of the message.
      */
-    private static void addJsonToStringBuilder(HttpsSingleMessage msg, StringBuilder jsonStringBuilder)
+    private void writeJson(HttpsSingleMessage msg)
     {
-        jsonStringBuilder.append('{' + BODY + KEY_VALUE_SEPARATOR);
-        jsonStringBuilder.append('\"').append(encodeBase64String(msg.getBody())).append("\",");
-        jsonStringBuilder.append(BASE_ENCODED_KEY + KEY_VALUE_SEPARATOR);
-        jsonStringBuilder.append(true);
-        MessageProperty[] properties = msg.getProperties();
-        Map<String, String> allProperties = new HashMap<>(msg.getSystemProperties());
-        for (MessageProperty p : properties)
+        write(BODY_PREFIX);
+        // Codes_SRS_HTTPSBATCHMESSAGE_11_003: [The JSON object shall have the field "body" set to the raw message encoded in Base64.]
+        writeBase64(msg.getBody());
+        // Codes_SRS_HTTPSBATCHMESSAGE_11_004: [The JSON object shall have the field "base64Encoded" set to true and always encode the body for a batch message.]
+        write(BASE_ENCODED_SUFFIX);
+
+        Map<String, String> allProperties = new LinkedHashMap<>(msg.getSystemProperties());
+        for (MessageProperty p : msg.getProperties())
         {
             allProperties.put(p.getName(), p.getValue());
         }
 
-        int numProperties = allProperties.size();
-        if (numProperties > 0)
+        // Codes_SRS_HTTPSBATCHMESSAGE_11_005: [The JSON object shall have the field "properties" set to a JSON object which has a key-value pair for each message property, where the key is the HTTPS property name and the value is the property value.]
+        if (!allProperties.isEmpty())
         {
-            jsonStringBuilder.append(',');
-            jsonStringBuilder.append(PROPERTIES + KEY_VALUE_SEPARATOR);
-            jsonStringBuilder.append('{');
-            for (String key : allProperties.keySet())
+            write(PROPERTIES_PREFIX);
+            boolean isSubsequentProperty = false;
+            for (Map.Entry<String, String> property : allProperties.entrySet())
             {
-                jsonStringBuilder.append('\"').append(key).append("\":");
-                jsonStringBuilder.append('\"').append(allProperties.get(key)).append("\",");
+                if (isSubsequentProperty)
+                {
+                    write((byte) ',');
+                }
+
+                write((byte) '\"');
+                write(String.valueOf(property.getKey()).getBytes(BATCH_CHARSET));
+                write((byte) '\"');
+                write((byte) ':');
+                write((byte) '\"');
+                write(String.valueOf(property.getValue()).getBytes(BATCH_CHARSET));
+                write((byte) '\"');
+                isSubsequentProperty = true;
             }
 
-            //remove last trailing comma
-            jsonStringBuilder.deleteCharAt(jsonStringBuilder.length()-1);
+            write((byte) '}');
+        }
+
+        write((byte) '}');
+    }
 
-            jsonStringBuilder.append('}');
+    /**
+     * Base64 encodes the provided bytes into the buffer, without line separators.
+     */
+    private void writeBase64(byte[] data)
+    {
+        if (data == null)
+        {
+            return;
         }
 
-        jsonStringBuilder.append('}');
+        write(encodeBase64(data, false));
+    }
+
+    private void write(byte value)
+    {
+        ensureCapacity(this.size + 1);
+        this.buffer[this.size++] = value;
+    }
+
+    private void write(byte[] bytes)
+    {
+        ensureCapacity(this.size + bytes.length);
+        System.arraycopy(bytes, 0, this.buffer, this.size, bytes.length);
+        this.size += bytes.length;
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity > this.buffer.length)
+        {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(capacity, this.buffer.length * 2));
+        }
     }
 }
@@ -9,6 +9,7 @@ import com.microsoft.azure.sdk.iot.device.transport.HttpProxySocketFactory;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.*;
@@ -16,6 +17,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * <p>
@@ -33,6 +35,13 @@ import java.util.Map;
  */
 public class HttpsConnection
 {
+    /**
+     * Socket factories by the SSL context they were created from. {@link HttpsURLConnection} only reuses a kept alive
+     * connection for a request with the same socket factory instance, so a new factory per request would open a new
+     * connection every time. Only accessed while synchronized on itself.
+     */
+    private static final Map<SSLContext, SSLSocketFactory> SOCKET_FACTORIES = new WeakHashMap<>();
+
     /** The underlying HTTP/HTTPS connection. */
     private final HttpURLConnection connection;
 
@@ -412,7 +421,7 @@ public class HttpsConnection
             else
             {
                 //Codes_SRS_HTTPSCONNECTION_25_024: [The function shall set the the SSL context with the given value.]
-                ((HttpsURLConnection)this.connection).setSSLSocketFactory(sslContext.getSocketFactory());
+                ((HttpsURLConnection)this.connection).setSSLSocketFactory(getSocketFactory(sslContext));
             }
         }
         else
@@ -422,6 +431,21 @@ public class HttpsConnection
         }
     }
 
+    private static SSLSocketFactory getSocketFactory(SSLContext sslContext)
+    {
+        synchronized (SOCKET_FACTORIES)
+        {
+            SSLSocketFactory socketFactory = SOCKET_FACTORIES.get(sslContext);
+            if (socketFactory == null)
+            {
+                socketFactory = sslContext.getSocketFactory();
+                SOCKET_FACTORIES.put(sslContext, socketFactory);
+            }
+
+            return socketFactory;
+        }
+    }
+
     @SuppressWarnings("unused")
     protected HttpsConnection()
     {
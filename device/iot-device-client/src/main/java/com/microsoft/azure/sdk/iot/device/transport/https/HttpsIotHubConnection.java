@@ -17,9 +17,7 @@ import javax.net.ssl.SSLContext;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -87,12 +85,12 @@ public class HttpsIotHubConnection implements IotHubTransportConnection
             {
                 try
                 {
-                    List<HttpsSingleMessage> httpsMessageList = new ArrayList<>();
+                    HttpsBatchMessage httpsBatchMessage = new HttpsBatchMessage();
                     for (Message msg : ((BatchMessage)message).getNestedMessages())
                     {
-                        httpsMessageList.add(HttpsSingleMessage.parseHttpsMessage(msg));
+                        httpsBatchMessage.addMessage(HttpsSingleMessage.parseHttpsMessage(msg));
                     }
-                    httpsMessage = new HttpsBatchMessage(httpsMessageList);
+                    httpsMessage = httpsBatchMessage;
                 }
                 catch (IotHubSizeExceededException e)
                 {
@@ -115,7 +113,8 @@ public class HttpsIotHubConnection implements IotHubTransportConnection
 
             // Codes_SRS_HTTPSIOTHUBCONNECTION_11_003: [The function shall send a POST request.]
             // Codes_SRS_HTTPSIOTHUBCONNECTION_11_004: [The function shall set the request body to the message body.]
-            HttpsRequest request = new HttpsRequest(eventUrl, HttpsMethod.POST, httpsMessage.getBody(), this.config.getProductInfo().getUserAgentString(), config.getProxySettings());
+            byte[] body = httpsMessage.getBody();
+            HttpsRequest request = new HttpsRequest(eventUrl, HttpsMethod.POST, body, this.config.getProductInfo().getUserAgentString(), config.getProxySettings());
 
             // Codes_SRS_HTTPSIOTHUBCONNECTION_11_005: [The function shall write each message property as a request header.]
             for (MessageProperty property : httpsMessage.getProperties())
@@ -167,7 +166,7 @@ public class HttpsIotHubConnection implements IotHubTransportConnection
             IotHubStatusCode status = IotHubStatusCode.getIotHubStatusCode(response.getStatus());
             log.trace("Iot Hub responded to http message for iot hub message ({}) with status code {}", message, status);
 
-            IotHubTransportMessage transportMessage = new IotHubTransportMessage(httpsMessage.getBody(), message.getMessageType(), message.getMessageId(), message.getCorrelationId(), message.getProperties());
+            IotHubTransportMessage transportMessage = new IotHubTransportMessage(body, message.getMessageType(), message.getMessageId(), message.getCorrelationId(), message.getProperties());
             if (status == IotHubStatusCode.OK || status == IotHubStatusCode.OK_EMPTY)
             {
                 //Codes_SRS_HTTPSIOTHUBCONNECTION_34_067: [If the response from the service is OK or OK_EMPTY, this function shall notify its listener that a message was sent with no exception.]
@@ -194,48 +193,47 @@ public class HttpsIotHubConnection implements IotHubTransportConnection
      */
     public ResponseMessage sendHttpsMessage(HttpsMessage httpsMessage, HttpsMethod httpsMethod, String httpsPath, Map<String, String> additionalHeaders) throws TransportException
     {
-        synchronized (HTTPS_CONNECTION_LOCK)
-        {
-            String iotHubHostname = getHostName();
+        // Not synchronized on HTTPS_CONNECTION_LOCK, so that concurrent requests such as method invocations don't
+        // wait on each other. Getting the sas token may renew it, which the authentication provider synchronizes.
+        String iotHubHostname = getHostName();
 
-            // Codes_SRS_HTTPSIOTHUBCONNECTION_21_041: [The function shall send a request to the URL https://[iotHubHostname]/[httpsPath]?api-version=2016-02-03.]
-            URL messageUrl = this.buildUrlFromString(HTTPS_HEAD_TAG + iotHubHostname + httpsPath + "?" + IotHubUri.API_VERSION);
+        // Codes_SRS_HTTPSIOTHUBCONNECTION_21_041: [The function shall send a request to the URL https://[iotHubHostname]/[httpsPath]?api-version=2016-02-03.]
+        URL messageUrl = this.buildUrlFromString(HTTPS_HEAD_TAG + iotHubHostname + httpsPath + "?" + IotHubUri.API_VERSION);
 
-            // Codes_SRS_HTTPSIOTHUBCONNECTION_21_042: [The function shall send a `httpsMethod` request.]
-            // Codes_SRS_HTTPSIOTHUBCONNECTION_21_043: [The function shall set the request body to the message body.]
-            HttpsRequest request = new HttpsRequest(messageUrl, httpsMethod, httpsMessage.getBody(), this.config.getProductInfo().getUserAgentString(), config.getProxySettings());
+        // Codes_SRS_HTTPSIOTHUBCONNECTION_21_042: [The function shall send a `httpsMethod` request.]
+        // Codes_SRS_HTTPSIOTHUBCONNECTION_21_043: [The function shall set the request body to the message body.]
+        HttpsRequest request = new HttpsRequest(messageUrl, httpsMethod, httpsMessage.getBody(), this.config.getProductInfo().getUserAgentString(), config.getProxySettings());
 
-            // Codes_SRS_HTTPSIOTHUBCONNECTION_21_044: [The function shall write each message property as a request header.]
-            for (MessageProperty property : httpsMessage.getProperties())
-            {
-                request.setHeaderField(property.getName(), property.getValue());
-            }
+        // Codes_SRS_HTTPSIOTHUBCONNECTION_21_044: [The function shall write each message property as a request header.]
+        for (MessageProperty property : httpsMessage.getProperties())
+        {
+            request.setHeaderField(property.getName(), property.getValue());
+        }
 
-            // Codes_SRS_HTTPSIOTHUBCONNECTION_21_048: [The function shall set the header field 'iothub-to' to be '[https path]'.]
-            request.setHeaderField(HTTPS_PROPERTY_IOTHUB_TO_TAG, httpsPath)
-                    // Codes_SRS_HTTPSIOTHUBCONNECTION_21_049: [The function shall set the header field 'content-type' to be the message content type.]
-                    .setHeaderField(HTTPS_PROPERTY_CONTENT_TYPE_TAG, httpsMessage.getContentType());
+        // Codes_SRS_HTTPSIOTHUBCONNECTION_21_048: [The function shall set the header field 'iothub-to' to be '[https path]'.]
+        request.setHeaderField(HTTPS_PROPERTY_IOTHUB_TO_TAG, httpsPath)
+                // Codes_SRS_HTTPSIOTHUBCONNECTION_21_049: [The function shall set the header field 'content-type' to be the message content type.]
+                .setHeaderField(HTTPS_PROPERTY_CONTENT_TYPE_TAG, httpsMessage.getContentType());
 
-            // Codes_SRS_HTTPSIOTHUBCONNECTION_34_072: [The function shall set the additional header fields provided.]
-            for (String additionalHeaderKey : additionalHeaders.keySet())
-            {
-                request.setHeaderField(additionalHeaderKey, additionalHeaders.get(additionalHeaderKey));
-            }
+        // Codes_SRS_HTTPSIOTHUBCONNECTION_34_072: [The function shall set the additional header fields provided.]
+        for (String additionalHeaderKey : additionalHeaders.keySet())
+        {
+            request.setHeaderField(additionalHeaderKey, additionalHeaders.get(additionalHeaderKey));
+        }
 
-            // Codes_SRS_HTTPSIOTHUBCONNECTION_34_056: [This function shall retrieve a sas token from its config to use in the https request header.]
-            // Codes_SRS_HTTPSIOTHUBCONNECTION_21_047: [The function shall set the header field 'authorization' to be a valid SAS token generated from the configuration parameters.]
-            // Codes_SRS_HTTPSIOTHUBCONNECTION_34_060: [If this config is using x509 authentication, this function shall retrieve its sslcontext from its x509 Authentication object.]
-            // Codes_SRS_HTTPSIOTHUBCONNECTION_21_046: [The function shall set the IotHub SSL context by calling setSSLContext on the request.]
-            // Codes_SRS_HTTPSIOTHUBCONNECTION_21_045: [The function shall set the request read timeout to be the configuration parameter readTimeoutMillis.]
-            // Codes_SRS_HTTPSIOTHUBCONNECTION_21_051: [If the IoT Hub could not be reached, the function shall throw a ProtocolException.]
-            HttpsResponse response = this.sendRequest(request);
+        // Codes_SRS_HTTPSIOTHUBCONNECTION_34_056: [This function shall retrieve a sas token from its config to use in the https request header.]
+        // Codes_SRS_HTTPSIOTHUBCONNECTION_21_047: [The function shall set the header field 'authorization' to be a valid SAS token generated from the configuration parameters.]
+        // Codes_SRS_HTTPSIOTHUBCONNECTION_34_060: [If this config is using x509 authentication, this function shall retrieve its sslcontext from its x509 Authentication object.]
+        // Codes_SRS_HTTPSIOTHUBCONNECTION_21_046: [The function shall set the IotHub SSL context by calling setSSLContext on the request.]
+        // Codes_SRS_HTTPSIOTHUBCONNECTION_21_045: [The function shall set the request read timeout to be the configuration parameter readTimeoutMillis.]
+        // Codes_SRS_HTTPSIOTHUBCONNECTION_21_051: [If the IoT Hub could not be reached, the function shall throw a ProtocolException.]
+        HttpsResponse response = this.sendRequest(request);
 
-            // Codes_SRS_HTTPSIOTHUBCONNECTION_21_050: [The function shall return a ResponseMessage with the status and payload.]
-            IotHubStatusCode status = IotHubStatusCode.getIotHubStatusCode(response.getStatus());
-            byte[] body = response.getBody();
+        // Codes_SRS_HTTPSIOTHUBCONNECTION_21_050: [The function shall return a ResponseMessage with the status and payload.]
+        IotHubStatusCode status = IotHubStatusCode.getIotHubStatusCode(response.getStatus());
+        byte[] body = response.getBody();
 
-            return new ResponseMessage(body, status);
-        }
+        return new ResponseMessage(body, status);
     }
 
     /**
@@ -21,6 +21,7 @@ import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ThreadFactory;
 
 @Slf4j
 abstract public class Mqtt implements MqttCallback
@@ -73,6 +74,7 @@ abstract public class Mqtt implements MqttCallback
 
     private IotHubListener listener;
     private String connectionId;
+    private ThreadFactory threadFactory;
     private final String deviceId;
 
     private final Object stateLock; // lock for preventing simultaneous connects and subscribe requests
@@ -195,13 +197,13 @@ abstract public class Mqtt implements MqttCallback
                 throw transportException;
             }
 
-            if (message == null || publishTopic == null || publishTopic.length() == 0 || message.getBytes() == null)
+            // The body is handed to paho without being copied
+            byte[] payload = message == null ? null : message.getBytesNoCopy();
+            if (payload == null || publishTopic == null || publishTopic.length() == 0)
             {
                 throw new IllegalArgumentException("Cannot publish on null or empty publish topic");
             }
 
-            byte[] payload = message.getBytes();
-
             // Wait until either the number of in flight messages is below the limit before publishing another message
             // Or wait until the connection is lost so the message can be requeued for later
             while (this.mqttAsyncClient.getPendingDeliveryTokens().length >= MAX_IN_FLIGHT_COUNT)
@@ -353,7 +355,7 @@ abstract public class Mqtt implements MqttCallback
                 throwable = ex;
             }
 
-            ReconnectionNotifier.notifyDisconnectAsync(throwable, this.listener, this.connectionId);
+            ReconnectionNotifier.notifyDisconnectAsync(throwable, this.listener, this.connectionId, this.threadFactory);
         }
     }
 
@@ -543,6 +545,11 @@ abstract public class Mqtt implements MqttCallback
         this.connectionId = connectionId;
     }
 
+    void setThreadFactory(ThreadFactory threadFactory)
+    {
+        this.threadFactory = threadFactory;
+    }
+
     void setMqttAsyncClient(MqttAsyncClient mqttAsyncClient)
     {
         // should never be set to null
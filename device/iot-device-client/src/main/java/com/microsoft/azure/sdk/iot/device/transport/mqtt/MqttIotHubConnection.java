@@ -12,6 +12,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.ScheduledExecutorPingSender;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 
 import javax.net.ssl.SSLContext;
@@ -26,6 +27,9 @@ import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 
 import static com.microsoft.azure.sdk.iot.device.MessageType.DEVICE_METHODS;
 import static com.microsoft.azure.sdk.iot.device.MessageType.DEVICE_TWIN;
@@ -49,6 +53,10 @@ public class MqttIotHubConnection implements IotHubTransportConnection, MqttMess
 
     private static final String MODEL_ID = "model-id";
 
+    // Paho runs its connect/disconnect worker, receiver, sender and callback loops concurrently on its executor, and
+    // waits for each loop to start, so its executor needs a thread for each of them plus a spare
+    private static final int PAHO_THREAD_COUNT = 5;
+
     private String connectionId;
     private String webSocketQueryString;
     private final Object mqttConnectionStateLock = new Object(); // lock for preventing simultaneous open and close calls
@@ -65,6 +73,9 @@ public class MqttIotHubConnection implements IotHubTransportConnection, MqttMess
 
     private final Map<IotHubTransportMessage, Integer> receivedMessagesToAcknowledge = new ConcurrentHashMap<>();
 
+    private ThreadFactory threadFactory;
+    private ScheduledExecutorService pingScheduler;
+
     /**
      * Constructs an instance from the given {@link DeviceClientConfig}
      * object.
@@ -302,6 +313,7 @@ public class MqttIotHubConnection implements IotHubTransportConnection, MqttMess
         {
             if (this.state == IotHubConnectionStatus.DISCONNECTED)
             {
+                this.releasePingScheduler();
                 return;
             }
 
@@ -310,12 +322,27 @@ public class MqttIotHubConnection implements IotHubTransportConnection, MqttMess
             this.deviceMethod.stop();
             this.deviceTwin.stop();
             this.deviceMessaging.stop();
+            this.releasePingScheduler();
 
             this.state = IotHubConnectionStatus.DISCONNECTED;
             log.debug("Successfully closed MQTT connection");
         }
     }
 
+    /**
+     * Set the factory for the threads that Paho runs this connection on, and for the thread that reports a lost
+     * connection. Paho's threads change on the next open.
+     *
+     * @param threadFactory the factory for Paho's threads. May be {@code null} to let Paho start its own threads.
+     */
+    public void setThreadFactory(ThreadFactory threadFactory)
+    {
+        this.threadFactory = threadFactory;
+        this.deviceMessaging.setThreadFactory(threadFactory);
+        this.deviceTwin.setThreadFactory(threadFactory);
+        this.deviceMethod.setThreadFactory(threadFactory);
+    }
+
     @Override
     public void setListener(IotHubListener listener) throws IllegalArgumentException
     {
@@ -340,10 +367,10 @@ public class MqttIotHubConnection implements IotHubTransportConnection, MqttMess
     @Override
     public IotHubStatusCode sendMessage(Message message) throws TransportException
     {
-        if (message == null || message.getBytes() == null ||
+        if (message == null || message.getBytesNoCopy() == null ||
             ((message.getMessageType() != DEVICE_TWIN
                     && message.getMessageType() != DEVICE_METHODS)
-                    && message.getBytes().length == 0))
+                    && message.getBytesNoCopy().length == 0))
         {
             return IotHubStatusCode.BAD_FORMAT;
         }
@@ -506,7 +533,22 @@ public class MqttIotHubConnection implements IotHubTransportConnection, MqttMess
         MqttAsyncClient mqttAsyncClient;
         try
         {
-            mqttAsyncClient = new MqttAsyncClient(serverUri, clientId, new MemoryPersistence());
+            if (this.pingScheduler == null)
+            {
+                this.pingScheduler = MqttPingScheduler.create(this.threadFactory);
+            }
+
+            // Paho shuts its executor down when the client is closed, so each client gets its own
+            ScheduledExecutorService pahoExecutor = this.threadFactory == null
+                    ? null
+                    : Executors.newScheduledThreadPool(PAHO_THREAD_COUNT, this.threadFactory);
+
+            mqttAsyncClient = new MqttAsyncClient(
+                    serverUri,
+                    clientId,
+                    new MemoryPersistence(),
+                    new ScheduledExecutorPingSender(this.pingScheduler),
+                    pahoExecutor);
         }
         catch (MqttException e)
         {
@@ -516,4 +558,13 @@ public class MqttIotHubConnection implements IotHubTransportConnection, MqttMess
         mqttAsyncClient.setManualAcks(true);
         return mqttAsyncClient;
     }
+
+    private void releasePingScheduler()
+    {
+        if (this.pingScheduler != null)
+        {
+            this.pingScheduler.shutdownNow();
+            this.pingScheduler = null;
+        }
+    }
 }
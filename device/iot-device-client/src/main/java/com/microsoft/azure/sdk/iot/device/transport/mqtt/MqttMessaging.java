@@ -83,7 +83,7 @@ public class MqttMessaging extends Mqtt
      */
     public void send(Message message) throws TransportException
     {
-        if (message == null || message.getBytes() == null)
+        if (message == null || message.getBytesNoCopy() == null)
         {
             throw new IllegalArgumentException("Message cannot be null");
         }
@@ -0,0 +1,51 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.mqtt;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Builds the scheduler that sends the keep-alive pings of one MQTT connection. By default, Paho starts a timer thread
+ * for its pings that no thread factory can reach. Each connection owns its scheduler, since Paho tears the connection
+ * down on the ping thread when a ping times out, and that must not hold up the pings of any other connection.
+ */
+final class MqttPingScheduler
+{
+    private static final String THREAD_NAME = "azure-iot-sdk-MqttPingScheduler";
+
+    private MqttPingScheduler()
+    {
+    }
+
+    /**
+     * Create the ping scheduler for a connection that is opening. The connection must shut it down once it is closed.
+     *
+     * @param threadFactory the factory for the ping thread. May be {@code null} to start a daemon thread of its own.
+     * @return the scheduler to send the connection's pings on.
+     */
+    static ScheduledExecutorService create(ThreadFactory threadFactory)
+    {
+        if (threadFactory == null)
+        {
+            threadFactory = new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, THREAD_NAME);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            };
+        }
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, threadFactory);
+
+        // Pings are cancelled and rescheduled on every keep-alive, so don't keep the cancelled ones queued
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+}
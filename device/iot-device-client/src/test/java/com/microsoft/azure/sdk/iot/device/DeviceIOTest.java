@@ -20,6 +20,8 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -667,4 +669,163 @@ public class DeviceIOTest
         // assert
         assertTrue(isOpen);
     }
+
+    private DeviceIO newDeviceIOWithSharedExecutor(final IotHubClientProtocol protocol)
+    {
+        mockConfig.executorService = mockScheduler;
+        new NonStrictExpectations()
+        {
+            {
+                mockedTransport.getProtocol();
+                result = protocol;
+            }
+        };
+
+        return newDeviceIO();
+    }
+
+    // With a shared executor, connecting shall signal the send and receive tasks on it instead of starting threads of its own
+    @Test
+    public void connectedWithSharedExecutorStartsNoThreads()
+    {
+        // arrange
+        final DeviceIO deviceIO = newDeviceIOWithSharedExecutor(IotHubClientProtocol.AMQPS);
+
+        // act
+        Deencapsulation.invoke(deviceIO, "execute", IotHubConnectionStatus.CONNECTED, IotHubConnectionStatusChangeReason.CONNECTION_OK, new Exception(), new Object());
+
+        // assert
+        assertTrue(deviceIO.isOpen());
+        new Verifications()
+        {
+            {
+                mockedTransport.setExecutors(null, mockScheduler);
+                times = 1;
+                mockedTransport.setTaskSignals((Runnable) any, (Runnable) any);
+                times = 1;
+                Executors.newScheduledThreadPool(anyInt);
+                times = 0;
+                mockScheduler.execute((Runnable) any);
+                times = 2;
+                mockScheduler.scheduleWithFixedDelay((Runnable) any, anyLong, anyLong, (TimeUnit) any);
+                times = 0;
+            }
+        };
+    }
+
+    // With a shared executor, the https receive task shall poll on the shared executor
+    @Test
+    public void connectedWithSharedExecutorPollsHttpsOnSharedExecutor()
+    {
+        // arrange
+        final DeviceIO deviceIO = newDeviceIOWithSharedExecutor(IotHubClientProtocol.HTTPS);
+
+        // act
+        Deencapsulation.invoke(deviceIO, "execute", IotHubConnectionStatus.CONNECTED, IotHubConnectionStatusChangeReason.CONNECTION_OK, new Exception(), new Object());
+
+        // assert
+        new Verifications()
+        {
+            {
+                Executors.newScheduledThreadPool(anyInt);
+                times = 0;
+                mockScheduler.scheduleWithFixedDelay((Runnable) any, 0, RECEIVE_PERIOD_MILLIS_AMQPS, TimeUnit.MILLISECONDS);
+                times = 1;
+                mockScheduler.execute((Runnable) any);
+                times = 1;
+            }
+        };
+    }
+
+    // The client shall never shut down an executor that the user shared with it
+    @Test
+    public void closeWithSharedExecutorDoesNotShutItDown()
+    {
+        // arrange
+        final DeviceIO deviceIO = newDeviceIOWithSharedExecutor(IotHubClientProtocol.MQTT);
+        Deencapsulation.invoke(deviceIO, "execute", IotHubConnectionStatus.CONNECTED, IotHubConnectionStatusChangeReason.CONNECTION_OK, new Exception(), new Object());
+
+        // act
+        deviceIO.close();
+
+        // assert
+        assertFalse(deviceIO.isOpen());
+        new Verifications()
+        {
+            {
+                mockScheduler.shutdown();
+                times = 0;
+                mockScheduler.shutdownNow();
+                times = 0;
+                mockedTransport.close(IotHubConnectionStatusChangeReason.CLIENT_CLOSE, null);
+                times = 1;
+            }
+        };
+    }
+
+    // With a thread factory, the send and receive threads shall come from it
+    @Test
+    public void connectedWithThreadFactoryUsesIt(@Mocked final ThreadFactory mockThreadFactory)
+    {
+        // arrange
+        mockConfig.threadFactory = mockThreadFactory;
+        final DeviceIO deviceIO = newDeviceIO();
+
+        // act
+        Deencapsulation.invoke(deviceIO, "execute", IotHubConnectionStatus.CONNECTED, IotHubConnectionStatusChangeReason.CONNECTION_OK, new Exception(), new Object());
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockedTransport.setExecutors(mockThreadFactory, null);
+                times = 1;
+                Executors.newScheduledThreadPool(1, mockThreadFactory);
+                times = 2;
+                Executors.newScheduledThreadPool(1);
+                times = 0;
+            }
+        };
+    }
+
+    // With outbound queue options, the transport shall bound its outbound queue by them
+    @Test
+    public void constructorHandsOutboundQueueOptionsToTransport()
+    {
+        // arrange
+        final OutboundQueueOptions options = OutboundQueueOptions.builder().maxMessages(10).build();
+        mockConfig.outboundQueueOptions = options;
+
+        // act
+        newDeviceIO();
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockedTransport.setOutboundQueueOptions(options);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void constructorHandsSendRateOptionsToTransport()
+    {
+        // arrange
+        final SendRateOptions options = SendRateOptions.builder().maxMessagesPerSecond(10).build();
+        mockConfig.sendRateOptions = options;
+
+        // act
+        newDeviceIO();
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockedTransport.setSendRateOptions(options);
+                times = 1;
+            }
+        };
+    }
 }
@@ -0,0 +1,145 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.DeviceTwin;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/* Unit tests for DesiredPropertyPathIndex
+ * 100% methods covered
+ */
+public class DesiredPropertyPathIndexTest
+{
+    private static class RecordingCallback implements TwinPropertyCallBack
+    {
+        final List<Property> properties = new ArrayList<>();
+        final List<Object> contexts = new ArrayList<>();
+
+        @Override
+        public void TwinPropertyCallBack(Property property, Object context)
+        {
+            properties.add(property);
+            contexts.add(context);
+        }
+    }
+
+    private static Map<String, Object> sensors()
+    {
+        Map<String, Object> temperature = new HashMap<>();
+        temperature.put("rate", 5);
+        temperature.put("unit", "C");
+
+        Map<String, Object> humidity = new HashMap<>();
+        humidity.put("rate", 10);
+
+        Map<String, Object> sensors = new HashMap<>();
+        sensors.put("temperature", temperature);
+        sensors.put("humidity", humidity);
+
+        Map<String, Object> config = new HashMap<>();
+        config.put("sensors", sensors);
+        return config;
+    }
+
+    @Test
+    public void dispatchExactPathCallsCallbackWithFullPath()
+    {
+        // arrange
+        DesiredPropertyPathIndex index = new DesiredPropertyPathIndex();
+        RecordingCallback callback = new RecordingCallback();
+        Object context = new Object();
+        index.subscribe("config.sensors.temperature.rate", callback, context);
+
+        // act
+        boolean dispatched = index.dispatch("config", sensors(), 3, null);
+
+        // assert
+        assertTrue(dispatched);
+        assertEquals(1, callback.properties.size());
+        assertEquals("config.sensors.temperature.rate", callback.properties.get(0).getKey());
+        assertEquals(5, callback.properties.get(0).getValue());
+        assertEquals(3, (int) callback.properties.get(0).getVersion());
+        assertSame(context, callback.contexts.get(0));
+    }
+
+    @Test
+    public void dispatchWildcardMatchesEveryKeyAtLevel()
+    {
+        // arrange
+        DesiredPropertyPathIndex index = new DesiredPropertyPathIndex();
+        RecordingCallback callback = new RecordingCallback();
+        index.subscribe("config.sensors.*.rate", callback, null);
+
+        // act
+        boolean dispatched = index.dispatch("config", sensors(), 3, null);
+
+        // assert
+        assertTrue(dispatched);
+        List<String> keys = new ArrayList<>();
+        for (Property property : callback.properties)
+        {
+            keys.add(property.getKey());
+        }
+        assertEquals(2, keys.size());
+        assertTrue(keys.contains("config.sensors.temperature.rate"));
+        assertTrue(keys.contains("config.sensors.humidity.rate"));
+    }
+
+    @Test
+    public void dispatchTopLevelWildcardAndExactKeyBothFire()
+    {
+        // arrange
+        DesiredPropertyPathIndex index = new DesiredPropertyPathIndex();
+        RecordingCallback wildcardCallback = new RecordingCallback();
+        RecordingCallback exactCallback = new RecordingCallback();
+        index.subscribe("*", wildcardCallback, null);
+        index.subscribe("config", exactCallback, null);
+
+        // act
+        index.dispatch("config", sensors(), 3, null);
+
+        // assert
+        assertEquals(1, wildcardCallback.properties.size());
+        assertEquals(1, exactCallback.properties.size());
+        assertEquals("config", exactCallback.properties.get(0).getKey());
+    }
+
+    @Test
+    public void dispatchUnmatchedPathReturnsFalse()
+    {
+        // arrange
+        DesiredPropertyPathIndex index = new DesiredPropertyPathIndex();
+        RecordingCallback callback = new RecordingCallback();
+        index.subscribe("config.sensors.pressure.rate", callback, null);
+
+        // act
+        boolean dispatched = index.dispatch("config", sensors(), 3, null);
+        boolean dispatchedOtherKey = index.dispatch("other", 1, 3, null);
+
+        // assert
+        assertFalse(dispatched);
+        assertFalse(dispatchedOtherKey);
+        assertTrue(callback.properties.isEmpty());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void subscribeEmptyLevelThrows()
+    {
+        // act
+        new DesiredPropertyPathIndex().subscribe("config..rate", new RecordingCallback(), null);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void subscribeNullCallbackThrows()
+    {
+        // act
+        new DesiredPropertyPathIndex().subscribe("config", null, null);
+    }
+}
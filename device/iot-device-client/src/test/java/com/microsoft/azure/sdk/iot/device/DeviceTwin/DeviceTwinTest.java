@@ -1003,6 +1003,39 @@ public class DeviceTwinTest
         };
     }
 
+    @Test
+    public void desiredPropertiesPatchWithStaleVersionIsIgnored(@Mocked final TwinPropertyCallBack mockedDesiredCB)
+    {
+        // arrange
+        final String newPatch = "{\"DesiredProp1\":\"NewValue\", \"$version\":5}";
+        final String stalePatch = "{\"DesiredProp1\":\"OldValue\", \"$version\":4}";
+        DeviceTwin testTwin = new DeviceTwin(mockedDeviceIO, mockedConfig,
+                mockedStatusCB, null, mockedGenericTwinPropertyCB, null);
+        MessageCallback deviceTwinResponseMessageCallback =
+                Deencapsulation.newInnerInstance("deviceTwinResponseMessageCallback", testTwin);
+        testTwin.subscribeDesiredPropertiesPathNotification("DesiredProp1", mockedDesiredCB, null);
+
+        final IotHubTransportMessage newMessage = new IotHubTransportMessage(newPatch.getBytes(StandardCharsets.UTF_8), MessageType.DEVICE_TWIN);
+        newMessage.setDeviceOperationType(DeviceOperations.DEVICE_OPERATION_TWIN_SUBSCRIBE_DESIRED_PROPERTIES_RESPONSE);
+        final IotHubTransportMessage staleMessage = new IotHubTransportMessage(stalePatch.getBytes(StandardCharsets.UTF_8), MessageType.DEVICE_TWIN);
+        staleMessage.setDeviceOperationType(DeviceOperations.DEVICE_OPERATION_TWIN_SUBSCRIBE_DESIRED_PROPERTIES_RESPONSE);
+
+        //act
+        deviceTwinResponseMessageCallback.execute(newMessage, null);
+        deviceTwinResponseMessageCallback.execute(staleMessage, null);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedDesiredCB.TwinPropertyCallBack((Property)any, null);
+                times = 1;
+                mockedGenericTwinPropertyCB.TwinPropertyCallBack((Property)any, null);
+                times = 0;
+            }
+        };
+    }
+
     @Test
     public void getDeviceTwinResponseWithDesiredPropertiesCallsTwinPropertyCallBack(
             @Mocked final Property mockedProperty)
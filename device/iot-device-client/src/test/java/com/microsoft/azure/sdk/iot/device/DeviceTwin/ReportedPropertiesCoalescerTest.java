@@ -0,0 +1,253 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.DeviceTwin;
+
+import com.microsoft.azure.sdk.iot.device.CorrelatingMessageCallback;
+import com.microsoft.azure.sdk.iot.device.IotHubEventCallback;
+import com.microsoft.azure.sdk.iot.device.IotHubStatusCode;
+import mockit.Delegate;
+import mockit.Expectations;
+import mockit.Mocked;
+import mockit.Verifications;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/* Unit tests for ReportedPropertiesCoalescer
+ * 100% methods covered
+ */
+public class ReportedPropertiesCoalescerTest
+{
+    // Long enough that the scheduled flush never runs during a test
+    private static final long FLUSH_INTERVAL_MILLISECONDS = 60 * 60 * 1000;
+
+    @Mocked
+    DeviceTwin mockedDeviceTwin;
+
+    private static class RecordingCallback implements IotHubEventCallback
+    {
+        final List<IotHubStatusCode> statuses = new ArrayList<>();
+        final List<Object> contexts = new ArrayList<>();
+
+        @Override
+        public void execute(IotHubStatusCode responseStatus, Object callbackContext)
+        {
+            statuses.add(responseStatus);
+            contexts.add(callbackContext);
+        }
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnNonPositiveInterval()
+    {
+        // act
+        new ReportedPropertiesCoalescer(mockedDeviceTwin, 0, 10);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnNonPositiveMaxPendingProperties()
+    {
+        // act
+        new ReportedPropertiesCoalescer(mockedDeviceTwin, FLUSH_INTERVAL_MILLISECONDS, 0);
+    }
+
+    @Test
+    public void flushSendsLatestValuePerKeyInOnePatchAndCompletesEveryUpdate() throws IOException
+    {
+        // arrange
+        final List<Set<Property>> sentPatches = new ArrayList<>();
+        new Expectations()
+        {
+            {
+                mockedDeviceTwin.updateReportedProperties((Set<Property>) any, null, null, null, (IotHubEventCallback) any, any);
+                result = new Delegate()
+                {
+                    @SuppressWarnings("unused")
+                    void updateReportedProperties(Set<Property> reportedProperties, Integer version, CorrelatingMessageCallback correlatingMessageCallback, Object correlatingMessageCallbackContext, IotHubEventCallback callback, Object callbackContext)
+                    {
+                        sentPatches.add(reportedProperties);
+                        callback.execute(IotHubStatusCode.OK_EMPTY, callbackContext);
+                    }
+                };
+            }
+        };
+
+        ReportedPropertiesCoalescer coalescer = new ReportedPropertiesCoalescer(mockedDeviceTwin, FLUSH_INTERVAL_MILLISECONDS, 10);
+        RecordingCallback callback = new RecordingCallback();
+
+        // act
+        coalescer.report(new Property("counter", 1), callback, "first");
+        coalescer.report(new Property("counter", 2), callback, "second");
+        coalescer.report(new Property("state", "on"), callback, "other");
+        coalescer.flush();
+        coalescer.flush();
+
+        // assert
+        assertEquals(1, sentPatches.size());
+        assertEquals(2, sentPatches.get(0).size());
+        for (Property property : sentPatches.get(0))
+        {
+            if (property.getKey().equals("counter"))
+            {
+                assertEquals(2, property.getValue());
+            }
+            else
+            {
+                assertEquals("state", property.getKey());
+                assertEquals("on", property.getValue());
+            }
+        }
+
+        assertEquals(3, callback.statuses.size());
+        for (IotHubStatusCode status : callback.statuses)
+        {
+            assertEquals(IotHubStatusCode.OK_EMPTY, status);
+        }
+        assertTrue(callback.contexts.contains("first"));
+        assertTrue(callback.contexts.contains("second"));
+        assertTrue(callback.contexts.contains("other"));
+    }
+
+    @Test
+    public void reportFlushesOnceThresholdIsReached() throws IOException
+    {
+        // arrange
+        ReportedPropertiesCoalescer coalescer = new ReportedPropertiesCoalescer(mockedDeviceTwin, FLUSH_INTERVAL_MILLISECONDS, 2);
+
+        // act
+        coalescer.report(new Property("a", 1), null, null);
+        coalescer.report(new Property("a", 2), null, null);
+        coalescer.report(new Property("b", 3), null, null);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockedDeviceTwin.updateReportedProperties((Set<Property>) any, null, null, null, (IotHubEventCallback) any, any);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void flushFailureExecutesCallbacksWithError() throws IOException
+    {
+        // arrange
+        new Expectations()
+        {
+            {
+                mockedDeviceTwin.updateReportedProperties((Set<Property>) any, null, null, null, (IotHubEventCallback) any, any);
+                result = new IOException("test");
+            }
+        };
+
+        ReportedPropertiesCoalescer coalescer = new ReportedPropertiesCoalescer(mockedDeviceTwin, FLUSH_INTERVAL_MILLISECONDS, 10);
+        RecordingCallback callback = new RecordingCallback();
+        coalescer.report(new Property("a", 1), callback, null);
+
+        // act
+        coalescer.flush();
+
+        // assert
+        assertEquals(1, callback.statuses.size());
+        assertEquals(IotHubStatusCode.ERROR, callback.statuses.get(0));
+    }
+
+    @Test
+    public void closeFlushesPendingUpdatesAndRejectsNewOnes() throws IOException
+    {
+        // arrange
+        ReportedPropertiesCoalescer coalescer = new ReportedPropertiesCoalescer(mockedDeviceTwin, FLUSH_INTERVAL_MILLISECONDS, 10);
+        coalescer.report(new Property("a", 1), null, null);
+
+        // act
+        coalescer.close();
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockedDeviceTwin.updateReportedProperties((Set<Property>) any, null, null, null, (IotHubEventCallback) any, any);
+                times = 1;
+            }
+        };
+
+        try
+        {
+            coalescer.report(new Property("a", 2), null, null);
+            fail("Expected report to throw after close");
+        }
+        catch (IllegalStateException expected)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void closeNowDropsPendingUpdatesAndCancelsTheirCallbacks() throws IOException
+    {
+        // arrange
+        ReportedPropertiesCoalescer coalescer = new ReportedPropertiesCoalescer(mockedDeviceTwin, FLUSH_INTERVAL_MILLISECONDS, 10);
+        RecordingCallback callback = new RecordingCallback();
+        coalescer.report(new Property("a", 1), callback, "context");
+
+        // act
+        coalescer.closeNow();
+
+        // assert
+        assertEquals(1, callback.statuses.size());
+        assertEquals(IotHubStatusCode.MESSAGE_CANCELLED_ONCLOSE, callback.statuses.get(0));
+        assertEquals("context", callback.contexts.get(0));
+        new Verifications()
+        {
+            {
+                mockedDeviceTwin.updateReportedProperties((Set<Property>) any, null, null, null, (IotHubEventCallback) any, any);
+                times = 0;
+            }
+        };
+
+        try
+        {
+            coalescer.report(new Property("a", 2), null, null);
+            fail("Expected report to throw after closeNow");
+        }
+        catch (IllegalStateException expected)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void flushThreadIsMadeByTheProvidedThreadFactory() throws InterruptedException
+    {
+        // arrange
+        final CountDownLatch threadMade = new CountDownLatch(1);
+        ThreadFactory threadFactory = new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                threadMade.countDown();
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+
+        // act
+        ReportedPropertiesCoalescer coalescer = new ReportedPropertiesCoalescer(mockedDeviceTwin, FLUSH_INTERVAL_MILLISECONDS, 10, threadFactory);
+
+        // assert
+        assertTrue(threadMade.await(10, TimeUnit.SECONDS));
+        coalescer.close();
+    }
+}
@@ -404,6 +404,136 @@ public class InternalClientTest
         };
     }
 
+    @Test
+    public void closeSendsCoalescedReportedPropertiesBeforeClosingTransport(@Mocked final DeviceTwin mockedDeviceTwin,
+                                                                            @Mocked final IotHubEventCallback mockedStatusCB,
+                                                                            @Mocked final PropertyCallBack mockedPropertyCB) throws IOException, URISyntaxException
+    {
+        //arrange
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = true;
+                mockDeviceIO.isEmpty();
+                result = true;
+            }
+        };
+        InternalClient client = Deencapsulation.newInstance(InternalClient.class, new Class[] {IotHubConnectionString.class, IotHubClientProtocol.class, long.class, long.class, ClientOptions.class}, mockIotHubConnectionString, protocol, SEND_PERIOD, RECEIVE_PERIOD, null);
+        Deencapsulation.invoke(client, "open");
+        Deencapsulation.invoke(client, "startTwinInternal", new Class[] {IotHubEventCallback.class, Object.class, PropertyCallBack.class, Object.class}, mockedStatusCB, NULL_OBJECT, mockedPropertyCB, NULL_OBJECT);
+
+        // act
+        Deencapsulation.invoke(client, "close");
+
+        // assert
+        new VerificationsInOrder()
+        {
+            {
+                mockedDeviceTwin.disableReportedPropertiesCoalescing();
+                times = 1;
+                mockDeviceIO.close();
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void closeNowCancelsCoalescedReportedPropertiesBeforeClosingTransport(@Mocked final DeviceTwin mockedDeviceTwin,
+                                                                                 @Mocked final IotHubEventCallback mockedStatusCB,
+                                                                                 @Mocked final PropertyCallBack mockedPropertyCB) throws IOException, URISyntaxException
+    {
+        //arrange
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = true;
+            }
+        };
+        InternalClient client = Deencapsulation.newInstance(InternalClient.class, new Class[] {IotHubConnectionString.class, IotHubClientProtocol.class, long.class, long.class, ClientOptions.class}, mockIotHubConnectionString, protocol, SEND_PERIOD, RECEIVE_PERIOD, null);
+        Deencapsulation.invoke(client, "open");
+        Deencapsulation.invoke(client, "startTwinInternal", new Class[] {IotHubEventCallback.class, Object.class, PropertyCallBack.class, Object.class}, mockedStatusCB, NULL_OBJECT, mockedPropertyCB, NULL_OBJECT);
+
+        // act
+        Deencapsulation.invoke(client, "closeNow");
+
+        // assert
+        new VerificationsInOrder()
+        {
+            {
+                mockedDeviceTwin.cancelReportedPropertiesCoalescing();
+                times = 1;
+                mockDeviceIO.close();
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void closeReleasesSigningKeyAfterClosingTransport() throws IOException, URISyntaxException
+    {
+        //arrange
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isEmpty();
+                result = true;
+                mockConfig.getSasTokenAuthentication();
+                result = mockIotHubSasTokenAuthenticationProvider;
+            }
+        };
+        InternalClient client = Deencapsulation.newInstance(InternalClient.class, new Class[] {IotHubConnectionString.class, IotHubClientProtocol.class, long.class, long.class, ClientOptions.class}, mockIotHubConnectionString, protocol, SEND_PERIOD, RECEIVE_PERIOD, null);
+        Deencapsulation.invoke(client, "open");
+
+        // act
+        Deencapsulation.invoke(client, "close");
+
+        // assert
+        new VerificationsInOrder()
+        {
+            {
+                mockDeviceIO.close();
+                times = 1;
+                mockIotHubSasTokenAuthenticationProvider.releaseSigningKey();
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void closeNowReleasesSigningKeyAfterClosingTransport() throws IOException, URISyntaxException
+    {
+        //arrange
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.getSasTokenAuthentication();
+                result = mockIotHubSasTokenAuthenticationProvider;
+            }
+        };
+        InternalClient client = Deencapsulation.newInstance(InternalClient.class, new Class[] {IotHubConnectionString.class, IotHubClientProtocol.class, long.class, long.class, ClientOptions.class}, mockIotHubConnectionString, protocol, SEND_PERIOD, RECEIVE_PERIOD, null);
+        Deencapsulation.invoke(client, "open");
+
+        // act
+        Deencapsulation.invoke(client, "closeNow");
+
+        // assert
+        new VerificationsInOrder()
+        {
+            {
+                mockDeviceIO.close();
+                times = 1;
+                mockIotHubSasTokenAuthenticationProvider.releaseSigningKey();
+                times = 1;
+            }
+        };
+    }
+
     /* Tests_SRS_INTERNALCLIENT_21_009: [If the closing a connection via deviceIO is not successful, the closeNow shall throw IOException.] */
     @Test
     public void closeNowBadCloseTransportThrows() throws IOException, URISyntaxException
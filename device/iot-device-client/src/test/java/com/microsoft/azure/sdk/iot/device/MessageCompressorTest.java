@@ -0,0 +1,185 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for MessageCompressor.
+ */
+public class MessageCompressorTest
+{
+    private static byte[] createCompressibleBody(int length)
+    {
+        byte[] body = new byte[length];
+        byte[] pattern = "{\"temperature\":21.5,\"humidity\":40}".getBytes(Message.DEFAULT_IOTHUB_MESSAGE_CHARSET);
+        for (int i = 0; i < length; i++)
+        {
+            body[i] = pattern[i % pattern.length];
+        }
+
+        return body;
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException
+    {
+        InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1)
+        {
+            outputStream.write(buffer, 0, read);
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnDictionaryWithGzip()
+    {
+        //act
+        new MessageCompressor(MessageCompressionOptions.builder()
+                .algorithm(MessageCompressionAlgorithm.GZIP)
+                .dictionary(new byte[] { 1, 2, 3 })
+                .build());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnInvalidCompressionLevel()
+    {
+        //act
+        new MessageCompressor(MessageCompressionOptions.builder().compressionLevel(10).build());
+    }
+
+    @Test
+    public void compressGzipsBodyAndSetsContentEncoding() throws IOException
+    {
+        //arrange
+        final byte[] body = createCompressibleBody(4096);
+        final long[] reported = new long[3];
+        MessageCompressor compressor = new MessageCompressor(MessageCompressionOptions.builder()
+                .compressionCallback(new MessageCompressionCallback()
+                {
+                    @Override
+                    public void onMessageCompressed(Message message, int originalSizeBytes, int compressedSizeBytes, long compressionTimeNanos)
+                    {
+                        reported[0] = originalSizeBytes;
+                        reported[1] = compressedSizeBytes;
+                        reported[2] = compressionTimeNanos;
+                    }
+                })
+                .build());
+
+        // Compress twice so that the second message reuses the deflater of this thread
+        Message firstMessage = new Message(body);
+        Message secondMessage = new Message(body);
+
+        //act
+        boolean isFirstCompressed = compressor.compress(firstMessage);
+        boolean isSecondCompressed = compressor.compress(secondMessage);
+
+        //assert
+        assertTrue(isFirstCompressed);
+        assertTrue(isSecondCompressed);
+        assertEquals("gzip", secondMessage.getContentEncoding());
+        assertArrayEquals(body, gunzip(firstMessage.getBytes()));
+        assertArrayEquals(body, gunzip(secondMessage.getBytes()));
+        assertEquals(body.length, reported[0]);
+        assertEquals(secondMessage.getBytes().length, reported[1]);
+        assertTrue(reported[1] < reported[0]);
+        assertTrue(reported[2] >= 0);
+    }
+
+    @Test
+    public void compressDeflatesBodyWithDictionary() throws DataFormatException
+    {
+        //arrange
+        byte[] body = createCompressibleBody(2048);
+        byte[] dictionary = Arrays.copyOf(body, 64);
+        MessageCompressor compressor = new MessageCompressor(MessageCompressionOptions.builder()
+                .algorithm(MessageCompressionAlgorithm.DEFLATE)
+                .dictionary(dictionary)
+                .build());
+        Message message = new Message(body);
+
+        //act
+        compressor.compress(message);
+
+        //assert
+        assertEquals("deflate", message.getContentEncoding());
+        Inflater inflater = new Inflater();
+        inflater.setInput(message.getBytes());
+        byte[] decompressed = new byte[body.length];
+        assertEquals(0, inflater.inflate(decompressed));
+        assertTrue(inflater.needsDictionary());
+        inflater.setDictionary(dictionary);
+        assertEquals(body.length, inflater.inflate(decompressed));
+        assertTrue(inflater.finished());
+        assertArrayEquals(body, decompressed);
+    }
+
+    @Test
+    public void compressSkipsIneligibleMessages()
+    {
+        //arrange
+        MessageCompressor compressor = new MessageCompressor(MessageCompressionOptions.builder()
+                .minimumBodySizeBytes(1024)
+                .contentTypes(new HashSet<>(Collections.singletonList("application/json")))
+                .build());
+
+        byte[] largeBody = createCompressibleBody(4096);
+        Message smallMessage = new Message(createCompressibleBody(512));
+        smallMessage.setContentTypeFinal("application/json");
+        Message otherContentTypeMessage = new Message(largeBody);
+        otherContentTypeMessage.setContentTypeFinal("text/plain");
+        Message alreadyEncodedMessage = new Message(largeBody);
+        alreadyEncodedMessage.setContentTypeFinal("application/json");
+        alreadyEncodedMessage.setContentEncoding("utf-8");
+        Message eligibleMessage = new Message(largeBody);
+        eligibleMessage.setContentTypeFinal("Application/JSON");
+
+        //act
+        //assert
+        assertFalse(compressor.compress(smallMessage));
+        assertNull(smallMessage.getContentEncoding());
+        assertFalse(compressor.compress(otherContentTypeMessage));
+        assertArrayEquals(largeBody, otherContentTypeMessage.getBytes());
+        assertFalse(compressor.compress(alreadyEncodedMessage));
+        assertEquals("utf-8", alreadyEncodedMessage.getContentEncoding());
+        assertTrue(compressor.compress(eligibleMessage));
+    }
+
+    @Test
+    public void compressLeavesIncompressibleBodyUnchanged()
+    {
+        //arrange
+        byte[] body = new byte[2048];
+        new Random(0).nextBytes(body);
+        MessageCompressor compressor = new MessageCompressor(MessageCompressionOptions.builder().build());
+        Message message = new Message(body);
+
+        //act
+        boolean isCompressed = compressor.compress(message);
+
+        //assert
+        assertFalse(isCompressed);
+        assertNull(message.getContentEncoding());
+        assertArrayEquals(body, message.getBytes());
+    }
+}
@@ -13,6 +13,8 @@ import mockit.NonStrictExpectations;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
@@ -420,4 +422,172 @@ public class MessageTest
         assertTrue(msg.isSecurityMessage());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void constructorWithByteBufferUsesBackingArrayWithoutCopy()
+    {
+        //arrange
+        final byte[] body = { 1, 2, 3 };
+
+        //act
+        Message msg = new Message(ByteBuffer.wrap(body));
+
+        //assert
+        assertSame(body, msg.getBytesNoCopy());
+    }
+
+    @Test
+    public void constructorWithByteBufferCopiesRemainingBytesOfSlice()
+    {
+        //arrange
+        final byte[] body = { 1, 2, 3, 4 };
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        buffer.position(1);
+        buffer.limit(3);
+
+        //act
+        Message msg = new Message(buffer);
+
+        //assert
+        assertArrayEquals(new byte[] { 2, 3 }, msg.getBytes());
+        assertEquals(1, buffer.position());
+    }
+
+    @Test
+    public void constructorWithByteBufferCopiesDirectBuffer()
+    {
+        //arrange
+        ByteBuffer buffer = ByteBuffer.allocateDirect(3);
+        buffer.put(new byte[] { 1, 2, 3 });
+        buffer.flip();
+
+        //act
+        Message msg = new Message(buffer);
+
+        //assert
+        assertArrayEquals(new byte[] { 1, 2, 3 }, msg.getBytes());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorWithByteBufferRejectsNullBody()
+    {
+        //act
+        new Message((ByteBuffer) null);
+    }
+
+    @Test (expected = ReadOnlyBufferException.class)
+    public void getBodyBufferReturnsReadOnlyView()
+    {
+        //arrange
+        final byte[] body = { 1, 2, 3 };
+        Message msg = new Message(body);
+
+        //act
+        ByteBuffer bodyBuffer = msg.getBodyBuffer();
+
+        //assert
+        assertEquals(ByteBuffer.wrap(body), bodyBuffer);
+        bodyBuffer.put(0, (byte) 5);
+    }
+
+    @Test
+    public void constructorGeneratesMessageIdWithConfiguredGenerator()
+    {
+        //arrange
+        Message.setMessageIdGenerator(new MessageIdGenerator()
+        {
+            @Override
+            public String generateId()
+            {
+                return "generated-id";
+            }
+        });
+
+        try
+        {
+            //act
+            Message msg = new Message();
+
+            //assert
+            assertEquals("generated-id", msg.getMessageId());
+        }
+        finally
+        {
+            Message.setMessageIdGenerator(new TimeOrderedMessageIdGenerator());
+        }
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void setMessageIdGeneratorRejectsNull()
+    {
+        //act
+        Message.setMessageIdGenerator(null);
+    }
+
+    @Test
+    public void correlationIdIsOnlyGeneratedWhenCorrelatingCallbackIsSet(@Mocked final CorrelatingMessageCallback mockCallback)
+    {
+        //arrange
+        Message msg = new Message();
+        Message msgWithCorrelationId = new Message();
+        msgWithCorrelationId.setCorrelationId("some-correlation-id");
+
+        //assert
+        assertEquals("", msg.getCorrelationId());
+
+        //act
+        msg.setCorrelatingMessageCallback(mockCallback);
+        msgWithCorrelationId.setCorrelatingMessageCallback(mockCallback);
+
+        //assert
+        assertFalse(msg.getCorrelationId().isEmpty());
+        assertNotEquals(msg.getMessageId(), msg.getCorrelationId());
+        assertEquals("some-correlation-id", msgWithCorrelationId.getCorrelationId());
+    }
+
+    @Test
+    public void setPropertyReplacesPropertyWithSameNameIgnoringCase()
+    {
+        //arrange
+        Message msg = new Message();
+        msg.setProperty("first", "1");
+        msg.setProperty("Second", "2");
+        msg.setProperty("third", "3");
+
+        //act
+        msg.setProperty("second", "two");
+
+        //assert
+        assertEquals("two", msg.getProperty("SECOND"));
+        assertNull(msg.getProperty("fourth"));
+        assertNull(msg.getProperty(null));
+
+        MessageProperty[] properties = msg.getProperties();
+        assertEquals(3, properties.length);
+        assertEquals("first", properties[0].getName());
+        assertEquals("third", properties[1].getName());
+        assertEquals("second", properties[2].getName());
+        assertEquals("two", properties[2].getValue());
+    }
+
+    @Test
+    public void priorityIsNormalUnlessSet()
+    {
+        //arrange
+        Message msg = new Message();
+
+        //act
+        MessagePriority defaultPriority = msg.getPriority();
+        msg.setPriority(MessagePriority.HIGH);
+
+        //assert
+        assertEquals(MessagePriority.NORMAL, defaultPriority);
+        assertEquals(MessagePriority.HIGH, msg.getPriority());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setPriorityThrowsForNull()
+    {
+        //act
+        new Message().setPriority(null);
+    }
+}
@@ -26,9 +26,17 @@ import java.net.URL;
 import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
 
 /**
  * Unit tests for ModuleClient.java
@@ -1033,4 +1041,218 @@ public class ModuleClientTest
         //act
         client.invokeMethod("someValidDevice", "", mockedMethodRequest);
     }
+
+    @Test
+    public void invokeMethodReusesTransportAcrossCalls() throws URISyntaxException, ModuleClientException, IOException, TransportException
+    {
+        //arrange
+        baseExpectations();
+        ModuleClient client = new ModuleClient("connection string", IotHubClientProtocol.AMQPS);
+        final String expectedDeviceId = "someDevice";
+        final String expectedModuleId = "someModule";
+
+        new NonStrictExpectations()
+        {
+            {
+                new HttpsTransportManager((DeviceClientConfig) any);
+                result = mockedHttpsTransportManager;
+                times = 1;
+            }
+        };
+
+        //act
+        client.invokeMethod(expectedDeviceId, mockedMethodRequest);
+        client.invokeMethod(expectedDeviceId, expectedModuleId, mockedMethodRequest);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedHttpsTransportManager.open();
+                times = 1;
+
+                mockedHttpsTransportManager.invokeMethod(mockedMethodRequest, expectedDeviceId, "");
+                times = 1;
+
+                mockedHttpsTransportManager.invokeMethod(mockedMethodRequest, expectedDeviceId, expectedModuleId);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void invokeMethodAsyncOnModuleSuccess() throws URISyntaxException, ModuleClientException, IOException, TransportException, InterruptedException, ExecutionException
+    {
+        //arrange
+        baseExpectations();
+        ModuleClient client = new ModuleClient("connection string", IotHubClientProtocol.AMQPS);
+        final String expectedDeviceId = "someDevice";
+        final String expectedModuleId = "someModule";
+
+        new NonStrictExpectations()
+        {
+            {
+                new HttpsTransportManager((DeviceClientConfig) any);
+                result = mockedHttpsTransportManager;
+
+                mockedHttpsTransportManager.invokeMethod(mockedMethodRequest, expectedDeviceId, expectedModuleId);
+                result = mockedMethodResult;
+            }
+        };
+
+        //act
+        Future<MethodResult> actualResult = client.invokeMethodAsync(expectedDeviceId, expectedModuleId, mockedMethodRequest);
+
+        //assert
+        assertEquals(mockedMethodResult, actualResult.get());
+    }
+
+    @Test
+    public void invokeMethodAsyncRunsOnThreadFromClientThreadFactory() throws URISyntaxException, ModuleClientException, IOException, TransportException, InterruptedException, ExecutionException
+    {
+        //arrange
+        baseExpectations();
+        ModuleClient client = new ModuleClient("connection string", IotHubClientProtocol.AMQPS);
+        final AtomicInteger threadsMade = new AtomicInteger();
+        ThreadFactory threadFactory = new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                threadsMade.incrementAndGet();
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        DeviceClientConfig config = Deencapsulation.getField(client, "config");
+        config.threadFactory = threadFactory;
+        new NonStrictExpectations()
+        {
+            {
+                new HttpsTransportManager((DeviceClientConfig) any);
+                result = mockedHttpsTransportManager;
+
+                mockedHttpsTransportManager.invokeMethod(mockedMethodRequest, anyString, anyString);
+                result = mockedMethodResult;
+            }
+        };
+
+        //act
+        client.invokeMethodAsync("someDevice", mockedMethodRequest).get();
+
+        //assert
+        assertEquals(1, threadsMade.get());
+    }
+
+    @Test
+    public void closeShutsDownMethodInvocation() throws URISyntaxException, ModuleClientException, IOException, TransportException, InterruptedException, ExecutionException
+    {
+        //arrange
+        baseExpectations();
+        ModuleClient client = new ModuleClient("connection string", IotHubClientProtocol.AMQPS);
+        new NonStrictExpectations()
+        {
+            {
+                new HttpsTransportManager((DeviceClientConfig) any);
+                result = mockedHttpsTransportManager;
+
+                mockedHttpsTransportManager.invokeMethod(mockedMethodRequest, anyString, anyString);
+                result = mockedMethodResult;
+
+                mockedDeviceIO.isEmpty();
+                result = true;
+            }
+        };
+        client.invokeMethodAsync("someDevice", mockedMethodRequest).get();
+        ExecutorService methodInvocationExecutor = Deencapsulation.getField(client, "methodInvocationExecutor");
+
+        //act
+        client.close();
+
+        //assert
+        assertTrue(methodInvocationExecutor.isTerminated());
+        assertNull(Deencapsulation.getField(client, "methodInvocationExecutor"));
+        assertNull(Deencapsulation.getField(client, "methodInvocationTransportManager"));
+        new Verifications()
+        {
+            {
+                mockedHttpsTransportManager.close();
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void closeNowShutsDownMethodInvocation() throws URISyntaxException, ModuleClientException, IOException, TransportException, InterruptedException, ExecutionException
+    {
+        //arrange
+        baseExpectations();
+        ModuleClient client = new ModuleClient("connection string", IotHubClientProtocol.AMQPS);
+        new NonStrictExpectations()
+        {
+            {
+                new HttpsTransportManager((DeviceClientConfig) any);
+                result = mockedHttpsTransportManager;
+
+                mockedHttpsTransportManager.invokeMethod(mockedMethodRequest, anyString, anyString);
+                result = mockedMethodResult;
+            }
+        };
+        client.invokeMethodAsync("someDevice", mockedMethodRequest).get();
+        ExecutorService methodInvocationExecutor = Deencapsulation.getField(client, "methodInvocationExecutor");
+
+        //act
+        client.closeNow();
+
+        //assert
+        assertTrue(methodInvocationExecutor.isShutdown());
+        assertNull(Deencapsulation.getField(client, "methodInvocationExecutor"));
+        assertNull(Deencapsulation.getField(client, "methodInvocationTransportManager"));
+    }
+
+    @Test
+    public void invokeMethodAsyncOnDeviceWrapsExceptions() throws URISyntaxException, ModuleClientException, IOException, TransportException, InterruptedException
+    {
+        //arrange
+        baseExpectations();
+        ModuleClient client = new ModuleClient("connection string", IotHubClientProtocol.AMQPS);
+        final String expectedDeviceId = "someDevice";
+
+        new NonStrictExpectations()
+        {
+            {
+                new HttpsTransportManager((DeviceClientConfig) any);
+                result = mockedHttpsTransportManager;
+
+                mockedHttpsTransportManager.invokeMethod(mockedMethodRequest, expectedDeviceId, "");
+                result = new IOException();
+            }
+        };
+
+        //act
+        Future<MethodResult> actualResult = client.invokeMethodAsync(expectedDeviceId, mockedMethodRequest);
+
+        //assert
+        try
+        {
+            actualResult.get();
+            fail("Expected the invocation to fail");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof ModuleClientException);
+        }
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void invokeMethodAsyncOnModuleThrowsForEmptyModuleId() throws URISyntaxException, ModuleClientException
+    {
+        //arrange
+        baseExpectations();
+        ModuleClient client = new ModuleClient("connection string", IotHubClientProtocol.AMQPS);
+
+        //act
+        client.invokeMethodAsync("someValidDevice", "", mockedMethodRequest);
+    }
 }
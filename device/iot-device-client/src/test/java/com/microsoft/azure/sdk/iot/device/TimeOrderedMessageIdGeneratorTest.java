@@ -0,0 +1,89 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for TimeOrderedMessageIdGenerator.
+ * 100% methods, 100% lines covered
+ */
+public class TimeOrderedMessageIdGeneratorTest
+{
+    @Test
+    public void generateIdReturnsVersion7Uuid()
+    {
+        //arrange
+        TimeOrderedMessageIdGenerator generator = new TimeOrderedMessageIdGenerator();
+        long before = System.currentTimeMillis();
+
+        //act
+        UUID id = UUID.fromString(generator.generateId());
+
+        //assert
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        long timestamp = id.getMostSignificantBits() >>> 16;
+        assertTrue(timestamp >= before);
+        assertTrue(timestamp <= System.currentTimeMillis());
+    }
+
+    @Test
+    public void generateIdIsOrderedAcrossMilliseconds() throws InterruptedException
+    {
+        //arrange
+        TimeOrderedMessageIdGenerator generator = new TimeOrderedMessageIdGenerator();
+
+        //act
+        String first = generator.generateId();
+        Thread.sleep(2);
+        String second = generator.generateId();
+
+        //assert
+        assertTrue(first.compareTo(second) < 0);
+    }
+
+    @Test
+    public void generateIdIsUniqueAcrossThreads() throws InterruptedException
+    {
+        //arrange
+        final TimeOrderedMessageIdGenerator generator = new TimeOrderedMessageIdGenerator();
+        final int threadCount = 8;
+        final int idsPerThread = 10000;
+        final Set<String> ids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final CountDownLatch done = new CountDownLatch(threadCount);
+
+        //act
+        for (int i = 0; i < threadCount; i++)
+        {
+            new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    Set<String> threadIds = new HashSet<>();
+                    for (int j = 0; j < idsPerThread; j++)
+                    {
+                        threadIds.add(generator.generateId());
+                    }
+                    ids.addAll(threadIds);
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+
+        //assert
+        assertEquals(threadCount * idsPerThread, ids.size());
+    }
+}
@@ -21,6 +21,9 @@ import java.security.cert.CertificateException;
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 
 /**
  * Unit tests for IotHubSasTokenSoftwareAuthenticationProvider.java
@@ -41,6 +44,7 @@ public class IotHubSasTokenSoftwareIotHubAuthenticationProviderTest
     @Mocked IotHubSasToken mockSasToken;
     @Mocked IotHubSSLContext mockIotHubSSLContext;
     @Mocked SSLContext mockSSLContext;
+    @Mocked HmacSha256Signer mockSigner;
 
     //Tests_SRS_IOTHUBSASTOKENSOFTWAREAUTHENTICATION_34_002: [This constructor shall save the provided hostname, device id, module id, deviceKey, and sharedAccessToken.]
     @Test
@@ -155,7 +159,7 @@ public class IotHubSasTokenSoftwareIotHubAuthenticationProviderTest
                 result = 0;
                 System.currentTimeMillis();
                 result = 0;
-                Deencapsulation.newInstance(IotHubSasToken.class, new Class[] {String.class, String.class, String.class, String.class, String.class, long.class}, expectedHostname, expectedDeviceId, expectedDeviceKey, null, expectedModuleId, expectedExpiryTime);
+                new IotHubSasToken(expectedHostname, expectedDeviceId, expectedModuleId, (HmacSha256Signer) any, expectedExpiryTime);
                 result = mockSasToken;
             }
         };
@@ -188,7 +192,7 @@ public class IotHubSasTokenSoftwareIotHubAuthenticationProviderTest
                 result = 0;
                 System.currentTimeMillis();
                 result = 0;
-                Deencapsulation.newInstance(IotHubSasToken.class, new Class[] {String.class, String.class, String.class, String.class, String.class, long.class}, expectedHostname, expectedDeviceId, expectedDeviceKey, null, expectedModuleId, expectedExpiryTime);
+                new IotHubSasToken(expectedHostname, expectedDeviceId, expectedModuleId, (HmacSha256Signer) any, expectedExpiryTime);
                 result = mockSasToken;
             }
         };
@@ -220,7 +224,10 @@ public class IotHubSasTokenSoftwareIotHubAuthenticationProviderTest
                 times = 2;
                 new IotHubSasToken(expectedHostname, expectedDeviceId, expectedDeviceKey, null, expectedModuleId, anyLong);
                 result = mockSasToken;
-                times = 2;
+                times = 1;
+                new IotHubSasToken(expectedHostname, expectedDeviceId, expectedModuleId, (HmacSha256Signer) any, anyLong);
+                result = mockSasToken;
+                times = 1;
             }
         };
 
@@ -261,6 +268,26 @@ public class IotHubSasTokenSoftwareIotHubAuthenticationProviderTest
         sasAuth.getSasToken();
     }
 
+    @Test
+    public void releaseSigningKeyDropsSignerUntilNextRenewal() throws IOException, TransportException
+    {
+        //arrange
+        IotHubSasTokenAuthenticationProvider sasAuth = new IotHubSasTokenSoftwareAuthenticationProvider(expectedHostname, expectedGatewayHostname, expectedDeviceId, expectedModuleId, expectedDeviceKey, expectedSasToken);
+        sasAuth.getSasToken();
+        HmacSha256Signer signerBeforeRelease = Deencapsulation.getField(sasAuth, "signer");
+
+        //act
+        sasAuth.releaseSigningKey();
+        HmacSha256Signer signerAfterRelease = Deencapsulation.getField(sasAuth, "signer");
+        sasAuth.getSasToken();
+
+        //assert
+        assertNotNull(signerBeforeRelease);
+        assertNull(signerAfterRelease);
+        assertNotNull(Deencapsulation.getField(sasAuth, "signer"));
+        assertNotSame(signerBeforeRelease, Deencapsulation.getField(sasAuth, "signer"));
+    }
+
     //Tests_SRS_IOTHUBSASTOKENSOFTWAREAUTHENTICATION_34_005: [This function shall return the saved sas token.]
     @Test
     public void getSasTokenReturnsSavedValue() throws CertificateException, NoSuchAlgorithmException, KeyStoreException, KeyManagementException, IOException, TransportException {
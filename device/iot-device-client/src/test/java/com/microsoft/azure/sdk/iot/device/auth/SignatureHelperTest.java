@@ -8,6 +8,8 @@ import org.junit.Test;
 
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertThat;
@@ -66,6 +68,48 @@ public class SignatureHelperTest
         assertThat(testEncryptedSig, is(expectedEncryptedSig));
     }
 
+    @Test
+    public void signerReusedAcrossThreadsMatchesRfc4231() throws Exception
+    {
+        final byte[] testSig = "what do ya want for nothing?".getBytes(UTF8);
+        final HmacSha256Signer signer = new HmacSha256Signer("Jefe".getBytes(UTF8));
+        final byte[] expectedEncryptedSig =
+                { 0x5b, (byte) 0xdc, (byte) 0xc1, 0x46, (byte) 0xbf, 0x60, 0x75,
+                        0x4e, 0x6a, 0x04, 0x24, 0x26, 0x08, (byte) 0x95, 0x75,
+                        (byte) 0xc7, 0x5a, 0x00, 0x3f, 0x08, (byte) 0x9d, 0x27,
+                        0x39, (byte) 0x83, (byte) 0x9d, (byte) 0xec, 0x58,
+                        (byte) 0xb9, 0x64, (byte) 0xec, 0x38, 0x43 };
+        final AtomicBoolean allMatched = new AtomicBoolean(true);
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (int j = 0; j < 100; j++)
+                    {
+                        if (!Arrays.equals(expectedEncryptedSig, signer.sign(testSig)))
+                        {
+                            allMatched.set(false);
+                        }
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        assertThat(allMatched.get(), is(true));
+        assertThat(signer.sign(testSig), is(expectedEncryptedSig));
+    }
+
     // Tests_SRS_SIGNATUREHELPER_11_006: [The function shall encode the signature using Base64.]
     @Test
     public void encodeSignatureUsingBase64()
@@ -160,4 +160,41 @@ public class HttpHsmSignatureProviderTest
         signatureProvider.sign(keyName, null, expectedGenId);
     }
 
+    @Test
+    public void signIdenticalRequestIsAnsweredFromCache() throws NoSuchAlgorithmException, TransportException, IOException, URISyntaxException, HsmException
+    {
+        //arrange
+        final String keyName = "keyName";
+        final String data = "some data";
+        final String expectedDigest = "somedigest";
+        new NonStrictExpectations()
+        {
+            {
+                mockedHttpsHsmClient.sign(expectedApiVersion, anyString, (SignRequest) any, anyString);
+                result = mockedSignResponse;
+
+                mockedSignResponse.getDigest();
+                result = expectedDigest;
+            }
+        };
+
+        final HttpHsmSignatureProvider signatureProvider = new HttpHsmSignatureProvider(expectedProviderUri, expectedApiVersion);
+
+        //act
+        String firstDigest = signatureProvider.sign(keyName, data, expectedGenId);
+        String secondDigest = signatureProvider.sign(keyName, data, expectedGenId);
+        signatureProvider.sign(keyName, "other data", expectedGenId);
+
+        //assert
+        assertEquals(firstDigest, secondDigest);
+        assertEquals(1, signatureProvider.getSignatureCacheHitCount());
+        assertEquals(2, signatureProvider.getSignatureCacheMissCount());
+        new Verifications()
+        {
+            {
+                mockedHttpsHsmClient.sign(expectedApiVersion, keyName, (SignRequest) any, expectedGenId);
+                times = 2;
+            }
+        };
+    }
 }
@@ -228,6 +228,131 @@ public class HttpsHsmClientTest
     public void signSuccessWithUnix(@Mocked final URI mockedURI) throws IOException, TransportException, URISyntaxException, HsmException
     {
         //arrange
+        unixSignExpectations(mockedURI);
+        new NonStrictExpectations()
+        {
+            {
+                HttpsRequestResponseSerializer.isConnectionReusable(mockedHttpsResponse);
+                result = false;
+            }
+        };
+
+        HttpsHsmClient client = new HttpsHsmClient(expectedBaseUrl);
+        Deencapsulation.setField(client, "scheme", expectedSchemeUnix);
+
+        //act
+        client.sign(expectedApiVersion, expectedName, mockedSignRequest, expectedGenId);
+
+        //assert
+        new Verifications()
+        {
+            {
+                HttpsRequestResponseSerializer.serializeRequest(mockedHttpsRequest, anyString, anyString, anyString, true);
+                times = 1;
+
+                HttpsRequestResponseSerializer.readResponse((InputStream) any);
+                times = 1;
+
+                mockedUnixSocketChannel.write((ByteBuffer) any);
+                times = 1;
+
+                mockedUnixSocketChannel.close();
+                times = 1;
+
+                mockedHttpsRequest.send();
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void signWithUnixReusesKeepAliveConnectionAcrossClients(@Mocked final URI mockedURI) throws IOException, TransportException, URISyntaxException, HsmException
+    {
+        //arrange
+        unixSignExpectations(mockedURI);
+        new NonStrictExpectations()
+        {
+            {
+                mockedUnixSocketChannel.isConnected();
+                result = true;
+
+                // the second response closes the connection so that no pooled connection outlives this test
+                HttpsRequestResponseSerializer.isConnectionReusable(mockedHttpsResponse);
+                returns(true, false);
+            }
+        };
+
+        HttpsHsmClient client1 = new HttpsHsmClient(expectedBaseUrl);
+        Deencapsulation.setField(client1, "scheme", expectedSchemeUnix);
+        HttpsHsmClient client2 = new HttpsHsmClient(expectedBaseUrl);
+        Deencapsulation.setField(client2, "scheme", expectedSchemeUnix);
+
+        //act
+        client1.sign(expectedApiVersion, expectedName, mockedSignRequest, expectedGenId);
+        client2.sign(expectedApiVersion, expectedName, mockedSignRequest, expectedGenId);
+
+        //assert
+        new Verifications()
+        {
+            {
+                UnixSocketChannel.open((UnixSocketAddress) any);
+                times = 1;
+
+                mockedUnixSocketChannel.write((ByteBuffer) any);
+                times = 2;
+
+                mockedUnixSocketChannel.close();
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void signWithUnixRetriesOnNewConnectionIfPooledConnectionFails(@Mocked final URI mockedURI) throws IOException, TransportException, URISyntaxException, HsmException
+    {
+        //arrange
+        unixSignExpectations(mockedURI);
+        new NonStrictExpectations()
+        {
+            {
+                mockedUnixSocketChannel.isConnected();
+                result = true;
+
+                HttpsRequestResponseSerializer.readResponse((InputStream) any);
+                result = mockedHttpsResponse;
+                result = new IOException("connection reset");
+                result = mockedHttpsResponse;
+
+                HttpsRequestResponseSerializer.isConnectionReusable(mockedHttpsResponse);
+                returns(true, false);
+            }
+        };
+
+        HttpsHsmClient client = new HttpsHsmClient(expectedBaseUrl);
+        Deencapsulation.setField(client, "scheme", expectedSchemeUnix);
+
+        //act
+        client.sign(expectedApiVersion, expectedName, mockedSignRequest, expectedGenId);
+        client.sign(expectedApiVersion, expectedName, mockedSignRequest, expectedGenId);
+
+        //assert
+        new Verifications()
+        {
+            {
+                UnixSocketChannel.open((UnixSocketAddress) any);
+                times = 2;
+
+                mockedUnixSocketChannel.write((ByteBuffer) any);
+                times = 3;
+
+                mockedUnixSocketChannel.close();
+                times = 2;
+            }
+        };
+    }
+
+    private void unixSignExpectations(final URI mockedURI) throws URISyntaxException, IOException
+    {
         final String expectedJson = "some json";
         final byte[] expectedMetaData = "some headers and such".getBytes(StandardCharsets.UTF_8);
         final byte[] expectedBody = "http request's body".getBytes(StandardCharsets.UTF_8);
@@ -246,7 +371,7 @@ public class HttpsHsmClientTest
                 new HttpsRequest((URL) any, HttpsMethod.POST, expectedJson.getBytes(StandardCharsets.UTF_8), anyString);
                 result = mockedHttpsRequest;
 
-                HttpsRequestResponseSerializer.serializeRequest(mockedHttpsRequest, anyString, anyString, anyString);
+                HttpsRequestResponseSerializer.serializeRequest(mockedHttpsRequest, anyString, anyString, anyString, true);
                 result = expectedMetaData;
 
                 mockedHttpsRequest.getBody();
@@ -258,43 +383,25 @@ public class HttpsHsmClientTest
                 UnixSocketChannel.open(mockedUnixSocketAddress);
                 result = mockedUnixSocketChannel;
 
-                mockedUnixSocketChannel.read((ByteBuffer) any);
-                result = -1;
-
-                Channels.newOutputStream(mockedUnixSocketChannel);
-                result = mockedOutputStream;
-
-                HttpsRequestResponseSerializer.deserializeResponse((BufferedReader) any);
+                mockedUnixSocketChannel.write((ByteBuffer) any);
+                result = new Delegate()
+                {
+                    @SuppressWarnings("unused")
+                    int write(ByteBuffer buffer)
+                    {
+                        int written = buffer.remaining();
+                        buffer.position(buffer.limit());
+                        return written;
+                    }
+                };
+
+                HttpsRequestResponseSerializer.readResponse((InputStream) any);
                 result = mockedHttpsResponse;
 
                 mockedHttpsResponse.getStatus();
                 result = 200;
             }
         };
-
-        HttpsHsmClient client = new HttpsHsmClient(expectedBaseUrl);
-        Deencapsulation.setField(client, "scheme", expectedSchemeUnix);
-
-        //act
-        client.sign(expectedApiVersion, expectedName, mockedSignRequest, expectedGenId);
-
-        //assert
-        new Verifications()
-        {
-            {
-                HttpsRequestResponseSerializer.serializeRequest(mockedHttpsRequest, anyString, anyString, anyString);
-                times = 1;
-
-                HttpsRequestResponseSerializer.deserializeResponse((BufferedReader) any);
-                times = 1;
-
-                mockedUnixSocketChannel.write((ByteBuffer) any);
-                times = 1;
-
-                mockedHttpsRequest.send();
-                times = 0;
-            }
-        };
     }
 
     // Tests_SRS_HSMHTTPCLIENT_34_005: [If the response from the http call is not 200, this function shall throw an HsmException.]
@@ -15,6 +15,7 @@ import mockit.*;
 import org.junit.Test;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
@@ -29,6 +30,8 @@ import java.util.List;
 import java.util.Map;
 
 import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
 
 public class HttpsRequestResponseSerializerTest
 {
@@ -342,4 +345,206 @@ public class HttpsRequestResponseSerializerTest
         //act
         HttpsRequestResponseSerializer.deserializeResponse(new BufferedReader(new StringReader(stringToDeserialize)));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void serializeWithKeepAliveRequestsPersistentConnection() throws MalformedURLException, URISyntaxException
+    {
+        //arrange
+        final HttpsRequest request = new HttpsRequest(new URL("https://localhost:8081/trust-bundle"), HttpsMethod.GET, new byte[0], null);
+
+        //act
+        HttpsRequestResponseSerializer.serializeRequest(request, "/trust-bundle", "api-version=2018-06-28", "localhost:8081", true);
+
+        //assert
+        new Verifications()
+        {
+            {
+                request.setHeaderField("Connection", "keep-alive");
+                times = 1;
+                request.setHeaderField("Connection", "close");
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void readResponseReadsOnlyContentLengthBytesOfBody() throws IOException
+    {
+        //arrange
+        final Map<String, List<String>> expectedHeaders = new HashMap<>();
+        List<String> values = new ArrayList<>();
+        values.add("4");
+        expectedHeaders.put("Content-Length", values);
+        ByteArrayInputStream stream = new ByteArrayInputStream((
+                "HTTP/1.1 404 Not Found\r\n" +
+                "Content-Length: 4\r\n" +
+                "\r\n" +
+                "testHTTP/1.1 200 OK\r\n").getBytes(StandardCharsets.US_ASCII));
+
+        //act
+        HttpsRequestResponseSerializer.readResponse(stream);
+
+        //assert
+        new Verifications()
+        {
+            {
+                new HttpsResponse(404, "test".getBytes(StandardCharsets.UTF_8), expectedHeaders, "Not Found".getBytes(StandardCharsets.UTF_8));
+                times = 1;
+            }
+        };
+
+        // the next response on the connection is left unread
+        assertEquals('H', stream.read());
+    }
+
+    @Test
+    public void readResponseDecodesChunkedBody() throws IOException
+    {
+        //arrange
+        final Map<String, List<String>> expectedHeaders = new HashMap<>();
+        List<String> values = new ArrayList<>();
+        values.add("chunked");
+        expectedHeaders.put("Transfer-Encoding", values);
+        ByteArrayInputStream stream = new ByteArrayInputStream((
+                "HTTP/1.1 200 OK\r\n" +
+                "Transfer-Encoding: chunked\r\n" +
+                "\r\n" +
+                "4\r\ntest\r\n" +
+                "6;ext=1\r\n body2\r\n" +
+                "0\r\n" +
+                "\r\n").getBytes(StandardCharsets.US_ASCII));
+
+        //act
+        HttpsRequestResponseSerializer.readResponse(stream);
+
+        //assert
+        new Verifications()
+        {
+            {
+                new HttpsResponse(200, "test body2".getBytes(StandardCharsets.UTF_8), expectedHeaders, "OK".getBytes(StandardCharsets.UTF_8));
+                times = 1;
+            }
+        };
+        assertEquals(-1, stream.read());
+    }
+
+    @Test
+    public void readResponseReadsNoBodyFor204WithoutContentLength() throws IOException
+    {
+        //arrange
+        final Map<String, List<String>> expectedHeaders = new HashMap<>();
+        ByteArrayInputStream stream = new ByteArrayInputStream((
+                "HTTP/1.1 204 No Content\r\n" +
+                "\r\n" +
+                "HTTP/1.1 200 OK\r\n").getBytes(StandardCharsets.US_ASCII));
+
+        //act
+        HttpsRequestResponseSerializer.readResponse(stream);
+
+        //assert
+        new Verifications()
+        {
+            {
+                new HttpsResponse(204, new byte[0], expectedHeaders, "No Content".getBytes(StandardCharsets.UTF_8));
+                times = 1;
+            }
+        };
+
+        // the next response on the connection is left unread
+        assertEquals('H', stream.read());
+    }
+
+    @Test
+    public void readResponseSkipsInterimResponses() throws IOException
+    {
+        //arrange
+        final Map<String, List<String>> expectedHeaders = new HashMap<>();
+        List<String> values = new ArrayList<>();
+        values.add("4");
+        expectedHeaders.put("Content-Length", values);
+        ByteArrayInputStream stream = new ByteArrayInputStream((
+                "HTTP/1.1 100 Continue\r\n" +
+                "\r\n" +
+                "HTTP/1.1 200 OK\r\n" +
+                "Content-Length: 4\r\n" +
+                "\r\n" +
+                "test").getBytes(StandardCharsets.US_ASCII));
+
+        //act
+        HttpsRequestResponseSerializer.readResponse(stream);
+
+        //assert
+        new Verifications()
+        {
+            {
+                new HttpsResponse(200, "test".getBytes(StandardCharsets.UTF_8), expectedHeaders, "OK".getBytes(StandardCharsets.UTF_8));
+                times = 1;
+            }
+        };
+    }
+
+    @Test (expected = IOException.class)
+    public void readResponseThrowsIfBodyIsTruncated() throws IOException
+    {
+        //arrange
+        ByteArrayInputStream stream = new ByteArrayInputStream((
+                "HTTP/1.1 200 OK\r\n" +
+                "Content-Length: 10\r\n" +
+                "\r\n" +
+                "test").getBytes(StandardCharsets.US_ASCII));
+
+        //act
+        HttpsRequestResponseSerializer.readResponse(stream);
+    }
+
+    @Test
+    public void isConnectionReusableRequiresDelimitedBodyWithoutConnectionClose()
+    {
+        //arrange
+        final Map<String, String> delimitedHeaders = new HashMap<>();
+        delimitedHeaders.put("content-length", "4");
+        final Map<String, String> closeHeaders = new HashMap<>();
+        closeHeaders.put("content-length", "4");
+        closeHeaders.put("connection", "close");
+        final Map<String, String> undelimitedHeaders = new HashMap<>();
+
+        new Expectations()
+        {
+            {
+                mockedHttpsResponse.getHeaderFields();
+                returns(delimitedHeaders, closeHeaders, undelimitedHeaders);
+            }
+        };
+
+        //act
+        boolean isDelimitedReusable = HttpsRequestResponseSerializer.isConnectionReusable(mockedHttpsResponse);
+        boolean isCloseReusable = HttpsRequestResponseSerializer.isConnectionReusable(mockedHttpsResponse);
+        boolean isUndelimitedReusable = HttpsRequestResponseSerializer.isConnectionReusable(mockedHttpsResponse);
+
+        //assert
+        assertTrue(isDelimitedReusable);
+        assertFalse(isCloseReusable);
+        assertFalse(isUndelimitedReusable);
+    }
+
+    @Test
+    public void isConnectionReusableForResponseThatNeverHasBody()
+    {
+        //arrange
+        new Expectations()
+        {
+            {
+                mockedHttpsResponse.getStatus();
+                result = 204;
+                mockedHttpsResponse.getHeaderFields();
+                result = new HashMap<String, String>();
+            }
+        };
+
+        //act
+        boolean isReusable = HttpsRequestResponseSerializer.isConnectionReusable(mockedHttpsResponse);
+
+        //assert
+        assertTrue(isReusable);
+    }
+}
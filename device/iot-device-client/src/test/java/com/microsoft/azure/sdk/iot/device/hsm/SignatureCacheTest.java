@@ -0,0 +1,205 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.device.hsm;
+
+import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+public class SignatureCacheTest
+{
+    private static final long ENTRY_LIFETIME_MILLISECONDS = 60 * 1000;
+
+    private static class CountingSigner implements SignatureCache.Signer
+    {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public String sign()
+        {
+            return "signature" + calls.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void identicalInputsAreSignedOnce() throws IOException, TransportException, URISyntaxException, HsmException
+    {
+        //arrange
+        SignatureCache cache = new SignatureCache(ENTRY_LIFETIME_MILLISECONDS);
+        CountingSigner signer = new CountingSigner();
+
+        //act
+        String first = cache.getOrSign("key", "data", "gen1", signer);
+        String second = cache.getOrSign("key", "data", "gen1", signer);
+
+        //assert
+        assertEquals("signature1", first);
+        assertEquals("signature1", second);
+        assertEquals(1, signer.calls.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void differentInputsAreSignedSeparately() throws IOException, TransportException, URISyntaxException, HsmException
+    {
+        //arrange
+        SignatureCache cache = new SignatureCache(ENTRY_LIFETIME_MILLISECONDS);
+        CountingSigner signer = new CountingSigner();
+
+        //act
+        cache.getOrSign("key", "data", "gen1", signer);
+        cache.getOrSign("key", "data", "gen2", signer);
+        cache.getOrSign("otherKey", "data", "gen1", signer);
+        cache.getOrSign("key", "otherData", "gen1", signer);
+
+        //assert
+        assertEquals(4, signer.calls.get());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    public void expiredEntriesAreSignedAgain() throws IOException, TransportException, URISyntaxException, HsmException
+    {
+        //arrange
+        SignatureCache cache = new SignatureCache(0);
+        CountingSigner signer = new CountingSigner();
+
+        //act
+        cache.getOrSign("key", "data", "gen1", signer);
+        String second = cache.getOrSign("key", "data", "gen1", signer);
+
+        //assert
+        assertEquals("signature2", second);
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void failuresAreRethrownAndNotCached() throws IOException, TransportException, URISyntaxException, HsmException
+    {
+        //arrange
+        SignatureCache cache = new SignatureCache(ENTRY_LIFETIME_MILLISECONDS);
+        SignatureCache.Signer failingSigner = new SignatureCache.Signer()
+        {
+            @Override
+            public String sign() throws HsmException
+            {
+                throw new HsmException("test");
+            }
+        };
+
+        //act
+        try
+        {
+            cache.getOrSign("key", "data", "gen1", failingSigner);
+            fail("Expected the signer's exception to be rethrown");
+        }
+        catch (HsmException expected)
+        {
+            // expected
+        }
+
+        String signature = cache.getOrSign("key", "data", "gen1", new CountingSigner());
+
+        //assert
+        assertEquals("signature1", signature);
+    }
+
+    @Test
+    public void concurrentIdenticalRequestsShareOneSigning() throws Exception
+    {
+        //arrange
+        final SignatureCache cache = new SignatureCache(ENTRY_LIFETIME_MILLISECONDS);
+        final CountDownLatch signingStarted = new CountDownLatch(1);
+        final CountDownLatch releaseSigning = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        final SignatureCache.Signer blockingSigner = new SignatureCache.Signer()
+        {
+            @Override
+            public String sign() throws IOException
+            {
+                calls.incrementAndGet();
+                signingStarted.countDown();
+                try
+                {
+                    releaseSigning.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    throw new IOException(e);
+                }
+
+                return "signature";
+            }
+        };
+
+        final AtomicReference<String> firstSignature = new AtomicReference<>();
+        Thread firstRequest = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    firstSignature.set(cache.getOrSign("key", "data", "gen1", blockingSigner));
+                }
+                catch (Exception e)
+                {
+                    firstSignature.set(e.getMessage());
+                }
+            }
+        });
+        firstRequest.start();
+        assertTrue(signingStarted.await(10, TimeUnit.SECONDS));
+
+        final AtomicReference<String> secondSignature = new AtomicReference<>();
+        Thread secondRequest = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    secondSignature.set(cache.getOrSign("key", "data", "gen1", blockingSigner));
+                }
+                catch (Exception e)
+                {
+                    secondSignature.set(e.getMessage());
+                }
+            }
+        });
+        secondRequest.start();
+
+        // give the second request time to find the in flight signing before it completes
+        while (cache.getHitCount() == 0 && secondRequest.isAlive())
+        {
+            Thread.sleep(1);
+        }
+
+        //act
+        releaseSigning.countDown();
+        firstRequest.join(10000);
+        secondRequest.join(10000);
+
+        //assert
+        assertEquals("signature", firstSignature.get());
+        assertEquals("signature", secondSignature.get());
+        assertEquals(1, calls.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+}
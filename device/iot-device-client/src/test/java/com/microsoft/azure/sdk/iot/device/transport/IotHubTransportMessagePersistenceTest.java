@@ -0,0 +1,195 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.*;
+import mockit.Deencapsulation;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for how IotHubTransport stores outbound telemetry in its message journal. Kept apart from
+ * IotHubTransportTest since they need real messages, packets and journal files.
+ */
+public class IotHubTransportMessagePersistenceTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mocked
+    DeviceClientConfig mockedConfig;
+
+    @Mocked
+    IotHubEventCallback mockedEventCallback;
+
+    private IotHubTransport createTransport(final MessagePersistenceOptions options)
+    {
+        new NonStrictExpectations()
+        {
+            {
+                mockedConfig.getDeviceId();
+                result = "someDeviceId";
+
+                mockedConfig.getMessagePersistenceOptions();
+                result = options;
+            }
+        };
+
+        IotHubTransport transport = new IotHubTransport(mockedConfig, null, false);
+        Deencapsulation.invoke(transport, "openMessageJournal");
+        Deencapsulation.setField(transport, "connectionStatus", IotHubConnectionStatus.CONNECTED);
+        return transport;
+    }
+
+    private MessagePersistenceOptions createOptions(int segmentSizeBytes, long maxDiskUsageBytes)
+    {
+        return MessagePersistenceOptions.builder()
+                .directory(temporaryFolder.getRoot())
+                .segmentSizeBytes(segmentSizeBytes)
+                .maxDiskUsageBytes(maxDiskUsageBytes)
+                .evictionPolicy(MessagePersistenceEvictionPolicy.DROP_OLDEST)
+                .build();
+    }
+
+    private static Message createMessage(String messageId, int bodySize)
+    {
+        Message message = new Message(new byte[bodySize]);
+        message.setMessageId(messageId);
+        return message;
+    }
+
+    // Hand the next waiting packet to the connection and have IoT Hub acknowledge it
+    private static void sendAndAcknowledgeNextPacket(IotHubTransport transport)
+    {
+        Queue<IotHubTransportPacket> waitingPackets = Deencapsulation.getField(transport, "waitingPacketsQueue");
+        Map<String, IotHubTransportPacket> inProgressPackets = Deencapsulation.getField(transport, "inProgressPackets");
+        IotHubTransportPacket packet = waitingPackets.poll();
+        inProgressPackets.put(packet.getMessage().getMessageId(), packet);
+        transport.onMessageSent(packet.getMessage(), null, null);
+    }
+
+    @Test
+    public void unacknowledgedMessagesAreQueuedAgainWhenTheJournalIsReopened()
+    {
+        //arrange
+        MessagePersistenceOptions options = createOptions(4096, 8192);
+        IotHubTransport transport = createTransport(options);
+        transport.queueMessage(createMessage("first", 10), mockedEventCallback, null, null);
+        transport.queueMessage(createMessage("second", 10), mockedEventCallback, null, null);
+        Deencapsulation.invoke(transport, "closeMessageJournal");
+
+        //act
+        IotHubTransport reopenedTransport = createTransport(options);
+        Deencapsulation.invoke(reopenedTransport, "loadJournaledPackets");
+
+        //assert
+        Queue<IotHubTransportPacket> waitingPackets = Deencapsulation.getField(reopenedTransport, "waitingPacketsQueue");
+        assertEquals(2, waitingPackets.size());
+        IotHubTransportPacket firstPacket = waitingPackets.poll();
+        assertEquals("first", firstPacket.getMessage().getMessageId());
+        assertNull(firstPacket.getCallback());
+        assertEquals("second", waitingPackets.poll().getMessage().getMessageId());
+    }
+
+    @Test
+    public void messageAcknowledgedByIotHubIsNotQueuedAgainWhenTheJournalIsReopened()
+    {
+        //arrange
+        MessagePersistenceOptions options = createOptions(4096, 8192);
+        IotHubTransport transport = createTransport(options);
+        transport.queueMessage(createMessage("first", 10), mockedEventCallback, null, null);
+        transport.queueMessage(createMessage("second", 10), mockedEventCallback, null, null);
+        Deencapsulation.invoke(transport, "loadJournaledPackets");
+
+        //act
+        sendAndAcknowledgeNextPacket(transport);
+
+        //assert
+        Queue<IotHubTransportPacket> callbackPackets = Deencapsulation.getField(transport, "callbackPacketsQueue");
+        assertEquals(1, callbackPackets.size());
+        assertEquals("first", callbackPackets.peek().getMessage().getMessageId());
+        assertEquals(IotHubStatusCode.OK_EMPTY, callbackPackets.peek().getStatus());
+
+        Deencapsulation.invoke(transport, "closeMessageJournal");
+        IotHubTransport reopenedTransport = createTransport(options);
+        Deencapsulation.invoke(reopenedTransport, "loadJournaledPackets");
+        Queue<IotHubTransportPacket> waitingPackets = Deencapsulation.getField(reopenedTransport, "waitingPacketsQueue");
+        assertEquals(1, waitingPackets.size());
+        assertEquals("second", waitingPackets.peek().getMessage().getMessageId());
+    }
+
+    @Test
+    public void evictedMessageCompletesWithError()
+    {
+        //arrange
+        IotHubTransport transport = createTransport(createOptions(256, 512));
+        transport.queueMessage(createMessage("first", 150), mockedEventCallback, null, null);
+        transport.queueMessage(createMessage("second", 150), mockedEventCallback, null, null);
+
+        //act
+        transport.queueMessage(createMessage("third", 150), mockedEventCallback, null, null);
+
+        //assert
+        Queue<IotHubTransportPacket> callbackPackets = Deencapsulation.getField(transport, "callbackPacketsQueue");
+        assertEquals(1, callbackPackets.size());
+        assertEquals("first", callbackPackets.peek().getMessage().getMessageId());
+        assertEquals(IotHubStatusCode.ERROR, callbackPackets.peek().getStatus());
+
+        Deencapsulation.invoke(transport, "loadJournaledPackets");
+        Queue<IotHubTransportPacket> waitingPackets = Deencapsulation.getField(transport, "waitingPacketsQueue");
+        assertEquals(2, waitingPackets.size());
+        assertEquals("second", waitingPackets.poll().getMessage().getMessageId());
+        assertEquals("third", waitingPackets.poll().getMessage().getMessageId());
+    }
+
+    @Test
+    public void messageInASegmentThatCannotBeReadCompletesWithError()
+    {
+        //arrange
+        IotHubTransport transport = createTransport(createOptions(256, 4096));
+        transport.queueMessage(createMessage("first", 150), mockedEventCallback, null, null);
+        transport.queueMessage(createMessage("second", 150), mockedEventCallback, null, null);
+        transport.queueMessage(createMessage("third", 150), mockedEventCallback, null, null);
+
+        // Each message fills a segment of its own. Replacing the second one with a directory keeps it from being mapped.
+        File[] segmentFiles = temporaryFolder.getRoot().listFiles(new FilenameFilter()
+        {
+            @Override
+            public boolean accept(File dir, String name)
+            {
+                return name.startsWith("segment-");
+            }
+        });
+        Arrays.sort(segmentFiles);
+        assertEquals(3, segmentFiles.length);
+        assertTrue(segmentFiles[1].delete());
+        assertTrue(segmentFiles[1].mkdir());
+
+        //act
+        Deencapsulation.invoke(transport, "loadJournaledPackets");
+
+        //assert
+        Queue<IotHubTransportPacket> waitingPackets = Deencapsulation.getField(transport, "waitingPacketsQueue");
+        assertEquals(2, waitingPackets.size());
+        assertEquals("first", waitingPackets.poll().getMessage().getMessageId());
+        assertEquals("third", waitingPackets.poll().getMessage().getMessageId());
+
+        Queue<IotHubTransportPacket> callbackPackets = Deencapsulation.getField(transport, "callbackPacketsQueue");
+        assertEquals(1, callbackPackets.size());
+        assertEquals("second", callbackPackets.peek().getMessage().getMessageId());
+        assertEquals(IotHubStatusCode.ERROR, callbackPackets.peek().getStatus());
+        assertFalse(Deencapsulation.<Boolean>invoke(transport, "hasJournaledPacketsToLoad"));
+    }
+}
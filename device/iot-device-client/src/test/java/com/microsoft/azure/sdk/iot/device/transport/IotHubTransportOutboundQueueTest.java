@@ -0,0 +1,340 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.*;
+import com.microsoft.azure.sdk.iot.device.exceptions.ThrottledException;
+import mockit.Deencapsulation;
+import mockit.Expectations;
+import mockit.Mocked;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the bounds on the outbound queue of IotHubTransport. Kept apart from IotHubTransportTest since they
+ * need real messages and packets to count against the bounds.
+ */
+public class IotHubTransportOutboundQueueTest
+{
+    @Mocked
+    DeviceClientConfig mockedConfig;
+
+    @Mocked
+    IotHubEventCallback mockedEventCallback;
+
+    private IotHubTransport createTransport()
+    {
+        new Expectations()
+        {
+            {
+                mockedConfig.getDeviceId();
+                result = "someDeviceId";
+            }
+        };
+
+        return new IotHubTransport(mockedConfig, null, false);
+    }
+
+    private IotHubTransport createTransport(int maxMessages, long maxBytes, OutboundQueueOverflowPolicy overflowPolicy)
+    {
+        IotHubTransport transport = createTransport();
+        transport.setOutboundQueueOptions(OutboundQueueOptions.builder()
+                .maxMessages(maxMessages)
+                .maxBytes(maxBytes)
+                .overflowPolicy(overflowPolicy)
+                .build());
+        Deencapsulation.setField(transport, "connectionStatus", IotHubConnectionStatus.CONNECTED);
+        return transport;
+    }
+
+    private static Message createMessage(String messageId, MessagePriority priority)
+    {
+        Message message = new Message("some body");
+        message.setMessageId(messageId);
+        message.setPriority(priority);
+        return message;
+    }
+
+    private static List<String> getMessageIds(Queue<IotHubTransportPacket> packets)
+    {
+        List<String> messageIds = new ArrayList<>();
+        for (IotHubTransportPacket packet : packets)
+        {
+            messageIds.add(packet.getMessage().getMessageId());
+        }
+
+        return messageIds;
+    }
+
+    // Hand the next waiting packet to the connection and have IoT Hub acknowledge it
+    private static void sendAndAcknowledgeNextPacket(IotHubTransport transport)
+    {
+        Queue<IotHubTransportPacket> waitingPackets = Deencapsulation.getField(transport, "waitingPacketsQueue");
+        Map<String, IotHubTransportPacket> inProgressPackets = Deencapsulation.getField(transport, "inProgressPackets");
+        IotHubTransportPacket packet = waitingPackets.poll();
+        inProgressPackets.put(packet.getMessage().getMessageId(), packet);
+        transport.onMessageSent(packet.getMessage(), null, null);
+    }
+
+    @Test
+    public void failFastRejectsMessagesBeyondTheBoundWithThrottled() throws InterruptedException
+    {
+        //arrange
+        IotHubTransport transport = createTransport(2, OutboundQueueOptions.DEFAULT_MAX_BYTES, OutboundQueueOverflowPolicy.FAIL_FAST);
+        transport.queueMessage(createMessage("first", MessagePriority.NORMAL), mockedEventCallback, null, null);
+        transport.queueMessage(createMessage("second", MessagePriority.NORMAL), mockedEventCallback, null, null);
+
+        //act
+        Future<Void> accepted = transport.queueMessage(createMessage("third", MessagePriority.NORMAL), mockedEventCallback, null, null);
+
+        //assert
+        try
+        {
+            accepted.get();
+            fail("The third message should have been rejected");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof ThrottledException);
+        }
+
+        Queue<IotHubTransportPacket> waitingPackets = Deencapsulation.getField(transport, "waitingPacketsQueue");
+        Queue<IotHubTransportPacket> callbackPackets = Deencapsulation.getField(transport, "callbackPacketsQueue");
+        assertEquals(2, waitingPackets.size());
+        assertEquals(1, callbackPackets.size());
+        assertEquals("third", callbackPackets.peek().getMessage().getMessageId());
+        assertEquals(IotHubStatusCode.THROTTLED, callbackPackets.peek().getStatus());
+    }
+
+    @Test
+    public void blockAcceptsWaitingMessageOnceAQueuedMessageIsAcknowledged()
+    {
+        //arrange
+        IotHubTransport transport = createTransport(1, OutboundQueueOptions.DEFAULT_MAX_BYTES, OutboundQueueOverflowPolicy.BLOCK);
+        transport.queueMessage(createMessage("first", MessagePriority.NORMAL), mockedEventCallback, null, null);
+        Future<Void> accepted = transport.queueMessage(createMessage("second", MessagePriority.NORMAL), mockedEventCallback, null, null);
+        Queue<IotHubTransportPacket> waitingPackets = Deencapsulation.getField(transport, "waitingPacketsQueue");
+        assertFalse(accepted.isDone());
+
+        //act
+        sendAndAcknowledgeNextPacket(transport);
+
+        //assert
+        assertTrue(accepted.isDone());
+        assertEquals(1, waitingPackets.size());
+        assertEquals("second", waitingPackets.peek().getMessage().getMessageId());
+    }
+
+    @Test
+    public void blockDoesNotAcceptWithdrawnMessage()
+    {
+        //arrange
+        IotHubTransport transport = createTransport(1, OutboundQueueOptions.DEFAULT_MAX_BYTES, OutboundQueueOverflowPolicy.BLOCK);
+        transport.queueMessage(createMessage("first", MessagePriority.NORMAL), mockedEventCallback, null, null);
+        Future<Void> withdrawn = transport.queueMessage(createMessage("second", MessagePriority.NORMAL), mockedEventCallback, null, null);
+        Future<Void> accepted = transport.queueMessage(createMessage("third", MessagePriority.NORMAL), mockedEventCallback, null, null);
+        assertTrue(withdrawn.cancel(false));
+
+        //act
+        sendAndAcknowledgeNextPacket(transport);
+
+        //assert
+        Queue<IotHubTransportPacket> waitingPackets = Deencapsulation.getField(transport, "waitingPacketsQueue");
+        assertTrue(accepted.isDone());
+        assertEquals(1, waitingPackets.size());
+        assertEquals("third", waitingPackets.peek().getMessage().getMessageId());
+    }
+
+    @Test
+    public void blockDoesNotWaitForRoomWhenSendingFromASendCallback() throws InterruptedException
+    {
+        //arrange
+        final IotHubTransport transport = createTransport(1, OutboundQueueOptions.DEFAULT_MAX_BYTES, OutboundQueueOverflowPolicy.BLOCK);
+        IotHubEventCallback sendingCallback = new IotHubEventCallback()
+        {
+            @Override
+            public void execute(IotHubStatusCode responseStatus, Object callbackContext)
+            {
+                transport.addMessage(createMessage("third", MessagePriority.NORMAL), mockedEventCallback, null, null);
+            }
+        };
+        transport.queueMessage(createMessage("first", MessagePriority.NORMAL), sendingCallback, null, null);
+        sendAndAcknowledgeNextPacket(transport);
+        transport.queueMessage(createMessage("second", MessagePriority.NORMAL), mockedEventCallback, null, null);
+        Thread callbackThread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                transport.invokeCallbacks();
+            }
+        });
+
+        //act
+        callbackThread.start();
+        callbackThread.join(10000);
+
+        //assert
+        assertFalse("Sending from a send callback should not wait for room", callbackThread.isAlive());
+        Queue<IotHubTransportPacket> waitingPackets = Deencapsulation.getField(transport, "waitingPacketsQueue");
+        assertEquals(1, waitingPackets.size());
+        assertEquals("second", waitingPackets.peek().getMessage().getMessageId());
+
+        // The message sent from the callback is accepted once there is room for it
+        sendAndAcknowledgeNextPacket(transport);
+        assertEquals(1, waitingPackets.size());
+        assertEquals("third", waitingPackets.peek().getMessage().getMessageId());
+    }
+
+    @Test
+    public void closingCancelsMessagesWaitingForRoom() throws InterruptedException
+    {
+        //arrange
+        IotHubTransport transport = createTransport(1, OutboundQueueOptions.DEFAULT_MAX_BYTES, OutboundQueueOverflowPolicy.BLOCK);
+        transport.queueMessage(createMessage("first", MessagePriority.NORMAL), mockedEventCallback, null, null);
+        Future<Void> accepted = transport.queueMessage(createMessage("second", MessagePriority.NORMAL), mockedEventCallback, null, null);
+
+        //act
+        Deencapsulation.invoke(transport, "cancelPendingAdmissions");
+
+        //assert
+        try
+        {
+            accepted.get();
+            fail("The waiting message should have been cancelled");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        Queue<IotHubTransportPacket> callbackPackets = Deencapsulation.getField(transport, "callbackPacketsQueue");
+        assertEquals(1, callbackPackets.size());
+        assertEquals(IotHubStatusCode.MESSAGE_CANCELLED_ONCLOSE, callbackPackets.peek().getStatus());
+    }
+
+    @Test
+    public void dropOldestDropsTheOldestWaitingMessage() throws Exception
+    {
+        //arrange
+        IotHubTransport transport = createTransport(2, OutboundQueueOptions.DEFAULT_MAX_BYTES, OutboundQueueOverflowPolicy.DROP_OLDEST);
+        transport.queueMessage(createMessage("first", MessagePriority.HIGH), mockedEventCallback, null, null);
+        Thread.sleep(2);
+        transport.queueMessage(createMessage("second", MessagePriority.LOW), mockedEventCallback, null, null);
+
+        //act
+        Future<Void> accepted = transport.queueMessage(createMessage("third", MessagePriority.NORMAL), mockedEventCallback, null, null);
+
+        //assert
+        accepted.get();
+        Queue<IotHubTransportPacket> waitingPackets = Deencapsulation.getField(transport, "waitingPacketsQueue");
+        Queue<IotHubTransportPacket> callbackPackets = Deencapsulation.getField(transport, "callbackPacketsQueue");
+        List<String> waitingMessageIds = getMessageIds(waitingPackets);
+        assertEquals(2, waitingMessageIds.size());
+        assertTrue(waitingMessageIds.contains("second"));
+        assertTrue(waitingMessageIds.contains("third"));
+        assertEquals("first", callbackPackets.peek().getMessage().getMessageId());
+        assertEquals(IotHubStatusCode.THROTTLED, callbackPackets.peek().getStatus());
+    }
+
+    @Test
+    public void dropLowestPriorityDropsTheLowestPriorityWaitingMessage() throws Exception
+    {
+        //arrange
+        IotHubTransport transport = createTransport(2, OutboundQueueOptions.DEFAULT_MAX_BYTES, OutboundQueueOverflowPolicy.DROP_LOWEST_PRIORITY);
+        transport.queueMessage(createMessage("low", MessagePriority.LOW), mockedEventCallback, null, null);
+        transport.queueMessage(createMessage("high", MessagePriority.HIGH), mockedEventCallback, null, null);
+
+        //act
+        Future<Void> accepted = transport.queueMessage(createMessage("normal", MessagePriority.NORMAL), mockedEventCallback, null, null);
+
+        //assert
+        accepted.get();
+        Queue<IotHubTransportPacket> waitingPackets = Deencapsulation.getField(transport, "waitingPacketsQueue");
+        Queue<IotHubTransportPacket> callbackPackets = Deencapsulation.getField(transport, "callbackPacketsQueue");
+        List<String> waitingMessageIds = getMessageIds(waitingPackets);
+        assertTrue(waitingMessageIds.contains("high"));
+        assertTrue(waitingMessageIds.contains("normal"));
+        assertEquals("low", callbackPackets.peek().getMessage().getMessageId());
+    }
+
+    @Test
+    public void dropLowestPriorityRejectsMessageOfLowerPriorityThanAllWaiting() throws InterruptedException
+    {
+        //arrange
+        IotHubTransport transport = createTransport(1, OutboundQueueOptions.DEFAULT_MAX_BYTES, OutboundQueueOverflowPolicy.DROP_LOWEST_PRIORITY);
+        transport.queueMessage(createMessage("normal", MessagePriority.NORMAL), mockedEventCallback, null, null);
+
+        //act
+        Future<Void> accepted = transport.queueMessage(createMessage("low", MessagePriority.LOW), mockedEventCallback, null, null);
+
+        //assert
+        try
+        {
+            accepted.get();
+            fail("The low priority message should have been rejected");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof ThrottledException);
+        }
+
+        Queue<IotHubTransportPacket> waitingPackets = Deencapsulation.getField(transport, "waitingPacketsQueue");
+        assertEquals("normal", waitingPackets.peek().getMessage().getMessageId());
+    }
+
+    @Test
+    public void byteBoundAcceptsOversizedMessageOnlyWhenNothingElseIsQueued()
+    {
+        //arrange
+        IotHubTransport transport = createTransport(100, 4, OutboundQueueOverflowPolicy.FAIL_FAST);
+
+        //act
+        Future<Void> firstAccepted = transport.queueMessage(createMessage("first", MessagePriority.NORMAL), mockedEventCallback, null, null);
+        Future<Void> secondAccepted = transport.queueMessage(createMessage("second", MessagePriority.NORMAL), mockedEventCallback, null, null);
+
+        //assert
+        Queue<IotHubTransportPacket> waitingPackets = Deencapsulation.getField(transport, "waitingPacketsQueue");
+        assertTrue(firstAccepted.isDone());
+        assertTrue(secondAccepted.isDone());
+        assertEquals(1, waitingPackets.size());
+        assertEquals("first", waitingPackets.peek().getMessage().getMessageId());
+    }
+
+    @Test
+    public void methodResponsesAreNotBounded()
+    {
+        //arrange
+        IotHubTransport transport = createTransport(1, OutboundQueueOptions.DEFAULT_MAX_BYTES, OutboundQueueOverflowPolicy.FAIL_FAST);
+        transport.queueMessage(createMessage("telemetry", MessagePriority.NORMAL), mockedEventCallback, null, null);
+        Message methodResponse = createMessage("methodResponse", MessagePriority.NORMAL);
+        methodResponse.setMessageType(MessageType.DEVICE_METHODS);
+
+        //act
+        Future<Void> accepted = transport.queueMessage(methodResponse, mockedEventCallback, null, null);
+
+        //assert
+        Queue<IotHubTransportPacket> waitingPackets = Deencapsulation.getField(transport, "waitingPacketsQueue");
+        assertTrue(accepted.isDone());
+        assertEquals(2, waitingPackets.size());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void setOutboundQueueOptionsThrowsForNonPositiveBound()
+    {
+        //arrange
+        IotHubTransport transport = createTransport();
+
+        //act
+        transport.setOutboundQueueOptions(OutboundQueueOptions.builder().maxMessages(0).build());
+    }
+}
@@ -7,6 +7,7 @@ import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.exceptions.DeviceClientException;
 import com.microsoft.azure.sdk.iot.device.exceptions.IotHubServiceException;
 import com.microsoft.azure.sdk.iot.device.exceptions.ProtocolException;
+import com.microsoft.azure.sdk.iot.device.exceptions.ThrottledException;
 import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
 import com.microsoft.azure.sdk.iot.device.exceptions.UnauthorizedException;
 import com.microsoft.azure.sdk.iot.device.transport.*;
@@ -18,6 +19,7 @@ import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttIotHubConnection;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.exceptions.MqttUnauthorizedException;
 import mockit.*;
 import org.junit.Test;
+import org.slf4j.Logger;
 
 import java.io.IOException;
 import java.util.*;
@@ -210,6 +212,51 @@ public class IotHubTransportTest
         };
     }
 
+    // A packet that was already completed, here by cancellation, shall not be completed again by a late acknowledgement
+    @Test
+    public void onMessageSentAfterPacketWasCancelledDoesNotCompleteItAgain()
+    {
+        //arrange
+        new Expectations()
+        {
+            {
+                mockedConfig.getDeviceId();
+                result = "someDeviceId";
+            }
+        };
+        final IotHubTransport transport = new IotHubTransport(mockedConfig, mockedIotHubConnectionStatusChangeCallback, false);
+        final String messageId = "1234";
+        final Map<String, IotHubTransportPacket> inProgressPackets = new ConcurrentHashMap<>();
+        inProgressPackets.put(messageId, mockedPacket);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "inProgressPackets", inProgressPackets);
+        new NonStrictExpectations()
+        {
+            {
+                mockedMessage.getMessageId();
+                result = messageId;
+            }
+        };
+        Deencapsulation.invoke(transport, "cancelPendingPackets");
+
+        //act
+        transport.onMessageSent(mockedMessage, null, null);
+
+        //assert
+        Queue<IotHubTransportPacket> callbackPacketsQueue = Deencapsulation.getField(transport, "callbackPacketsQueue");
+        assertEquals(1, callbackPacketsQueue.size());
+        assertTrue(inProgressPackets.isEmpty());
+        new Verifications()
+        {
+            {
+                mockedPacket.setStatus(IotHubStatusCode.MESSAGE_CANCELLED_ONCLOSE);
+                times = 1;
+                mockedPacket.setStatus(IotHubStatusCode.OK_EMPTY);
+                times = 0;
+            }
+        };
+    }
+
     //Tests_SRS_IOTHUBTRANSPORT_34_007: [If there was a packet in the inProgressPackets queue tied to the provided message, and the provided throwable is not a TransportException, this function shall call "handleMessageException" with the provided packet and a new transport exception with the provided exception as the inner exception.]
     @Test
     public void onMessageSentRetrievesFromInProgressAndCallsHandleMessageExceptionForNonTransportException()
@@ -278,6 +325,37 @@ public class IotHubTransportTest
         assertEquals(mockedTransportMessage, receivedMessagesQueue.poll());
     }
 
+    // A message without a correlation id shall skip the correlation callbacks without failing on the missing id
+    @Test
+    public void onMessageReceivedWithoutCorrelationIdSkipsCorrelationCallbacks(@Capturing final Logger mockedLogger)
+    {
+        //arrange
+        new Expectations()
+        {
+            {
+                mockedConfig.getDeviceId();
+                result = "someDeviceId";
+                mockedTransportMessage.getCorrelationId();
+                result = null;
+            }
+        };
+        IotHubTransport transport = new IotHubTransport(mockedConfig, mockedIotHubConnectionStatusChangeCallback, false);
+
+        //act
+        transport.onMessageReceived(mockedTransportMessage, null);
+
+        //assert
+        Queue<IotHubTransportPacket> receivedMessagesQueue = Deencapsulation.getField(transport, "receivedMessagesQueue");
+        assertEquals(1, receivedMessagesQueue.size());
+        new Verifications()
+        {
+            {
+                mockedLogger.warn(anyString, (Throwable) any);
+                times = 0;
+            }
+        };
+    }
+
     //Tests_SRS_IOTHUBTRANSPORT_34_011: [If this function is called while the connection status is DISCONNECTED, this function shall do nothing.]
     @Test
     public void onConnectionLostWhileDisconnectedDoesNothing()
@@ -561,6 +639,9 @@ public class IotHubTransportTest
             {
                 mockedConfig.getDeviceId();
                 result = "someDeviceId";
+
+                mockedConfig.getMessagePersistenceOptions();
+                result = null;
             }
         };
 
@@ -1373,6 +1454,99 @@ public class IotHubTransportTest
         assertEquals(1, waitingPacketsQueue.size());
     }
 
+    // When the send task runs on a shared executor, queueing a message shall signal it instead of relying on a waiting thread
+    @Test
+    public void addMessageSignalsSendTask(final @Mocked Runnable mockedSendTaskSignal, final @Mocked Runnable mockedReceiveTaskSignal)
+    {
+        //arrange
+        new Expectations()
+        {
+            {
+                mockedConfig.getDeviceId();
+                result = "someDeviceId";
+            }
+        };
+        IotHubTransport transport = new IotHubTransport(mockedConfig, mockedIotHubConnectionStatusChangeCallback, false);
+        transport.setTaskSignals(mockedSendTaskSignal, mockedReceiveTaskSignal);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+
+        new NonStrictExpectations()
+        {
+            {
+                new IotHubTransportPacket(mockedMessage, mockedEventCallback, any, null, anyLong, null);
+                result = mockedPacket;
+            }
+        };
+
+        //act
+        transport.addMessage(mockedMessage, mockedEventCallback, new Object(), null);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedSendTaskSignal.run();
+                times = 1;
+                mockedReceiveTaskSignal.run();
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void addMessageQueuesBatchMessageAsOnePacketOverAmqps(final @Mocked BatchMessage mockedBatchMessage)
+    {
+        //arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockedConfig.getDeviceId();
+                result = "someDeviceId";
+                mockedConfig.getProtocol();
+                result = IotHubClientProtocol.AMQPS;
+                mockedBatchMessage.getNestedMessages();
+                result = Arrays.asList(mockedMessage, mockedMessage);
+            }
+        };
+        IotHubTransport transport = new IotHubTransport(mockedConfig, mockedIotHubConnectionStatusChangeCallback, false);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
+
+        //act
+        transport.addMessage(mockedBatchMessage, mockedEventCallback, new Object(), null);
+
+        //assert
+        assertEquals(1, waitingPacketsQueue.size());
+    }
+
+    @Test
+    public void addMessageQueuesNestedMessagesSeparatelyOverMqtt(final @Mocked BatchMessage mockedBatchMessage)
+    {
+        //arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockedConfig.getDeviceId();
+                result = "someDeviceId";
+                mockedConfig.getProtocol();
+                result = IotHubClientProtocol.MQTT;
+                mockedBatchMessage.getNestedMessages();
+                result = Arrays.asList(mockedMessage, mockedMessage);
+            }
+        };
+        IotHubTransport transport = new IotHubTransport(mockedConfig, mockedIotHubConnectionStatusChangeCallback, false);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
+
+        //act
+        transport.addMessage(mockedBatchMessage, mockedEventCallback, new Object(), null);
+
+        //assert
+        assertEquals(2, waitingPacketsQueue.size());
+    }
+
     //Tests_SRS_IOTHUBTRANSPORT_34_043: [If the connection status of this object is not CONNECTED, this function shall do nothing]
     @Test
     public void sendMessagesDoesNothingIfNotConnected()
@@ -1439,6 +1613,72 @@ public class IotHubTransportTest
         assertEquals(1, waitingPacketsQueue.size());
     }
 
+    // With a send rate limit, sendMessages shall stop sending once the rate is used up
+    @Test
+    public void sendMessagesStopsAtTheSendRate()
+    {
+        //arrange
+        new MockUp<IotHubTransport>()
+        {
+            @Mock void sendPacket(IotHubTransportPacket packet)
+            {
+                //do nothing
+            }
+        };
+
+        new Expectations()
+        {
+            {
+                mockedConfig.getDeviceId();
+                result = "someDeviceId";
+            }
+        };
+
+        final IotHubTransport transport = new IotHubTransport(mockedConfig, mockedIotHubConnectionStatusChangeCallback, false);
+        transport.setSendRateOptions(SendRateOptions.builder().maxMessagesPerSecond(3).build());
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < 5; i++)
+        {
+            waitingPacketsQueue.add(mockedPacket);
+        }
+
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
+
+        //act
+        transport.sendMessages();
+
+        //assert
+        assertEquals(2, waitingPacketsQueue.size());
+        assertFalse(transport.hasMessagesToSend());
+    }
+
+    // With a send rate limit, throttling by IoT Hub shall tighten the rate
+    @Test
+    public void throttledMessageTightensTheSendRate(final @Mocked ThrottledException mockedThrottledException)
+    {
+        //arrange
+        new Expectations()
+        {
+            {
+                mockedConfig.getDeviceId();
+                result = "someDeviceId";
+            }
+        };
+
+        final IotHubTransport transport = new IotHubTransport(mockedConfig, mockedIotHubConnectionStatusChangeCallback, false);
+        transport.setSendRateOptions(SendRateOptions.builder().maxMessagesPerSecond(100).build());
+        Deencapsulation.setField(transport, "taskScheduler", mockedTaskScheduler);
+
+        //act
+        Deencapsulation.invoke(transport, "handleMessageException", mockedPacket, mockedThrottledException);
+
+        //assert
+        SendRateStatistics statistics = transport.getSendRateStatistics(null);
+        assertEquals(1, statistics.getThrottledCount());
+        assertTrue(statistics.getCurrentMessagesPerSecond() < 100);
+    }
+
     //Tests_SRS_IOTHUBTRANSPORT_34_045: [This function shall dequeue each packet in the callback queue and execute
     // their saved callback with their saved status and context]
     @Test
@@ -1487,6 +1727,57 @@ public class IotHubTransportTest
         };
     }
 
+    @Test
+    public void invokeCallbacksReportsBatchStatusOncePerNestedMessageOverAmqps(final @Mocked BatchMessage mockedBatchMessage)
+    {
+        //arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockedConfig.getDeviceId();
+                result = "someDeviceId";
+                mockedConfig.getProtocol();
+                result = IotHubClientProtocol.AMQPS;
+            }
+        };
+        final IotHubTransport transport = new IotHubTransport(mockedConfig, mockedIotHubConnectionStatusChangeCallback, false);
+        Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
+        callbackPacketsQueue.add(mockedPacket);
+        Deencapsulation.setField(transport, "callbackPacketsQueue", callbackPacketsQueue);
+        final Object context = new Object();
+        new NonStrictExpectations()
+        {
+            {
+                mockedPacket.getMessage();
+                result = mockedBatchMessage;
+
+                mockedBatchMessage.getNestedMessages();
+                result = Arrays.asList(mockedMessage, mockedMessage, mockedMessage);
+
+                mockedPacket.getCallback();
+                result = mockedEventCallback;
+
+                mockedPacket.getContext();
+                result = context;
+
+                mockedPacket.getStatus();
+                result = IotHubStatusCode.OK_EMPTY;
+            }
+        };
+
+        //act
+        transport.invokeCallbacks();
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedEventCallback.execute(IotHubStatusCode.OK_EMPTY, context);
+                times = 3;
+            }
+        };
+    }
+
     //Tests_SRS_IOTHUBTRANSPORT_34_046: [If this object's connection status is not CONNEECTED, this function shall do nothing.]
     @Test
     public void handleMessageDoesNothingIfNotConnected() throws DeviceClientException
@@ -3038,7 +3329,7 @@ public class IotHubTransportTest
             }
         };
         IotHubTransport transport = new IotHubTransport(mockedConfig, mockedIotHubConnectionStatusChangeCallback, false);
-        Map<String, IotHubTransportPacket> inProgressMessages = new HashMap<>();
+        Map<String, IotHubTransportPacket> inProgressMessages = new ConcurrentHashMap<>();
         Deencapsulation.setField(transport, "inProgressPackets", inProgressMessages);
         Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
         new NonStrictExpectations()
@@ -3047,6 +3338,9 @@ public class IotHubTransportTest
                 mockedPacket.getMessage();
                 result = mockedTransportMessage;
 
+                mockedTransportMessage.getMessageId();
+                result = "someMessageId";
+
                 mockedTransportMessage.isMessageAckNeeded((IotHubClientProtocol) any);
                 result = true;
 
@@ -3088,7 +3382,7 @@ public class IotHubTransportTest
             }
         };
         final IotHubTransport transport = new IotHubTransport(mockedConfig, mockedIotHubConnectionStatusChangeCallback, false);
-        Map<String, IotHubTransportPacket> inProgressMessages = new HashMap<>();
+        Map<String, IotHubTransportPacket> inProgressMessages = new ConcurrentHashMap<>();
         Deencapsulation.setField(transport, "inProgressPackets", inProgressMessages);
         Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
         new Expectations()
@@ -3097,6 +3391,9 @@ public class IotHubTransportTest
                 mockedPacket.getMessage();
                 result = mockedTransportMessage;
 
+                mockedTransportMessage.getMessageId();
+                result = "someMessageId";
+
                 mockedTransportMessage.isMessageAckNeeded((IotHubClientProtocol) any);
                 result = true;
 
@@ -3127,7 +3424,7 @@ public class IotHubTransportTest
             }
         };
         IotHubTransport transport = new IotHubTransport(mockedConfig, mockedIotHubConnectionStatusChangeCallback, false);
-        Map<String, IotHubTransportPacket> inProgressMessages = new HashMap<>();
+        Map<String, IotHubTransportPacket> inProgressMessages = new ConcurrentHashMap<>();
         Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
         Deencapsulation.setField(transport, "callbackPacketsQueue", callbackPacketsQueue);
         Deencapsulation.setField(transport, "inProgressPackets", inProgressMessages);
@@ -3186,7 +3483,7 @@ public class IotHubTransportTest
         };
 
         final IotHubTransport transport = new IotHubTransport(mockedConfig, mockedIotHubConnectionStatusChangeCallback, false);
-        Map<String, IotHubTransportPacket> inProgressMessages = new HashMap<>();
+        Map<String, IotHubTransportPacket> inProgressMessages = new ConcurrentHashMap<>();
         Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
         Deencapsulation.setField(transport, "callbackPacketsQueue", callbackPacketsQueue);
         Deencapsulation.setField(transport, "inProgressPackets", inProgressMessages);
@@ -3239,7 +3536,7 @@ public class IotHubTransportTest
             }
         };
         final IotHubTransport transport = new IotHubTransport(mockedConfig, mockedIotHubConnectionStatusChangeCallback, false);
-        Map<String, IotHubTransportPacket> inProgressMessages = new HashMap<>();
+        Map<String, IotHubTransportPacket> inProgressMessages = new ConcurrentHashMap<>();
         Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
         Deencapsulation.setField(transport, "callbackPacketsQueue", callbackPacketsQueue);
         Deencapsulation.setField(transport, "inProgressPackets", inProgressMessages);
@@ -3250,6 +3547,9 @@ public class IotHubTransportTest
                 mockedPacket.getMessage();
                 result = mockedTransportMessage;
 
+                mockedTransportMessage.getMessageId();
+                result = "someMessageId";
+
                 mockedTransportMessage.isMessageAckNeeded((IotHubClientProtocol) any);
                 result = true;
 
@@ -3307,7 +3607,7 @@ public class IotHubTransportTest
             }
         };
         IotHubTransport transport = new IotHubTransport(mockedConfig, mockedIotHubConnectionStatusChangeCallback, false);
-        Map<String, IotHubTransportPacket> inProgressMessages = new HashMap<>();
+        Map<String, IotHubTransportPacket> inProgressMessages = new ConcurrentHashMap<>();
         Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
         Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
         Deencapsulation.setField(transport, "callbackPacketsQueue", callbackPacketsQueue);
@@ -3355,7 +3655,7 @@ public class IotHubTransportTest
         };
 
         IotHubTransport transport = new IotHubTransport(mockedConfig, mockedIotHubConnectionStatusChangeCallback, false);
-        Map<String, IotHubTransportPacket> inProgressMessages = new HashMap<>();
+        Map<String, IotHubTransportPacket> inProgressMessages = new ConcurrentHashMap<>();
         Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
         Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
         Deencapsulation.setField(transport, "callbackPacketsQueue", callbackPacketsQueue);
@@ -3390,6 +3690,55 @@ public class IotHubTransportTest
         };
     }
 
+    @Test
+    public void sendMessagesChecksForExpiredMessagesInRateLimitedPackets() throws TransportException
+    {
+        //arrange
+        new Expectations()
+        {
+            {
+                mockedConfig.getDeviceId();
+                result = "someDeviceId";
+            }
+        };
+
+        IotHubTransport transport = new IotHubTransport(mockedConfig, mockedIotHubConnectionStatusChangeCallback, false);
+        Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
+        Deencapsulation.setField(transport, "callbackPacketsQueue", callbackPacketsQueue);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+
+        Queue<IotHubTransportPacket> devicePackets = new ConcurrentLinkedQueue<>();
+        devicePackets.add(mockedPacket);
+        Map<String, Queue<IotHubTransportPacket>> rateLimitedPackets = Deencapsulation.getField(transport, "rateLimitedPackets");
+        rateLimitedPackets.put("someDeviceId", devicePackets);
+
+        new Expectations()
+        {
+            {
+                mockedPacket.getMessage();
+                result = mockedMessage;
+                mockedMessage.isExpired();
+                result = true;
+            }
+        };
+
+        //act
+        transport.sendMessages();
+
+        //assert
+        assertTrue(callbackPacketsQueue.contains(mockedPacket));
+        assertTrue(rateLimitedPackets.isEmpty());
+        new Verifications()
+        {
+            {
+                mockedPacket.setStatus(IotHubStatusCode.MESSAGE_EXPIRED);
+                times = 1;
+                mockedIotHubTransportConnection.sendMessage((Message) any);
+                times = 0;
+            }
+        };
+    }
+
     @Test
     public void openWithRetryThrowsIfOperationTimesOut()
     {
@@ -3400,6 +3749,9 @@ public class IotHubTransportTest
                 mockedConfig.getDeviceId();
                 result = "someDeviceId";
 
+                mockedConfig.getMessagePersistenceOptions();
+                result = null;
+
                 mockedConfig.getRetryPolicy();
                 result = mockedRetryPolicy;
 
@@ -3451,6 +3803,9 @@ public class IotHubTransportTest
                 mockedConfig.getDeviceId();
                 result = "someDeviceId";
 
+                mockedConfig.getMessagePersistenceOptions();
+                result = null;
+
                 mockedConfig.getRetryPolicy();
                 result = mockedRetryPolicy;
 
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.MessagePersistenceEvictionPolicy;
+import com.microsoft.azure.sdk.iot.device.MessagePersistenceOptions;
+import com.microsoft.azure.sdk.iot.device.MessagePriority;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for MessageJournal.
+ */
+public class MessageJournalTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private MessageJournal journal;
+
+    @After
+    public void closeJournal()
+    {
+        if (journal != null)
+        {
+            journal.close();
+        }
+    }
+
+    private MessagePersistenceOptions createOptions(int segmentSizeBytes, long maxDiskUsageBytes, MessagePersistenceEvictionPolicy evictionPolicy)
+    {
+        return MessagePersistenceOptions.builder()
+                .directory(temporaryFolder.getRoot())
+                .segmentSizeBytes(segmentSizeBytes)
+                .maxDiskUsageBytes(maxDiskUsageBytes)
+                .evictionPolicy(evictionPolicy)
+                .build();
+    }
+
+    private static Message createMessage(String messageId, int bodySize)
+    {
+        Message message = new Message(new byte[bodySize]);
+        message.setMessageId(messageId);
+        return message;
+    }
+
+    @Test
+    public void appendedMessagesAreReadBackInOrder() throws IOException
+    {
+        //arrange
+        journal = MessageJournal.open(createOptions(4096, 8192, MessagePersistenceEvictionPolicy.DROP_OLDEST));
+        Message message = new Message("some body");
+        message.setMessageId("first");
+        message.setContentType("application/json");
+        message.setProperty("someKey", "someValue");
+        message.setPriority(MessagePriority.HIGH);
+
+        //act
+        long firstSequenceNumber = journal.append(message);
+        long secondSequenceNumber = journal.append(createMessage("second", 10));
+        MessageJournal.Record firstRecord = journal.readNext();
+        MessageJournal.Record secondRecord = journal.readNext();
+
+        //assert
+        assertEquals(firstSequenceNumber, firstRecord.getSequenceNumber());
+        assertEquals("first", firstRecord.getMessage().getMessageId());
+        assertEquals("application/json", firstRecord.getMessage().getContentType());
+        assertEquals("someValue", firstRecord.getMessage().getProperty("someKey"));
+        assertArrayEquals(message.getBytes(), firstRecord.getMessage().getBytes());
+        assertEquals(MessagePriority.HIGH, firstRecord.getMessage().getPriority());
+        assertEquals(secondSequenceNumber, secondRecord.getSequenceNumber());
+        assertEquals("second", secondRecord.getMessage().getMessageId());
+        assertNull(journal.readNext());
+        assertFalse(journal.hasUnreadMessages());
+    }
+
+    @Test
+    public void unacknowledgedMessagesAreReadAgainAfterReopen() throws IOException
+    {
+        //arrange
+        MessagePersistenceOptions options = createOptions(4096, 8192, MessagePersistenceEvictionPolicy.DROP_OLDEST);
+        journal = MessageJournal.open(options);
+        long firstSequenceNumber = journal.append(createMessage("first", 10));
+        journal.append(createMessage("second", 10));
+        journal.readNext();
+        journal.readNext();
+        journal.acknowledge(firstSequenceNumber);
+        journal.close();
+
+        //act
+        journal = MessageJournal.open(options);
+
+        //assert
+        assertTrue(journal.hasUnreadMessages());
+        assertEquals(firstSequenceNumber, journal.getCheckpoint());
+        assertEquals("second", journal.readNext().getMessage().getMessageId());
+        assertNull(journal.readNext());
+    }
+
+    @Test
+    public void dropOldestEvictsOldestSegmentWhenFull() throws IOException
+    {
+        //arrange
+        journal = MessageJournal.open(createOptions(256, 512, MessagePersistenceEvictionPolicy.DROP_OLDEST));
+        long firstSequenceNumber = journal.append(createMessage("first", 150));
+        journal.append(createMessage("second", 150));
+
+        //act
+        journal.append(createMessage("third", 150));
+
+        //assert
+        assertEquals(firstSequenceNumber, journal.getCheckpoint());
+        assertEquals(512, journal.getDiskUsageBytes());
+        assertEquals("second", journal.readNext().getMessage().getMessageId());
+        assertEquals("third", journal.readNext().getMessage().getMessageId());
+    }
+
+    @Test
+    public void rejectNewThrowsWhenFull() throws IOException
+    {
+        //arrange
+        journal = MessageJournal.open(createOptions(256, 512, MessagePersistenceEvictionPolicy.REJECT_NEW));
+        journal.append(createMessage("first", 150));
+        journal.append(createMessage("second", 150));
+
+        //act
+        try
+        {
+            journal.append(createMessage("third", 150));
+            fail("Appending to a full journal should have thrown");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+
+        //assert
+        assertEquals("first", journal.readNext().getMessage().getMessageId());
+        assertEquals("second", journal.readNext().getMessage().getMessageId());
+        assertNull(journal.readNext());
+    }
+
+    @Test
+    public void partiallyWrittenMessageIsDiscardedOnOpen() throws IOException
+    {
+        //arrange
+        MessagePersistenceOptions options = createOptions(4096, 8192, MessagePersistenceEvictionPolicy.DROP_OLDEST);
+        journal = MessageJournal.open(options);
+        long firstSequenceNumber = journal.append(createMessage("first", 10));
+        long secondSequenceNumber = journal.append(createMessage("second", 10));
+        journal.close();
+
+        File[] segmentFiles = temporaryFolder.getRoot().listFiles();
+        File segmentFile = segmentFiles[0].getName().startsWith("segment-") ? segmentFiles[0] : segmentFiles[1];
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(segmentFile, "rw"))
+        {
+            // Corrupt the last byte of the second message's payload
+            int firstPayloadLength = randomAccessFile.readInt();
+            randomAccessFile.seek(16 + firstPayloadLength);
+            int secondPayloadLength = randomAccessFile.readInt();
+            long lastBytePosition = 16 + firstPayloadLength + 16 + secondPayloadLength - 1;
+            randomAccessFile.seek(lastBytePosition);
+            byte lastByte = randomAccessFile.readByte();
+            randomAccessFile.seek(lastBytePosition);
+            randomAccessFile.writeByte(lastByte ^ 0xFF);
+        }
+
+        //act
+        journal = MessageJournal.open(options);
+
+        //assert
+        assertEquals(firstSequenceNumber, journal.readNext().getSequenceNumber());
+        assertNull(journal.readNext());
+        assertEquals(secondSequenceNumber, journal.append(createMessage("third", 10)));
+    }
+
+    @Test
+    public void segmentThatCannotBeMappedIsSkippedAndAcknowledged() throws IOException
+    {
+        //arrange
+        journal = MessageJournal.open(createOptions(256, 4096, MessagePersistenceEvictionPolicy.DROP_OLDEST));
+        long firstSequenceNumber = journal.append(createMessage("first", 150));
+        long secondSequenceNumber = journal.append(createMessage("second", 150));
+        journal.append(createMessage("third", 150));
+
+        // The second message's segment is neither being read nor written, so it is mapped again when it is read
+        File secondSegmentFile = new File(temporaryFolder.getRoot(), String.format("segment-%020d.log", secondSequenceNumber));
+        assertTrue(secondSegmentFile.delete());
+        assertTrue(secondSegmentFile.mkdir());
+
+        //act
+        MessageJournal.Record firstRecord = journal.readNext();
+        MessageJournal.Record thirdRecord = journal.readNext();
+
+        //assert
+        assertEquals("first", firstRecord.getMessage().getMessageId());
+        assertEquals("third", thirdRecord.getMessage().getMessageId());
+        assertNull(journal.readNext());
+        assertFalse(journal.hasUnreadMessages());
+        journal.acknowledge(firstSequenceNumber);
+        assertEquals(secondSequenceNumber, journal.getCheckpoint());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void openThrowsIfMaxDiskUsageIsSmallerThanSegmentSize() throws IOException
+    {
+        //act
+        journal = MessageJournal.open(createOptions(4096, 1024, MessagePersistenceEvictionPolicy.DROP_OLDEST));
+    }
+}
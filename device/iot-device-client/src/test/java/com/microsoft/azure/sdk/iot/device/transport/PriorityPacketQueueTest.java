@@ -0,0 +1,215 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.MessagePriority;
+import com.microsoft.azure.sdk.iot.device.MessageType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for PriorityPacketQueue.
+ */
+public class PriorityPacketQueueTest
+{
+    private static IotHubTransportPacket createTelemetryPacket(String messageId, MessagePriority priority)
+    {
+        Message message = new Message("some body");
+        message.setMessageId(messageId);
+        message.setPriority(priority);
+        return new IotHubTransportPacket(message, null, null, null, System.currentTimeMillis(), null);
+    }
+
+    private static IotHubTransportPacket createPacket(String messageId, MessageType messageType)
+    {
+        Message message = new Message("some body");
+        message.setMessageId(messageId);
+        message.setMessageType(messageType);
+        return new IotHubTransportPacket(message, null, null, null, System.currentTimeMillis(), null);
+    }
+
+    private static List<String> pollAllMessageIds(PriorityPacketQueue queue)
+    {
+        List<String> messageIds = new ArrayList<>();
+        IotHubTransportPacket packet = queue.poll();
+        while (packet != null)
+        {
+            messageIds.add(packet.getMessage().getMessageId());
+            packet = queue.poll();
+        }
+
+        return messageIds;
+    }
+
+    @Test
+    public void packetsOfOneLaneArePolledInOrder()
+    {
+        //arrange
+        PriorityPacketQueue queue = new PriorityPacketQueue();
+        for (int i = 0; i < 5; i++)
+        {
+            queue.add(createTelemetryPacket("telemetry" + i, MessagePriority.NORMAL));
+        }
+
+        //act
+        List<String> messageIds = pollAllMessageIds(queue);
+
+        //assert
+        assertEquals(5, messageIds.size());
+        for (int i = 0; i < 5; i++)
+        {
+            assertEquals("telemetry" + i, messageIds.get(i));
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void methodResponseBypassesTelemetryBacklog()
+    {
+        //arrange
+        PriorityPacketQueue queue = new PriorityPacketQueue();
+        for (int i = 0; i < 1000; i++)
+        {
+            queue.add(createTelemetryPacket("telemetry" + i, MessagePriority.NORMAL));
+        }
+
+        queue.add(createPacket("methodResponse", MessageType.DEVICE_METHODS));
+        queue.add(createPacket("twinPatch", MessageType.DEVICE_TWIN));
+
+        //act
+        List<String> firstPolled = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+        {
+            firstPolled.add(queue.poll().getMessage().getMessageId());
+        }
+
+        //assert
+        assertTrue(firstPolled.contains("methodResponse"));
+        assertTrue(firstPolled.contains("twinPatch"));
+        assertEquals(999, queue.size());
+    }
+
+    @Test
+    public void backloggedLanesArePolledByWeight()
+    {
+        //arrange
+        PriorityPacketQueue queue = new PriorityPacketQueue();
+        for (int i = 0; i < 100; i++)
+        {
+            queue.add(createPacket("control", MessageType.DEVICE_TWIN));
+            queue.add(createTelemetryPacket("high", MessagePriority.HIGH));
+            queue.add(createTelemetryPacket("normal", MessagePriority.NORMAL));
+            queue.add(createTelemetryPacket("low", MessagePriority.LOW));
+        }
+
+        //act
+        int control = 0;
+        int high = 0;
+        int normal = 0;
+        int low = 0;
+        for (int i = 0; i < 150; i++)
+        {
+            String messageId = queue.poll().getMessage().getMessageId();
+            if (messageId.equals("control"))
+            {
+                control++;
+            }
+            else if (messageId.equals("high"))
+            {
+                high++;
+            }
+            else if (messageId.equals("normal"))
+            {
+                normal++;
+            }
+            else
+            {
+                low++;
+            }
+        }
+
+        //assert
+        assertEquals(80, control);
+        assertEquals(40, high);
+        assertEquals(20, normal);
+        assertEquals(10, low);
+    }
+
+    @Test
+    public void lowPriorityTelemetryIsNotStarved()
+    {
+        //arrange
+        PriorityPacketQueue queue = new PriorityPacketQueue();
+        queue.add(createTelemetryPacket("low", MessagePriority.LOW));
+        for (int i = 0; i < 1000; i++)
+        {
+            queue.add(createTelemetryPacket("high" + i, MessagePriority.HIGH));
+        }
+
+        //act
+        List<String> firstPolled = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+        {
+            firstPolled.add(queue.poll().getMessage().getMessageId());
+        }
+
+        //assert
+        assertTrue(firstPolled.contains("low"));
+    }
+
+    @Test
+    public void iteratorRemoveUpdatesSize()
+    {
+        //arrange
+        PriorityPacketQueue queue = new PriorityPacketQueue();
+        queue.add(createPacket("control", MessageType.DEVICE_METHODS));
+        queue.add(createTelemetryPacket("telemetry", MessagePriority.NORMAL));
+
+        //act
+        Iterator<IotHubTransportPacket> iterator = queue.iterator();
+        assertEquals("control", iterator.next().getMessage().getMessageId());
+        iterator.remove();
+
+        //assert
+        assertEquals(1, queue.size());
+        assertEquals("telemetry", queue.poll().getMessage().getMessageId());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void removeOnlyReportsPacketsItRemoved()
+    {
+        //arrange
+        PriorityPacketQueue queue = new PriorityPacketQueue();
+        IotHubTransportPacket control = createPacket("control", MessageType.DEVICE_METHODS);
+        IotHubTransportPacket telemetry = createTelemetryPacket("telemetry", MessagePriority.HIGH);
+        queue.add(control);
+        queue.add(telemetry);
+        IotHubTransportPacket polledPacket = queue.poll();
+
+        //act
+        boolean removedPolledPacket = queue.remove(polledPacket);
+        boolean removedTelemetry = queue.remove(telemetry);
+
+        //assert
+        assertSame(control, polledPacket);
+        assertFalse(removedPolledPacket);
+        assertTrue(removedTelemetry);
+        assertEquals(0, queue.size());
+        assertNull(queue.poll());
+    }
+
+    @Test (expected = NullPointerException.class)
+    public void offerThrowsForNullPacket()
+    {
+        //act
+        new PriorityPacketQueue().offer(null);
+    }
+}
@@ -0,0 +1,133 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.SendRateOptions;
+import com.microsoft.azure.sdk.iot.device.SendRateStatistics;
+import org.junit.Test;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for SendRateLimiter.
+ */
+public class SendRateLimiterTest
+{
+    private static final long START_NANOS = 1000;
+
+    @Test
+    public void burstOfOneSecondIsSentWithoutDelay()
+    {
+        //arrange
+        SendRateLimiter limiter = new SendRateLimiter(SendRateOptions.builder().maxMessagesPerSecond(10).build(), START_NANOS);
+
+        //act
+        for (int i = 0; i < 10; i++)
+        {
+            assertEquals(0, limiter.getDelayNanos(START_NANOS));
+            limiter.acquire(100, START_NANOS);
+        }
+
+        //assert
+        assertTrue(limiter.getDelayNanos(START_NANOS) > 0);
+    }
+
+    @Test
+    public void messagesBeyondTheBurstArePacedAtTheRate()
+    {
+        //arrange
+        SendRateLimiter limiter = new SendRateLimiter(SendRateOptions.builder().maxMessagesPerSecond(10).build(), START_NANOS);
+        for (int i = 0; i < 10; i++)
+        {
+            limiter.acquire(100, START_NANOS);
+        }
+
+        //act
+        long delayNanos = limiter.getDelayNanos(START_NANOS);
+
+        //assert
+        assertEquals(MILLISECONDS.toNanos(100), delayNanos);
+        assertEquals(0, limiter.getDelayNanos(START_NANOS + delayNanos));
+    }
+
+    @Test
+    public void largeMessageIsSentAndThenPaidBack()
+    {
+        //arrange
+        SendRateLimiter limiter = new SendRateLimiter(SendRateOptions.builder().maxBytesPerSecond(1000).build(), START_NANOS);
+
+        //act
+        limiter.acquire(3000, START_NANOS);
+
+        //assert
+        assertEquals(SECONDS.toNanos(2), limiter.getDelayNanos(START_NANOS));
+    }
+
+    @Test
+    public void throttlingHalvesTheRateAndItGrowsBack()
+    {
+        //arrange
+        SendRateLimiter limiter = new SendRateLimiter(SendRateOptions.builder().maxMessagesPerSecond(100).build(), START_NANOS);
+
+        //act
+        limiter.onThrottled(START_NANOS);
+
+        //assert
+        assertEquals(50, limiter.getStatistics(START_NANOS).getCurrentMessagesPerSecond(), 0.001);
+        assertEquals(60, limiter.getStatistics(START_NANOS + SECONDS.toNanos(1)).getCurrentMessagesPerSecond(), 0.001);
+        assertEquals(100, limiter.getStatistics(START_NANOS + SECONDS.toNanos(10)).getCurrentMessagesPerSecond(), 0.001);
+        assertEquals(1, limiter.getStatistics(START_NANOS).getThrottledCount());
+    }
+
+    @Test
+    public void throttlingOfMessagesInFlightTogetherHalvesTheRateOnce()
+    {
+        //arrange
+        SendRateLimiter limiter = new SendRateLimiter(SendRateOptions.builder().maxMessagesPerSecond(100).build(), START_NANOS);
+
+        //act
+        for (int i = 0; i < 5; i++)
+        {
+            limiter.onThrottled(START_NANOS);
+        }
+
+        //assert
+        SendRateStatistics statistics = limiter.getStatistics(START_NANOS);
+        assertEquals(50, statistics.getCurrentMessagesPerSecond(), 0.001);
+        assertEquals(5, statistics.getThrottledCount());
+    }
+
+    @Test
+    public void throttlingDoesNotChangeTheRateIfNotAdaptive()
+    {
+        //arrange
+        SendRateLimiter limiter = new SendRateLimiter(SendRateOptions.builder().maxMessagesPerSecond(100).adaptiveToThrottling(false).build(), START_NANOS);
+
+        //act
+        limiter.onThrottled(START_NANOS);
+
+        //assert
+        assertEquals(100, limiter.getStatistics(START_NANOS).getCurrentMessagesPerSecond(), 0.001);
+        assertEquals(0, limiter.getDelayNanos(START_NANOS));
+    }
+
+    @Test
+    public void heldBackTimeIsCountedAsDelay()
+    {
+        //arrange
+        SendRateLimiter limiter = new SendRateLimiter(SendRateOptions.builder().maxMessagesPerSecond(1).build(), START_NANOS);
+        limiter.acquire(100, START_NANOS);
+        limiter.holdBack(START_NANOS);
+
+        //act
+        limiter.acquire(100, START_NANOS + SECONDS.toNanos(1));
+
+        //assert
+        SendRateStatistics statistics = limiter.getStatistics(START_NANOS + SECONDS.toNanos(1));
+        assertEquals(1, statistics.getDelayedMessageCount());
+        assertEquals(1000, statistics.getTotalDelayMillis());
+    }
+}
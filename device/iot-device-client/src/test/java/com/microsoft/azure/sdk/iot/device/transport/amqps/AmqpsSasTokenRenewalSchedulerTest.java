@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.device.transport.amqps;
+
+import mockit.Expectations;
+import mockit.Mocked;
+import mockit.Verifications;
+import org.apache.qpid.proton.reactor.Reactor;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsSasTokenRenewalScheduler.MAX_RENEWALS_PER_TICK;
+import static com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsSasTokenRenewalScheduler.TICK_MILLISECONDS;
+import static com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsSasTokenRenewalScheduler.WHEEL_SIZE;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for AmqpsSasTokenRenewalScheduler.
+ */
+public class AmqpsSasTokenRenewalSchedulerTest
+{
+    private static final long START_MILLIS = 1000000;
+
+    @Mocked
+    AmqpsSasTokenRenewalHandler mockRenewalHandler;
+
+    @Mocked
+    Reactor mockReactor;
+
+    private static AmqpsSasTokenRenewalScheduler createScheduler(final double jitter)
+    {
+        Random random = new Random()
+        {
+            @Override
+            public double nextDouble()
+            {
+                return jitter;
+            }
+        };
+
+        return new AmqpsSasTokenRenewalScheduler(random, START_MILLIS);
+    }
+
+    @Test
+    public void renewalIsSentOnceDue()
+    {
+        //arrange
+        AmqpsSasTokenRenewalScheduler scheduler = createScheduler(0);
+        scheduler.schedule(mockRenewalHandler, 10 * TICK_MILLISECONDS);
+
+        //act
+        int renewedEarly = scheduler.tick(START_MILLIS + 9 * TICK_MILLISECONDS, mockReactor);
+        int renewedOnTime = scheduler.tick(START_MILLIS + 10 * TICK_MILLISECONDS, mockReactor);
+
+        //assert
+        assertEquals(0, renewedEarly);
+        assertEquals(1, renewedOnTime);
+        new Verifications()
+        {
+            {
+                mockRenewalHandler.renew(mockReactor);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void renewalBeyondOneTurnOfTheWheelWaitsForItsRound()
+    {
+        //arrange
+        AmqpsSasTokenRenewalScheduler scheduler = createScheduler(0);
+        scheduler.schedule(mockRenewalHandler, (WHEEL_SIZE + 5) * TICK_MILLISECONDS);
+
+        //act
+        int renewedAfterFirstTurn = scheduler.tick(START_MILLIS + 5 * TICK_MILLISECONDS, mockReactor);
+        int renewedBeforeDue = scheduler.tick(START_MILLIS + (WHEEL_SIZE + 4) * TICK_MILLISECONDS, mockReactor);
+        int renewedOnTime = scheduler.tick(START_MILLIS + (WHEEL_SIZE + 5) * TICK_MILLISECONDS, mockReactor);
+
+        //assert
+        assertEquals(0, renewedAfterFirstTurn);
+        assertEquals(0, renewedBeforeDue);
+        assertEquals(1, renewedOnTime);
+    }
+
+    @Test
+    public void jitterMovesRenewalEarlierByAtMostATenth()
+    {
+        //arrange
+        AmqpsSasTokenRenewalScheduler scheduler = createScheduler(0.999);
+        scheduler.schedule(mockRenewalHandler, 100 * TICK_MILLISECONDS);
+
+        //act
+        int renewedBeforeJitterBound = scheduler.tick(START_MILLIS + 90 * TICK_MILLISECONDS, mockReactor);
+        int renewedWithJitter = scheduler.tick(START_MILLIS + 91 * TICK_MILLISECONDS, mockReactor);
+
+        //assert
+        assertEquals(0, renewedBeforeJitterBound);
+        assertEquals(1, renewedWithJitter);
+    }
+
+    @Test
+    public void dueRenewalsAreSpreadOverTicks()
+    {
+        //arrange
+        AmqpsSasTokenRenewalScheduler scheduler = createScheduler(0);
+        int renewals = MAX_RENEWALS_PER_TICK + 15;
+        for (int i = 0; i < renewals; i++)
+        {
+            scheduler.schedule(mockRenewalHandler, TICK_MILLISECONDS);
+        }
+
+        //act
+        int renewedInFirstTick = scheduler.tick(START_MILLIS + TICK_MILLISECONDS, mockReactor);
+        int renewedInSecondTick = scheduler.tick(START_MILLIS + 2 * TICK_MILLISECONDS, mockReactor);
+
+        //assert
+        assertEquals(MAX_RENEWALS_PER_TICK, renewedInFirstTick);
+        assertEquals(15, renewedInSecondTick);
+    }
+
+    @Test
+    public void closedHandlerIsNotRenewed()
+    {
+        //arrange
+        AmqpsSasTokenRenewalScheduler scheduler = createScheduler(0);
+        scheduler.schedule(mockRenewalHandler, TICK_MILLISECONDS);
+        new Expectations()
+        {
+            {
+                mockRenewalHandler.isClosed();
+                result = true;
+            }
+        };
+
+        //act
+        int renewed = scheduler.tick(START_MILLIS + TICK_MILLISECONDS, mockReactor);
+
+        //assert
+        assertEquals(0, renewed);
+        new Verifications()
+        {
+            {
+                mockRenewalHandler.renew((Reactor) any);
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void closedSchedulerDropsScheduledRenewals()
+    {
+        //arrange
+        AmqpsSasTokenRenewalScheduler scheduler = createScheduler(0);
+        scheduler.schedule(mockRenewalHandler, TICK_MILLISECONDS);
+
+        //act
+        scheduler.close();
+        int renewed = scheduler.tick(START_MILLIS + TICK_MILLISECONDS, mockReactor);
+
+        //assert
+        assertEquals(0, renewed);
+    }
+}
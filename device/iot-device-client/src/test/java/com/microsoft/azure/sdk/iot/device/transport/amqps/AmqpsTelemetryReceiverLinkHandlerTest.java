@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.device.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.deps.transport.amqp.AmqpsMessage;
+import com.microsoft.azure.sdk.iot.device.DeviceClientConfig;
+import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportMessage;
+import mockit.Deencapsulation;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.Released;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.reactor.FlowController;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for AmqpsTelemetryReceiverLinkHandler link credit and batched settlement.
+ */
+public class AmqpsTelemetryReceiverLinkHandlerTest
+{
+    @Mocked
+    Receiver mockReceiver;
+
+    @Mocked
+    DeviceClientConfig mockConfig;
+
+    @Mocked
+    AmqpsLinkStateCallback mockLinkStateCallback;
+
+    @Mocked
+    AmqpsMessage mockAmqpsMessage;
+
+    @Mocked
+    AmqpsMessage otherMockAmqpsMessage;
+
+    private AmqpsTelemetryReceiverLinkHandler createHandler(int linkCredit)
+    {
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.getDeviceId();
+                result = "someDevice";
+                mockConfig.getModuleId();
+                result = null;
+            }
+        };
+
+        return new AmqpsTelemetryReceiverLinkHandler(mockReceiver, mockLinkStateCallback, mockConfig, "someLinkCorrelationId", linkCredit);
+    }
+
+    private static void addReceivedMessage(AmqpsReceiverLinkHandler handler, IotHubTransportMessage message, AmqpsMessage amqpsMessage)
+    {
+        Map<Message, AmqpsMessage> receivedMessagesMap = Deencapsulation.getField(handler, "receivedMessagesMap");
+        receivedMessagesMap.put(message, amqpsMessage);
+    }
+
+    @Test
+    public void constructorUsesLinkCredit(@Mocked final FlowController mockFlowController)
+    {
+        //act
+        createHandler(50);
+
+        //assert
+        new Verifications()
+        {
+            {
+                new FlowController(50);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void acknowledgeReceivedMessageOnlyQueuesTheDisposition()
+    {
+        //arrange
+        AmqpsTelemetryReceiverLinkHandler handler = createHandler(10);
+        IotHubTransportMessage message = new IotHubTransportMessage("some body");
+        addReceivedMessage(handler, message, mockAmqpsMessage);
+
+        //act
+        boolean acknowledged = handler.acknowledgeReceivedMessage(message, Accepted.getInstance());
+
+        //assert
+        assertTrue(acknowledged);
+        assertFalse(handler.acknowledgeReceivedMessage(message, Accepted.getInstance()));
+        new Verifications()
+        {
+            {
+                mockAmqpsMessage.acknowledge((Accepted) any);
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void settlePendingDispositionsSettlesAllQueuedAcknowledgements()
+    {
+        //arrange
+        AmqpsTelemetryReceiverLinkHandler handler = createHandler(10);
+        IotHubTransportMessage message = new IotHubTransportMessage("some body");
+        IotHubTransportMessage otherMessage = new IotHubTransportMessage("some other body");
+        addReceivedMessage(handler, message, mockAmqpsMessage);
+        addReceivedMessage(handler, otherMessage, otherMockAmqpsMessage);
+        handler.acknowledgeReceivedMessage(message, Accepted.getInstance());
+        handler.acknowledgeReceivedMessage(otherMessage, Released.getInstance());
+
+        //act
+        int settledCount = handler.settlePendingDispositions();
+
+        //assert
+        assertEquals(2, settledCount);
+        assertEquals(0, handler.settlePendingDispositions());
+        new Verifications()
+        {
+            {
+                mockAmqpsMessage.acknowledge(Accepted.getInstance());
+                times = 1;
+                otherMockAmqpsMessage.acknowledge(Released.getInstance());
+                times = 1;
+            }
+        };
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.device.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.device.BatchMessage;
+import com.microsoft.azure.sdk.iot.device.DeviceClientConfig;
+import com.microsoft.azure.sdk.iot.device.Message;
+import mockit.Deencapsulation;
+import mockit.Delegate;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import mockit.VerificationsInOrder;
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.Rejected;
+import org.apache.qpid.proton.amqp.messaging.Released;
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Sender;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for AmqpsTelemetrySenderLinkHandler batching.
+ */
+public class AmqpsTelemetrySenderLinkHandlerTest
+{
+    @Mocked
+    Sender mockSender;
+
+    @Mocked
+    Delivery mockDelivery;
+
+    @Mocked
+    DeviceClientConfig mockConfig;
+
+    @Mocked
+    AmqpsLinkStateCallback mockLinkStateCallback;
+
+    private final List<byte[]> sentDeliveries = new ArrayList<>();
+
+    private AmqpsTelemetrySenderLinkHandler createHandler()
+    {
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.getDeviceId();
+                result = "someDevice";
+
+                mockSender.delivery((byte[]) any);
+                result = mockDelivery;
+
+                mockSender.send((byte[]) any, anyInt, anyInt);
+                result = new Delegate()
+                {
+                    @SuppressWarnings("unused")
+                    int send(byte[] bytes, int offset, int length)
+                    {
+                        sentDeliveries.add(Arrays.copyOfRange(bytes, offset, offset + length));
+                        return length;
+                    }
+                };
+
+                mockSender.advance();
+                result = true;
+            }
+        };
+
+        return new AmqpsTelemetrySenderLinkHandler(mockSender, mockLinkStateCallback, mockConfig, "someLinkCorrelationId");
+    }
+
+    private static BatchMessage createBatchMessage(Message... messages)
+    {
+        return Deencapsulation.newInstance(BatchMessage.class, new Class[] { List.class }, Arrays.asList(messages));
+    }
+
+    private static List<byte[]> decodeDataSections(byte[] delivery)
+    {
+        List<byte[]> bodies = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.wrap(delivery);
+        while (buffer.hasRemaining())
+        {
+            assertEquals(0x00, buffer.get());
+            assertEquals(0x53, buffer.get());
+            assertEquals(0x75, buffer.get());
+            assertEquals((byte) 0xb0, buffer.get());
+
+            byte[] encodedMessage = new byte[buffer.getInt()];
+            buffer.get(encodedMessage);
+
+            org.apache.qpid.proton.message.Message nestedMessage = Proton.message();
+            nestedMessage.decode(encodedMessage, 0, encodedMessage.length);
+            Binary body = ((Data) nestedMessage.getBody()).getValue();
+            bodies.add(Arrays.copyOfRange(body.getArray(), body.getArrayOffset(), body.getArrayOffset() + body.getLength()));
+        }
+
+        return bodies;
+    }
+
+    @Test
+    public void sendBatchMessageSendsNestedMessagesInOneBatchDelivery()
+    {
+        //arrange
+        AmqpsTelemetrySenderLinkHandler handler = createHandler();
+        BatchMessage batchMessage = createBatchMessage(new Message("first"), new Message("second"));
+
+        //act
+        AmqpsSendResult sendResult = handler.sendMessageAndGetDeliveryTag(batchMessage);
+
+        //assert
+        assertTrue(sendResult.isDeliverySuccessful());
+        assertEquals(1, sentDeliveries.size());
+        List<byte[]> bodies = decodeDataSections(sentDeliveries.get(0));
+        assertEquals(2, bodies.size());
+        assertEquals("first", new String(bodies.get(0), Message.DEFAULT_IOTHUB_MESSAGE_CHARSET));
+        assertEquals("second", new String(bodies.get(1), Message.DEFAULT_IOTHUB_MESSAGE_CHARSET));
+        new Verifications()
+        {
+            {
+                mockDelivery.setMessageFormat(AmqpsTelemetrySenderLinkHandler.BATCH_MESSAGE_FORMAT);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void sendBatchMessageSplitsDeliveriesAtMaxSizeAndAcknowledgesOnce()
+    {
+        //arrange
+        AmqpsTelemetrySenderLinkHandler handler = createHandler();
+        byte[] largeBody = new byte[AmqpsTelemetrySenderLinkHandler.MAX_BATCH_DELIVERY_SIZE / 2];
+        final BatchMessage batchMessage = createBatchMessage(new Message(largeBody), new Message(largeBody), new Message("small"));
+
+        //act
+        final int firstDeliveryTag = handler.sendMessageAndGetDeliveryTag(batchMessage).getDeliveryTag();
+        handler.onMessageAcknowledged(batchMessage, firstDeliveryTag, Accepted.getInstance());
+
+        //assert
+        assertEquals(2, sentDeliveries.size());
+        for (byte[] delivery : sentDeliveries)
+        {
+            assertTrue(delivery.length <= AmqpsTelemetrySenderLinkHandler.MAX_BATCH_DELIVERY_SIZE);
+        }
+        assertEquals(1, decodeDataSections(sentDeliveries.get(0)).size());
+        assertEquals(2, decodeDataSections(sentDeliveries.get(1)).size());
+        new Verifications()
+        {
+            {
+                mockLinkStateCallback.onMessageAcknowledged((Message) any, anyInt, (DeliveryState) any);
+                times = 0;
+            }
+        };
+
+        //act
+        handler.onMessageAcknowledged(batchMessage, firstDeliveryTag + 1, Accepted.getInstance());
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockLinkStateCallback.onMessageAcknowledged(batchMessage, firstDeliveryTag + 1, Accepted.getInstance());
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void batchSplitAcrossDeliveriesCompletesWithFirstFailedState()
+    {
+        //arrange
+        AmqpsTelemetrySenderLinkHandler handler = createHandler();
+        byte[] largeBody = new byte[AmqpsTelemetrySenderLinkHandler.MAX_BATCH_DELIVERY_SIZE / 2];
+        final BatchMessage batchMessage = createBatchMessage(new Message(largeBody), new Message(largeBody));
+        final Rejected rejected = new Rejected();
+        final int firstDeliveryTag = handler.sendMessageAndGetDeliveryTag(batchMessage).getDeliveryTag();
+
+        //act
+        handler.onMessageAcknowledged(batchMessage, firstDeliveryTag, rejected);
+        handler.onMessageAcknowledged(batchMessage, firstDeliveryTag + 1, Accepted.getInstance());
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockLinkStateCallback.onMessageAcknowledged(batchMessage, firstDeliveryTag + 1, rejected);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void batchResentAfterPartialAcceptanceOnlySendsNestedMessagesThatWereNotAccepted()
+    {
+        //arrange
+        AmqpsTelemetrySenderLinkHandler handler = createHandler();
+        byte[] largeBody = new byte[AmqpsTelemetrySenderLinkHandler.MAX_BATCH_DELIVERY_SIZE / 2];
+        final BatchMessage batchMessage = createBatchMessage(new Message(largeBody), new Message(largeBody), new Message("small"));
+        final int firstDeliveryTag = handler.sendMessageAndGetDeliveryTag(batchMessage).getDeliveryTag();
+        handler.onMessageAcknowledged(batchMessage, firstDeliveryTag, Accepted.getInstance());
+        handler.onMessageAcknowledged(batchMessage, firstDeliveryTag + 1, Released.getInstance());
+        sentDeliveries.clear();
+
+        //act
+        final int resentDeliveryTag = handler.sendMessageAndGetDeliveryTag(batchMessage).getDeliveryTag();
+        handler.onMessageAcknowledged(batchMessage, resentDeliveryTag, Accepted.getInstance());
+
+        //assert
+        assertEquals(1, sentDeliveries.size());
+        List<byte[]> bodies = decodeDataSections(sentDeliveries.get(0));
+        assertEquals(2, bodies.size());
+        assertEquals(largeBody.length, bodies.get(0).length);
+        assertEquals("small", new String(bodies.get(1), Message.DEFAULT_IOTHUB_MESSAGE_CHARSET));
+        new VerificationsInOrder()
+        {
+            {
+                mockLinkStateCallback.onMessageAcknowledged(batchMessage, firstDeliveryTag + 1, Released.getInstance());
+                times = 1;
+                mockLinkStateCallback.onMessageAcknowledged(batchMessage, resentDeliveryTag, Accepted.getInstance());
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void batchResentAfterTransportCompletedItSendsAllNestedMessages()
+    {
+        //arrange
+        AmqpsTelemetrySenderLinkHandler handler = createHandler();
+        byte[] largeBody = new byte[AmqpsTelemetrySenderLinkHandler.MAX_BATCH_DELIVERY_SIZE / 2];
+        final BatchMessage batchMessage = createBatchMessage(new Message(largeBody), new Message(largeBody), new Message("small"));
+        final int firstDeliveryTag = handler.sendMessageAndGetDeliveryTag(batchMessage).getDeliveryTag();
+        handler.onMessageAcknowledged(batchMessage, firstDeliveryTag, Accepted.getInstance());
+        handler.onMessageAcknowledged(batchMessage, firstDeliveryTag + 1, Released.getInstance());
+        sentDeliveries.clear();
+
+        //act
+        handler.onBatchMessageCompleted(batchMessage);
+        handler.sendMessageAndGetDeliveryTag(batchMessage);
+
+        //assert
+        assertEquals(2, sentDeliveries.size());
+        assertEquals(1, decodeDataSections(sentDeliveries.get(0)).size());
+        assertEquals(2, decodeDataSections(sentDeliveries.get(1)).size());
+    }
+}
@@ -15,6 +15,7 @@ import org.junit.Test;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -23,6 +24,7 @@ import static org.apache.commons.codec.binary.Base64.encodeBase64String;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 
@@ -328,4 +330,94 @@ public class HttpsBatchMessageTest
 
         assertThat(httpsBatchMessageSizeLimitVerified, is(true));
     }
+
+    // Tests_SRS_HTTPSBATCHMESSAGE_11_003: [The JSON object shall have the field "body" set to the raw message encoded in Base64.]
+    @Test
+    public void addMessageEncodesBodiesOfEveryLengthLikeBase64(@Mocked final HttpsSingleMessage mockMsg) throws IotHubSizeExceededException
+    {
+        //arrange
+        final byte[] msgBody = { (byte) 0xfb, (byte) 0xff, 0x00, 0x10, (byte) 0x83, 0x7f, 0x3e };
+        final List<byte[]> bodies = new ArrayList<>();
+        for (int length = 0; length <= msgBody.length; length++)
+        {
+            bodies.add(Arrays.copyOf(msgBody, length));
+        }
+
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getBody();
+                returns(bodies.get(0), bodies.get(1), bodies.get(2), bodies.get(3), bodies.get(4), bodies.get(5), bodies.get(6), bodies.get(7));
+            }
+        };
+
+        HttpsBatchMessage batchMsg = new HttpsBatchMessage();
+
+        //act
+        for (int i = 0; i < bodies.size(); i++)
+        {
+            batchMsg.addMessage(mockMsg);
+        }
+
+        //assert
+        String testBatchBody = new String(batchMsg.getBody(), UTF8);
+        StringBuilder expectedBatchBody = new StringBuilder("[");
+        for (byte[] body : bodies)
+        {
+            if (expectedBatchBody.length() > 1)
+            {
+                expectedBatchBody.append(',');
+            }
+            expectedBatchBody.append("{\"body\":\"").append(encodeBase64String(body)).append("\",\"base64Encoded\":true}");
+        }
+        expectedBatchBody.append(']');
+        assertThat(testBatchBody, is(expectedBatchBody.toString()));
+        assertThat(batchMsg.numMessages(), is(bodies.size()));
+    }
+
+    // Tests_SRS_HTTPSBATCHMESSAGE_11_008: [If adding the message causes the batched message to exceed 256 kb in size, the function shall throw a IotHubSizeExceededException.]
+    // Tests_SRS_HTTPSBATCHMESSAGE_11_009: [If the function throws a IotHubSizeExceededException, the batched message shall remain as if the message was never added.]
+    @Test
+    public void addMessageLeavesBatchUnchangedWhenFull(@Mocked final HttpsSingleMessage mockMsg) throws IotHubSizeExceededException
+    {
+        //arrange
+        final byte[] smallBody = "small".getBytes(UTF8);
+        final byte[] largeBody = new byte[150 * 1024];
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getBody();
+                returns(smallBody, largeBody, largeBody, smallBody);
+            }
+        };
+
+        HttpsBatchMessage batchMsg = new HttpsBatchMessage();
+        batchMsg.addMessage(mockMsg);
+        batchMsg.addMessage(mockMsg);
+        byte[] bodyBeforeFailedAdd = batchMsg.getBody();
+        boolean isSizeExceeded = false;
+
+        //act
+        try
+        {
+            batchMsg.addMessage(mockMsg);
+        }
+        catch (IotHubSizeExceededException e)
+        {
+            isSizeExceeded = true;
+        }
+
+        //assert
+        assertThat(isSizeExceeded, is(true));
+        assertThat(batchMsg.numMessages(), is(2));
+        assertArrayEquals(bodyBeforeFailedAdd, batchMsg.getBody());
+        assertThat(bodyBeforeFailedAdd.length, lessThan(SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES));
+
+        //act
+        batchMsg.addMessage(mockMsg);
+
+        //assert
+        assertThat(batchMsg.numMessages(), is(3));
+        assertThat(new String(batchMsg.getBody(), UTF8), containsString("},{\"body\":\"" + encodeBase64String(smallBody) + "\""));
+    }
 }
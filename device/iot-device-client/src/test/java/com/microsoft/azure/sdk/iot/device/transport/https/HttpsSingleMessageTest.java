@@ -43,7 +43,7 @@ public class HttpsSingleMessageTest
         new NonStrictExpectations()
         {
             {
-                mockMsg.getBytes();
+                mockMsg.getBytesNoCopy();
                 result = body;
                 mockMsg.getProperties();
                 result = properties;
@@ -78,7 +78,7 @@ public class HttpsSingleMessageTest
         new NonStrictExpectations()
         {
             {
-                mockMsg.getBytes();
+                mockMsg.getBytesNoCopy();
                 result = body;
                 mockMsg.getProperties();
                 result = properties;
@@ -111,7 +111,7 @@ public class HttpsSingleMessageTest
         new NonStrictExpectations()
         {
             {
-                mockMsg.getBytes();
+                mockMsg.getBytesNoCopy();
                 result = body;
                 mockMsg.getProperties();
                 result = properties;
@@ -188,7 +188,7 @@ public class HttpsSingleMessageTest
         new NonStrictExpectations()
         {
             {
-                mockMsg.getBytes();
+                mockMsg.getBytesNoCopy();
                 result = body;
                 mockMsg.getProperties();
                 result = properties;
@@ -229,7 +229,7 @@ public class HttpsSingleMessageTest
         new NonStrictExpectations()
         {
             {
-                mockMsg.getBytes();
+                mockMsg.getBytesNoCopy();
                 result = body;
                 mockMsg.getProperties();
                 result = properties;
@@ -267,7 +267,7 @@ public class HttpsSingleMessageTest
         new NonStrictExpectations()
         {
             {
-                mockMsg.getBytes();
+                mockMsg.getBytesNoCopy();
                 result = body;
                 mockMsg.getProperties();
                 result = properties;
@@ -301,7 +301,7 @@ public class HttpsSingleMessageTest
         new NonStrictExpectations()
         {
             {
-                mockMsg.getBytes();
+                mockMsg.getBytesNoCopy();
                 result = body;
                 mockMsg.getProperties();
                 result = properties;
@@ -353,7 +353,7 @@ public class HttpsSingleMessageTest
         new NonStrictExpectations()
         {
             {
-                mockMsg.getBytes();
+                mockMsg.getBytesNoCopy();
                 result = body;
                 mockMsg.getProperties();
                 result = properties;
@@ -578,7 +578,7 @@ public class HttpsSingleMessageTest
         new NonStrictExpectations()
         {
             {
-                mockMsg.getBytes();
+                mockMsg.getBytesNoCopy();
                 result = body;
                 mockMsg.getProperties();
                 result = properties;
@@ -613,7 +613,7 @@ public class HttpsSingleMessageTest
         new NonStrictExpectations()
         {
             {
-                mockMsg.getBytes();
+                mockMsg.getBytesNoCopy();
                 result = body;
                 mockMsg.getProperties();
                 result = properties;
@@ -646,7 +646,7 @@ public class HttpsSingleMessageTest
         new NonStrictExpectations()
         {
             {
-                mockMsg.getBytes();
+                mockMsg.getBytesNoCopy();
                 result = body;
                 mockMsg.getProperties();
                 result = properties;
@@ -679,7 +679,7 @@ public class HttpsSingleMessageTest
         new NonStrictExpectations()
         {
             {
-                mockMsg.getBytes();
+                mockMsg.getBytesNoCopy();
                 result = body;
                 mockMsg.getProperties();
                 result = properties;
@@ -117,7 +117,7 @@ public class MqttDeviceTwinTest
         new NonStrictExpectations()
         {
             {
-                mockMessage.getBytes();
+                mockMessage.getBytesNoCopy();
                 result = actualPayload;
                 mockMessage.getMessageType();
                 result = MessageType.DEVICE_TWIN;
@@ -135,7 +135,7 @@ public class MqttDeviceTwinTest
         new Verifications()
         {
             {
-                mockMessage.getBytes();
+                mockMessage.getBytesNoCopy();
                 times = 1;
                 Deencapsulation.invoke(mockMqtt, "publish", expectedTopic, mockMessage);
                 times = 1;
@@ -158,7 +158,7 @@ public class MqttDeviceTwinTest
             new NonStrictExpectations()
             {
                 {
-                    mockMessage.getBytes();
+                    mockMessage.getBytesNoCopy();
                     result = actualPayload;
                     mockMessage.getMessageType();
                     result = MessageType.DEVICE_TWIN;
@@ -178,7 +178,7 @@ public class MqttDeviceTwinTest
             new Verifications()
             {
                 {
-                    mockMessage.getBytes();
+                    mockMessage.getBytesNoCopy();
                     times = 1;
                     Deencapsulation.invoke(mockMqtt, "publish", expectedTopic, actualPayload, mockMessage);
                     times = 0;
@@ -201,7 +201,7 @@ public class MqttDeviceTwinTest
         new NonStrictExpectations()
         {
             {
-                mockMessage.getBytes();
+                mockMessage.getBytesNoCopy();
                 result = actualPayload;
                 mockMessage.getMessageType();
                 result = MessageType.DEVICE_TWIN;
@@ -221,7 +221,7 @@ public class MqttDeviceTwinTest
         new Verifications()
         {
             {
-                mockMessage.getBytes();
+                mockMessage.getBytesNoCopy();
                 times = 1;
                 Deencapsulation.invoke(mockMqtt, "publish", expectedTopic, mockMessage);
                 times = 1;
@@ -244,7 +244,7 @@ public class MqttDeviceTwinTest
             new NonStrictExpectations()
             {
                 {
-                    mockMessage.getBytes();
+                    mockMessage.getBytesNoCopy();
                     result = actualPayload;
                     mockMessage.getMessageType();
                     result = MessageType.DEVICE_TWIN;
@@ -264,7 +264,7 @@ public class MqttDeviceTwinTest
             new Verifications()
             {
                 {
-                    mockMessage.getBytes();
+                    mockMessage.getBytesNoCopy();
                     times = 1;
                     Deencapsulation.invoke(mockMqtt, "publish", expectedTopic, actualPayload, mockMessage);
                     times = 0;
@@ -287,7 +287,7 @@ public class MqttDeviceTwinTest
         new NonStrictExpectations()
         {
             {
-                mockMessage.getBytes();
+                mockMessage.getBytesNoCopy();
                 result = actualPayload;
                 mockMessage.getMessageType();
                 result = MessageType.DEVICE_TWIN;
@@ -305,7 +305,7 @@ public class MqttDeviceTwinTest
         new Verifications()
         {
             {
-                mockMessage.getBytes();
+                mockMessage.getBytesNoCopy();
                 times = 1;
                 Deencapsulation.invoke(mockMqtt, "subscribe", expectedTopic);
                 times = 1;
@@ -327,7 +327,7 @@ public class MqttDeviceTwinTest
         new NonStrictExpectations()
         {
             {
-                mockMessage.getBytes();
+                mockMessage.getBytesNoCopy();
                 result = actualPayload;
                 mockMessage.getMessageType();
                 result = MessageType.DEVICE_TWIN;
@@ -348,7 +348,7 @@ public class MqttDeviceTwinTest
         new Verifications()
         {
             {
-                mockMessage.getBytes();
+                mockMessage.getBytesNoCopy();
                 times = 1;
                 Deencapsulation.invoke(mockMqtt, "subscribe", anyString);
                 times = 0;
@@ -379,7 +379,7 @@ public class MqttDeviceTwinTest
                 result = DEVICE_OPERATION_TWIN_SUBSCRIBE_DESIRED_PROPERTIES_REQUEST;
                 mockMessage.getVersion();
                 result = mockVersion;
-                mockMessage.getBytes();
+                mockMessage.getBytesNoCopy();
                 result = actualPayload;
             }
         };
@@ -391,7 +391,7 @@ public class MqttDeviceTwinTest
         new Verifications()
         {
             {
-                mockMessage.getBytes();
+                mockMessage.getBytesNoCopy();
                 times = 1;
                 Deencapsulation.invoke(mockMqtt, "subscribe", expectedSubscribeTopic);
                 times = 1;
@@ -421,7 +421,7 @@ public class MqttDeviceTwinTest
             new Verifications()
             {
                 {
-                    mockMessage.getBytes();
+                    mockMessage.getBytesNoCopy();
                     times = 0;
                     Deencapsulation.invoke(mockMqtt, "publish", expectedTopic, actualPayload, mockMessage);
                     times = 0;
@@ -442,7 +442,7 @@ public class MqttDeviceTwinTest
             new NonStrictExpectations()
             {
                 {
-                    mockMessage.getBytes();
+                    mockMessage.getBytesNoCopy();
                     result = actualPayload;
                     mockMessage.getMessageType();
                     result = MessageType.DEVICE_TWIN;
@@ -461,7 +461,7 @@ public class MqttDeviceTwinTest
             new Verifications()
             {
                 {
-                    mockMessage.getBytes();
+                    mockMessage.getBytesNoCopy();
                     times = 1;
                     Deencapsulation.invoke(mockMqtt, "publish", expectedTopic, mockMessage);
                     times = 1;
@@ -18,6 +18,7 @@ import mockit.*;
 import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttPingSender;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 import org.junit.Test;
 
@@ -26,9 +27,15 @@ import java.io.IOException;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /*
@@ -256,7 +263,7 @@ public class MqttIotHubConnectionTest
         new Verifications()
         {
             {
-                new MqttAsyncClient(serverUri, deviceId, (MemoryPersistence) any);
+                new MqttAsyncClient(serverUri, deviceId, (MemoryPersistence) any, (MqttPingSender) any, null);
                 times = 1;
             }
         };
@@ -294,7 +301,7 @@ public class MqttIotHubConnectionTest
         new Verifications()
         {
             {
-                new MqttAsyncClient(serverUri, deviceId, (MemoryPersistence) any);
+                new MqttAsyncClient(serverUri, deviceId, (MemoryPersistence) any, (MqttPingSender) any, null);
                 times = 1;
             }
         };
@@ -337,7 +344,7 @@ public class MqttIotHubConnectionTest
         new Verifications()
         {
             {
-                new MqttAsyncClient(serverUri, deviceId, (MemoryPersistence) any);
+                new MqttAsyncClient(serverUri, deviceId, (MemoryPersistence) any, (MqttPingSender) any, null);
                times = 1;
             }
         };
@@ -361,7 +368,7 @@ public class MqttIotHubConnectionTest
                 result = true;
                 mockConfig.getProxySettings();
                 result = null;
-                new MqttAsyncClient(serverUri, deviceId, (MemoryPersistence) any);
+                new MqttAsyncClient(serverUri, deviceId, (MemoryPersistence) any, (MqttPingSender) any, null);
             }
         };
 
@@ -389,7 +396,7 @@ public class MqttIotHubConnectionTest
         new Verifications()
         {
             {
-                new MqttAsyncClient(anyString, deviceId, (MemoryPersistence) any);
+                new MqttAsyncClient(anyString, deviceId, (MemoryPersistence) any, (MqttPingSender) any, null);
                 maxTimes = 1;
             }
         };
@@ -447,6 +454,62 @@ public class MqttIotHubConnectionTest
         };
     }
 
+    // Each open connection shall send its pings on a scheduler of its own, which is shut down once it is closed
+    @Test
+    public void openConnectionsEachHaveTheirOwnPingScheduler() throws IOException, TransportException, MqttException
+    {
+        baseExpectations();
+        openExpectations(null);
+
+        MqttIotHubConnection connection1 = new MqttIotHubConnection(mockConfig);
+        MqttIotHubConnection connection2 = new MqttIotHubConnection(mockConfig);
+        Deencapsulation.setField(connection1, "listener", mockedIotHubListener);
+        Deencapsulation.setField(connection2, "listener", mockedIotHubListener);
+
+        connection1.open();
+        connection2.open();
+
+        ScheduledExecutorService pingScheduler1 = Deencapsulation.getField(connection1, "pingScheduler");
+        ScheduledExecutorService pingScheduler2 = Deencapsulation.getField(connection2, "pingScheduler");
+        assertNotNull(pingScheduler1);
+        assertNotNull(pingScheduler2);
+        assertNotSame(pingScheduler1, pingScheduler2);
+
+        connection1.close();
+
+        assertNull(Deencapsulation.getField(connection1, "pingScheduler"));
+        assertTrue(pingScheduler1.isShutdown());
+        assertFalse(pingScheduler2.isShutdown());
+
+        connection2.close();
+
+        assertNull(Deencapsulation.getField(connection2, "pingScheduler"));
+        assertTrue(pingScheduler2.isShutdown());
+    }
+
+    // With a thread factory, Paho's threads shall come from it
+    @Test
+    public void openUsesThreadFactoryForPahoThreads(@Mocked final ThreadFactory mockedThreadFactory, @Mocked final Executors mockedExecutors) throws IOException, TransportException, MqttException
+    {
+        baseExpectations();
+        openExpectations(null);
+
+        MqttIotHubConnection connection = new MqttIotHubConnection(mockConfig);
+        Deencapsulation.setField(connection, "listener", mockedIotHubListener);
+        connection.setThreadFactory(mockedThreadFactory);
+
+        connection.open();
+        connection.close();
+
+        new Verifications()
+        {
+            {
+                Executors.newScheduledThreadPool(anyInt, mockedThreadFactory);
+                times = 1;
+            }
+        };
+    }
+
     // Tests_SRS_MQTTIOTHUBCONNECTION_15_008: [The function shall send an event message to the IoT Hub
     // given in the configuration.]
     // Tests_SRS_MQTTIOTHUBCONNECTION_15_009: [The function shall send the message payload.]
@@ -462,7 +525,7 @@ public class MqttIotHubConnectionTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
+                mockedMessage.getBytesNoCopy();
                 result = msgBody;
                 mockDeviceMessaging.send(mockedMessage);
             }
@@ -512,7 +575,7 @@ public class MqttIotHubConnectionTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
+                mockedMessage.getBytesNoCopy();
                 result = msgBody;
             }
         };
@@ -536,7 +599,7 @@ public class MqttIotHubConnectionTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
+                mockedMessage.getBytesNoCopy();
                 result = new byte[0];
             }
         };
@@ -559,7 +622,7 @@ public class MqttIotHubConnectionTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
+                mockedMessage.getBytesNoCopy();
                 result = msgBody;
             }
         };
@@ -578,7 +641,7 @@ public class MqttIotHubConnectionTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
+                mockedMessage.getBytesNoCopy();
                 result = msgBody;
             }
         };
@@ -601,7 +664,7 @@ public class MqttIotHubConnectionTest
         new NonStrictExpectations()
         {
             {
-                mockDeviceTwinMsg.getBytes();
+                mockDeviceTwinMsg.getBytesNoCopy();
                 result = msgBody;
                 mockDeviceTwinMsg.getMessageType();
                 result = MessageType.DEVICE_TWIN;
@@ -641,7 +704,7 @@ public class MqttIotHubConnectionTest
         new NonStrictExpectations()
         {
             {
-                mockDeviceMethodMsg.getBytes();
+                mockDeviceMethodMsg.getBytesNoCopy();
                 result = msgBody;
                 mockDeviceMethodMsg.getMessageType();
                 result = MessageType.DEVICE_METHODS;
@@ -1144,7 +1207,7 @@ public class MqttIotHubConnectionTest
                 mockedProductInfo.getUserAgentString();
                 result = "someUserAgentString";
 
-                mockedMessage.getBytes();
+                mockedMessage.getBytesNoCopy();
                 result = expectedMessageBody;
 
                 mockedMessage.getMessageType();
@@ -1161,7 +1224,7 @@ public class MqttIotHubConnectionTest
         new NonStrictExpectations()
         {
             {
-                new MqttAsyncClient(anyString, anyString, (MemoryPersistence) any);
+                new MqttAsyncClient(anyString, anyString, (MemoryPersistence) any, (MqttPingSender) any, null);
                 result = mockedMqttConnection;
                 new MqttMessaging(anyString, null, anyString, anyBoolean, (MqttConnectOptions) any, (Map) any, (Queue) any);
                 result = mockDeviceMessaging;
@@ -249,7 +249,7 @@ public class MqttMessagingTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
+                mockedMessage.getBytesNoCopy();
                 result = messageBody;
                 Deencapsulation.invoke(mockMqtt, "publish", new Class[] {String.class, Message.class}, anyString, (Message) any);
             }
@@ -262,7 +262,7 @@ public class MqttMessagingTest
         new Verifications()
         {
             {
-                mockedMessage.getBytes();
+                mockedMessage.getBytesNoCopy();
                 times = 1;
                 Deencapsulation.invoke(mockMqtt, "publish", new Class[]{String.class, Message.class}, anyString, mockedMessage);
                 times = 1;
@@ -279,7 +279,7 @@ public class MqttMessagingTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
+                mockedMessage.getBytesNoCopy();
                 result = messageBody;
             }
         };
@@ -290,7 +290,7 @@ public class MqttMessagingTest
         new Verifications()
         {
             {
-                mockedMessage.getBytes();
+                mockedMessage.getBytesNoCopy();
                 times = 1;
                 Deencapsulation.invoke(mockMqtt, "publish", MOCK_PARSE_TOPIC, new byte[1]);
                 times = 1;
@@ -311,7 +311,7 @@ public class MqttMessagingTest
         new Verifications()
         {
             {
-                mockedMessage.getBytes();
+                mockedMessage.getBytesNoCopy();
                 times = 0;
                 Deencapsulation.invoke(mockMqtt, "publish", MOCK_PARSE_TOPIC, new byte[1]);
                 times = 0;
@@ -336,7 +336,7 @@ public class MqttMessagingTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
+                mockedMessage.getBytesNoCopy();
                 result = messageBody;
                 mockedMessage.getProperties();
                 result = messageProperties;
@@ -371,7 +371,7 @@ public class MqttMessagingTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
+                mockedMessage.getBytesNoCopy();
                 result = messageBody;
                 mockedMessage.getProperties();
                 result = messageProperties;
@@ -407,7 +407,7 @@ public class MqttMessagingTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
+                mockedMessage.getBytesNoCopy();
                 result = messageBody;
                 mockedMessage.getProperties();
                 result = messageProperties;
@@ -443,7 +443,7 @@ public class MqttMessagingTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
+                mockedMessage.getBytesNoCopy();
                 result = messageBody;
                 mockedMessage.getProperties();
                 result = messageProperties;
@@ -479,7 +479,7 @@ public class MqttMessagingTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
+                mockedMessage.getBytesNoCopy();
                 result = messageBody;
                 mockedMessage.getProperties();
                 result = messageProperties;
@@ -537,7 +537,7 @@ public class MqttMessagingTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
+                mockedMessage.getBytesNoCopy();
                 result = messageBody;
                 mockedMessage.getMessageId();
                 result = messageId;
@@ -0,0 +1,80 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.mqtt;
+
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for MqttPingScheduler.
+ */
+public class MqttPingSchedulerTest
+{
+    private static final Callable<Thread> CURRENT_THREAD = new Callable<Thread>()
+    {
+        @Override
+        public Thread call()
+        {
+            return Thread.currentThread();
+        }
+    };
+
+    @Test
+    public void createWithoutThreadFactoryStartsDaemonThread() throws InterruptedException, ExecutionException
+    {
+        //arrange
+        ScheduledExecutorService scheduler = MqttPingScheduler.create(null);
+
+        //act
+        Thread pingThread = scheduler.submit(CURRENT_THREAD).get();
+
+        //assert
+        assertTrue(pingThread.isDaemon());
+        assertEquals("azure-iot-sdk-MqttPingScheduler", pingThread.getName());
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void createWithThreadFactoryStartsThreadFromIt() throws InterruptedException, ExecutionException
+    {
+        //arrange
+        final Thread[] createdThread = new Thread[1];
+        ScheduledExecutorService scheduler = MqttPingScheduler.create(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                createdThread[0] = new Thread(runnable);
+                return createdThread[0];
+            }
+        });
+
+        //act
+        Thread pingThread = scheduler.submit(CURRENT_THREAD).get();
+
+        //assert
+        assertSame(createdThread[0], pingThread);
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void eachCallCreatesNewScheduler()
+    {
+        //act
+        ScheduledExecutorService first = MqttPingScheduler.create(null);
+        ScheduledExecutorService second = MqttPingScheduler.create(null);
+
+        //assert
+        assertNotSame(first, second);
+        first.shutdownNow();
+        assertFalse(second.isShutdown());
+        second.shutdownNow();
+    }
+}
@@ -26,6 +26,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
 
 import static com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceOperations.*;
 import static org.junit.Assert.*;
@@ -145,7 +146,7 @@ public class MqttTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
+                mockedMessage.getBytesNoCopy();
                 result = payload;
                 mockMqttAsyncClient.isConnected();
                 result = true;
@@ -786,7 +787,7 @@ public class MqttTest
             {
                 new TransportException(t);
                 result = mockedTransportException;
-                ReconnectionNotifier.notifyDisconnectAsync(mockedTransportException, mockedIotHubListener, anyString);
+                ReconnectionNotifier.notifyDisconnectAsync(mockedTransportException, mockedIotHubListener, anyString, (ThreadFactory) any);
             }
         };
 
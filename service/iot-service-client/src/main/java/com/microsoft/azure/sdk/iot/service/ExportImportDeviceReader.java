@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.microsoft.azure.sdk.iot.deps.serializer.ExportImportDeviceParser;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Streaming reader for the line delimited device registry blobs produced by
+ * {@link RegistryManager#exportDevices(String, Boolean)} and consumed by {@link RegistryManager#importDevices(String, String)}.
+ * Each non-empty line of the stream is decoded into one {@link ExportImportDevice}, so only the devices that have not
+ * yet been consumed are ever held in memory, regardless of the size of the blob.
+ * <p>
+ * This class is not thread safe. The consumer passed to {@link #forEach(int, Consumer)} may be invoked concurrently.
+ */
+public class ExportImportDeviceReader implements Closeable
+{
+    private static final int PARALLEL_BATCH_SIZE = 1000;
+
+    // Gson instances are thread safe, so a single instance can be shared by all readers and decode threads
+    private static final Gson gson = new Gson();
+
+    private final BufferedReader reader;
+    private String nextLine;
+    private long lineNumber;
+
+    /**
+     * Create a reader over the provided stream. The stream is expected to be UTF-8 encoded, with one json
+     * serialized device per line.
+     * @param inputStream the stream to read devices from. Closing this reader closes the stream.
+     * @throws IllegalArgumentException if the provided inputStream is null
+     */
+    public ExportImportDeviceReader(InputStream inputStream) throws IllegalArgumentException
+    {
+        if (inputStream == null)
+        {
+            throw new IllegalArgumentException("inputStream cannot be null");
+        }
+
+        this.reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return true if there is at least one more device left in the stream.
+     * @throws IOException if reading from the underlying stream fails
+     */
+    public boolean hasNext() throws IOException
+    {
+        return peekLine() != null;
+    }
+
+    /**
+     * Read and decode the next device in the stream.
+     * @return the next device in the stream.
+     * @throws IOException if reading from the underlying stream fails
+     * @throws NoSuchElementException if the stream has no devices left
+     * @throws IllegalArgumentException if the next line cannot be parsed into an {@link ExportImportDevice}
+     */
+    public ExportImportDevice next() throws IOException, NoSuchElementException, IllegalArgumentException
+    {
+        String line = peekLine();
+        if (line == null)
+        {
+            throw new NoSuchElementException("No devices left in the stream");
+        }
+
+        this.nextLine = null;
+        return decode(line, this.lineNumber);
+    }
+
+    /**
+     * Read every remaining device in the stream and pass it to the provided consumer. When parallelism is greater
+     * than 1, lines are read on the calling thread and decoded in batches on a pool of that many threads, so the
+     * consumer may be called concurrently and devices are not delivered in stream order. At most two batches per
+     * thread are buffered at any time, so memory usage stays bounded no matter how large the stream is.
+     * <p>
+     * This method returns once every device has been passed to the consumer. If any line fails to parse or the
+     * consumer throws, no further batches are scheduled and the first failure is rethrown.
+     * @param parallelism the number of threads to decode devices on. Use 1 to decode on the calling thread.
+     * @param consumer the callback to pass each decoded device to.
+     * @throws IOException if reading from the underlying stream fails
+     * @throws IllegalArgumentException if parallelism is less than 1, if the consumer is null, or if any line cannot
+     * be parsed into an {@link ExportImportDevice}
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the decode threads
+     */
+    public void forEach(int parallelism, Consumer<ExportImportDevice> consumer) throws IOException, IllegalArgumentException, InterruptedException
+    {
+        if (parallelism < 1)
+        {
+            throw new IllegalArgumentException("parallelism must be greater than 0");
+        }
+
+        if (consumer == null)
+        {
+            throw new IllegalArgumentException("consumer cannot be null");
+        }
+
+        if (parallelism == 1)
+        {
+            while (hasNext())
+            {
+                consumer.accept(next());
+            }
+
+            return;
+        }
+
+        ExecutorService decodeExecutor = Executors.newFixedThreadPool(parallelism);
+        Semaphore pendingBatches = new Semaphore(parallelism * 2);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        try
+        {
+            while (failure.get() == null && hasNext())
+            {
+                final List<String> batch = new ArrayList<>(PARALLEL_BATCH_SIZE);
+                final long[] batchLineNumbers = new long[PARALLEL_BATCH_SIZE];
+                while (batch.size() < PARALLEL_BATCH_SIZE && peekLine() != null)
+                {
+                    batchLineNumbers[batch.size()] = this.lineNumber;
+                    batch.add(this.nextLine);
+                    this.nextLine = null;
+                }
+
+                pendingBatches.acquire();
+                decodeExecutor.submit(() ->
+                {
+                    try
+                    {
+                        for (int i = 0; i < batch.size(); i++)
+                        {
+                            if (failure.get() != null)
+                            {
+                                return;
+                            }
+
+                            consumer.accept(decode(batch.get(i), batchLineNumbers[i]));
+                        }
+                    }
+                    catch (RuntimeException e)
+                    {
+                        failure.compareAndSet(null, e);
+                    }
+                    finally
+                    {
+                        pendingBatches.release();
+                    }
+                });
+            }
+        }
+        finally
+        {
+            decodeExecutor.shutdown();
+            if (!decodeExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS))
+            {
+                decodeExecutor.shutdownNow();
+            }
+        }
+
+        if (failure.get() != null)
+        {
+            throw failure.get();
+        }
+    }
+
+    /**
+     * Close this reader and the underlying stream.
+     * @throws IOException if closing the underlying stream fails
+     */
+    @Override
+    public void close() throws IOException
+    {
+        this.reader.close();
+    }
+
+    private String peekLine() throws IOException
+    {
+        while (this.nextLine == null)
+        {
+            String line = this.reader.readLine();
+            if (line == null)
+            {
+                return null;
+            }
+
+            this.lineNumber++;
+            if (!line.trim().isEmpty())
+            {
+                this.nextLine = line;
+            }
+        }
+
+        return this.nextLine;
+    }
+
+    private static ExportImportDevice decode(String line, long lineNumber) throws IllegalArgumentException
+    {
+        ExportImportDeviceParser parser;
+        try
+        {
+            parser = gson.fromJson(line, ExportImportDeviceParser.class);
+        }
+        catch (JsonSyntaxException e)
+        {
+            throw new IllegalArgumentException("Line " + lineNumber + " could not be parsed into a device", e);
+        }
+
+        if (parser == null)
+        {
+            throw new IllegalArgumentException("Line " + lineNumber + " could not be parsed into a device");
+        }
+
+        return new ExportImportDevice(parser);
+    }
+}
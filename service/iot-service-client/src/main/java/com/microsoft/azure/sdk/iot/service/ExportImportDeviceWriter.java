@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+import com.google.gson.Gson;
+import com.microsoft.azure.sdk.iot.deps.serializer.ExportImportDeviceParser;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming writer for the line delimited device registry blobs consumed by
+ * {@link RegistryManager#importDevices(String, String)}. Each device is serialized directly into the underlying
+ * stream followed by a line break, so an import file of any size can be produced without holding it in memory.
+ * <p>
+ * This class is not thread safe.
+ */
+public class ExportImportDeviceWriter implements Closeable, Flushable
+{
+    private static final Gson gson = new Gson();
+
+    private final Writer writer;
+    private long devicesWritten;
+
+    /**
+     * Create a writer over the provided stream. Devices are written as UTF-8 encoded json, one device per line.
+     * @param outputStream the stream to write devices to. Closing this writer closes the stream.
+     * @throws IllegalArgumentException if the provided outputStream is null
+     */
+    public ExportImportDeviceWriter(OutputStream outputStream) throws IllegalArgumentException
+    {
+        if (outputStream == null)
+        {
+            throw new IllegalArgumentException("outputStream cannot be null");
+        }
+
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Serialize the provided device as the next line of the stream.
+     * @param device the device to write.
+     * @throws IOException if writing to the underlying stream fails
+     * @throws IllegalArgumentException if the provided device is null
+     * @throws IllegalStateException if the device's authentication mechanism is missing its keys or thumbprints
+     */
+    public void write(ExportImportDevice device) throws IOException, IllegalArgumentException, IllegalStateException
+    {
+        if (device == null)
+        {
+            throw new IllegalArgumentException("device cannot be null");
+        }
+
+        ExportImportDeviceParser parser = device.toExportImportDeviceParser();
+        gson.toJson(parser, ExportImportDeviceParser.class, this.writer);
+        this.writer.write('\n');
+        this.devicesWritten++;
+    }
+
+    /**
+     * Serialize each of the provided devices, in order, as consecutive lines of the stream.
+     * @param devices the devices to write.
+     * @throws IOException if writing to the underlying stream fails
+     * @throws IllegalArgumentException if the provided devices or any device in it is null
+     * @throws IllegalStateException if any device's authentication mechanism is missing its keys or thumbprints
+     */
+    public void writeAll(Iterable<ExportImportDevice> devices) throws IOException, IllegalArgumentException, IllegalStateException
+    {
+        if (devices == null)
+        {
+            throw new IllegalArgumentException("devices cannot be null");
+        }
+
+        for (ExportImportDevice device : devices)
+        {
+            write(device);
+        }
+    }
+
+    /**
+     * @return the number of devices written to the stream so far.
+     */
+    public long getDevicesWritten()
+    {
+        return this.devicesWritten;
+    }
+
+    /**
+     * Flush any buffered devices to the underlying stream.
+     * @throws IOException if flushing the underlying stream fails
+     */
+    @Override
+    public void flush() throws IOException
+    {
+        this.writer.flush();
+    }
+
+    /**
+     * Flush any buffered devices and close the underlying stream.
+     * @throws IOException if closing the underlying stream fails
+     */
+    @Override
+    public void close() throws IOException
+    {
+        this.writer.close();
+    }
+}
@@ -7,6 +7,8 @@ package com.microsoft.azure.sdk.iot.service.devicetwin;
 
 import com.azure.core.credential.AzureSasCredential;
 import com.azure.core.credential.TokenCredential;
+import com.google.gson.stream.JsonReader;
+import com.microsoft.azure.sdk.iot.deps.serializer.QueryResponseItemReader;
 import com.microsoft.azure.sdk.iot.deps.twin.TwinCollection;
 import com.microsoft.azure.sdk.iot.deps.twin.TwinState;
 import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
@@ -24,10 +26,7 @@ import java.net.MalformedURLException;
 import java.net.Proxy;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 
@@ -39,6 +38,15 @@ public class DeviceTwin
     private int requestId = 0;
     private final int DEFAULT_PAGE_SIZE = 100;
 
+    private static final QueryResponseItemReader<DeviceTwinDevice> DEVICE_TWIN_DEVICE_READER = new QueryResponseItemReader<DeviceTwinDevice>()
+    {
+        @Override
+        public DeviceTwinDevice read(JsonReader in) throws IOException
+        {
+            return twinStateToDeviceTwinDevice(TwinState.createFromTwinJson(in));
+        }
+    };
+
     private final DeviceTwinClientOptions options;
     private final String hostName;
     private TokenCredentialCache credentialCache;
@@ -631,16 +639,8 @@ public class DeviceTwin
             return null;
         }
 
-        QueryCollectionResponse<String> queryResults = deviceTwinQueryCollection.next(options);
-        Iterator<String> jsonCollectionIterator = queryResults.getCollection().iterator();
-        Collection<DeviceTwinDevice> deviceTwinDeviceList = new ArrayList<>();
-
-        while (jsonCollectionIterator.hasNext())
-        {
-            deviceTwinDeviceList.add(jsonToDeviceTwinDevice(jsonCollectionIterator.next()));
-        }
-
-        return new QueryCollectionResponse<>(deviceTwinDeviceList, queryResults.getContinuationToken());
+        // Each twin is decoded straight from the page rather than from a json string per twin
+        return deviceTwinQueryCollection.next(options, DEVICE_TWIN_DEVICE_READER);
     }
 
     /**
@@ -697,8 +697,11 @@ public class DeviceTwin
 
     private DeviceTwinDevice jsonToDeviceTwinDevice(String json)
     {
-        TwinState twinState = TwinState.createFromTwinJson(json);
+        return twinStateToDeviceTwinDevice(TwinState.createFromTwinJson(json));
+    }
 
+    private static DeviceTwinDevice twinStateToDeviceTwinDevice(TwinState twinState)
+    {
         DeviceTwinDevice deviceTwinDevice = new DeviceTwinDevice(twinState.getDeviceId());
         deviceTwinDevice.setVersion(twinState.getVersion());
         deviceTwinDevice.setETag(twinState.getETag());
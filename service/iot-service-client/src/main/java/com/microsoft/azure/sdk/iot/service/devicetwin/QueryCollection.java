@@ -8,6 +8,8 @@ package com.microsoft.azure.sdk.iot.service.devicetwin;
 import com.azure.core.credential.AzureSasCredential;
 import com.microsoft.azure.sdk.iot.deps.serializer.ParserUtility;
 import com.microsoft.azure.sdk.iot.deps.serializer.QueryRequestParser;
+import com.microsoft.azure.sdk.iot.deps.serializer.QueryResponseItemReader;
+import com.microsoft.azure.sdk.iot.deps.serializer.QueryResponseParser;
 import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
 import com.microsoft.azure.sdk.iot.service.auth.TokenCredentialCache;
@@ -280,6 +282,27 @@ public class QueryCollection
      * @throws IotHubException If an IotHubException occurs when calling the Service API.
      */
     private QueryCollectionResponse<String> sendQueryRequest(QueryOptions options) throws IOException, IotHubException
+    {
+        return new QueryCollectionResponse<>(this.sendQueryRequestAndGetBody(options), this.responseContinuationToken);
+    }
+
+    /**
+     * Retrieves a page of results for a query, decoding each item directly with the provided item reader.
+     *
+     * @param options the options for the query. If a continuation token is set in these options, it shall override any
+     *                previously saved tokens. The page size of these options shall override any previously saved page size.
+     * @param itemReader the reader to decode each item of the page with.
+     * @return The QueryCollectionResponse containing the full page of decoded results and the continuation token for the next query.
+     * @throws IOException If an IOException occurs when calling the Service API, or if the results of that call are unexpected.
+     * @throws IotHubException If an IotHubException occurs when calling the Service API.
+     */
+    private <T> QueryCollectionResponse<T> sendQueryRequest(QueryOptions options, QueryResponseItemReader<T> itemReader) throws IOException, IotHubException
+    {
+        String body = this.sendQueryRequestAndGetBody(options);
+        return new QueryCollectionResponse<>(QueryResponseParser.parseItems(body, itemReader), this.responseContinuationToken);
+    }
+
+    private String sendQueryRequestAndGetBody(QueryOptions options) throws IOException, IotHubException
     {
         DeviceOperations.setHeaders(buildQueryHeaders(options));
 
@@ -321,8 +344,7 @@ public class QueryCollection
         handleQueryResponse(httpResponse);
 
         this.isInitialQuery = false;
-        return new QueryCollectionResponse<>(
-                new String(httpResponse.getBody(), StandardCharsets.UTF_8), this.responseContinuationToken);
+        return new String(httpResponse.getBody(), StandardCharsets.UTF_8);
     }
 
     /**
@@ -377,6 +399,30 @@ public class QueryCollection
         }
     }
 
+    /**
+     * Returns the next QueryCollectionResponse object with each item of the page decoded by the provided item reader, in
+     * a single pass over the response. If the provided query options have a continuation token, the query shall
+     * continue from that token. The query shall use the page size set in the query options.
+     *
+     * @param options The options for the query.
+     * @param itemReader The reader to decode each item of the page with.
+     * @param <T> The type of the decoded items.
+     * @return The next QueryCollectionResponse object or null if there is no next QueryCollectionResponse object.
+     * @throws IOException If an IOException occurs when calling the Service API, or if the results of that call are unexpected.
+     * @throws IotHubException If an IotHubException occurs when calling the Service API.
+     */
+    <T> QueryCollectionResponse<T> next(QueryOptions options, QueryResponseItemReader<T> itemReader) throws IOException, IotHubException
+    {
+        if (this.hasNext())
+        {
+            return this.sendQueryRequest(options, itemReader);
+        }
+        else
+        {
+            return null;
+        }
+    }
+
     /**
      * Getter for page size.
      * @return the page size of this.
@@ -0,0 +1,99 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.service;
+
+import com.microsoft.azure.sdk.iot.service.auth.AuthenticationType;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ExportImportDeviceReaderTest
+{
+    private static final String SAS_DEVICE_JSON = "{\"id\":\"device1\",\"eTag\":\"etag1\",\"status\":\"enabled\",\"authentication\":{\"symmetricKey\":{\"primaryKey\":\"AAAA\",\"secondaryKey\":\"BBBB\"},\"type\":\"sas\"}}";
+    private static final String CA_DEVICE_JSON = "{\"id\":\"device2\",\"status\":\"disabled\",\"authentication\":{\"type\":\"certificateAuthority\"}}";
+
+    @Test
+    public void readsOneDevicePerLineAndSkipsBlankLines() throws IOException
+    {
+        // arrange
+        String blob = SAS_DEVICE_JSON + "\n\n" + CA_DEVICE_JSON + "\r\n";
+        ExportImportDeviceReader reader = new ExportImportDeviceReader(new ByteArrayInputStream(blob.getBytes(StandardCharsets.UTF_8)));
+
+        // act
+        ExportImportDevice first = reader.next();
+        ExportImportDevice second = reader.next();
+
+        // assert
+        assertEquals("device1", first.getId());
+        assertEquals("etag1", first.geteTag());
+        assertEquals(DeviceStatus.Enabled, first.getStatus());
+        assertEquals("AAAA", first.getAuthenticationFinal().getSymmetricKey().getPrimaryKey());
+        assertEquals("device2", second.getId());
+        assertEquals(AuthenticationType.CERTIFICATE_AUTHORITY, second.getAuthenticationFinal().getAuthenticationType());
+        assertFalse(reader.hasNext());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void malformedLineThrows() throws IOException
+    {
+        // arrange
+        ExportImportDeviceReader reader = new ExportImportDeviceReader(new ByteArrayInputStream("{not json".getBytes(StandardCharsets.UTF_8)));
+
+        // act
+        reader.next();
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void nullStreamThrows()
+    {
+        // act
+        new ExportImportDeviceReader(null);
+    }
+
+    @Test
+    public void parallelForEachDecodesEveryDevice() throws IOException, InterruptedException
+    {
+        // arrange
+        final int deviceCount = 5000;
+        ByteArrayOutputStream blob = new ByteArrayOutputStream();
+        try (ExportImportDeviceWriter writer = new ExportImportDeviceWriter(blob))
+        {
+            for (int i = 0; i < deviceCount; i++)
+            {
+                writer.write(new ExportImportDevice("device" + i, AuthenticationType.SAS));
+            }
+        }
+
+        Set<String> deviceIds = ConcurrentHashMap.newKeySet();
+        ExportImportDeviceReader reader = new ExportImportDeviceReader(new ByteArrayInputStream(blob.toByteArray()));
+
+        // act
+        reader.forEach(4, device -> deviceIds.add(device.getId()));
+
+        // assert
+        assertEquals(deviceCount, deviceIds.size());
+        assertTrue(deviceIds.contains("device0"));
+        assertTrue(deviceIds.contains("device" + (deviceCount - 1)));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void parallelForEachRethrowsDecodeFailure() throws IOException, InterruptedException
+    {
+        // arrange
+        String blob = SAS_DEVICE_JSON + "\n{\"id\":\"noAuthentication\"}\n" + CA_DEVICE_JSON;
+        ExportImportDeviceReader reader = new ExportImportDeviceReader(new ByteArrayInputStream(blob.getBytes(StandardCharsets.UTF_8)));
+
+        // act
+        reader.forEach(2, device -> { });
+    }
+}
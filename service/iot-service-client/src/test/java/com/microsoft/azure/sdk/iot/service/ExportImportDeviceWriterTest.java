@@ -0,0 +1,67 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.service;
+
+import com.microsoft.azure.sdk.iot.service.auth.AuthenticationType;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ExportImportDeviceWriterTest
+{
+    @Test
+    public void writesOneLinePerDeviceThatRoundTrips() throws IOException
+    {
+        // arrange
+        ExportImportDevice sasDevice = new ExportImportDevice("sasDevice", AuthenticationType.SAS);
+        sasDevice.setImportMode(ImportMode.CreateOrUpdate);
+        sasDevice.setStatus(DeviceStatus.Disabled);
+        ExportImportDevice caDevice = new ExportImportDevice("caDevice", AuthenticationType.CERTIFICATE_AUTHORITY);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // act
+        try (ExportImportDeviceWriter writer = new ExportImportDeviceWriter(outputStream))
+        {
+            writer.writeAll(Arrays.asList(sasDevice, caDevice));
+            assertEquals(2, writer.getDevicesWritten());
+        }
+
+        // assert
+        String[] lines = new String(outputStream.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+
+        ExportImportDeviceReader reader = new ExportImportDeviceReader(new ByteArrayInputStream(outputStream.toByteArray()));
+        ExportImportDevice readSasDevice = reader.next();
+        ExportImportDevice readCaDevice = reader.next();
+        assertFalse(reader.hasNext());
+        assertEquals(sasDevice, readSasDevice);
+        assertEquals(sasDevice.getAuthenticationFinal().getSymmetricKey().getPrimaryKey(), readSasDevice.getAuthenticationFinal().getSymmetricKey().getPrimaryKey());
+        assertEquals("caDevice", readCaDevice.getId());
+        assertEquals(AuthenticationType.CERTIFICATE_AUTHORITY, readCaDevice.getAuthenticationFinal().getAuthenticationType());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void writeNullDeviceThrows() throws IOException
+    {
+        // arrange
+        ExportImportDeviceWriter writer = new ExportImportDeviceWriter(new ByteArrayOutputStream());
+
+        // act
+        writer.write(null);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void nullStreamThrows()
+    {
+        // act
+        new ExportImportDeviceWriter(null);
+    }
+}
@@ -5,6 +5,7 @@
 
 package com.microsoft.azure.sdk.iot.service.devicetwin;
 
+import com.microsoft.azure.sdk.iot.deps.serializer.QueryResponseItemReader;
 import com.microsoft.azure.sdk.iot.deps.twin.ConfigurationInfo;
 import com.microsoft.azure.sdk.iot.deps.twin.DeviceCapabilities;
 import com.microsoft.azure.sdk.iot.deps.twin.TwinCollection;
@@ -1396,9 +1397,6 @@ public class DeviceTwinTest
     {
         //arrange
         DeviceTwin deviceTwin = new DeviceTwin(STANDARD_CONNECTIONSTRING);
-        String expectedContinuationToken = "some continuation token";
-
-        String expectedJsonString = "some json string";
 
         new MockUp<DeviceTwin>()
         {
@@ -1406,50 +1404,21 @@ public class DeviceTwinTest
             {
                 return true;
             }
-
-            @Mock DeviceTwinDevice jsonToDeviceTwinDevice(String json) throws IOException
-            {
-                return new DeviceTwinDevice();
-            }
         };
 
         new StrictExpectations()
         {
             {
-                Deencapsulation.invoke(mockQueryCollection, "next", new Class[] {QueryOptions.class}, mockQueryOptions);
-                result = mockQueryCollectionResponse;
-
-                mockQueryCollectionResponse.getCollection();
-                result = mockCollection;
-
-                mockCollection.iterator();
-                result = mockIterator;
-
-                mockIterator.hasNext();
-                result = true;
-
-                mockIterator.next();
-                result = expectedJsonString;
-
-                mockIterator.hasNext();
-                result = true;
-
-                mockIterator.next();
-                result = expectedJsonString;
-
-                mockIterator.hasNext();
-                result = false;
-
-                mockQueryCollectionResponse.getContinuationToken();
-                result = expectedContinuationToken;
-
-                Deencapsulation.newInstance(QueryCollectionResponse.class, new Class[] {Collection.class, String.class}, (Collection) any, expectedContinuationToken);
+                mockQueryCollection.next(mockQueryOptions, (QueryResponseItemReader<DeviceTwinDevice>) any);
                 result = mockQueryCollectionResponse;
             }
         };
 
         //act
-        deviceTwin.next(mockQueryCollection, mockQueryOptions);
+        QueryCollectionResponse<DeviceTwinDevice> actualResponse = deviceTwin.next(mockQueryCollection, mockQueryOptions);
+
+        //assert
+        assertEquals(mockQueryCollectionResponse, actualResponse);
     }
 
     //Tests_SRS_DEVICETWIN_34_071: [This function shall return if the provided deviceTwinQueryCollection has next.]